@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.benchmarks;
+
+import org.firebrandocm.dao.annotations.Column;
+import org.firebrandocm.dao.annotations.ColumnFamily;
+import org.firebrandocm.dao.annotations.Key;
+
+import java.util.Date;
+
+/**
+ * A representative entity with string, primitive and date columns
+ */
+@ColumnFamily
+public class BenchmarkEntity {
+
+	@Key
+	private String id;
+
+	@Column(indexed = true)
+	private String name;
+
+	@Column
+	private String description;
+
+	@Column
+	private long visits;
+
+	@Column
+	private int rank;
+
+	@Column
+	private double score;
+
+	@Column
+	private boolean active;
+
+	@Column
+	private Date created;
+
+	public static BenchmarkEntity sample(BenchmarkEntity entity, String id) {
+		entity.setId(id);
+		entity.setName("benchmark");
+		entity.setDescription("a representative entity used to measure mapping costs");
+		entity.setVisits(1234567L);
+		entity.setRank(42);
+		entity.setScore(98.6);
+		entity.setActive(true);
+		entity.setCreated(new Date(1350000000000L));
+		return entity;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+
+	public void setDescription(String description) {
+		this.description = description;
+	}
+
+	public long getVisits() {
+		return visits;
+	}
+
+	public void setVisits(long visits) {
+		this.visits = visits;
+	}
+
+	public int getRank() {
+		return rank;
+	}
+
+	public void setRank(int rank) {
+		this.rank = rank;
+	}
+
+	public double getScore() {
+		return score;
+	}
+
+	public void setScore(double score) {
+		this.score = score;
+	}
+
+	public boolean isActive() {
+		return active;
+	}
+
+	public void setActive(boolean active) {
+		this.active = active;
+	}
+
+	public Date getCreated() {
+		return created;
+	}
+
+	public void setCreated(Date created) {
+		this.created = created;
+	}
+}
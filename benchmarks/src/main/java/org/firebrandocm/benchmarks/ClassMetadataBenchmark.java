@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.benchmarks;
+
+import org.firebrandocm.dao.ClassMetadata;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building the metadata of an entity class, which runs once per managed class when a factory starts
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClassMetadataBenchmark {
+
+	private OfflinePersistenceFactory factory;
+
+	@Setup
+	public void setup() throws Exception {
+		factory = new OfflinePersistenceFactory(BenchmarkEntity.class);
+	}
+
+	@Benchmark
+	public ClassMetadata<BenchmarkEntity> create() throws Exception {
+		return new ClassMetadata<BenchmarkEntity>(BenchmarkEntity.class, factory);
+	}
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.benchmarks;
+
+import org.firebrandocm.dao.impl.hector.HectorPersistenceFactory;
+import org.firebrandocm.dao.utils.ObjectUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures get and persist round trips against an embedded Cassandra server started once per fork
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EndToEndBenchmark {
+
+	private HectorPersistenceFactory factory;
+
+	private String existingKey;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		factory = new HectorPersistenceFactory.Builder()
+				.defaultKeySpace("FirebrandBenchmarks")
+				.contactNodes(new String[]{"127.0.0.1"})
+				.thriftPort(19160)
+				.startEmbeddedServer(true)
+				.embeddedServerBaseDir("/tmp/FirebrandBenchmarks")
+				.dropOnDestroy(true)
+				.entities(Arrays.<Class<?>>asList(BenchmarkEntity.class))
+				.build();
+		BenchmarkEntity entity = BenchmarkEntity.sample(factory.getInstance(BenchmarkEntity.class), null);
+		factory.persist(entity);
+		existingKey = entity.getId();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		factory.destroy();
+	}
+
+	@Benchmark
+	public BenchmarkEntity get() {
+		return factory.get(BenchmarkEntity.class, existingKey);
+	}
+
+	@Benchmark
+	public BenchmarkEntity persist() {
+		BenchmarkEntity entity = BenchmarkEntity.sample(factory.getInstance(BenchmarkEntity.class), ObjectUtils.newTimeUuid().toString());
+		factory.persist(entity);
+		return entity;
+	}
+}
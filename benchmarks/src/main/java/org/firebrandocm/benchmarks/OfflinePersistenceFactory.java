@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.benchmarks;
+
+import org.apache.commons.beanutils.PropertyUtils;
+import org.firebrandocm.dao.ClassMetadata;
+import org.firebrandocm.dao.impl.hector.HectorPersistenceFactory;
+import org.firebrandocm.dao.transport.MutationBatch;
+import org.firebrandocm.dao.transport.RawColumn;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A Hector factory initialized without a cluster so the row mapping code paths can be measured in isolation
+ */
+public class OfflinePersistenceFactory extends HectorPersistenceFactory {
+
+	/**
+	 * Builds the class metadata and type converters the same way {@link #init()} does, skipping the cluster and schema
+	 * @param entities the managed entities
+	 */
+	public OfflinePersistenceFactory(Class<?>... entities) throws Exception {
+		setDefaultKeySpace("FirebrandBenchmarks");
+		setEntities(Arrays.asList(entities));
+		initializeMetadata();
+		initializeTypeConverters();
+	}
+
+	/**
+	 * Hydrates an entity from a row the same way query results are hydrated
+	 * @param metadata the entity metadata
+	 * @param key the row key
+	 * @param columns the row columns
+	 * @return the hydrated entity
+	 */
+	public <T> T decodeRow(ClassMetadata<T> metadata, String key, List<RawColumn> columns) throws Exception {
+		T instance = getInstance(metadata.getTarget());
+		for (RawColumn column : columns) {
+			serializeColumn(metadata, instance, column.getName(), column, false);
+		}
+		PropertyUtils.setProperty(instance, metadata.getKeyProperty(), key);
+		return instance;
+	}
+
+	/**
+	 * Adds the mutations persisting an entity to a batch the same way persist does, without applying it
+	 * @param batch the batch
+	 * @param metadata the entity metadata
+	 * @param entity the entity
+	 */
+	public void encodeRow(MutationBatch batch, ClassMetadata<?> metadata, Object entity) {
+		String key = getKey(entity);
+		for (String property : metadata.getMutationProperties()) {
+			persistPropertyIfNecessary(batch, key, metadata, entity, property);
+		}
+	}
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.benchmarks;
+
+import org.firebrandocm.dao.Query;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.firebrandocm.dao.cql.QueryBuilder.*;
+
+/**
+ * Measures CQL statement construction through the query builder and named parameter substitution in {@link Query}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBuilderBenchmark {
+
+	private Map<String, Object> params;
+
+	@Setup
+	public void setup() {
+		params = new HashMap<String, Object>();
+		params.put("name", "benchmark");
+		params.put("rank", 42);
+	}
+
+	@Benchmark
+	public String buildSelect() {
+		return select(
+				first(5),
+				columnRange("a", "z"),
+				from(BenchmarkEntity.class),
+				where(
+						eq("name", "benchmark"),
+						gt("rank", 10),
+						keyIn(0, 1, 2, 3)
+				),
+				limit(10)
+		).build();
+	}
+
+	@Benchmark
+	public String buildUpdate() {
+		return update(
+				columnFamily(BenchmarkEntity.class),
+				set(
+						assign("name", "benchmark"),
+						assign("score", 98.6)
+				),
+				where(
+						keyIn("key")
+				)
+		).build();
+	}
+
+	@Benchmark
+	public String queryFromStatement() {
+		return Query.get(select(allColumns(), from(BenchmarkEntity.class), where(key("key")))).getQuery();
+	}
+
+	@Benchmark
+	public String queryWithParams() {
+		return Query.get("SELECT * FROM BenchmarkEntity WHERE name = :name AND rank = :rank", params).getQuery();
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.benchmarks;
+
+import org.apache.commons.beanutils.PropertyUtils;
+import org.firebrandocm.dao.ClassMetadata;
+import org.firebrandocm.dao.PersistenceFactory;
+import org.firebrandocm.dao.transport.MutationBatch;
+import org.firebrandocm.dao.transport.RawColumn;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures mapping a row to an entity as query results are hydrated and an entity to column mutations as persist does.
+ * No cluster is involved, the mutation batch is never applied
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RowCodecBenchmark {
+
+	private OfflinePersistenceFactory factory;
+
+	private ClassMetadata<BenchmarkEntity> metadata;
+
+	private List<RawColumn> row;
+
+	private BenchmarkEntity entity;
+
+	@Setup
+	public void setup() throws Exception {
+		factory = new OfflinePersistenceFactory(BenchmarkEntity.class);
+		metadata = factory.getClassMetadata(BenchmarkEntity.class);
+		entity = BenchmarkEntity.sample(factory.getInstance(BenchmarkEntity.class), "key");
+		row = new ArrayList<RawColumn>();
+		for (String property : metadata.getMutationProperties()) {
+			if (!property.equals(metadata.getKeyProperty()) && !property.equals(PersistenceFactory.CLASS_PROPERTY)) {
+				ByteBuffer bytes = factory.convertWrite(PropertyUtils.getProperty(entity, property));
+				row.add(new RawColumn(property, bytes));
+			}
+		}
+	}
+
+	@Benchmark
+	public BenchmarkEntity decode() throws Exception {
+		return factory.decodeRow(metadata, "key", row);
+	}
+
+	@Benchmark
+	public int encode() {
+		MutationBatch batch = new MutationBatch();
+		factory.encodeRow(batch, metadata, entity);
+		return batch.size();
+	}
+}
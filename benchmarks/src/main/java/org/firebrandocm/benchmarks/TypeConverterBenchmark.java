@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.benchmarks;
+
+import org.firebrandocm.dao.impl.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures encoding and decoding of column values through the default type converters
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TypeConverterBenchmark {
+
+	private final StringTypeConverter stringConverter = new StringTypeConverter();
+
+	private final LongTypeConverter longConverter = new LongTypeConverter();
+
+	private final DoubleTypeConverter doubleConverter = new DoubleTypeConverter();
+
+	private final DateTypeConverter dateConverter = new DateTypeConverter();
+
+	private final String string = "a representative entity used to measure mapping costs";
+
+	private final Long longValue = 1234567L;
+
+	private final Date date = new Date(1350000000000L);
+
+	private ByteBuffer stringBytes;
+
+	private ByteBuffer longBytes;
+
+	private ByteBuffer doubleBytes;
+
+	private ByteBuffer dateBytes;
+
+	@Setup
+	public void setup() throws Exception {
+		stringBytes = stringConverter.toValue(string);
+		longBytes = longConverter.toValue(longValue);
+		doubleBytes = doubleConverter.toValue(98.6);
+		dateBytes = dateConverter.toValue(date);
+	}
+
+	@Benchmark
+	public ByteBuffer encodeString() throws Exception {
+		return stringConverter.toValue(string);
+	}
+
+	@Benchmark
+	public String decodeString() throws Exception {
+		return stringConverter.fromValue(stringBytes.duplicate(), String.class);
+	}
+
+	@Benchmark
+	public ByteBuffer encodeLong() throws Exception {
+		return longConverter.toValue(longValue);
+	}
+
+	@Benchmark
+	public Long decodeLong() throws Exception {
+		return longConverter.fromValue(longBytes.duplicate(), Long.class);
+	}
+
+	@Benchmark
+	public long decodeLongUnboxed() {
+		return longConverter.decode(longBytes);
+	}
+
+	@Benchmark
+	public double decodeDoubleUnboxed() {
+		return doubleConverter.decode(doubleBytes);
+	}
+
+	@Benchmark
+	public ByteBuffer encodeDate() throws Exception {
+		return dateConverter.toValue(date);
+	}
+
+	@Benchmark
+	public Date decodeDate() throws Exception {
+		return dateConverter.fromValue(dateBytes.duplicate(), Date.class);
+	}
+}
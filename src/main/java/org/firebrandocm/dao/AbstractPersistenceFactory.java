@@ -19,31 +19,60 @@
 package org.firebrandocm.dao;
 
 import javassist.NotFoundException;
-import me.prettyprint.hector.api.beans.HColumn;
 import org.apache.cassandra.locator.AbstractReplicationStrategy;
 import org.apache.cassandra.locator.SimpleStrategy;
 import org.apache.cassandra.thrift.CfDef;
 import org.apache.cassandra.thrift.ConsistencyLevel;
+import org.apache.cassandra.thrift.IndexOperator;
 import org.apache.cassandra.thrift.KsDef;
+import org.apache.commons.beanutils.NestedNullException;
 import org.apache.commons.beanutils.PropertyUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.firebrandocm.dao.aggregation.Accumulator;
+import org.firebrandocm.dao.aggregation.Aggregation;
 import org.firebrandocm.dao.annotations.ColumnFamily;
+import org.firebrandocm.dao.annotations.Granularity;
 import org.firebrandocm.dao.cql.QueryBuilder;
+import org.firebrandocm.dao.cql.clauses.IndexOperatorPredicate;
+import org.firebrandocm.dao.cql.clauses.Predicate;
 import org.firebrandocm.dao.events.*;
 import org.firebrandocm.dao.impl.*;
+import org.firebrandocm.dao.metrics.Counter;
+import org.firebrandocm.dao.metrics.MetricsRecorder;
+import org.firebrandocm.dao.metrics.NoOpMetricsRecorder;
+import org.firebrandocm.dao.metrics.Operation;
 import org.firebrandocm.dao.ocmcql.CQLMappedCollectionValueConverter;
 import org.firebrandocm.dao.ocmcql.CQLMappedEntityValueConverter;
+import org.firebrandocm.dao.planner.IndexStatistics;
+import org.firebrandocm.dao.planner.LookupIndex;
+import org.firebrandocm.dao.planner.OrderedIndex;
+import org.firebrandocm.dao.planner.QueryPlan;
+import org.firebrandocm.dao.planner.QueryPlanner;
+import org.firebrandocm.dao.transport.*;
 import org.firebrandocm.dao.utils.ClassUtil;
 import org.firebrandocm.dao.utils.ObjectUtils;
 import org.firebrandocm.dao.utils.embedded.EmbeddedCassandraServer;
+import org.firebrandocm.dao.widerow.ColumnNameCodec;
+import org.firebrandocm.dao.widerow.ColumnSliceIterator;
+import org.firebrandocm.dao.widerow.Rollup;
+import org.firebrandocm.dao.widerow.WideColumn;
 
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static org.firebrandocm.dao.cql.QueryBuilder.*;
 
@@ -68,6 +97,22 @@ public abstract class AbstractPersistenceFactory implements PersistenceFactory {
      */
     protected static final String COLLECTION_VALUE_SEPARATOR = ",";
 
+    /**
+     * matches a CQL select query capturing the select expression between the optional FIRST and REVERSED clauses and FROM
+     */
+    private static final Pattern SELECT_EXPRESSION = Pattern.compile("^(\\s*SELECT\\s+(?:FIRST\\s+\\d+\\s+)?(?:REVERSED\\s+)?)(.+?)(\\s+FROM\\s.*)$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    /**
+     * The number of rows read at a time when counting or aggregating the rows of a token range
+     */
+    private static final int SCAN_PAGE_SIZE = 1000;
+
+    /**
+     * The standard normal quantile of the 95% confidence interval of count estimates
+     */
+    private static final double COUNT_ESTIMATE_Z = 1.96;
+
     /**
      * This class log
      */
@@ -148,6 +193,11 @@ public abstract class AbstractPersistenceFactory implements PersistenceFactory {
      */
     private String embeddedServerBaseDir;
 
+    /**
+     * The maximum time in milliseconds to wait for the embedded server to be ready
+     */
+    private long embeddedServerStartupTimeout = 60000;
+
     /**
      * If directories for the embedded server should be deleted
      */
@@ -168,6 +218,42 @@ public abstract class AbstractPersistenceFactory implements PersistenceFactory {
      */
     private Map<Event.Column, List<ColumnEventListener>> columnEventListenerMap;
 
+    /**
+     * The entity event listeners subscribed per entity class
+     */
+    private Map<Class<?>, Map<Event.Entity, List<EntityEventListener>>> entityClassEventListenerMap;
+
+    /**
+     * The column event listeners subscribed per entity class
+     */
+    private Map<Class<?>, Map<Event.Column, List<ColumnEventListener>>> columnClassEventListenerMap;
+
+    /**
+     * Index of the registered entity event listeners notified once per entity
+     */
+    private volatile EventListenerIndex<Event.Entity, EntityEventListener> entityListenerIndex = EventListenerIndex.build(Event.Entity.class, null, null, Collections.<Class<?>>emptyList(), false);
+
+    /**
+     * Index of the registered batch entity event listeners
+     */
+    private volatile EventListenerIndex<Event.Entity, EntityEventListener> batchEntityListenerIndex = EventListenerIndex.build(Event.Entity.class, null, null, Collections.<Class<?>>emptyList(), true);
+
+    /**
+     * Nesting depth of the persist and remove calls running on each thread, batch listeners are only notified by the
+     * outermost call so cascades and listeners that persist don't notify them again
+     */
+    private final ThreadLocal<int[]> batchDepth = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[1];
+        }
+    };
+
+    /**
+     * Index of the registered column event listeners
+     */
+    private volatile EventListenerIndex<Event.Column, ColumnEventListener> columnListenerIndex = EventListenerIndex.build(Event.Column.class, null, null, Collections.<Class<?>>emptyList(), false);
+
     /**
      * The replica replacement strategy class
      */
@@ -198,6 +284,86 @@ public abstract class AbstractPersistenceFactory implements PersistenceFactory {
      */
     private int replicationFactor = 1;
 
+    /**
+     * Bitmask of the entity events any managed class listens to, indexed by event ordinal
+     */
+    private int entityEventMask;
+
+    /**
+     * Whether registered event listeners are notified asynchronously
+     */
+    private boolean asyncEventDispatch;
+
+    /**
+     * The async dispatcher ring buffer size
+     */
+    private int eventRingBufferSize = 1024;
+
+    /**
+     * The number of async dispatcher consumer threads
+     */
+    private int eventConsumerThreads = 1;
+
+    /**
+     * What the async dispatcher does when its ring buffer is full
+     */
+    private OverflowPolicy eventOverflowPolicy = OverflowPolicy.BLOCK;
+
+    /**
+     * The async event dispatcher, null unless async dispatch is enabled
+     */
+    private AsyncEventDispatcher eventDispatcher;
+
+    /**
+     * The recorder operations are reported to, discards all measures by default
+     */
+    private volatile MetricsRecorder metricsRecorder = NoOpMetricsRecorder.INSTANCE;
+
+    /**
+     * The transport rows are read and written through
+     */
+    private Transport transport;
+
+    /**
+     * The index statistics query plans are ranked with, null if none are available
+     */
+    private IndexStatistics indexStatistics;
+
+    /**
+     * The number of rows read at a time when executing a query plan
+     */
+    private int queryPlanPageSize = 100;
+
+    /**
+     * The number of token ranges the ring is split into when counting or aggregating rows
+     */
+    private int countSplits = 16;
+
+    /**
+     * The number of token ranges counted or aggregated concurrently
+     */
+    private int countParallelism = 4;
+
+    /**
+     * The maximum number of keys of a mapped collection read in a single multi-row read
+     */
+    private int mappedCollectionChunkSize = 500;
+
+    /**
+     * The number of threads loading the chunks of mapped collections
+     */
+    private int mappedCollectionParallelism = 4;
+
+    /**
+     * Whether entities referenced more than once by a mapped collection are only returned once
+     */
+    private boolean deduplicateMappedCollections;
+
+    /**
+     * The executor scanning token ranges and loading the chunks of mapped collections, created on first use
+     */
+    private ExecutorService executor;
+
     /* Constructors */
 
     /**
@@ -372,6 +538,18 @@ public abstract class AbstractPersistenceFactory implements PersistenceFactory {
      */
     public void setColumnEventListenerMap(Map<Event.Column, List<ColumnEventListener>> columnEventListenerMap) {
         this.columnEventListenerMap = columnEventListenerMap;
+        initializeEventListenerIndexes();
+    }
+
+    /**
+     * The entity class / events / listeners map
+     * Listeners are only notified of column events affecting instances of the class they are subscribed to
+     *
+     * @param columnClassEventListenerMap The entity class / events / listeners map
+     */
+    public void setColumnClassEventListenerMap(Map<Class<?>, Map<Event.Column, List<ColumnEventListener>>> columnClassEventListenerMap) {
+        this.columnClassEventListenerMap = columnClassEventListenerMap;
+        initializeEventListenerIndexes();
     }
 
     /**
@@ -392,6 +570,15 @@ public abstract class AbstractPersistenceFactory implements PersistenceFactory {
         this.embeddedServerBaseDir = embeddedServerBaseDir;
     }
 
+    /**
+     * Sets the maximum time to wait for the embedded server to accept connections
+     *
+     * @param embeddedServerStartupTimeout the timeout in milliseconds
+     */
+    public void setEmbeddedServerStartupTimeout(long embeddedServerStartupTimeout) {
+        this.embeddedServerStartupTimeout = embeddedServerStartupTimeout;
+    }
+
     /**
      * Sets the factory list of entities
      *
@@ -418,6 +605,18 @@ public abstract class AbstractPersistenceFactory implements PersistenceFactory {
      */
     public void setEntityEventListenerMap(Map<Event.Entity, List<EntityEventListener>> entityEventListenerMap) {
         this.entityEventListenerMap = entityEventListenerMap;
+        initializeEventListenerIndexes();
+    }
+
+    /**
+     * The entity class / events / listeners map
+     * Listeners are only notified of events affecting instances of the class they are subscribed to
+     *
+     * @param entityClassEventListenerMap The entity class / events / listeners map
+     */
+    public void setEntityClassEventListenerMap(Map<Class<?>, Map<Event.Entity, List<EntityEventListener>>> entityClassEventListenerMap) {
+        this.entityClassEventListenerMap = entityClassEventListenerMap;
+        initializeEventListenerIndexes();
     }
 
     /**
@@ -440,489 +639,2644 @@ public abstract class AbstractPersistenceFactory implements PersistenceFactory {
     }
 
     /**
-     * sets whether to start the embedded server along with the factory initialization
+     * Sets whether registered entity and column event listeners are notified on background threads.
+     * PRE_* events are still delivered synchronously. Listeners must not retain the events they receive since event
+     * instances are reused
      *
-     * @param startEmbeddedServer the embedded server
+     * @param asyncEventDispatch whether to dispatch events asynchronously
      */
-    public void setStartEmbeddedServer(boolean startEmbeddedServer) {
-        this.startEmbeddedServer = startEmbeddedServer;
+    public void setAsyncEventDispatch(boolean asyncEventDispatch) {
+        this.asyncEventDispatch = asyncEventDispatch;
     }
 
-    /* Interface Implementations */
-
+    /**
+     * Sets the async dispatcher ring buffer size, rounded up to a power of two
+     *
+     * @param eventRingBufferSize the ring buffer size
+     */
+    public void setEventRingBufferSize(int eventRingBufferSize) {
+        this.eventRingBufferSize = eventRingBufferSize;
+    }
 
-// --------------------- Interface PersistenceFactory ---------------------
+    /**
+     * Sets the number of async dispatcher consumer threads.
+     * Events may be delivered out of order with more than one consumer
+     *
+     * @param eventConsumerThreads the number of consumer threads
+     */
+    public void setEventConsumerThreads(int eventConsumerThreads) {
+        this.eventConsumerThreads = eventConsumerThreads;
+    }
 
     /**
-     * The list of managed class by this factory
+     * Sets what the async dispatcher does when its ring buffer is full
      *
-     * @return The list of managed class by this factory
+     * @param eventOverflowPolicy the overflow policy
      */
-    public List<Class<?>> getManagedClasses() {
-        return entities;
+    public void setEventOverflowPolicy(OverflowPolicy eventOverflowPolicy) {
+        this.eventOverflowPolicy = eventOverflowPolicy;
     }
 
-    /* Misc */
+    /**
+     * @return the recorder operations are reported to
+     */
+    public MetricsRecorder getMetricsRecorder() {
+        return metricsRecorder;
+    }
 
     /**
-     * Allows external callers to contribute or override the list of default impl for the collection containers
+     * Sets the recorder operations are reported to, null disables metrics
      *
-     * @param interfaceClass the interface class
-     * @param implClass      the impl class
+     * @param metricsRecorder the metrics recorder
      */
-    public void addDefaultImplForContainer(Class interfaceClass, Class implClass) {
-        synchronized (defaultInterfaceContainersImpl) {
-            defaultInterfaceContainersImpl.put(interfaceClass, implClass);
-        }
+    public void setMetricsRecorder(MetricsRecorder metricsRecorder) {
+        this.metricsRecorder = metricsRecorder != null ? metricsRecorder : NoOpMetricsRecorder.INSTANCE;
     }
 
     /**
-     * Converts an object value to a ByteBuffer
-     *
-     * @param value the object value
-     * @return the ByteBuffer
+     * @return the index statistics query plans are ranked with, null if none are available
      */
-    @SuppressWarnings("unchecked")
-    public ByteBuffer convertWrite(Object value) throws Exception {
-        ByteBuffer byteBuffer = null;
-        if (value != null) {
-            Class<?> valueClass = value.getClass();
-            TypeConverter<Object> converter = (TypeConverter<Object>) getTypeConverter(valueClass);
-            deffenseConverter(converter, value.getClass());
-            byteBuffer = converter.toValue(value);
-        }
-        return byteBuffer;
+    public IndexStatistics getIndexStatistics() {
+        return indexStatistics;
     }
 
     /**
-     * Gets a type converter for a given type
+     * Sets the index statistics query plans are ranked with
      *
-     * @param type the type
-     * @return the type converter
+     * @param indexStatistics the index statistics, null if none are available
      */
-    public TypeConverter<?> getTypeConverter(Class<?> type) {
-        TypeConverter<?> converter = null;
-        for (Map.Entry<Class<?>, TypeConverter<?>> classTypeConverterEntry : typeConverters.entrySet()) {
-            if (classTypeConverterEntry.getKey().isAssignableFrom(type)) {
-                converter = classTypeConverterEntry.getValue();
-                break;
-            }
-        }
-        return converter;
+    public void setIndexStatistics(IndexStatistics indexStatistics) {
+        this.indexStatistics = indexStatistics;
     }
 
     /**
-     * Private helper
-     * Ensure there is a converter configured for this type otherwise the type is unsupported
-     *
-     * @param converter the converter
-     * @param type      the class
+     * @return the number of rows read at a time when executing a query plan
      */
-    private void deffenseConverter(TypeConverter<Object> converter, Class<?> type) {
-        if (type != null) {
-            if (converter == null) {
-                throw new IllegalStateException(String.format("missing converter for type: %s", type));
-            }
-        }
+    public int getQueryPlanPageSize() {
+        return queryPlanPageSize;
     }
 
     /**
-     * Creates and assigns set of unique keys
+     * Sets the number of rows read at a time when executing a query plan
      *
-     * @param entities the object entities
+     * @param queryPlanPageSize the page size
      */
-    protected void createKeysIfNeeded(Object... entities) throws InvocationTargetException, NoSuchMethodException, IllegalAccessException {
-        createKeysIfNeeded(new HashSet<Object>(), entities);
+    public void setQueryPlanPageSize(int queryPlanPageSize) {
+        if (queryPlanPageSize < 1) {
+            throw new IllegalArgumentException("the query plan page size must be positive");
+        }
+        this.queryPlanPageSize = queryPlanPageSize;
     }
 
-    private void createKeysIfNeeded(Set<Object> processed, Object... entities) throws InvocationTargetException, NoSuchMethodException, IllegalAccessException {
-        for (Object entity : entities) {
-            if (!processed.contains(entity)) {
-                processed.add(entity);
-                String key = getKey(entity);
-                if (key == null) {
-                    key = ObjectUtils.newTimeUuid().toString();
-                }
-                ClassMetadata<?> metadata = getClassMetadata(entity.getClass());
-                PropertyUtils.setProperty(entity, metadata.getKeyProperty(), key);
-                for (String mappedProperty : metadata.getMappedProperties()) {
-                    Object mappedEntity = PropertyUtils.getProperty(entity, mappedProperty);
-                    if (mappedEntity != null) {
-                        if (Collection.class.isAssignableFrom(mappedEntity.getClass())) {
-                            Collection<?> nestedEntities = (Collection) mappedEntity;
-                            createKeysIfNeeded(processed, nestedEntities.toArray());
-                        } else {
-                            createKeysIfNeeded(processed, mappedEntity);
-                        }
-                    }
-                }
-            }
-        }
+    /**
+     * @return the number of token ranges the ring is split into when counting or aggregating rows
+     */
+    public int getCountSplits() {
+        return countSplits;
     }
 
     /**
-     * Obtains an entity key
+     * Sets the number of token ranges the ring is split into when counting or aggregating rows
      *
-     * @param entity the entity
-     * @return the key
+     * @param countSplits the number of ranges
      */
-    public String getKey(Object entity) {
-        ClassMetadata metadata = getClassMetadata(entity.getClass());
-        String keyProperty = metadata.getKeyProperty();
-        if (keyProperty == null) {
-            throw new IllegalStateException(String.format("no key defined for %s", entity.getClass()));
-        }
-        try {
-            return (String) PropertyUtils.getProperty(entity, keyProperty);
-        } catch (InvocationTargetException e) {
-            throw new RuntimeException(e);
-        } catch (NoSuchMethodException e) {
-            throw new RuntimeException(e);
-        } catch (IllegalAccessException e) {
-            throw new RuntimeException(e);
+    public void setCountSplits(int countSplits) {
+        if (countSplits < 1) {
+            throw new IllegalArgumentException("the number of count splits must be positive");
         }
+        this.countSplits = countSplits;
     }
 
     /**
-     * Gets the class metadata from map
+     * @return the number of token ranges counted or aggregated concurrently
+     */
+    public int getCountParallelism() {
+        return countParallelism;
+    }
+
+    /**
+     * Sets the number of token ranges counted or aggregated concurrently. The factory executor is sized by the greater
+     * of this and the mapped collection parallelism when it is first used
      *
-     * @param entityClass
-     * @param <T>
-     * @return
+     * @param countParallelism the number of concurrent range counts
      */
-    @SuppressWarnings("unchecked")
-    public <T> ClassMetadata<T> getClassMetadata(Class<T> entityClass) {
-        return (ClassMetadata<T>) classMetadataMap.get(ObjectUtils.getRealClass(entityClass));
+    public void setCountParallelism(int countParallelism) {
+        if (countParallelism < 1) {
+            throw new IllegalArgumentException("the count parallelism must be positive");
+        }
+        this.countParallelism = countParallelism;
     }
 
+    /**
+     * @return the maximum number of keys of a mapped collection read in a single multi-row read
+     */
+    public int getMappedCollectionChunkSize() {
+        return mappedCollectionChunkSize;
+    }
 
     /**
+     * Sets the maximum number of keys of a mapped collection read in a single multi-row read
      *
-     * Gets the class metada map
-     *
+     * @param mappedCollectionChunkSize the chunk size
      */
-    public Map<Class<?>, ClassMetadata<?>> getClassMetadataMap() {
-        return classMetadataMap;
+    public void setMappedCollectionChunkSize(int mappedCollectionChunkSize) {
+        if (mappedCollectionChunkSize < 1) {
+            throw new IllegalArgumentException("the mapped collection chunk size must be positive");
+        }
+        this.mappedCollectionChunkSize = mappedCollectionChunkSize;
     }
 
     /**
-     * Destroys this factory instance releasing any resources
+     * @return the number of threads loading the chunks of mapped collections
      */
-    public void destroy() {
-        try {
-            for (ClassMetadata<?> classMetadata : classMetadataMap.values()) {
-                classMetadata.destroy();
-            }
-            cassandraServer.stop();
-        } catch (Exception e) {
-            log.error(e);
-        }
+    public int getMappedCollectionParallelism() {
+        return mappedCollectionParallelism;
     }
 
     /**
-     * notifies column event listeners
+     * Sets the number of threads loading the chunks of mapped collections. The factory executor is sized by the greater
+     * of this and the count parallelism when it is first used
      *
-     * @param event        the event
-     * @param entity       the entity
-     * @param property     the property
-     * @param key          the key
-     * @param columnFamily the column family
-     * @param column       the column object
+     * @param mappedCollectionParallelism the number of threads
      */
-    protected void fireColumnEvent(Event.Column event, Object entity, String property, String key, String columnFamily, Object column) {
-        //log.debug(String.format("fireColumnEvent %s, %s, %s, %s, %s, %s", event, entity, property, key, columnFamily, column));
-        if (columnEventListenerMap != null) {
-            List<ColumnEventListener> listeners = columnEventListenerMap.get(event);
-            if (listeners != null) {
-                ColumnEvent columnEvent = new ColumnEvent(this, event, entity, property, key, columnFamily, column);
-                for (ColumnEventListener listener : listeners) {
-                    if (listener != null) {
-                        listener.onEvent(columnEvent);
-                    }
-                }
-            }
+    public void setMappedCollectionParallelism(int mappedCollectionParallelism) {
+        if (mappedCollectionParallelism < 1) {
+            throw new IllegalArgumentException("the mapped collection parallelism must be positive");
         }
+        this.mappedCollectionParallelism = mappedCollectionParallelism;
+    }
+
+    /**
+     * @return whether entities referenced more than once by a mapped collection are only returned once
+     */
+    public boolean isDeduplicateMappedCollections() {
+        return deduplicateMappedCollections;
     }
 
     /**
-     * notifies entity event listeners
+     * Sets whether entities referenced more than once by a mapped collection are only returned once, at the position
+     * of their first reference
      *
-     * @param event    the event
-     * @param entities the affected entities
+     * @param deduplicateMappedCollections whether to deduplicate
      */
-    protected void fireEntityEvent(Event.Entity event, Object... entities) {
-        //log.debug(String.format("fireEntityEvent %s, %s", event, Arrays.toString(entities)));
-        // call any entities internal listeners
-        if (entities != null) {
-            for (Object entity : entities) {
-                if (entity != null) {
-                    ClassMetadata<?> metadata = getClassMetadata(entity.getClass());
-                    if (metadata != null) {
-                        Set<Method> listeners = metadata.getListenersForEvent(event);
-                        if (listeners != null) {
-                            for (Method listener : listeners) {
-                                try {
-                                    listener.invoke(entity);
-                                } catch (IllegalAccessException e) {
-                                    throw new RuntimeException(e);
-                                } catch (InvocationTargetException e) {
-                                    throw new RuntimeException(e);
-                                }
+    public void setDeduplicateMappedCollections(boolean deduplicateMappedCollections) {
+        this.deduplicateMappedCollections = deduplicateMappedCollections;
+    }
+
+    /**
+     * @return the async event dispatcher or null if events are dispatched synchronously
+     */
+    public AsyncEventDispatcher getEventDispatcher() {
+        return eventDispatcher;
+    }
+
+    /**
+     * sets whether to start the embedded server along with the factory initialization
+     *
+     * @param startEmbeddedServer the embedded server
+     */
+    public void setStartEmbeddedServer(boolean startEmbeddedServer) {
+        this.startEmbeddedServer = startEmbeddedServer;
+    }
+
+    /**
+     * @return the transport rows are read and written through
+     */
+    public Transport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Sets the transport rows are read and written through.
+     * Implementations set their own transport on init unless one has been provided
+     *
+     * @param transport the transport
+     */
+    public void setTransport(Transport transport) {
+        this.transport = transport;
+    }
+
+    /* Interface Implementations */
+
+
+// --------------------- Interface PersistenceFactory ---------------------
+
+    /**
+     * The list of managed class by this factory
+     *
+     * @return The list of managed class by this factory
+     */
+    public List<Class<?>> getManagedClasses() {
+        return entities;
+    }
+
+    /**
+     * Deletes columns by name from column family
+     *
+     * @param colFamily the column family
+     * @param key       the key
+     * @param columns   the columns to be deleted by name
+     */
+    public void deleteColumns(String colFamily, String key, String... columns) {
+        MutationBatch batch = new MutationBatch();
+        for (String property : columns) {
+            fireColumnEvent(Event.Column.PRE_COLUMN_DELETION, null, property, key, colFamily, null);
+            batch.delete(colFamily, key, property);
+            log.debug(String.format("\tD: %s", property));
+            fireColumnEvent(Event.Column.POST_COLUMN_DELETION, null, property, key, colFamily, null);
+        }
+        transport.mutate(getDefaultKeySpace(), null, batch);
+    }
+
+    /**
+     * Get an entity by id.
+     * The row is read by key through the transport, without building and parsing a CQL query, and only its eager
+     * columns are fetched
+     *
+     * @param entityClass the class
+     * @param key          the key
+     * @param <T>         the entity type
+     * @return the entity
+     */
+    public <T> T get(Class<T> entityClass, String key) {
+        return getEntity(entityClass, key, null);
+    }
+
+    /**
+     * Get an entity by id fetching only the projected columns.
+     * The properties left out of the projection are loaded on first access to their getter
+     *
+     * @param entityClass the class
+     * @param key         the key
+     * @param projection  the properties to fetch
+     * @param <T>         the entity type
+     * @return the partially loaded entity
+     */
+    public <T> T get(Class<T> entityClass, String key, Projection projection) {
+        ObjectUtils.defenseNotNull(projection);
+        return getEntity(entityClass, key, projection);
+    }
+
+    /**
+     * Get a row by id decoded into a dto.
+     * Only the columns matching the dto properties are read and they are decoded straight into the dto, without entity
+     * proxies, events or lazy loading
+     *
+     * @param entityClass the entity class the row belongs to
+     * @param key         the key
+     * @param dtoClass    the dto class or interface
+     * @param <D>         the dto type
+     * @return the dto or null if the row does not exist
+     */
+    public <D> D get(Class<?> entityClass, String key, Class<D> dtoClass) {
+        long start = startTimer();
+        ClassMetadata<?> metadata = getDtoMetadata(entityClass);
+        DtoMapper<D> mapper = metadata.getDtoMapper(dtoClass);
+        List<RawColumn> columns = transport.readRow(getKeySpace(metadata), metadata.getConsistencyLevel(), metadata.getColumnFamily(), key, mapper.getColumns());
+        D result = null;
+        if (!columns.isEmpty()) {
+            try {
+                result = mapper.map(key, columns);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            recordCount(metadata.getColumnFamily(), Counter.ROWS_READ, 1);
+            recordCount(metadata.getColumnFamily(), Counter.COLUMNS_READ, columns.size());
+        }
+        recordLatency(metadata.getColumnFamily(), Operation.GET, start);
+        return result;
+    }
+
+    /**
+     * Get an entity through one of its views, reading the view row keyed by the given property values.
+     * The view columns are read from the view row alone, the other properties are loaded on first access to their getter.
+     * The view key properties are read from the entity row along its eager columns, and view rows left behind by
+     * concurrent updates that no longer match them are skipped
+     *
+     * @param entityClass the class
+     * @param view        the view name
+     * @param key         the values of the view key properties, in declaration order
+     * @param <T>         the entity type
+     * @return the partially loaded entity or null if no entity is found through the view
+     */
+    public <T> T getView(Class<T> entityClass, String view, Object... key) {
+        long start = startTimer();
+        ClassMetadata<T> metadata = getClassMetadata(entityClass);
+        if (metadata == null)
+            throw new IllegalArgumentException(String.format("type: %s not recognized as ColumnFamily", entityClass));
+        ViewMetadata viewMetadata = metadata.getView(view);
+        String rowKey = viewMetadata.getRowKey(key);
+        T result = null;
+        if (rowKey != null) {
+            String[] viewColumns = viewMetadata.getColumns();
+            String[] selection = Arrays.copyOf(viewColumns, viewColumns.length + 1);
+            selection[viewColumns.length] = metadata.getKeyProperty();
+            List<RawColumn> columns = transport.readRow(getKeySpace(metadata), metadata.getConsistencyLevel(), viewMetadata.getName(), rowKey, selection);
+            if (!columns.isEmpty()) {
+                try {
+                    String entityKey = null;
+                    List<RawColumn> values = new ArrayList<RawColumn>(columns.size());
+                    for (RawColumn column : columns) {
+                        if (column.getName().equals(metadata.getKeyProperty())) {
+                            entityKey = (String) convertRead(String.class, column.getValue());
+                        } else {
+                            values.add(column);
+                        }
+                    }
+                    if (entityKey != null) {
+                        List<String> keyProperties = Arrays.asList(viewMetadata.getKeyProperties());
+                        Set<String> eagerColumns = new HashSet<String>(Arrays.asList(metadata.getEagerColumns(viewColumns)));
+                        Set<String> entityColumns = new LinkedHashSet<String>(eagerColumns);
+                        entityColumns.addAll(keyProperties);
+                        Object[] storedKey = new Object[keyProperties.size()];
+                        for (RawColumn column : transport.readRow(getKeySpace(metadata), metadata.getConsistencyLevel(), metadata.getColumnFamily(),
+                                entityKey, entityColumns.toArray(new String[entityColumns.size()]))) {
+                            int keyIndex = keyProperties.indexOf(column.getName());
+                            if (keyIndex >= 0 && column.getValue() != null && column.getValue().hasRemaining()) {
+                                storedKey[keyIndex] = convertRead(metadata.getColumnClass(column.getName()), column.getValue());
+                            }
+                            if (eagerColumns.contains(column.getName())) {
+                                values.add(column);
                             }
                         }
+                        if (rowKey.equals(viewMetadata.getRowKey(storedKey))) {
+                            result = serializeColumns(entityKey, metadata, entityClass, values, metadata.createPartialProxy(viewColumns), true);
+                        } else {
+                            log.debug(String.format("skipping stale view row %s of %s pointing to %s", rowKey, viewMetadata.getName(), entityKey));
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+                recordCount(viewMetadata.getName(), Counter.ROWS_READ, 1);
+                recordCount(viewMetadata.getName(), Counter.COLUMNS_READ, columns.size());
+            }
+        }
+        recordLatency(viewMetadata.getName(), Operation.GET, start);
+        return result;
+    }
+
+    /**
+     * Private helper that reads an entity row by key
+     *
+     * @param entityClass the class
+     * @param key         the key
+     * @param projection  the properties to fetch, null to fetch the eager columns
+     * @param <T>         the entity type
+     * @return the entity
+     */
+    private <T> T getEntity(Class<T> entityClass, String key, Projection projection) {
+        if (log.isDebugEnabled()) log.debug(String.format("get (start): %s, %s", entityClass, key));
+        long start = startTimer();
+        fireEntityEvent(Event.Entity.PRE_LOAD, entityClass, key);
+        ClassMetadata<T> metadata = getClassMetadata(entityClass);
+        if (metadata == null)
+            throw new IllegalArgumentException(String.format("type: %s not recognized as ColumnFamily", entityClass));
+        T result = null;
+        String[] selection = projection != null ? metadata.getProjectionColumns(projection) : metadata.getSelectionColumns();
+        List<RawColumn> columns = transport.readRow(getKeySpace(metadata), metadata.getConsistencyLevel(), metadata.getColumnFamily(), key, selection);
+        if (!columns.isEmpty()) {
+            try {
+                result = projection != null
+                        ? serializeColumns(key, metadata, entityClass, columns, metadata.createPartialProxy(selection), true)
+                        : serializeColumns(key, metadata, entityClass, columns, null, false);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            recordCount(metadata.getColumnFamily(), Counter.ROWS_READ, 1);
+            recordCount(metadata.getColumnFamily(), Counter.COLUMNS_READ, columns.size());
+        }
+        fireEntityEvent(Event.Entity.POST_LOAD, result);
+        recordLatency(entityClass, Operation.GET, start);
+        if (log.isDebugEnabled()) log.debug(String.format("get (end): %s", result));
+        return result;
+    }
+
+    /**
+     * Fetch a map of columns and their values
+     *
+     * @param columnFamily the column family
+     * @param key          the column family key
+     * @param reversed     if the order should be reversed
+     * @param columns      the column names
+     * @return a map of columns and their values
+     */
+    public Map<String, ByteBuffer> getColumns(String columnFamily, String key, boolean reversed, String... columns) {
+        List<RawColumn> row = transport.readRow(getDefaultKeySpace(), null, columnFamily, key, columns);
+        if (reversed) {
+            row = new ArrayList<RawColumn>(row);
+            Collections.reverse(row);
+        }
+        return toColumnMap(row);
+    }
+
+    /**
+     * Fetch a map of columns and their values
+     *
+     * @param columnFamily the column family
+     * @param key          the column family key
+     * @param limit        of columns
+     * @param reversed     if the order should be reversed
+     * @param fromColumn   from column
+     * @param toColumn     to column
+     * @return a map of columns and their values
+     */
+    public Map<String, ByteBuffer> getColumns(String columnFamily, String key, int limit, boolean reversed, String fromColumn, String toColumn) {
+        return toColumnMap(transport.readSlice(getDefaultKeySpace(), null, columnFamily, key, fromColumn, toColumn, reversed, limit));
+    }
+
+    /**
+     * Opens a cursor over the rows returned by a query in the default keyspace.
+     * The rows are exposed in place, without copying their columns into maps
+     *
+     * @param query the query
+     * @return the cursor, positioned before the first row
+     */
+    public RowCursor getCursor(final Query query) {
+        return new RowCursor(this, new RowCursor.PageReader() {
+            public List<RawRow> read(String lastKey) {
+                long start = startTimer();
+                List<RawRow> rows = transport.executeCql(getDefaultKeySpace(), null, query.getQuery()).getRows();
+                recordLatency(MetricsRecorder.GLOBAL_SCOPE, Operation.EXECUTE_QUERY, start);
+                return rows;
+            }
+
+            public boolean isLast(String lastKey, List<RawRow> page) {
+                return true; //a query result is a single page
+            }
+        });
+    }
+
+    /**
+     * Opens a cursor scanning all the rows of a column family in the default keyspace in partitioner order.
+     * Rows are read a page at a time as range scans, so column families of any size can be scanned
+     *
+     * @param columnFamily the column family
+     * @param pageSize     the number of rows read at a time
+     * @param columns      the column names or none to read the whole rows
+     * @return the cursor, positioned before the first row
+     */
+    public RowCursor getCursor(final String columnFamily, final int pageSize, final String... columns) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("the page size must be positive");
+        }
+        return new RowCursor(this, new RowCursor.PageReader() {
+            public List<RawRow> read(String lastKey) {
+                //pages after the first start at the last key read, which the cursor skips
+                List<RawRow> rows = transport.readRange(getDefaultKeySpace(), null, columnFamily, lastKey, null, getCount(lastKey), columns);
+                recordCount(columnFamily, Counter.ROWS_READ, rows.size());
+                return rows;
+            }
+
+            public boolean isLast(String lastKey, List<RawRow> page) {
+                return page.size() < getCount(lastKey);
+            }
+
+            private int getCount(String lastKey) {
+                return lastKey != null ? pageSize + 1 : pageSize;
+            }
+        });
+    }
+
+    /**
+     * Get a list of entities given a query
+     *
+     * @param type  the type of objects to expect back
+     * @param query the query
+     * @param <T>   the result type
+     * @return the list of entities
+     */
+    public <T> List<T> getResultList(Class<T> type, Query query) {
+        long start = startTimer();
+        List<T> result = queryResultList(type, query, null);
+        recordLatency(type, Operation.GET_RESULT_LIST, start);
+        return result;
+    }
+
+    /**
+     * Get a list of entities given a query fetching only the projected columns.
+     * The select expression of the query is replaced by the projected columns and the properties left out of the
+     * projection are loaded on first access to their getter
+     *
+     * @param type       the type of objects to expect back
+     * @param query      the query
+     * @param projection the properties to fetch
+     * @param <T>        the result type
+     * @return the list of partially loaded entities
+     */
+    public <T> List<T> getResultList(Class<T> type, Query query, Projection projection) {
+        ObjectUtils.defenseNotNull(projection);
+        long start = startTimer();
+        List<T> result = queryResultList(type, query, projection);
+        recordLatency(type, Operation.GET_RESULT_LIST, start);
+        return result;
+    }
+
+    /**
+     * Get a list of rows given a query decoded into dtos.
+     * The select expression of the query is replaced by the columns matching the dto properties, which are decoded
+     * straight into the dtos without entity proxies, events or lazy loading
+     *
+     * @param entityClass the entity class the query selects from
+     * @param query       the query
+     * @param dtoClass    the dto class or interface
+     * @param <D>         the dto type
+     * @return the list of dtos
+     */
+    public <D> List<D> getResultList(Class<?> entityClass, Query query, Class<D> dtoClass) {
+        long start = startTimer();
+        ClassMetadata<?> metadata = getDtoMetadata(entityClass);
+        DtoMapper<D> mapper = metadata.getDtoMapper(dtoClass);
+        String cql = mapper.getColumns().length > 0 ? project(query.getQuery(), mapper.getColumns()) : query.getQuery();
+        RawResult rows = transport.executeCql(getKeySpace(metadata), metadata.getConsistencyLevel(), cql);
+        List<D> result = new ArrayList<D>(rows.getRows().size());
+        int columnsRead = 0;
+        try {
+            for (RawRow row : rows.getRows()) {
+                if (!row.getColumns().isEmpty()) {
+                    result.add(mapper.map(row.getKey(), row.getColumns()));
+                    columnsRead += row.getColumns().size();
+                }
+            }
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        recordCount(metadata.getColumnFamily(), Counter.ROWS_READ, result.size());
+        recordCount(metadata.getColumnFamily(), Counter.COLUMNS_READ, columnsRead);
+        recordLatency(metadata.getColumnFamily(), Operation.GET_RESULT_LIST, start);
+        return result;
+    }
+
+    /**
+     * Get a single result from a CQL query
+     *
+     * @param type  the type of objects to expect back
+     * @param query the query
+     * @param <T>   the entity type
+     * @return the resulting entity
+     */
+    public <T> T getSingleResult(Class<T> type, Query query) {
+        return singleResult(getResultList(type, query));
+    }
+
+    /**
+     * Inserts columns based on a map representing keys with properties and their corresponding values
+     *
+     * @param colFamily     the column family
+     * @param key           the column family key
+     * @param keyValuePairs the map with keys and values
+     */
+    public void insertColumns(String colFamily, String key, Map<String, Object> keyValuePairs) {
+        MutationBatch batch = new MutationBatch();
+        try {
+            for (Map.Entry<String, Object> entry : keyValuePairs.entrySet()) {
+                insertColumn(batch, null, key, colFamily, entry.getKey(), convertWrite(entry.getValue()));
+            }
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        transport.mutate(getDefaultKeySpace(), null, batch);
+    }
+
+    /**
+     * Inserts typed columns in a wide row, increasing them by their values if the column family holds counters
+     *
+     * @param wideRowClass the class annotated with {@link org.firebrandocm.dao.annotations.WideRow}
+     * @param key          the row key
+     * @param columns      the column values by their typed names
+     */
+    @SuppressWarnings("unchecked")
+    public void insertColumns(Class<?> wideRowClass, String key, Map<?, ?> columns) {
+        long start = startTimer();
+        ClassMetadata<?> metadata = getWideRowMetadata(wideRowClass);
+        ColumnNameCodec<Object> codec = (ColumnNameCodec<Object>) ColumnNameCodec.forType(metadata.getWideRowNameClass());
+        String colFamily = metadata.getColumnFamily();
+        MutationBatch batch = new MutationBatch();
+        try {
+            for (Map.Entry<?, ?> entry : columns.entrySet()) {
+                String name = codec.encode(entry.getKey());
+                if (metadata.isCounterColumnFamily()) {
+                    incrementColumn(batch, null, key, colFamily, name, name, ((Number) entry.getValue()).longValue());
+                } else {
+                    insertColumn(batch, null, key, colFamily, name, convertWrite(entry.getValue()));
+                }
+            }
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        transport.mutate(getKeySpace(metadata), metadata.getConsistencyLevel(), batch);
+        recordLatency(colFamily, Operation.PERSIST, start);
+    }
+
+    /**
+     * Streams a slice of the typed columns of a wide row, reading a page of columns at a time as slice reads bounded by
+     * the column range and limited to the page size
+     *
+     * @param wideRowClass the class annotated with {@link org.firebrandocm.dao.annotations.WideRow}
+     * @param key          the row key
+     * @param from         the first column name of the slice, null to start at the beginning of the row
+     * @param to           the last column name of the slice, null to end at the end of the row
+     * @param reversed     whether columns are returned in reverse order, from is then the greatest name
+     * @param pageSize     the number of columns read at a time
+     * @param <N>          the column name type
+     * @param <V>          the column value type
+     * @return an iterator over the columns of the slice
+     */
+    @SuppressWarnings("unchecked")
+    public <N, V> ColumnSliceIterator<N, V> getColumnSlice(Class<?> wideRowClass, final String key, N from, N to, final boolean reversed, int pageSize) {
+        final ClassMetadata<?> metadata = getWideRowMetadata(wideRowClass);
+        final ColumnNameCodec<N> codec = (ColumnNameCodec<N>) ColumnNameCodec.forType(metadata.getWideRowNameClass());
+        final Class<?> valueClass = metadata.getWideRowValueClass();
+        final String keySpace = getKeySpace(metadata);
+        final String end = to != null ? codec.encode(to) : null;
+        return new ColumnSliceIterator<N, V>(from != null ? codec.encode(from) : null, pageSize) {
+            @Override
+            protected List<RawColumn> readPage(String from, int count) {
+                long start = startTimer();
+                List<RawColumn> columns = transport.readSlice(keySpace, metadata.getConsistencyLevel(), metadata.getColumnFamily(), key, from, end, reversed, count);
+                recordCount(metadata.getColumnFamily(), Counter.COLUMNS_READ, columns.size());
+                recordLatency(metadata.getColumnFamily(), Operation.COLUMN_SLICE, start);
+                return columns;
+            }
+
+            @Override
+            protected WideColumn<N, V> decode(RawColumn column) {
+                try {
+                    return new WideColumn<N, V>(codec.decode(column.getName()), (V) convertRead(valueClass, column.getValue()));
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Reads the totals of the time buckets of a counter rollup overlapping a time range as a single column slice, so
+     * the cost depends on the number of buckets rather than on the number of increases
+     *
+     * @param entityClass     the counter entity class
+     * @param key             the entity key
+     * @param counterProperty the counter property
+     * @param granularity     the bucket granularity, one of the rollups declared by the counter increase property
+     * @param from            the start of the time range
+     * @param to              the end of the time range
+     * @return the totals of the buckets with increases by their start, in time order
+     */
+    public SortedMap<Date, Long> getRollups(Class<?> entityClass, String key, String counterProperty, Granularity granularity, Date from, Date to) {
+        long start = startTimer();
+        ClassMetadata<?> metadata = getClassMetadata(entityClass);
+        if (metadata == null) {
+            throw new IllegalArgumentException(String.format("type: %s not recognized as ColumnFamily", entityClass));
+        }
+        if (!metadata.getRollups(counterProperty).contains(granularity)) {
+            throw new IllegalArgumentException(String.format("%s of %s has no %s rollup", counterProperty, entityClass, granularity));
+        }
+        if (from.after(to)) {
+            throw new IllegalArgumentException(String.format("%s is after %s", from, to));
+        }
+        String colFamily = metadata.getRollupColumnFamily();
+        long buckets = (granularity.truncate(to.getTime()) - granularity.truncate(from.getTime())) / granularity.getMillis() + 1;
+        List<RawColumn> columns = transport.readSlice(getKeySpace(metadata), metadata.getConsistencyLevel(), colFamily, Rollup.getRowKey(key, counterProperty, granularity),
+                Rollup.getColumnName(granularity, from.getTime()), Rollup.getColumnName(granularity, to.getTime()), false, (int) Math.min(buckets, Integer.MAX_VALUE));
+        SortedMap<Date, Long> totals = new TreeMap<Date, Long>();
+        try {
+            for (RawColumn column : columns) {
+                totals.put(Rollup.getBucket(column.getName()), (Long) convertRead(Long.class, column.getValue()));
+            }
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        recordCount(colFamily, Counter.COLUMNS_READ, columns.size());
+        recordLatency(colFamily, Operation.COLUMN_SLICE, start);
+        return totals;
+    }
+
+    /**
+     * Plans a conjunction of predicates over the column family of an entity class.
+     * Key predicates are resolved by key, otherwise the most selective equality on an indexed column according to the
+     * index statistics is resolved through its secondary index, and every other predicate is evaluated client side
+     *
+     * @param type       the entity class
+     * @param predicates the predicates
+     * @param <T>        the entity type
+     * @return the plan, see {@link QueryPlan#explain()}
+     */
+    public <T> QueryPlan<T> plan(Class<T> type, Predicate... predicates) {
+        ClassMetadata<T> metadata = getClassMetadata(type);
+        if (metadata == null) {
+            throw new IllegalArgumentException(String.format("%s is not a managed entity", type));
+        }
+        return new QueryPlanner<T>(metadata, indexStatistics).plan(predicates);
+    }
+
+    /**
+     * Executes a query plan, streaming pages of rows from the server and filtering them client side until enough
+     * entities match
+     *
+     * @param plan  the plan
+     * @param limit the maximum number of entities
+     * @param <T>   the entity type
+     * @return the matching entities, in key order for key lookups and in partitioner order otherwise
+     */
+    public <T> List<T> getResultList(QueryPlan<T> plan, int limit) {
+        long start = startTimer();
+        ClassMetadata<T> metadata = getClassMetadata(plan.getType());
+        String keySpace = getKeySpace(metadata);
+        String columnFamily = metadata.getColumnFamily();
+        String[] selection = metadata.getSelectionColumns();
+        Set<String> columns = new LinkedHashSet<String>(Arrays.asList(selection));
+        List<IndexOperatorPredicate> filters = plan.getFilters();
+        if (plan.getStrategy() == QueryPlan.Strategy.ORDERED_INDEX_SCAN) { //index entries may be stale, so ranges are evaluated again
+            filters = new ArrayList<IndexOperatorPredicate>(filters);
+            filters.addAll(plan.getRangePredicates());
+        } else if (plan.getStrategy() == QueryPlan.Strategy.LOOKUP_INDEX_SCAN) {
+            filters = new ArrayList<IndexOperatorPredicate>(filters);
+            filters.add(plan.getIndexPredicate());
+        }
+        for (IndexOperatorPredicate filter : filters) {
+            if (filter.getColumn() != null) {
+                columns.add(filter.getColumn());
+            }
+        }
+        String[] readColumns = columns.toArray(new String[columns.size()]);
+        List<T> result = new ArrayList<T>();
+        int rowsRead = 0;
+        int columnsRead = 0;
+        try {
+            if (plan.getStrategy() == QueryPlan.Strategy.KEY_LOOKUP) {
+                Map<String, List<RawColumn>> rows = transport.readRows(keySpace, metadata.getConsistencyLevel(), columnFamily, plan.getKeys(), readColumns);
+                for (Map.Entry<String, List<RawColumn>> row : rows.entrySet()) {
+                    if (result.size() >= limit) {
+                        break;
+                    }
+                    rowsRead++;
+                    columnsRead += row.getValue().size();
+                    addIfMatches(result, metadata, filters, selection, row.getKey(), row.getValue());
+                }
+            } else if (plan.getStrategy() == QueryPlan.Strategy.ORDERED_INDEX_SCAN || plan.getStrategy() == QueryPlan.Strategy.LOOKUP_INDEX_SCAN) {
+                Iterator<String> keys = plan.getStrategy() == QueryPlan.Strategy.ORDERED_INDEX_SCAN
+                        ? scanOrderedIndex(metadata, plan.getRangePredicates())
+                        : scanLookupIndex(metadata, plan.getIndexPredicate());
+                while (keys.hasNext() && result.size() < limit) {
+                    List<String> page = new ArrayList<String>(queryPlanPageSize);
+                    while (keys.hasNext() && page.size() < queryPlanPageSize) {
+                        page.add(keys.next());
+                    }
+                    Map<String, List<RawColumn>> rows = transport.readRows(keySpace, metadata.getConsistencyLevel(), columnFamily, page, readColumns);
+                    for (String key : page) {
+                        List<RawColumn> row = rows.get(key);
+                        if (result.size() >= limit) {
+                            break;
+                        }
+                        if (row != null) {
+                            rowsRead++;
+                            columnsRead += row.size();
+                            addIfMatches(result, metadata, filters, selection, key, row);
+                        }
+                    }
+                }
+            } else {
+                ByteBuffer indexValue = plan.getStrategy() == QueryPlan.Strategy.INDEX_SCAN
+                        ? encodeLiteral(metadata, plan.getIndexPredicate().getColumn(), plan.getIndexPredicate().getValue())
+                        : null;
+                String startKey = null;
+                boolean more = true;
+                while (more && result.size() < limit) {
+                    //pages after the first start at the last key read, which is skipped
+                    int count = startKey != null ? queryPlanPageSize + 1 : queryPlanPageSize;
+                    List<RawRow> page = indexValue != null
+                            ? transport.readIndexed(keySpace, metadata.getConsistencyLevel(), columnFamily, plan.getIndexPredicate().getColumn(), indexValue, startKey, count, readColumns)
+                            : transport.readRange(keySpace, metadata.getConsistencyLevel(), columnFamily, startKey, null, count, readColumns);
+                    //empty rows count towards the page size, so only a short page ends the scan
+                    more = page.size() >= count;
+                    for (RawRow row : page) {
+                        if (result.size() >= limit) {
+                            break;
+                        }
+                        if (!row.getKey().equals(startKey) && !row.getColumns().isEmpty()) {
+                            rowsRead++;
+                            columnsRead += row.getColumns().size();
+                            addIfMatches(result, metadata, filters, selection, row.getKey(), row.getColumns());
+                        }
+                    }
+                    if (!page.isEmpty()) {
+                        startKey = page.get(page.size() - 1).getKey();
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        recordCount(columnFamily, Counter.ROWS_READ, rowsRead);
+        recordCount(columnFamily, Counter.COLUMNS_READ, columnsRead);
+        recordLatency(columnFamily, Operation.GET_RESULT_LIST, start);
+        return result;
+    }
+
+    /**
+     * Counts the rows of the column family of an entity class exactly.
+     * Unlike a CQL count, which scans the whole column family in a single request, the token ring is split into
+     * {@link #getCountSplits()} ranges that are counted concurrently and summed
+     *
+     * @param type the entity class
+     * @return the number of rows
+     */
+    public long count(Class<?> type) {
+        long start = startTimer();
+        ClassMetadata<?> metadata = getScanMetadata(type);
+        List<TokenRange> ranges = transport.splitRing(getKeySpace(metadata), metadata.getColumnFamily(), countSplits);
+        long count = 0;
+        for (long rangeCount : countRanges(metadata, ranges)) {
+            count += rangeCount;
+        }
+        recordLatency(metadata.getColumnFamily(), Operation.COUNT, start);
+        return count;
+    }
+
+    /**
+     * Estimates the number of rows of the column family of an entity class.
+     * The token ring is split into {@link #getCountSplits()} ranges, a random sample of them is counted and the mean
+     * count is extrapolated to the whole ring. The error bound is the 95% confidence interval of the sample mean with
+     * the finite population correction, so it shrinks as more ranges are sampled and is 0 when all of them are
+     *
+     * @param type    the entity class
+     * @param samples the number of ranges to count, at least 2
+     * @return the estimate
+     */
+    public CountEstimate estimateCount(Class<?> type, int samples) {
+        if (samples < 2) {
+            throw new IllegalArgumentException("at least 2 ranges must be sampled to bound the error");
+        }
+        long start = startTimer();
+        ClassMetadata<?> metadata = getScanMetadata(type);
+        List<TokenRange> ranges = new ArrayList<TokenRange>(transport.splitRing(getKeySpace(metadata), metadata.getColumnFamily(), countSplits));
+        int total = ranges.size();
+        CountEstimate estimate;
+        if (samples >= total) {
+            long count = 0;
+            for (long rangeCount : countRanges(metadata, ranges)) {
+                count += rangeCount;
+            }
+            estimate = new CountEstimate(count, 0, 0.95, total, total);
+        } else {
+            Collections.shuffle(ranges);
+            long[] counts = countRanges(metadata, ranges.subList(0, samples));
+            double sum = 0;
+            for (long rangeCount : counts) {
+                sum += rangeCount;
+            }
+            double mean = sum / samples;
+            double squares = 0;
+            for (long rangeCount : counts) {
+                squares += (rangeCount - mean) * (rangeCount - mean);
+            }
+            double variance = squares / (samples - 1);
+            double errorBound = COUNT_ESTIMATE_Z * total * Math.sqrt((1 - (double) samples / total) * variance / samples);
+            estimate = new CountEstimate(Math.round(mean * total), (long) Math.ceil(errorBound), 0.95, samples, total);
+        }
+        recordLatency(metadata.getColumnFamily(), Operation.COUNT, start);
+        return estimate;
+    }
+
+    /**
+     * Computes an aggregation over all the rows of the column family of an entity class.
+     * The token ring is split into {@link #getCountSplits()} ranges that are scanned concurrently a page at a time,
+     * reading only the columns the aggregation needs. Each range feeds its own accumulator through a {@link RowCursor},
+     * so rows are never hydrated into entities, and the partial results are merged in ring order once all the ranges
+     * are scanned
+     *
+     * @param type        the entity class
+     * @param aggregation the aggregation
+     * @param <R>         the result type
+     * @return the aggregation result
+     */
+    public <R> R aggregate(Class<?> type, final Aggregation<R> aggregation) {
+        long start = startTimer();
+        final ClassMetadata<?> metadata = getScanMetadata(type);
+        final String keySpace = getKeySpace(metadata);
+        final String columnFamily = metadata.getColumnFamily();
+        String[] needed = aggregation.getColumns();
+        //row counts need some column to tell live rows from deleted ones
+        final String[] columns = needed.length > 0 ? needed : metadata.getSelectionColumns();
+        List<Callable<Accumulator<R>>> tasks = new ArrayList<Callable<Accumulator<R>>>();
+        for (final TokenRange range : transport.splitRing(keySpace, columnFamily, countSplits)) {
+            tasks.add(new Callable<Accumulator<R>>() {
+                public Accumulator<R> call() throws Exception {
+                    Accumulator<R> accumulator = aggregation.newAccumulator(metadata);
+                    RowCursor cursor = new RowCursor(AbstractPersistenceFactory.this, new RowCursor.PageReader() {
+                        public List<RawRow> read(String lastKey) {
+                            List<RawRow> rows = transport.readTokenRange(keySpace, metadata.getConsistencyLevel(), columnFamily, range, lastKey, SCAN_PAGE_SIZE, columns);
+                            recordCount(columnFamily, Counter.ROWS_READ, rows.size());
+                            return rows;
+                        }
+
+                        public boolean isLast(String lastKey, List<RawRow> page) {
+                            return page.size() < SCAN_PAGE_SIZE;
+                        }
+                    });
+                    while (cursor.next()) {
+                        accumulator.accumulate(cursor);
                     }
+                    return accumulator;
                 }
+            });
+        }
+        Accumulator<R> result = aggregation.newAccumulator(metadata);
+        for (Accumulator<R> partial : scanRanges(tasks)) {
+            result.merge(partial);
+        }
+        recordLatency(columnFamily, Operation.AGGREGATE, start);
+        return result.getResult();
+    }
+
+    /**
+     * Entry point method to persist and arbitrary list of objects into the datastore
+     *
+     * @param entities the entities to be persisted
+     */
+    public void persist(Object... entities) {
+        int[] depth = batchDepth.get();
+        boolean outermost = depth[0]++ == 0;
+        try {
+            createKeysIfNeeded(entities);
+            if (outermost) {
+                fireBatchEntityEvent(Event.Entity.PRE_PERSIST, entities);
             }
+            persistAll(entities);
+            if (outermost) {
+                fireBatchEntityEvent(Event.Entity.POST_PERSIST, entities);
+                fireEntityEvent(Event.Entity.POST_COMMIT, entities);
+            } else { //nested calls commit with the outermost one as far as batch listeners are concerned
+                invokeEntityListeners(Event.Entity.POST_COMMIT, entities);
+                notifyEntityListeners(entityListenerIndex, Event.Entity.POST_COMMIT, entities);
+            }
+        } catch (NoSuchMethodException e) {
+            throw new RuntimeException(e);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        } catch (InvocationTargetException e) {
+            throw new RuntimeException(e);
+        } finally {
+            depth[0]--;
+        }
+    }
+
+    /**
+     * Removes a list of entities from the data store
+     *
+     * @param entities the entities to be removed from the data store
+     */
+    public void remove(Object... entities) {
+        log.debug(String.format("START remove(%s)", Arrays.toString(entities)));
+        int[] depth = batchDepth.get();
+        boolean outermost = depth[0]++ == 0;
+        try {
+            if (outermost) {
+                fireBatchEntityEvent(Event.Entity.PRE_DELETE, entities);
+            }
+            for (Object entity : entities) {
+                long start = startTimer();
+                ClassMetadata<?> classMetadata = getClassMetadata(entity.getClass());
+                firePerEntityEvent(Event.Entity.PRE_DELETE, entity);
+                String colFamily = classMetadata.getColumnFamily();
+                String key = getKey(entity);
+                if (key == null) {
+                    log.warn(String.format("entity: %s had no value for key and was ignored", entity));
+                } else {
+                    MutationBatch batch = new MutationBatch().deleteRow(colFamily, key);
+                    if (hasIndexRows(classMetadata)) {
+                        updateIndexRows(batch, key, classMetadata, null);
+                    }
+                    transport.mutate(getKeySpace(classMetadata), classMetadata.getConsistencyLevel(), batch);
+                    firePerEntityEvent(Event.Entity.POST_DELETE, entity);
+                    recordLatency(colFamily, Operation.REMOVE, start);
+                }
+            }
+            if (outermost) {
+                fireBatchEntityEvent(Event.Entity.POST_DELETE, entities);
+            }
+        } catch (Throwable t) {
+            throw new RuntimeException(t);
+        } finally {
+            depth[0]--;
+        }
+        log.debug(String.format("END remove(%s)", Arrays.toString(entities)));
+    }
+
+    /**
+     * Executes a query
+     *
+     * @param expectedResult the result expected from the query execution
+     * @param query          the query
+     * @param <T>            the result type
+     * @return null, mutation and schema statements return no results
+     */
+    public <T> T executeQuery(Class<T> expectedResult, Query query) {
+        long start = startTimer();
+        transport.executeCql(getDefaultKeySpace(), null, query.getQuery());
+        recordLatency(MetricsRecorder.GLOBAL_SCOPE, Operation.EXECUTE_QUERY, start);
+        return null;
+    }
+
+    /* Misc */
+
+    /**
+     * Allows external callers to contribute or override the list of default impl for the collection containers
+     *
+     * @param interfaceClass the interface class
+     * @param implClass      the impl class
+     */
+    public void addDefaultImplForContainer(Class interfaceClass, Class implClass) {
+        synchronized (defaultInterfaceContainersImpl) {
+            defaultInterfaceContainersImpl.put(interfaceClass, implClass);
+        }
+    }
+
+    /**
+     * Converts an object value to a ByteBuffer
+     *
+     * @param value the object value
+     * @return the ByteBuffer
+     */
+    @SuppressWarnings("unchecked")
+    public ByteBuffer convertWrite(Object value) throws Exception {
+        ByteBuffer byteBuffer = null;
+        if (value != null) {
+            Class<?> valueClass = value.getClass();
+            TypeConverter<Object> converter = (TypeConverter<Object>) getTypeConverter(valueClass);
+            deffenseConverter(converter, value.getClass());
+            byteBuffer = converter.toValue(value);
+        }
+        return byteBuffer;
+    }
+
+    /**
+     * Gets a type converter for a given type
+     *
+     * @param type the type
+     * @return the type converter
+     */
+    public TypeConverter<?> getTypeConverter(Class<?> type) {
+        TypeConverter<?> converter = null;
+        for (Map.Entry<Class<?>, TypeConverter<?>> classTypeConverterEntry : typeConverters.entrySet()) {
+            if (classTypeConverterEntry.getKey().isAssignableFrom(type)) {
+                converter = classTypeConverterEntry.getValue();
+                break;
+            }
+        }
+        return converter;
+    }
+
+    /**
+     * Private helper
+     * Ensure there is a converter configured for this type otherwise the type is unsupported
+     *
+     * @param converter the converter
+     * @param type      the class
+     */
+    private void deffenseConverter(TypeConverter<Object> converter, Class<?> type) {
+        if (type != null) {
+            if (converter == null) {
+                throw new IllegalStateException(String.format("missing converter for type: %s", type));
+            }
+        }
+    }
+
+    /**
+     * Creates and assigns set of unique keys
+     *
+     * @param entities the object entities
+     */
+    protected void createKeysIfNeeded(Object... entities) throws InvocationTargetException, NoSuchMethodException, IllegalAccessException {
+        createKeysIfNeeded(new HashSet<Object>(), entities);
+    }
+
+    private void createKeysIfNeeded(Set<Object> processed, Object... entities) throws InvocationTargetException, NoSuchMethodException, IllegalAccessException {
+        for (Object entity : entities) {
+            if (!processed.contains(entity)) {
+                processed.add(entity);
+                String key = getKey(entity);
+                if (key == null) {
+                    key = ObjectUtils.newTimeUuid().toString();
+                }
+                ClassMetadata<?> metadata = getClassMetadata(entity.getClass());
+                PropertyUtils.setProperty(entity, metadata.getKeyProperty(), key);
+                for (String mappedProperty : metadata.getMappedProperties()) {
+                    Object mappedEntity = PropertyUtils.getProperty(entity, mappedProperty);
+                    if (mappedEntity != null) {
+                        if (Collection.class.isAssignableFrom(mappedEntity.getClass())) {
+                            Collection<?> nestedEntities = (Collection) mappedEntity;
+                            createKeysIfNeeded(processed, nestedEntities.toArray());
+                        } else {
+                            createKeysIfNeeded(processed, mappedEntity);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Obtains an entity key
+     *
+     * @param entity the entity
+     * @return the key
+     */
+    public String getKey(Object entity) {
+        ClassMetadata metadata = getClassMetadata(entity.getClass());
+        String keyProperty = metadata.getKeyProperty();
+        if (keyProperty == null) {
+            throw new IllegalStateException(String.format("no key defined for %s", entity.getClass()));
+        }
+        try {
+            return (String) PropertyUtils.getProperty(entity, keyProperty);
+        } catch (InvocationTargetException e) {
+            throw new RuntimeException(e);
+        } catch (NoSuchMethodException e) {
+            throw new RuntimeException(e);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Gets the class metadata from map
+     *
+     * @param entityClass
+     * @param <T>
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public <T> ClassMetadata<T> getClassMetadata(Class<T> entityClass) {
+        return (ClassMetadata<T>) classMetadataMap.get(ObjectUtils.getRealClass(entityClass));
+    }
+
+
+    /**
+     *
+     * Gets the class metada map
+     *
+     */
+    public Map<Class<?>, ClassMetadata<?>> getClassMetadataMap() {
+        return classMetadataMap;
+    }
+
+    /**
+     * Destroys this factory instance releasing any resources
+     */
+    public void destroy() {
+        try {
+            if (eventDispatcher != null) {
+                eventDispatcher.shutdown();
+                eventDispatcher = null;
+            }
+            metricsRecorder.destroy();
+            synchronized (this) {
+                if (executor != null) {
+                    executor.shutdownNow();
+                    executor = null;
+                }
+            }
+            for (ClassMetadata<?> classMetadata : classMetadataMap.values()) {
+                classMetadata.destroy();
+            }
+            if (cassandraServer != null) {
+                cassandraServer.stop();
+            }
+        } catch (Exception e) {
+            log.error(e);
+        }
+    }
+
+    /**
+     * Starts timing an operation
+     *
+     * @return the start timestamp or 0 if metrics are disabled
+     */
+    protected long startTimer() {
+        return metricsRecorder.isEnabled() ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the latency of an operation started with {@link #startTimer()}
+     *
+     * @param columnFamily the column family or null if not attributable to one
+     * @param operation    the operation
+     * @param start        the start timestamp
+     */
+    protected void recordLatency(String columnFamily, Operation operation, long start) {
+        if (start != 0) {
+            metricsRecorder.recordLatency(columnFamily != null ? columnFamily : MetricsRecorder.GLOBAL_SCOPE, operation, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Records the latency of an operation on an entity class started with {@link #startTimer()}
+     *
+     * @param entityClass the entity class, operations on unmanaged types are not attributed to a column family
+     * @param operation   the operation
+     * @param start       the start timestamp
+     */
+    protected void recordLatency(Class<?> entityClass, Operation operation, long start) {
+        if (start != 0) {
+            ClassMetadata<?> metadata = getClassMetadata(entityClass);
+            recordLatency(metadata != null ? metadata.getColumnFamily() : null, operation, start);
+        }
+    }
+
+    /**
+     * Increments a metrics counter
+     *
+     * @param columnFamily the column family or null if not attributable to one
+     * @param counter      the counter
+     * @param delta        the amount to add
+     */
+    protected void recordCount(String columnFamily, Counter counter, long delta) {
+        MetricsRecorder recorder = metricsRecorder;
+        if (recorder.isEnabled()) {
+            recorder.increment(columnFamily != null ? columnFamily : MetricsRecorder.GLOBAL_SCOPE, counter, delta);
+        }
+    }
+
+    /**
+     * Subscribes a listener to an entity event
+     *
+     * @param entityClass the entity class the listener is interested in or null for every class
+     * @param event       the event
+     * @param listener    the listener
+     */
+    public synchronized void addEntityEventListener(Class<?> entityClass, Event.Entity event, EntityEventListener listener) {
+        if (entityClass == null) {
+            entityEventListenerMap = withListener(entityEventListenerMap, event, listener);
+        } else {
+            entityClassEventListenerMap = withClassListener(entityClassEventListenerMap, entityClass, event, listener);
+        }
+        initializeEventListenerIndexes();
+    }
+
+    /**
+     * Subscribes a listener to a column event
+     *
+     * @param entityClass the entity class the listener is interested in or null for every class
+     * @param event       the event
+     * @param listener    the listener
+     */
+    public synchronized void addColumnEventListener(Class<?> entityClass, Event.Column event, ColumnEventListener listener) {
+        if (entityClass == null) {
+            columnEventListenerMap = withListener(columnEventListenerMap, event, listener);
+        } else {
+            columnClassEventListenerMap = withClassListener(columnClassEventListenerMap, entityClass, event, listener);
+        }
+        initializeEventListenerIndexes();
+    }
+
+    /**
+     * Unsubscribes a listener from an entity event
+     *
+     * @param entityClass the entity class the listener was subscribed for or null for every class
+     * @param event       the event
+     * @param listener    the listener
+     */
+    public synchronized void removeEntityEventListener(Class<?> entityClass, Event.Entity event, EntityEventListener listener) {
+        if (entityClass == null) {
+            entityEventListenerMap = withoutListener(entityEventListenerMap, event, listener);
+        } else {
+            entityClassEventListenerMap = withoutClassListener(entityClassEventListenerMap, entityClass, event, listener);
+        }
+        initializeEventListenerIndexes();
+    }
+
+    /**
+     * Unsubscribes a listener from a column event
+     *
+     * @param entityClass the entity class the listener was subscribed for or null for every class
+     * @param event       the event
+     * @param listener    the listener
+     */
+    public synchronized void removeColumnEventListener(Class<?> entityClass, Event.Column event, ColumnEventListener listener) {
+        if (entityClass == null) {
+            columnEventListenerMap = withoutListener(columnEventListenerMap, event, listener);
+        } else {
+            columnClassEventListenerMap = withoutClassListener(columnClassEventListenerMap, entityClass, event, listener);
+        }
+        initializeEventListenerIndexes();
+    }
+
+    /**
+     * Private helper that copies an events / listeners map adding a listener
+     */
+    private static <E, L> Map<E, List<L>> withListener(Map<E, List<L>> listeners, E event, L listener) {
+        Map<E, List<L>> copy = listeners != null ? new HashMap<E, List<L>>(listeners) : new HashMap<E, List<L>>();
+        List<L> eventListeners = copy.get(event) != null ? new ArrayList<L>(copy.get(event)) : new ArrayList<L>();
+        eventListeners.add(listener);
+        copy.put(event, eventListeners);
+        return copy;
+    }
+
+    /**
+     * Private helper that copies an entity class / events / listeners map adding a listener
+     */
+    private static <E, L> Map<Class<?>, Map<E, List<L>>> withClassListener(Map<Class<?>, Map<E, List<L>>> listeners, Class<?> entityClass, E event, L listener) {
+        Map<Class<?>, Map<E, List<L>>> copy = listeners != null ? new HashMap<Class<?>, Map<E, List<L>>>(listeners) : new HashMap<Class<?>, Map<E, List<L>>>();
+        copy.put(entityClass, withListener(copy.get(entityClass), event, listener));
+        return copy;
+    }
+
+    /**
+     * Private helper that copies an events / listeners map removing a listener
+     */
+    private static <E, L> Map<E, List<L>> withoutListener(Map<E, List<L>> listeners, E event, L listener) {
+        if (listeners == null || listeners.get(event) == null) {
+            return listeners;
+        }
+        Map<E, List<L>> copy = new HashMap<E, List<L>>(listeners);
+        List<L> eventListeners = new ArrayList<L>(copy.get(event));
+        eventListeners.remove(listener);
+        if (eventListeners.isEmpty()) {
+            copy.remove(event);
+        } else {
+            copy.put(event, eventListeners);
+        }
+        return copy;
+    }
+
+    /**
+     * Private helper that copies an entity class / events / listeners map removing a listener
+     */
+    private static <E, L> Map<Class<?>, Map<E, List<L>>> withoutClassListener(Map<Class<?>, Map<E, List<L>>> listeners, Class<?> entityClass, E event, L listener) {
+        if (listeners == null || listeners.get(entityClass) == null) {
+            return listeners;
+        }
+        Map<Class<?>, Map<E, List<L>>> copy = new HashMap<Class<?>, Map<E, List<L>>>(listeners);
+        copy.put(entityClass, withoutListener(copy.get(entityClass), event, listener));
+        return copy;
+    }
+
+    /**
+     * Rebuilds the event / class / listeners indexes from the registered listeners
+     */
+    protected synchronized void initializeEventListenerIndexes() {
+        Collection<Class<?>> managedClasses = classMetadataMap.keySet();
+        entityListenerIndex = EventListenerIndex.build(Event.Entity.class, entityEventListenerMap, entityClassEventListenerMap, managedClasses, false);
+        batchEntityListenerIndex = EventListenerIndex.build(Event.Entity.class, entityEventListenerMap, entityClassEventListenerMap, managedClasses, true);
+        columnListenerIndex = EventListenerIndex.build(Event.Column.class, columnEventListenerMap, columnClassEventListenerMap, managedClasses, false);
+    }
+
+    /**
+     * notifies column event listeners
+     *
+     * @param event        the event
+     * @param entity       the entity
+     * @param property     the property
+     * @param key          the key
+     * @param columnFamily the column family
+     * @param column       the column object
+     */
+    protected void fireColumnEvent(Event.Column event, Object entity, String property, String key, String columnFamily, Object column) {
+        //log.debug(String.format("fireColumnEvent %s, %s, %s, %s, %s, %s", event, entity, property, key, columnFamily, column));
+        EventListenerIndex<Event.Column, ColumnEventListener> index = columnListenerIndex;
+        if (index.hasListeners(event)) {
+            notifyColumnListeners(index.getListeners(event), event, entity, property, key, columnFamily, column);
+            if (entity != null && index.hasClassListeners(event)) {
+                List<ColumnEventListener> classListeners = index.getListeners(event, ObjectUtils.getRealClass(entity.getClass()));
+                notifyColumnListeners(classListeners, event, entity, property, key, columnFamily, column);
+            }
+        }
+    }
+
+    /**
+     * Private helper that hands a column event to a list of listeners
+     */
+    private void notifyColumnListeners(List<ColumnEventListener> listeners, Event.Column event, Object entity, String property, String key, String columnFamily, Object column) {
+        if (listeners != null && isDispatchedAsync(event)) {
+            eventDispatcher.publishColumnEvent(listeners, event, entity, property, key, columnFamily, column);
+        } else if (listeners != null) {
+            ColumnEvent columnEvent = new ColumnEvent(this, event, entity, property, key, columnFamily, column);
+            for (ColumnEventListener listener : listeners) {
+                listener.onEvent(columnEvent);
+            }
+        }
+    }
+
+    /**
+     * notifies entity event listeners, including batch listeners.
+     * Used for events that already carry all the entities affected by a factory call
+     *
+     * @param event    the event
+     * @param entities the affected entities
+     */
+    protected void fireEntityEvent(Event.Entity event, Object... entities) {
+        //log.debug(String.format("fireEntityEvent %s, %s", event, Arrays.toString(entities)));
+        invokeEntityListeners(event, entities);
+        notifyEntityListeners(entityListenerIndex, event, entities);
+        notifyEntityListeners(batchEntityListenerIndex, event, entities);
+    }
+
+    /**
+     * notifies entity event listeners of an event affecting a single entity of a bulk operation.
+     * Batch listeners are skipped and notified once through {@link #fireBatchEntityEvent(Event.Entity, Object...)}
+     *
+     * @param event  the event
+     * @param entity the affected entity
+     */
+    protected void firePerEntityEvent(Event.Entity event, Object entity) {
+        Object[] entities = new Object[]{entity};
+        invokeEntityListeners(event, entities);
+        notifyEntityListeners(entityListenerIndex, event, entities);
+    }
+
+    /**
+     * notifies batch entity event listeners of an event affecting all the entities of a bulk operation
+     *
+     * @param event    the event
+     * @param entities the affected entities
+     */
+    protected void fireBatchEntityEvent(Event.Entity event, Object... entities) {
+        notifyEntityListeners(batchEntityListenerIndex, event, entities);
+    }
+
+    /**
+     * Private helper that calls the entities own @OnEvent listeners
+     */
+    private void invokeEntityListeners(Event.Entity event, Object[] entities) {
+        if (entities != null && (entityEventMask & (1 << event.ordinal())) != 0) {
+            for (Object entity : entities) {
+                if (entity != null) {
+                    ClassMetadata<?> metadata = getClassMetadata(entity.getClass());
+                    if (metadata != null && metadata.hasListenersForEvent(event)) {
+                        metadata.invokeListeners(event, entity);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Private helper that notifies the indexed listeners of an entity event.
+     * Class subscribed listeners receive the entities of their class only
+     */
+    private void notifyEntityListeners(EventListenerIndex<Event.Entity, EntityEventListener> index, Event.Entity event, Object[] entities) {
+        if (!index.hasListeners(event)) {
+            return;
+        }
+        publishEntityEvent(index.getListeners(event), event, entities);
+        if (entities == null || entities.length == 0 || !index.hasClassListeners(event)) {
+            return;
+        }
+        if (entities[0] instanceof Class) {
+            // load events carry the entity class followed by the key
+            publishEntityEvent(index.getListeners(event, (Class<?>) entities[0]), event, entities);
+            return;
+        }
+        Class<?> entityClass = entities[0] != null ? ObjectUtils.getRealClass(entities[0].getClass()) : null;
+        boolean sameClass = entityClass != null;
+        for (int i = 1; i < entities.length && sameClass; i++) {
+            sameClass = entities[i] != null && ObjectUtils.getRealClass(entities[i].getClass()) == entityClass;
+        }
+        if (sameClass) {
+            publishEntityEvent(index.getListeners(event, entityClass), event, entities);
+        } else {
+            Map<Class<?>, List<Object>> entitiesByClass = new LinkedHashMap<Class<?>, List<Object>>();
+            for (Object entity : entities) {
+                if (entity != null) {
+                    Class<?> realClass = ObjectUtils.getRealClass(entity.getClass());
+                    List<Object> classEntities = entitiesByClass.get(realClass);
+                    if (classEntities == null) {
+                        classEntities = new ArrayList<Object>();
+                        entitiesByClass.put(realClass, classEntities);
+                    }
+                    classEntities.add(entity);
+                }
+            }
+            for (Map.Entry<Class<?>, List<Object>> entry : entitiesByClass.entrySet()) {
+                publishEntityEvent(index.getListeners(event, entry.getKey()), event, entry.getValue().toArray());
+            }
+        }
+    }
+
+    /**
+     * Private helper that hands an entity event to a list of listeners
+     */
+    private void publishEntityEvent(List<EntityEventListener> listeners, Event.Entity event, Object[] entities) {
+        if (listeners != null && isDispatchedAsync(event)) {
+            eventDispatcher.publishEntityEvent(listeners, event, entities);
+        } else if (listeners != null) {
+            EntityEvent entityEvent = new EntityEvent(this, event, entities);
+            for (EntityEventListener listener : listeners) {
+                listener.onEvent(entityEvent);
+            }
+        }
+    }
+
+    /**
+     * Private helper that determines if an event is handed to the async dispatcher. PRE_* events are always delivered
+     * on the calling thread so their listeners can still change what is about to be written or deleted
+     */
+    private boolean isDispatchedAsync(Enum<?> event) {
+        return eventDispatcher != null && !event.name().startsWith("PRE_");
+    }
+
+    /**
+     * Retrieves an entity class by name
+     *
+     * @param entityName the entity name
+     * @return the found class if any
+     */
+    public Class<?> getEntityClassByName(String entityName) {
+        return entityClassNameMap.get(entityName);
+    }
+
+    /**
+     * Gets a initialized class instance or returns the same instance if not null
+     *
+     * @param entityClass the entity class
+     * @param instance    the instance
+     * @param <T>         the entity type
+     * @return the instance
+     */
+    protected <T> T getInstance(Class<T> entityClass, T instance) {
+        if (instance == null) {
+            try {
+                instance = getInstance(entityClass);
+            } catch (Throwable e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Gets the mapped property token from a persistent value
+     *
+     * @param value the value
+     * @return the mapped property token
+     */
+    public String getMappedPropertyTokenForPersistentValues(Object value) {
+        return getMappedPropertyToken(value, false);
+    }
+
+    /**
+     * Private Helper.
+     * Gets the mapped property token from a persistent value optionally persisting the property value
+     *
+     * @param value   the value
+     * @param persist whether to persist the property value or not
+     * @return the mapped property token
+     */
+    private String getMappedPropertyToken(Object value, boolean persist) {
+        String mappedValue = null;
+        if (value != null) {
+            if (Collection.class.isAssignableFrom(value.getClass())) {
+                Collection mappedEntities = (Collection) value;
+                List<Object> values = new ArrayList<Object>(mappedEntities.size());
+                for (Object mappedEntity : mappedEntities) {
+                    if (persist) {
+                        persist(mappedEntity);
+                    }
+                    values.add(getMappedPropertyToken(mappedEntity, persist));
+                }
+                mappedValue = StringUtils.join(values, COLLECTION_VALUE_SEPARATOR);
+            } else {
+                if (persist) {
+                    persist(value);
+                }
+                mappedValue = getTokenValueForMappedEntity(value);
+            }
+        }
+        return mappedValue;
+    }
+
+    /**
+     * Gets a token value from a mapped entity
+     *
+     * @param value the mapped entity
+     * @return the token value (id)
+     */
+    protected String getTokenValueForMappedEntity(Object value) {
+        return String.format(MAPPED_VALUE_FORMAT, ObjectUtils.getRealClass(value.getClass()).getName(), getKey(value));
+    }
+
+
+    /**
+     * Initializes metadata
+     * @throws Exception
+     */
+    protected void initializeMetadata() throws Exception {
+        for (Class<?> entityClass : entities) {
+            ClassMetadata metadata = new ClassMetadata(entityClass, this);
+            classMetadataMap.put(entityClass, metadata);
+            entityEventMask |= metadata.getEntityEventMask();
+        }
+
+    }
+
+
+    /**
+     * Initializes the factory.
+     * Should be invoked by subclasses
+     *
+     * @throws Exception
+     */
+    @SuppressWarnings("unchecked")
+    public void init() throws Exception {
+        CQLMappedEntityValueConverter mappedEntityConverter = new CQLMappedEntityValueConverter(this);
+        QueryBuilder.addConverter(0, mappedEntityConverter);
+        QueryBuilder.addConverter(1, new CQLMappedCollectionValueConverter(mappedEntityConverter));
+        Future<Void> embeddedServerReadiness = null;
+        if (startEmbeddedServer) {
+            log.warn("starting dev embedded server");
+            if (cassandraServer == null) {
+                cassandraServer = new EmbeddedCassandraServer(embeddedServerBaseDir);
+                cassandraServer.setCleanupDirectories(cleanupDirectories);
+                cassandraServer.setStartupTimeout(embeddedServerStartupTimeout);
+                embeddedServerReadiness = cassandraServer.startAsync();
+            }
+        }
+        boolean initialized = false;
+        try {
+            //metadata is built while the embedded server starts up
+            initializeMetadata();
+            initializeEventListenerIndexes();
+            if (asyncEventDispatch && eventDispatcher == null) {
+                eventDispatcher = new AsyncEventDispatcher(this, eventRingBufferSize, eventConsumerThreads, eventOverflowPolicy);
+            }
+            if (embeddedServerReadiness != null) {
+                try {
+                    embeddedServerReadiness.get();
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+            initialized = true;
+        } finally {
+            if (!initialized && embeddedServerReadiness != null) { //don't leave behind the server this call started
+                embeddedServerReadiness.cancel(true);
+                stopEmbeddedServer();
+            }
+        }
+        ObjectUtils.notNull(getDefaultKeySpace(), "no keyspace provided");
+    }
+
+    /**
+     * Private helper that stops the embedded server after a failed initialization, keeping the failure that caused it
+     */
+    private void stopEmbeddedServer() {
+        try {
+            cassandraServer.stop();
+        } catch (Exception e) {
+            log.warn("unable to stop the embedded server", e);
+        }
+        cassandraServer = null;
+    }
+
+    protected void initializeKeyspaceDefinitions() throws NoSuchFieldException, InstantiationException, IllegalAccessException, ClassNotFoundException, NotFoundException {
+        for (Map.Entry<Class<?>, ClassMetadata<?>> entry : classMetadataMap.entrySet()) {
+            ClassMetadata classMetadata = entry.getValue();
+            String keysPace = classMetadata.getKeySpace();
+            KsDef ksDef = keyspaceDefinitions.get(keysPace);
+            if (ksDef == null) {
+                ksDef = new KsDef();
+                ksDef.setName(keysPace);
+                if (replicaReplacementStrategyClass == null) {
+                    strategyOptions.put("replication_factor", String.valueOf(replicationFactor));
+                    replicaReplacementStrategyClass = SimpleStrategy.class;
+                }
+                ksDef.setStrategy_class(replicaReplacementStrategyClass.getName());
+                ksDef.setStrategy_options(strategyOptions);
+                ksDef.setCf_defs(new ArrayList<CfDef>());
+                keyspaceDefinitions.put(keysPace, ksDef);
+            }
+            List<CfDef> columnFamilyDefinitions = ksDef.getCf_defs();
+            columnFamilyDefinitions.add(classMetadata.getColumnFamilyDefinition());
+            if (classMetadata.getOrderedIndexDefinition() != null) {
+                columnFamilyDefinitions.add(classMetadata.getOrderedIndexDefinition());
+            }
+            if (classMetadata.getLookupIndexDefinition() != null) {
+                columnFamilyDefinitions.add(classMetadata.getLookupIndexDefinition());
+            }
+            if (classMetadata.getRollupDefinition() != null) {
+                columnFamilyDefinitions.add(classMetadata.getRollupDefinition());
+            }
+            for (ViewMetadata view : entry.getValue().getViews()) {
+                columnFamilyDefinitions.add(view.getColumnFamilyDefinition());
+            }
+        }
+    }
+
+    /**
+     * Initializes the type converters
+     */
+    protected void initializeTypeConverters() {
+        if (typeConverters == null) {
+            typeConverters = new LinkedHashMap<Class<?>, TypeConverter<?>>();
+            typeConverters.put(String.class, new StringTypeConverter());
+            typeConverters.put(Boolean.class, new BooleanTypeConverter());
+            typeConverters.put(Long.class, new LongTypeConverter());
+            typeConverters.put(Double.class, new DoubleTypeConverter());
+            typeConverters.put(Enum.class, new EnumTypeConverter());
+            typeConverters.put(Integer.class, new IntegerTypeConverter());
+            typeConverters.put(Date.class, new DateTypeConverter());
+            typeConverters.put(boolean.class, new BooleanTypeConverter());
+            typeConverters.put(long.class, new LongTypeConverter());
+            typeConverters.put(double.class, new DoubleTypeConverter());
+            typeConverters.put(int.class, new IntegerTypeConverter());
+            typeConverters.put(byte[].class, new ByteArrayTypeConverter());
+            typeConverters.put(Byte[].class, new ByteArrayTypeConverter());
+            typeConverters.put(Object.class, new ObjectBytesTypeConverter());
+        }
+        bindPrimitiveAccessors();
+    }
+
+    /**
+     * Binds the primitive accessors of all managed classes to the codecs of their registered type converters.
+     * Accessors whose converter doesn't support primitive values fall back to the boxed conversion
+     */
+    protected void bindPrimitiveAccessors() {
+        for (ClassMetadata<?> metadata : classMetadataMap.values()) {
+            for (PrimitiveAccessor accessor : metadata.getPrimitiveAccessors()) {
+                if (!accessor.bind(getTypeConverter(accessor.getType()))) {
+                    log.debug(String.format("no primitive codec found for %s, using boxed conversion", accessor));
+                }
+            }
+        }
+    }
+
+    /**
+     * Instantiates null containers if an association is gonna take place on a mapped property
+     *
+     * @param metadata the class metadata for the affected entity
+     * @param instance the entity
+     * @param name     the mapped property
+     * @param <T>      the type of entity
+     */
+    protected <T> void instantiateContainersIfNecessary(ClassMetadata<?> metadata, T instance, String name) throws InvocationTargetException, NoSuchMethodException, IllegalAccessException, ClassNotFoundException {
+        Object target = instance;
+        String path = "";
+        String[] properties = name.split("\\.");
+        for (String property : properties) {
+            path = StringUtils.isNotBlank(path) ? path + "." + property : property;
+            if (metadata.isContainer(path)) {
+                Object value = PropertyUtils.getProperty(target, property);
+                if (value == null) {
+                    Class<?> typeClass = metadata.getPropertiesTypesMap().get(path);
+                    value = getInstance(typeClass);
+                    PropertyUtils.setProperty(target, property, value);
+                }
+                target = value;
+            }
+        }
+    }
+
+    /**
+     * @param entityClass the class type for this instance
+     * @param <T>         the type of class to be returned
+     * @return an instance of this type after transformation of its accessors to notify the persistence context that there are ongoing changes
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getInstance(Class<T> entityClass) {
+        final ClassMetadata<T> metadata = getClassMetadata(entityClass);
+        T instance;
+        try {
+            if (metadata != null) { //create a proxy that can support lazy loading and interception of certain methods
+                instance = metadata.createProxy();
+            } else { //an embedded entity with no metadata
+                if (entityClass.isInterface()) {
+                    Class implClass = defaultInterfaceContainersImpl.get(entityClass);
+                    if (implClass == null) {
+                        throw new IllegalStateException(String.format("no default impl found for %s", entityClass));
+                    }
+                    instance = (T) implClass.newInstance();
+                } else {
+                    instance = entityClass.newInstance();
+                }
+            }
+        } catch (InstantiationException e) {
+            throw new RuntimeException(e);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+        return instance;
+    }
+
+    /**
+     * Loads a lazy property's value through the transport
+     *
+     * @param metadata the class metadata
+     * @param self     the object in which the propertyload is getting performed
+     * @param property the lazy property being accessed
+     * @param value    the current value of the property
+     * @param loaded   whether an earlier lazy load filled the property
+     * @param <T>      the entity type
+     * @return true if the property was read from the store, so its getter must be invoked again to return the loaded value
+     */
+    protected <T> boolean loadLazyPropertyIfNecessary(ClassMetadata<T> metadata, Object self, String property, Object value, boolean loaded) throws Exception {
+        String key = getKey(self);
+        if (key != null && !isEmptyContainerValue(value)) { //the property already holds a value, the query result would be discarded
+            if (loaded) { //values set by the application or hydrated eagerly were never missed so they don't count as hits
+                recordCount(metadata.getColumnFamily(), Counter.CACHE_HITS, 1);
+            }
+        } else if (key != null) { //key may be null if this is just a regular access to the property before the entity has been persisted and no key has been assigned
+            long start = startTimer();
+            recordCount(metadata.getColumnFamily(), Counter.CACHE_MISSES, 1);
+            List<RawColumn> columns = transport.readRow(getKeySpace(metadata), metadata.getConsistencyLevel(), metadata.getColumnFamily(), key, property);
+            RawColumn mappedColumnValue = columns.size() == 1 ? columns.get(0) : null;
+            if (mappedColumnValue != null) { //todo once a load attempt has been made we should not attempt again but we have no sessions...perhaps a weakreference map?
+                Object propertyValue = loadProperty(metadata, property, mappedColumnValue);
+                PropertyUtils.setProperty(self, property, propertyValue);
+            }
+            recordCount(metadata.getColumnFamily(), Counter.COLUMNS_READ, columns.size());
+            recordLatency(metadata.getColumnFamily(), Operation.LAZY_LOAD, start);
+            return mappedColumnValue != null;
+        }
+        return false;
+    }
+
+    /**
+     * Loads a property left out of the projection a partially loaded entity was fetched with
+     *
+     * @param metadata the class metadata
+     * @param self     the partially loaded entity
+     * @param property the property being accessed
+     * @param <T>      the entity type
+     */
+    protected <T> void loadUnloadedProperty(ClassMetadata<T> metadata, Object self, String property) throws Exception {
+        long start = startTimer();
+        recordCount(metadata.getColumnFamily(), Counter.CACHE_MISSES, 1);
+        List<RawColumn> columns = transport.readRow(getKeySpace(metadata), metadata.getConsistencyLevel(), metadata.getColumnFamily(), getKey(self), property);
+        if (columns.size() == 1) {
+            PropertyUtils.setProperty(self, property, loadProperty(metadata, property, columns.get(0)));
+        }
+        recordCount(metadata.getColumnFamily(), Counter.COLUMNS_READ, columns.size());
+        recordLatency(metadata.getColumnFamily(), Operation.LAZY_LOAD, start);
+    }
+
+    /**
+     * Private helper that runs a query and hydrates its rows
+     *
+     * @param type       the type of objects to expect back
+     * @param query      the query
+     * @param projection the properties to fetch, null to hydrate every column returned by the query
+     * @param <T>        the result type
+     * @return the list of entities
+     */
+    @SuppressWarnings("unchecked")
+    private <T> List<T> queryResultList(Class<T> type, Query query, Projection projection) {
+        if (log.isDebugEnabled()) log.debug(String.format("getResultList (start): %s", query.getQuery()));
+        List<T> result = new ArrayList<T>();
+        try {
+            ClassMetadata<T> metadata = getClassMetadata(type);
+            if (metadata == null && !Long.class.isAssignableFrom(type))
+                throw new IllegalArgumentException(String.format("type: %s not recognized as ColumnFamily or returnable value", type));
+            if (metadata == null) { //this is not a managed class such as requesting a long, the default keyspace is queried
+                result.add((T) Long.valueOf(transport.executeCql(getDefaultKeySpace(), null, query.getQuery()).getCount()));
+            } else {
+                String[] selection = projection != null ? metadata.getProjectionColumns(projection) : null;
+                String cql = selection != null ? project(query.getQuery(), selection) : query.getQuery();
+                RawResult rows = transport.executeCql(getKeySpace(metadata), metadata.getConsistencyLevel(), cql);
+                int columnsRead = 0;
+                for (RawRow row : rows.getRows()) {
+                    List<RawColumn> columns = row.getColumns();
+                    if (columns.size() > 0) {
+                        result.add(selection != null
+                                ? serializeColumns(row.getKey(), metadata, type, columns, metadata.createPartialProxy(selection), true)
+                                : serializeColumns(row.getKey(), metadata, type, columns, null, false));
+                        columnsRead += columns.size();
+                    }
+                }
+                recordCount(metadata.getColumnFamily(), Counter.ROWS_READ, result.size());
+                recordCount(metadata.getColumnFamily(), Counter.COLUMNS_READ, columnsRead);
+            }
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        if (log.isDebugEnabled()) log.debug(String.format("getResultList (end): %s", result.size()));
+        return result;
+    }
+
+    /**
+     * Private helper that gets the metadata of a class whose rows are decoded into dtos
+     */
+    private ClassMetadata<?> getDtoMetadata(Class<?> entityClass) {
+        ClassMetadata<?> metadata = getClassMetadata(entityClass);
+        if (metadata == null) {
+            throw new IllegalArgumentException(String.format("type: %s not recognized as ColumnFamily", entityClass));
+        }
+        return metadata;
+    }
+
+    /**
+     * Private helper that gets the metadata of a class whose rows are counted
+     */
+    private ClassMetadata<?> getScanMetadata(Class<?> type) {
+        ClassMetadata<?> metadata = getClassMetadata(type);
+        if (metadata == null) {
+            throw new IllegalArgumentException(String.format("%s is not a managed entity", type));
+        }
+        return metadata;
+    }
+
+    /**
+     * Private helper that counts the rows of token ranges concurrently
+     *
+     * @param metadata the class metadata
+     * @param ranges   the token ranges
+     * @return the count of each range
+     */
+    private long[] countRanges(final ClassMetadata<?> metadata, List<TokenRange> ranges) {
+        final String keySpace = getKeySpace(metadata);
+        List<Callable<Long>> tasks = new ArrayList<Callable<Long>>(ranges.size());
+        for (final TokenRange range : ranges) {
+            tasks.add(new Callable<Long>() {
+                public Long call() throws Exception {
+                    return transport.countRange(keySpace, metadata.getConsistencyLevel(), metadata.getColumnFamily(), range, SCAN_PAGE_SIZE);
+                }
+            });
+        }
+        List<Long> results = scanRanges(tasks);
+        long[] counts = new long[results.size()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = results.get(i);
+        }
+        return counts;
+    }
+
+    /**
+     * Private helper that runs a task per token range concurrently, {@link #getCountParallelism()} ranges at a time.
+     * The calling thread and up to that many factory workers take the next range no one has started, so a busy executor
+     * slows the scan down but can't stall it
+     *
+     * @param tasks the range tasks
+     * @return the result of each task in the order of the tasks
+     */
+    private <V> List<V> scanRanges(List<Callable<V>> tasks) {
+        if (tasks.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final List<FutureTask<V>> futures = new ArrayList<FutureTask<V>>(tasks.size());
+        for (Callable<V> task : tasks) {
+            futures.add(new FutureTask<V>(task));
+        }
+        final AtomicInteger next = new AtomicInteger();
+        Runnable worker = new Runnable() {
+            public void run() {
+                for (int i = next.getAndIncrement(); i < futures.size(); i = next.getAndIncrement()) {
+                    futures.get(i).run();
+                }
+            }
+        };
+        int workers = Math.min(countParallelism, futures.size()) - 1;
+        if (workers > 0) {
+            ExecutorService executor = getExecutor();
+            for (int i = 0; i < workers; i++) {
+                executor.execute(worker);
+            }
+        }
+        worker.run();
+        try {
+            List<V> results = new ArrayList<V>(futures.size());
+            for (FutureTask<V> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+        } finally {
+            for (FutureTask<V> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Private helper that hydrates a row read by a query plan if it satisfies the plan filters, hydrating only the
+     * selection columns
+     */
+    private <T> void addIfMatches(List<T> result, ClassMetadata<T> metadata, List<IndexOperatorPredicate> filters, String[] selection, String key, List<RawColumn> columns) throws Exception {
+        if (columns.isEmpty()) {
+            return;
+        }
+        Map<String, RawColumn> columnMap = new HashMap<String, RawColumn>();
+        for (RawColumn column : columns) {
+            columnMap.put(column.getName(), column);
+        }
+        for (IndexOperatorPredicate filter : filters) {
+            int comparison;
+            if (filter.getColumn() == null) {
+                comparison = key.compareTo(filter.getValue());
+            } else {
+                RawColumn column = columnMap.get(filter.getColumn());
+                if (column == null) {
+                    return;
+                }
+                comparison = compareLiteral(metadata, filter.getColumn(), column.getValue(), filter.getValue());
+            }
+            if (!satisfies(filter.getOperator(), comparison)) {
+                return;
+            }
+        }
+        List<RawColumn> selected = new ArrayList<RawColumn>(columns.size());
+        for (String column : selection) {
+            RawColumn selectedColumn = columnMap.get(column);
+            if (selectedColumn != null) {
+                selected.add(selectedColumn);
+            }
+        }
+        result.add(serializeColumns(key, metadata, metadata.getTarget(), selected, null, false));
+    }
+
+    /**
+     * Private helper that streams the keys of the entities whose entries in an ordered index fall within the bounds of
+     * a set of comparisons, merging the slices of all the buckets in value order
+     *
+     * @param metadata        the class metadata
+     * @param rangePredicates the comparisons on the indexed column
+     * @return the entity keys
+     */
+    @SuppressWarnings("unchecked")
+    private Iterator<String> scanOrderedIndex(final ClassMetadata<?> metadata, List<IndexOperatorPredicate> rangePredicates) {
+        String column = rangePredicates.get(0).getColumn();
+        ColumnNameCodec<Object> codec = (ColumnNameCodec<Object>) ColumnNameCodec.forType(metadata.getColumnClass(column));
+        String start = null;
+        String finish = null;
+        for (IndexOperatorPredicate predicate : rangePredicates) {
+            String value = codec.encode(parseLiteral(getLiteralType(metadata, column), predicate.getValue()));
+            String predicateStart = OrderedIndex.getSliceStart(predicate.getOperator(), value);
+            String predicateFinish = OrderedIndex.getSliceFinish(predicate.getOperator(), value);
+            if (predicateStart != null && (start == null || predicateStart.compareTo(start) > 0)) {
+                start = predicateStart;
+            }
+            if (predicateFinish != null && (finish == null || predicateFinish.compareTo(finish) < 0)) {
+                finish = predicateFinish;
+            }
+        }
+        if (start != null && finish != null && start.compareTo(finish) > 0) {
+            return Collections.<String>emptyList().iterator();
+        }
+        final String keySpace = getKeySpace(metadata);
+        final String indexColumnFamily = metadata.getOrderedIndexColumnFamily();
+        final String end = finish;
+        List<ColumnSliceIterator<String, String>> slices = new ArrayList<ColumnSliceIterator<String, String>>();
+        for (final String rowKey : OrderedIndex.getRowKeys(column, metadata.getOrderedIndexes().get(column))) {
+            slices.add(new ColumnSliceIterator<String, String>(start, queryPlanPageSize) {
+                @Override
+                protected List<RawColumn> readPage(String from, int count) {
+                    List<RawColumn> columns = transport.readSlice(keySpace, metadata.getConsistencyLevel(), indexColumnFamily, rowKey, from, end, false, count);
+                    recordCount(indexColumnFamily, Counter.COLUMNS_READ, columns.size());
+                    return columns;
+                }
+
+                @Override
+                protected WideColumn<String, String> decode(RawColumn column) {
+                    return new WideColumn<String, String>(column.getName(), OrderedIndex.getKey(column.getName()));
+                }
+            });
+        }
+        return OrderedIndex.merge(slices);
+    }
+
+    /**
+     * Private helper that streams the keys listed in the lookup row of an equality
+     *
+     * @param metadata  the class metadata
+     * @param predicate the equality on the indexed column
+     * @return the entity keys
+     */
+    private Iterator<String> scanLookupIndex(final ClassMetadata<?> metadata, IndexOperatorPredicate predicate) {
+        final String keySpace = getKeySpace(metadata);
+        final String indexColumnFamily = metadata.getLookupIndexColumnFamily();
+        String column = predicate.getColumn();
+        final String rowKey = LookupIndex.getRowKey(column, parseLiteral(getLiteralType(metadata, column), predicate.getValue()));
+        final ColumnSliceIterator<String, String> slice = new ColumnSliceIterator<String, String>(null, queryPlanPageSize) {
+            @Override
+            protected List<RawColumn> readPage(String from, int count) {
+                List<RawColumn> columns = transport.readSlice(keySpace, metadata.getConsistencyLevel(), indexColumnFamily, rowKey, from, null, false, count);
+                recordCount(indexColumnFamily, Counter.COLUMNS_READ, columns.size());
+                return columns;
+            }
+
+            @Override
+            protected WideColumn<String, String> decode(RawColumn column) {
+                return new WideColumn<String, String>(column.getName(), column.getName());
+            }
+        };
+        return new Iterator<String>() {
+            public boolean hasNext() {
+                return slice.hasNext();
+            }
+
+            public String next() {
+                return slice.next().getValue();
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException("lookup index entries are read only");
+            }
+        };
+    }
+
+    /**
+     * Private helper that checks whether persist and remove maintain index or view rows for a class
+     */
+    private boolean hasIndexRows(ClassMetadata<?> metadata) {
+        return !metadata.getOrderedIndexes().isEmpty() || !metadata.getLookupIndexes().isEmpty() || !metadata.getViews().isEmpty();
+    }
+
+    /**
+     * Private helper that moves the entries of an entity in its ordered and lookup indexes when the indexed values
+     * change, and rewrites its view rows. The values stored before the write are read in a single request to find the
+     * entries and view rows to delete
+     *
+     * @param batch    the mutations of the write
+     * @param key      the entity key
+     * @param metadata the class metadata
+     * @param entity   the entity being persisted, null if its row is being removed
+     */
+    private void updateIndexRows(MutationBatch batch, String key, ClassMetadata<?> metadata, Object entity) throws Exception {
+        Set<String> properties = new LinkedHashSet<String>(metadata.getOrderedIndexes().keySet());
+        properties.addAll(metadata.getLookupIndexes());
+        for (ViewMetadata view : metadata.getViews()) {
+            properties.addAll(Arrays.asList(view.getKeyProperties()));
+        }
+        Map<String, List<RawColumn>> rows = transport.readRows(getKeySpace(metadata), metadata.getConsistencyLevel(), metadata.getColumnFamily(),
+                Collections.singletonList(key), properties.toArray(new String[properties.size()]));
+        Map<String, Object> stored = new HashMap<String, Object>();
+        if (rows.get(key) != null) {
+            for (RawColumn column : rows.get(key)) {
+                if (column.getValue() != null && column.getValue().hasRemaining()) {
+                    stored.put(column.getName(), convertRead(metadata.getColumnClass(column.getName()), column.getValue()));
+                }
+            }
+        }
+        for (String property : properties) {
+            Object previous = stored.get(property);
+            Object current = getIndexedValue(entity, property);
+            if (metadata.isOrderedIndex(property)) {
+                String previousValue = encodeOrderedIndexValue(metadata, property, previous);
+                String currentValue = encodeOrderedIndexValue(metadata, property, current);
+                if (!StringUtils.equals(previousValue, currentValue)) {
+                    String indexColumnFamily = metadata.getOrderedIndexColumnFamily();
+                    String rowKey = OrderedIndex.getRowKey(property, key, metadata.getOrderedIndexes().get(property));
+                    if (previousValue != null) {
+                        batch.delete(indexColumnFamily, rowKey, OrderedIndex.getColumnName(previousValue, key));
+                    }
+                    if (currentValue != null) {
+                        batch.insert(indexColumnFamily, rowKey, OrderedIndex.getColumnName(currentValue, key), ByteBuffer.wrap(new byte[0]));
+                    }
+                }
+            }
+            if (metadata.isLookupIndex(property)) {
+                String previousRow = previous != null ? LookupIndex.getRowKey(property, previous) : null;
+                String currentRow = current != null ? LookupIndex.getRowKey(property, current) : null;
+                if (!StringUtils.equals(previousRow, currentRow)) {
+                    String indexColumnFamily = metadata.getLookupIndexColumnFamily();
+                    if (previousRow != null) {
+                        batch.delete(indexColumnFamily, previousRow, key);
+                    }
+                    if (currentRow != null) {
+                        batch.insert(indexColumnFamily, currentRow, key, ByteBuffer.wrap(new byte[0]));
+                    }
+                }
+            }
+        }
+        for (ViewMetadata view : metadata.getViews()) {
+            String[] keyProperties = view.getKeyProperties();
+            Object[] previousKey = new Object[keyProperties.length];
+            Object[] currentKey = new Object[keyProperties.length];
+            for (int i = 0; i < keyProperties.length; i++) {
+                previousKey[i] = stored.get(keyProperties[i]);
+                currentKey[i] = getIndexedValue(entity, keyProperties[i]);
+            }
+            String previousRow = view.getRowKey(previousKey);
+            String currentRow = view.getRowKey(currentKey);
+            if (previousRow != null && !previousRow.equals(currentRow)) {
+                batch.deleteRow(view.getName(), previousRow);
+            }
+            if (currentRow != null) {
+                batch.insert(view.getName(), currentRow, metadata.getKeyProperty(), convertWrite(key));
+                for (String column : view.getColumns()) {
+                    Object value = getIndexedValue(entity, column);
+                    if (value != null) {
+                        batch.insert(view.getName(), currentRow, column, convertWrite(value));
+                    } else {
+                        batch.delete(view.getName(), currentRow, column);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Private helper that reads the value of an indexed or viewed property, null for removed entities and null nested
+     * properties
+     */
+    private Object getIndexedValue(Object entity, String property) throws Exception {
+        if (entity == null) {
+            return null;
+        }
+        try {
+            return PropertyUtils.getProperty(entity, property);
+        } catch (NestedNullException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Private helper that encodes the value of a property with an ordered index as it sorts in the index rows
+     */
+    @SuppressWarnings("unchecked")
+    private String encodeOrderedIndexValue(ClassMetadata<?> metadata, String property, Object value) {
+        return value != null ? ((ColumnNameCodec<Object>) ColumnNameCodec.forType(metadata.getColumnClass(property))).encode(value) : null;
+    }
+
+    /**
+     * Private helper that checks whether the result of comparing a value with a literal satisfies an index operator
+     */
+    private static boolean satisfies(IndexOperator operator, int comparison) {
+        switch (operator) {
+            case EQ:
+                return comparison == 0;
+            case GT:
+                return comparison > 0;
+            case GTE:
+                return comparison >= 0;
+            case LT:
+                return comparison < 0;
+            case LTE:
+                return comparison <= 0;
+            default:
+                throw new IllegalArgumentException(String.format("unsupported operator %s", operator));
+        }
+    }
+
+    /**
+     * Private helper that loads the entities of a class by key in a single multi-row read fetching only their eager columns
+     *
+     * @param metadata the class metadata
+     * @param keys     the keys
+     * @param <T>      the entity type
+     * @return the entities found by key, in the order of their keys
+     */
+    private <T> Map<String, T> getByKeys(ClassMetadata<T> metadata, List<String> keys) throws Exception {
+        Map<String, List<RawColumn>> rows = transport.readRows(getKeySpace(metadata), metadata.getConsistencyLevel(), metadata.getColumnFamily(), keys, metadata.getSelectionColumns());
+        Map<String, T> entities = new LinkedHashMap<String, T>(rows.size());
+        int columnsRead = 0;
+        for (Map.Entry<String, List<RawColumn>> row : rows.entrySet()) {
+            entities.put(row.getKey(), serializeColumns(row.getKey(), metadata, metadata.getTarget(), row.getValue(), null, false));
+            columnsRead += row.getValue().size();
+        }
+        recordCount(metadata.getColumnFamily(), Counter.ROWS_READ, entities.size());
+        recordCount(metadata.getColumnFamily(), Counter.COLUMNS_READ, columnsRead);
+        return entities;
+    }
+
+    /**
+     * Private helper that replaces the select expression of a CQL select query with a list of columns
+     *
+     * @param query   the query
+     * @param columns the columns to select
+     * @return the projected query
+     */
+    private String project(String query, String[] columns) {
+        Matcher matcher = SELECT_EXPRESSION.matcher(query);
+        if (!matcher.matches() || matcher.group(2).trim().toUpperCase().startsWith("COUNT")) {
+            throw new IllegalArgumentException(String.format("a projection requires a select query returning columns: %s", query));
+        }
+        return matcher.group(1) + QueryBuilder.columns(columns) + matcher.group(3);
+    }
+
+    /**
+     * Private helper that ensures a result list holds at most one result
+     *
+     * @param results the results
+     * @param <T>     the entity type
+     * @return the single result or null if empty
+     */
+    private <T> T singleResult(List<T> results) {
+        if (results.size() > 1) {
+            throw new IllegalStateException(String.format("Expected a single result but found %d", results.size()));
+        }
+        return results.size() == 1 ? results.get(0) : null;
+    }
+
+    /**
+     * Private helper that maps columns by name keeping their order
+     *
+     * @param columns the columns
+     * @return the column values by name
+     */
+    private Map<String, ByteBuffer> toColumnMap(List<RawColumn> columns) {
+        Map<String, ByteBuffer> resultMap = new LinkedHashMap<String, ByteBuffer>();
+        for (RawColumn column : columns) {
+            resultMap.put(column.getName(), column.getValue());
+        }
+        return resultMap;
+    }
+
+    /**
+     * Encodes a CQL literal with the type converter of the java type mapped to the column.
+     * Columns of unmanaged column families or unmapped columns are encoded as strings
+     *
+     * @param metadata the class metadata, null for unmanaged column families
+     * @param column   the column
+     * @param literal  the literal
+     * @return the encoded value
+     */
+    protected ByteBuffer encodeLiteral(ClassMetadata<?> metadata, String column, String literal) {
+        try {
+            return convertWrite(parseLiteral(getLiteralType(metadata, column), literal));
+        } catch (Exception e) {
+            throw new IllegalArgumentException(String.format("unable to encode %s for %s", literal, column), e);
         }
+    }
 
-        //call any registered listeners
-        if (entityEventListenerMap != null) {
-            List<EntityEventListener> listeners = entityEventListenerMap.get(event);
-            if (listeners != null) {
-                EntityEvent entityEvent = new EntityEvent(this, event, entities);
-                for (EntityEventListener listener : listeners) {
-                    if (listener != null) {
-                        listener.onEvent(entityEvent);
-                    }
-                }
+    /**
+     * Compares a stored column value with a CQL literal using the java type mapped to the column
+     *
+     * @param metadata the class metadata, null for unmanaged column families
+     * @param column   the column
+     * @param value    the stored value
+     * @param literal  the literal
+     * @return a negative, zero or positive value as the stored value is less, equal or greater than the literal
+     */
+    @SuppressWarnings("unchecked")
+    protected int compareLiteral(ClassMetadata<?> metadata, String column, ByteBuffer value, String literal) {
+        Class<?> type = getLiteralType(metadata, column);
+        try {
+            Object stored = convertRead(type, value.duplicate());
+            Object expected = parseLiteral(type, literal);
+            if (stored instanceof Comparable && stored.getClass().equals(expected.getClass())) {
+                return ((Comparable<Object>) stored).compareTo(expected);
             }
+            return String.valueOf(stored).compareTo(String.valueOf(expected));
+        } catch (Exception e) {
+            throw new IllegalArgumentException(String.format("unable to compare %s with %s", literal, column), e);
         }
     }
 
     /**
-     * Retrieves an entity class by name
-     *
-     * @param entityName the entity name
-     * @return the found class if any
+     * Private helper that resolves the java type a literal is parsed to
      */
-    public Class<?> getEntityClassByName(String entityName) {
-        return entityClassNameMap.get(entityName);
+    private Class<?> getLiteralType(ClassMetadata<?> metadata, String column) {
+        Class<?> type = metadata != null ? metadata.getColumnClass(column) : null;
+        if (type == null || metadata.isMappedContainer(column) || metadata.isMappedCollection(column) || getTypeConverter(type) == null) {
+            type = String.class;
+        }
+        return type;
     }
 
     /**
-     * Gets a initialized class instance or returns the same instance if not null
-     *
-     * @param entityClass the entity class
-     * @param instance    the instance
-     * @param <T>         the entity type
-     * @return the instance
+     * Private helper that parses a literal into a value of the given type.
+     * Dates are expressed in milliseconds as emitted by the CQL date value converter
      */
-    protected <T> T getInstance(Class<T> entityClass, T instance) {
-        if (instance == null) {
-            try {
-                instance = getInstance(entityClass);
-            } catch (Throwable e) {
-                throw new RuntimeException(e);
-            }
+    @SuppressWarnings("unchecked")
+    private Object parseLiteral(Class<?> type, String literal) {
+        Object value;
+        if (Long.class.equals(type) || long.class.equals(type)) {
+            value = Long.valueOf(literal);
+        } else if (Integer.class.equals(type) || int.class.equals(type)) {
+            value = Integer.valueOf(literal);
+        } else if (Double.class.equals(type) || double.class.equals(type)) {
+            value = Double.valueOf(literal);
+        } else if (Boolean.class.equals(type) || boolean.class.equals(type)) {
+            value = Boolean.valueOf(literal);
+        } else if (Date.class.isAssignableFrom(type)) {
+            value = new Date(Long.parseLong(literal));
+        } else if (type.isEnum()) {
+            value = Enum.valueOf((Class<Enum>) type, literal);
+        } else {
+            value = literal;
         }
-        return instance;
+        return value;
     }
 
     /**
-     * Gets the mapped property token from a persistent value
+     * Private helper that gets the metadata of a wide row class
      *
-     * @param value the value
-     * @return the mapped property token
-     */
-    public String getMappedPropertyTokenForPersistentValues(Object value) {
-        return getMappedPropertyToken(value, false);
+     * @param wideRowClass the class annotated with {@link org.firebrandocm.dao.annotations.WideRow}
+     * @return the class metadata
+     */
+    private ClassMetadata<?> getWideRowMetadata(Class<?> wideRowClass) {
+        ClassMetadata<?> metadata = getClassMetadata(wideRowClass);
+        if (metadata == null || !metadata.isWideRow())
+            throw new IllegalArgumentException(String.format("type: %s not recognized as a wide row ColumnFamily", wideRowClass));
+        return metadata;
     }
 
     /**
-     * Private Helper.
-     * Gets the mapped property token from a persistent value optionally persisting the property value
+     * Gets the keyspace an entity column family belongs to
      *
-     * @param value   the value
-     * @param persist whether to persist the property value or not
-     * @return the mapped property token
+     * @param classMetadata the class metadata
+     * @return the keyspace
      */
-    private String getMappedPropertyToken(Object value, boolean persist) {
-        String mappedValue = null;
-        if (value != null) {
-            if (Collection.class.isAssignableFrom(value.getClass())) {
-                Collection mappedEntities = (Collection) value;
-                List<Object> values = new ArrayList<Object>(mappedEntities.size());
-                for (Object mappedEntity : mappedEntities) {
-                    if (persist) {
-                        persist(mappedEntity);
-                    }
-                    values.add(getMappedPropertyToken(mappedEntity, persist));
-                }
-                mappedValue = StringUtils.join(values, COLLECTION_VALUE_SEPARATOR);
-            } else {
-                if (persist) {
-                    persist(value);
-                }
-                mappedValue = getTokenValueForMappedEntity(value);
-            }
-        }
-        return mappedValue;
+    protected String getKeySpace(ClassMetadata<?> classMetadata) {
+        String keySpace = classMetadata.getKeySpace();
+        return keySpace != null ? keySpace : getDefaultKeySpace();
     }
 
     /**
-     * Gets a token value from a mapped entity
+     * Private helper to determine if a container is empty
      *
-     * @param value the mapped entity
-     * @return the token value (id)
+     * @param value the container
+     * @return if the container is empty
      */
-    protected String getTokenValueForMappedEntity(Object value) {
-        return String.format(MAPPED_VALUE_FORMAT, ObjectUtils.getRealClass(value.getClass()).getName(), getKey(value));
+    private boolean isEmptyContainerValue(Object value) {
+        boolean empty = value == null;
+        if (!empty && value instanceof Collection) {
+            empty = ((Collection) value).isEmpty();
+        }
+        return empty;
     }
 
-
     /**
-     * Initializes metadata
-     * @throws Exception
+     * private helper to persist and arbitrary list of objects into the datastore
+     *
+     * @param entities
      */
-    protected void initializeMetadata() throws Exception {
-        for (Class<?> entityClass : entities) {
-            ClassMetadata metadata = new ClassMetadata(entityClass, this);
-            classMetadataMap.put(entityClass, metadata);
+    private void persistAll(Object... entities) {
+        log.debug(String.format("persist(%s) { ", Arrays.toString(entities)));
+        for (Object entity : entities) {
+            persistEntity(entity);
         }
-
+        log.debug(String.format("} (%s)", Arrays.toString(entities)));
     }
 
-
     /**
-     * Initializes the factory.
-     * Should be invoked by subclasses
+     * helper that persists a single an entity in the data store
      *
-     * @throws Exception
-     */
-    @SuppressWarnings("unchecked")
-    public void init() throws Exception {
-        CQLMappedEntityValueConverter mappedEntityConverter = new CQLMappedEntityValueConverter(this);
-        QueryBuilder.addConverter(0, mappedEntityConverter);
-        QueryBuilder.addConverter(1, new CQLMappedCollectionValueConverter(mappedEntityConverter));
-        initializeMetadata();
-	if (startEmbeddedServer) {
-            log.warn("starting dev embedded server");
-            if (cassandraServer == null) {
-                cassandraServer = new EmbeddedCassandraServer(embeddedServerBaseDir);
-                cassandraServer.setCleanupDirectories(cleanupDirectories);
-                cassandraServer.start();
+     * @param entity
+     */
+    protected void persistEntity(Object entity) {
+        long start = startTimer();
+        firePerEntityEvent(Event.Entity.PRE_PERSIST, entity);
+        ClassMetadata<?> classMetadata = getClassMetadata(entity.getClass());
+        MutationBatch batch = new MutationBatch();
+        String key = getKey(entity);
+        for (String property : classMetadata.getMutationProperties()) {
+            persistPropertyIfNecessary(batch, key, classMetadata, entity, property);
+        }
+        if (key != null && hasIndexRows(classMetadata)) {
+            try {
+                updateIndexRows(batch, key, classMetadata, entity);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+        transport.mutate(getKeySpace(classMetadata), classMetadata.getConsistencyLevel(), batch);
+        firePerEntityEvent(Event.Entity.POST_PERSIST, entity);
+        recordCount(classMetadata.getColumnFamily(), Counter.ROWS_WRITTEN, 1);
+        recordLatency(classMetadata.getColumnFamily(), Operation.PERSIST, start);
+    }
 
-                // wait until cassandra server starts up. could wait less time, but
-                // 2 seconds to be sure.
-                Thread.sleep(2000);
+    /**
+     * helper that persist an entity property
+     *
+     * @param batch         the current operation mutations
+     * @param key           the column key
+     * @param classMetadata the class metadata
+     * @param entity        the entity
+     * @param property      the property being persisted
+     */
+    protected void persistPropertyIfNecessary(MutationBatch batch, String key, ClassMetadata<?> classMetadata, Object entity, String property) {
+        if (!property.equals(classMetadata.getKeyProperty())) {
+            String colFamily = classMetadata.getColumnFamily();
+            try {
+                PrimitiveAccessor accessor = classMetadata.getPrimitiveAccessor(property);
+                if (accessor != null && accessor.isBound()) { //primitive properties are written without reflection or boxing
+                    if (classMetadata.isCounterIncreaseProperty(property)) { //a counter property increase
+                        increaseCounter(batch, key, classMetadata, entity, property, accessor.getLong(entity));
+                        //once applied the increase the counter increase value gets reset to 0
+                        accessor.setLong(entity, 0L);
+                    } else if (!classMetadata.isCounterProperty(property)) {  //a regular column update, counter are ignored since they're just serialized
+                        insertColumn(batch, entity, key, colFamily, property, accessor.encode(entity));
+                    }
+                } else {
+                    Object value;
+                    if (property.equals(CLASS_PROPERTY)) { //if this is a special case class property
+                        value = classMetadata.getTarget().getName();
+                    } else { //otherwise proceed with serialization
+                        value = PropertyUtils.getProperty(entity, property);
+                        if (classMetadata.isMappedContainer(property) || classMetadata.isMappedCollection(property)) { //we have a mapped property so we set its tokens as the value
+                            value = getMappedPropertyTokenForPersistentValues(value);
+                        }
+                    }
+                    updateSimpleColumn(batch, key, classMetadata, property, value, entity);
+                }
+            } catch (NestedNullException nestedNullException) {
+                if (key == null) {
+                    log.warn(String.format("entity: %s had no value for key and was ignored", entity));
+                } else {
+                    deleteColumn(batch, entity, key, colFamily, property);
+                }
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
             }
         }
-        ObjectUtils.notNull(getDefaultKeySpace(), "no keyspace provided");
     }
 
-    protected void initializeKeyspaceDefinitions() throws NoSuchFieldException, InstantiationException, IllegalAccessException, ClassNotFoundException, NotFoundException {
-        for (Map.Entry<Class<?>, ClassMetadata<?>> entry : classMetadataMap.entrySet()) {
-            ClassMetadata classMetadata = entry.getValue();
-            String keysPace = classMetadata.getKeySpace();
-            KsDef ksDef = keyspaceDefinitions.get(keysPace);
-            if (ksDef == null) {
-                ksDef = new KsDef();
-                ksDef.setName(keysPace);
-                if (replicaReplacementStrategyClass == null) {
-                    strategyOptions.put("replication_factor", String.valueOf(replicationFactor));
-                    replicaReplacementStrategyClass = SimpleStrategy.class;
+    /**
+     * Private helper that updates a simple column
+     *
+     * @param batch    the operation mutations
+     * @param key      the column key
+     * @param metadata the class metadata associated to the entity
+     * @param property the property represented by this column
+     * @param value    the value
+     * @param entity   the entity the property belongs to
+     */
+    protected void updateSimpleColumn(MutationBatch batch, String key, ClassMetadata<?> metadata, String property, Object value, Object entity) throws Exception {
+        String colFamily = metadata.getColumnFamily();
+        if (!metadata.isAssociationContainer(property)) { //association container properties are ignored since their embedded properties are flatten into the column family
+            if (value == null) {
+                if (!metadata.isContainer(property)) { //mapped properties are removed when loading a property with id that returns null
+                    deleteColumn(batch, entity, key, colFamily, property);
                 }
-                ksDef.setStrategy_class(replicaReplacementStrategyClass.getName());
-                ksDef.setStrategy_options(strategyOptions);
-                ksDef.setCf_defs(new ArrayList<CfDef>());
-                keyspaceDefinitions.put(keysPace, ksDef);
+            } else if (metadata.isCounterIncreaseProperty(property)) { //a counter property increase
+                increaseCounter(batch, key, metadata, entity, property, (Long) value);
+                //once applied the increase the counter increase value gets reset to 0
+                PropertyUtils.setProperty(entity, property, 0L);
+            } else if (!metadata.isCounterProperty(property)) {  //a regular column update, counter are ignored since they're just serialized
+                insertColumn(batch, entity, key, colFamily, property, convertWrite(value));
             }
-            List<CfDef> columnFamilyDefinitions = ksDef.getCf_defs();
-            columnFamilyDefinitions.add(classMetadata.getColumnFamilyDefinition());
         }
     }
 
     /**
-     * Initializes the type converters
+     * Private helper that adds a column insertion firing the mutation events
      */
-    protected void initializeTypeConverters() {
-        if (typeConverters == null) {
-            typeConverters = new LinkedHashMap<Class<?>, TypeConverter<?>>();
-            typeConverters.put(String.class, new StringTypeConverter());
-            typeConverters.put(Boolean.class, new BooleanTypeConverter());
-            typeConverters.put(Long.class, new LongTypeConverter());
-            typeConverters.put(Double.class, new DoubleTypeConverter());
-            typeConverters.put(Enum.class, new EnumTypeConverter());
-            typeConverters.put(Integer.class, new IntegerTypeConverter());
-            typeConverters.put(Date.class, new DateTypeConverter());
-            typeConverters.put(boolean.class, new BooleanTypeConverter());
-            typeConverters.put(long.class, new LongTypeConverter());
-            typeConverters.put(double.class, new DoubleTypeConverter());
-            typeConverters.put(int.class, new IntegerTypeConverter());
-            typeConverters.put(byte[].class, new ByteArrayTypeConverter());
-            typeConverters.put(Byte[].class, new ByteArrayTypeConverter());
-            typeConverters.put(Object.class, new ObjectBytesTypeConverter());
-        }
+    private void insertColumn(MutationBatch batch, Object entity, String key, String colFamily, String property, ByteBuffer value) {
+        RawColumn column = new RawColumn(property, value);
+        fireColumnEvent(Event.Column.PRE_COLUMN_MUTATION, entity, property, key, colFamily, column);
+        batch.insert(colFamily, key, property, value);
+        recordCount(colFamily, Counter.COLUMNS_WRITTEN, 1);
+        recordCount(colFamily, Counter.BYTES_SERIALIZED, value.remaining());
+        if (log.isDebugEnabled()) log.debug(String.format("\tI: %s : %s ", property, value));
+        fireColumnEvent(Event.Column.POST_COLUMN_MUTATION, entity, property, key, colFamily, column);
     }
 
     /**
-     * Instantiates null containers if an association is gonna take place on a mapped property
-     *
-     * @param metadata the class metadata for the affected entity
-     * @param instance the entity
-     * @param name     the mapped property
-     * @param <T>      the type of entity
+     * Private helper that adds a column deletion firing the deletion events
      */
-    protected <T> void instantiateContainersIfNecessary(ClassMetadata<?> metadata, T instance, String name) throws InvocationTargetException, NoSuchMethodException, IllegalAccessException, ClassNotFoundException {
-        Object target = instance;
-        String path = "";
-        String[] properties = name.split("\\.");
-        for (String property : properties) {
-            path = StringUtils.isNotBlank(path) ? path + "." + property : property;
-            if (metadata.isContainer(path)) {
-                Object value = PropertyUtils.getProperty(target, property);
-                if (value == null) {
-                    Class<?> typeClass = metadata.getPropertiesTypesMap().get(path);
-                    value = getInstance(typeClass);
-                    PropertyUtils.setProperty(target, property, value);
-                }
-                target = value;
-            }
-        }
+    private void deleteColumn(MutationBatch batch, Object entity, String key, String colFamily, String property) {
+        fireColumnEvent(Event.Column.PRE_COLUMN_DELETION, entity, property, key, colFamily, null);
+        batch.delete(colFamily, key, property);
+        log.debug(String.format("\tD: %s", property));
+        fireColumnEvent(Event.Column.POST_COLUMN_DELETION, entity, property, key, colFamily, null);
     }
 
     /**
-     * @param entityClass the class type for this instance
-     * @param <T>         the type of class to be returned
-     * @return an instance of this type after transformation of its accessors to notify the persistence context that there are ongoing changes
+     * Private helper that adds a counter increase firing the counter events, along the increases of the current time
+     * buckets of the counter rollups
      */
-    @SuppressWarnings("unchecked")
-    public <T> T getInstance(Class<T> entityClass) {
-        final ClassMetadata<T> metadata = getClassMetadata(entityClass);
-        T instance;
-        try {
-            if (metadata != null) { //create a proxy that can support lazy loading and interception of certain methods
-                instance = metadata.createProxy();
-            } else { //an embedded entity with no metadata
-                if (entityClass.isInterface()) {
-                    Class implClass = defaultInterfaceContainersImpl.get(entityClass);
-                    if (implClass == null) {
-                        throw new IllegalStateException(String.format("no default impl found for %s", entityClass));
-                    }
-                    instance = (T) implClass.newInstance();
-                } else {
-                    instance = entityClass.newInstance();
-                }
+    private void increaseCounter(MutationBatch batch, String key, ClassMetadata<?> metadata, Object entity, String property, long delta) {
+        String colFamily = metadata.getColumnFamily();
+        String targetCounterProperty = metadata.getTargetCounterProperty(property);
+        incrementColumn(batch, entity, key, colFamily, property, targetCounterProperty, delta);
+        Set<Granularity> rollups = metadata.getRollups(targetCounterProperty);
+        if (!rollups.isEmpty() && delta != 0) {
+            long now = System.currentTimeMillis();
+            for (Granularity granularity : rollups) {
+                batch.increment(metadata.getRollupColumnFamily(), Rollup.getRowKey(key, targetCounterProperty, granularity), Rollup.getColumnName(granularity, now), delta);
             }
-        } catch (InstantiationException e) {
-            throw new RuntimeException(e);
-        } catch (IllegalAccessException e) {
-            throw new RuntimeException(e);
         }
-        return instance;
     }
 
     /**
-     * To be implemented by subclasses request that a lazy property gets loaded
-     *
-     * @param metadata the class metadata
-     * @param self     the object in which the propertyload is getting performed
-     * @param proceed  the method containing the value
-     * @param m
-     * @param args     the method arguments
-     * @param <T>      the entity type
+     * Private helper that adds a counter column increment firing the counter mutation events
      */
-    protected abstract <T> void loadLazyPropertyIfNecessary(ClassMetadata<T> metadata, Object self, Method proceed, Method m, Object[] args) throws Exception, IllegalAccessException, ClassNotFoundException, NoSuchMethodException;
+    private void incrementColumn(MutationBatch batch, Object entity, String key, String colFamily, String property, String column, long delta) {
+        fireColumnEvent(Event.Column.PRE_COUNTER_MUTATION, entity, property, key, colFamily, null);
+        batch.increment(colFamily, key, column, delta);
+        recordCount(colFamily, Counter.COLUMNS_WRITTEN, 1);
+        if (log.isDebugEnabled()) log.debug(String.format("C: %s increments to %d", column, delta));
+        fireColumnEvent(Event.Column.POST_COUNTER_MUTATION, entity, property, key, colFamily, null);
+    }
 
     /**
      * Loads a mapped entity out of a column value
@@ -947,60 +3301,215 @@ public abstract class AbstractPersistenceFactory implements PersistenceFactory {
      * @param column   the column object
      * @return the property value
      */
-    protected Object loadProperty(ClassMetadata<?> metadata, String name, HColumn<String, Object> column) throws Exception {
+    protected Object loadProperty(ClassMetadata<?> metadata, String name, RawColumn column) throws Exception {
         Object value;
         if (metadata.isMappedContainer(name)) {
             value = loadMappedEntity(column);
         } else if (metadata.isMappedCollection(name)) {
             value = loadMappedCollection(column);
         } else {
-            value = convertRead(metadata.getColumnClass(name), column.getValueBytes());
+            value = convertRead(metadata.getColumnClass(name), column.getValue());
         }
         return value;
     }
 
+    /**
+     * Hidrates an entity from a list of columns in the datastore
+     *
+     * @param key              the key
+     * @param metadata        the entity metadata
+     * @param entityClass     the entity class
+     * @param columns         the list of columns to set in the entity proeprties
+     * @param instance        the entity instance
+     * @param ignoreLazyFlags whether lazy flags in @Column annotations should be ignored for this operation
+     * @param <T>             the entity type
+     * @return the hidrated entity
+     */
+    protected <T> T serializeColumns(String key, ClassMetadata<?> metadata, Class<T> entityClass, List<RawColumn> columns, T instance, boolean ignoreLazyFlags) throws Exception {
+        instance = getInstance(entityClass, instance);
+        for (RawColumn column : columns) {
+            String name = column.getName();
+            serializeColumn(metadata, instance, name, column, ignoreLazyFlags);
+        }
+        PropertyUtils.setProperty(instance, metadata.getKeyProperty(), key);
+        return instance;
+    }
+
+    /**
+     * Private helper that serializes a column to an entity property
+     *
+     * @param metadata        the class metadata
+     * @param instance        the entity instance
+     * @param name            the property name
+     * @param column          the column object
+     * @param ignoreLazyFlags whether lazy flags in @Column annotations should be ignored for this operation
+     */
+    protected void serializeColumn(ClassMetadata<?> metadata, Object instance, String name, RawColumn column, boolean ignoreLazyFlags) throws Exception {
+        if (!name.equals(CLASS_PROPERTY) && metadata.getSelectionProperties().contains(name)) { //ignore the class type property while deserializing
+            if (ignoreLazyFlags || !metadata.isLazyProperty(name)) {
+                if ("KEY".equals(name)) {
+                    name = metadata.getKeyProperty();
+                }
+                if (!loadPrimitiveProperty(metadata, instance, name, column.getValue())) {
+                    Object value = loadProperty(metadata, name, column);
+                    try {
+                        instantiateContainersIfNecessary(metadata, instance, name);
+                        PropertyUtils.setProperty(instance, name, value);
+                    } catch (Throwable e) {
+                        throw new UnsupportedOperationException(e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads a primitive property straight from its column value if the property has a bound accessor
+     *
+     * @param metadata the class metadata
+     * @param instance the entity instance
+     * @param name     the property name
+     * @param value    the column value
+     * @return true if the property was loaded, false if it should go through the boxed conversion
+     */
+    protected boolean loadPrimitiveProperty(ClassMetadata<?> metadata, Object instance, String name, ByteBuffer value) {
+        PrimitiveAccessor accessor = metadata.getPrimitiveAccessor(name);
+        boolean loaded = accessor != null && accessor.isBound() && value != null && value.hasRemaining();
+        if (loaded) {
+            accessor.decode(instance, value);
+        }
+        return loaded;
+    }
+
     /**
      * Loads a mapped entity
      *
      * @param column the column object
      * @return the mapped entity
      */
-    protected Object loadMappedEntity(HColumn<String, Object> column) throws Exception {
-        Object value = convertRead(String.class, column.getValueBytes());
+    protected Object loadMappedEntity(RawColumn column) throws Exception {
+        Object value = convertRead(String.class, column.getValue());
         return loadMappedEntity(value.toString());
     }
 
     /**
-     * Loads a mapped collection out of a column
+     * Loads the entities referenced by a mapped collection column in the order they are referenced.
+     * The distinct keys of each class are read in multi-row reads of at most {@link #getMappedCollectionChunkSize()}
+     * keys, chunks being loaded in parallel when there is more than one. An entity referenced more than once is loaded
+     * once and returned at each of its positions, or only at the first one if collections are deduplicated.
+     * References to rows that no longer exist are skipped
      *
      * @param column the column
-     * @return the loaded mapped collection
+     * @return the list of entities
      */
-    protected Object loadMappedCollection(HColumn<String, Object> column) throws Exception {
-        Object value = convertRead(String.class, column.getValueBytes());
-        Object retVal = null;
+    protected Object loadMappedCollection(RawColumn column) throws Exception {
+        Object value = convertRead(String.class, column.getValue());
         String[] tokens = value.toString().split(COLLECTION_VALUE_SEPARATOR);
-        Map<Class<?>, List<String>> loadBatch = new HashMap<Class<?>, List<String>>();
-        if (tokens != null) {
-            List<Object> entities = new ArrayList<Object>(tokens.length);
-            for (String tokenValue : tokens) {
-                String[] parts = tokenValue.split(MAPPED_ENTITY_VALUE_SEPARATOR);
-                Class<?> mappedEntityClass = Class.forName(parts[0]);
-                String mappedEntityKey = parts[1];
-                List<String> collectedIds = loadBatch.get(mappedEntityClass);
-                if (collectedIds == null) {
-                    collectedIds = new ArrayList<String>();
-                    loadBatch.put(mappedEntityClass, collectedIds);
-                }
-                collectedIds.add(mappedEntityKey);
-            }
-            for (Map.Entry<Class<?>, List<String>> entry : loadBatch.entrySet()) {
-                List<?> batchedEntities = getResultList(entry.getKey(), Query.get(select(allColumns(), from(entry.getKey()), where(keyIn(entry.getValue().toArray(new String[entry.getValue().size()]))))));
-                entities.addAll(batchedEntities);
-            }
-            retVal = entities;
-        }
-        return retVal;
+        List<Class<?>> referencedClasses = new ArrayList<Class<?>>(tokens.length);
+        List<String> referencedKeys = new ArrayList<String>(tokens.length);
+        Map<Class<?>, Set<String>> distinctKeys = new LinkedHashMap<Class<?>, Set<String>>();
+        for (String tokenValue : tokens) {
+            if (tokenValue.length() == 0) {
+                continue;
+            }
+            String[] parts = tokenValue.split(MAPPED_ENTITY_VALUE_SEPARATOR);
+            Class<?> mappedEntityClass = Class.forName(parts[0]);
+            String mappedEntityKey = parts[1];
+            referencedClasses.add(mappedEntityClass);
+            referencedKeys.add(mappedEntityKey);
+            Set<String> keys = distinctKeys.get(mappedEntityClass);
+            if (keys == null) {
+                keys = new LinkedHashSet<String>();
+                distinctKeys.put(mappedEntityClass, keys);
+            }
+            keys.add(mappedEntityKey);
+        }
+        List<FutureTask<Map<String, ?>>> chunks = new ArrayList<FutureTask<Map<String, ?>>>();
+        List<Class<?>> chunkClasses = new ArrayList<Class<?>>();
+        for (Map.Entry<Class<?>, Set<String>> entry : distinctKeys.entrySet()) {
+            final ClassMetadata<?> mappedMetadata = getClassMetadata(entry.getKey());
+            if (mappedMetadata == null)
+                throw new IllegalArgumentException(String.format("type: %s not recognized as ColumnFamily", entry.getKey()));
+            List<String> keys = new ArrayList<String>(entry.getValue());
+            for (int from = 0; from < keys.size(); from += mappedCollectionChunkSize) {
+                final List<String> chunk = keys.subList(from, Math.min(keys.size(), from + mappedCollectionChunkSize));
+                chunks.add(new FutureTask<Map<String, ?>>(new Callable<Map<String, ?>>() {
+                    public Map<String, ?> call() throws Exception {
+                        long start = startTimer();
+                        Map<String, ?> entities = getByKeys(mappedMetadata, chunk);
+                        recordLatency(mappedMetadata.getTarget(), Operation.GET_RESULT_LIST, start);
+                        return entities;
+                    }
+                }));
+                chunkClasses.add(entry.getKey());
+            }
+        }
+        Map<Class<?>, Map<String, Object>> loaded = new HashMap<Class<?>, Map<String, Object>>();
+        for (Class<?> chunkClass : chunkClasses) {
+            loaded.put(chunkClass, new HashMap<String, Object>());
+        }
+        List<Map<String, ?>> results = runChunks(chunks);
+        for (int i = 0; i < results.size(); i++) {
+            loaded.get(chunkClasses.get(i)).putAll(results.get(i));
+        }
+        List<Object> entities = new ArrayList<Object>(referencedKeys.size());
+        Set<Object> returned = deduplicateMappedCollections ? Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>()) : null;
+        for (int i = 0; i < referencedKeys.size(); i++) {
+            Object entity = loaded.get(referencedClasses.get(i)).get(referencedKeys.get(i));
+            if (entity != null && (returned == null || returned.add(entity))) {
+                entities.add(entity);
+            }
+        }
+        return entities;
+    }
+
+    /**
+     * Private helper that runs the chunk reads of a mapped collection, in the calling thread if there is a single one.
+     * Otherwise they are queued to the factory executor and the calling thread runs every chunk no worker has
+     * started yet, so loads nested in a worker can never wait on chunks queued behind them
+     *
+     * @param chunks the chunk reads
+     * @return the entities of each chunk by key
+     */
+    private List<Map<String, ?>> runChunks(List<FutureTask<Map<String, ?>>> chunks) throws Exception {
+        if (chunks.size() > 1) {
+            ExecutorService executor = getExecutor();
+            for (FutureTask<Map<String, ?>> chunk : chunks) {
+                executor.execute(chunk);
+            }
+        }
+        List<Map<String, ?>> results = new ArrayList<Map<String, ?>>(chunks.size());
+        try {
+            for (FutureTask<Map<String, ?>> chunk : chunks) {
+                chunk.run(); //no op if a worker already ran or is running the chunk
+                results.add(chunk.get());
+            }
+        } catch (ExecutionException e) {
+            for (FutureTask<Map<String, ?>> chunk : chunks) {
+                chunk.cancel(false);
+            }
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+        return results;
+    }
+
+    /**
+     * Private helper that gets the executor scanning token ranges and loading the chunks of mapped collections, creating
+     * it on first use with daemon threads
+     */
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(Math.max(countParallelism, mappedCollectionParallelism), new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, String.format("firebrand-worker-%d", count.getAndIncrement()));
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
     }
 
     /**
@@ -23,16 +23,23 @@ import javassist.util.proxy.MethodHandler;
 import javassist.util.proxy.ProxyFactory;
 import javassist.util.proxy.ProxyObject;
 import me.prettyprint.cassandra.serializers.StringSerializer;
+import org.apache.cassandra.db.marshal.BytesType;
 import org.apache.cassandra.db.marshal.CounterColumnType;
+import org.apache.cassandra.db.marshal.UTF8Type;
 import org.apache.cassandra.thrift.CfDef;
 import org.apache.cassandra.thrift.ColumnDef;
+import org.apache.cassandra.thrift.IndexType;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.firebrandocm.dao.annotations.*;
 import org.firebrandocm.dao.events.Event;
+import org.firebrandocm.dao.planner.LookupIndex;
+import org.firebrandocm.dao.planner.OrderedIndex;
 import org.firebrandocm.dao.utils.ClassUtil;
 import org.firebrandocm.dao.utils.ObjectUtils;
+import org.firebrandocm.dao.widerow.ColumnNameCodec;
+import org.firebrandocm.dao.widerow.Rollup;
 
 import java.beans.IntrospectionException;
 import java.beans.PropertyDescriptor;
@@ -40,6 +47,8 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Holds metadata information about a class, initialized at startup time and reused
@@ -51,6 +60,17 @@ public class ClassMetadata<T> {
 
     private static Map<String, String> namedQueries = new HashMap<String, String>();
 
+    /**
+     * map of named query names and the number of metadata instances that registered them, so a query is only dropped
+     * once every factory mapping its class is destroyed
+     */
+    private static Map<String, Integer> namedQueryRegistrations = new HashMap<String, Integer>();
+
+    /**
+     * the named queries registered by this metadata
+     */
+    private Set<String> ownNamedQueries = new HashSet<String>();
+
     private Log log = LogFactory.getLog(getClass());
 
     /**
@@ -78,6 +98,11 @@ public class ClassMetadata<T> {
      */
     private Set<String> selectionProperties = new HashSet<String>();
 
+    /**
+     * the columns read when loading entities by key, computed on first use
+     */
+    private volatile String[] selectionColumns;
+
     /**
      * the set of all persistent properties that declared themselves as being part of secondary indexes
      */
@@ -143,11 +168,6 @@ public class ClassMetadata<T> {
      */
     private Set<String> lazyProperties = new HashSet<String>();
 
-    /**
-     * a proxy method handler
-     */
-    private MethodHandler proxyMethodHandler;
-
     /**
      * the proxy class
      */
@@ -166,13 +186,128 @@ public class ClassMetadata<T> {
     /**
      * map of events and the methods that act as listeners of those events
      */
-    private Map<Event.Entity, Set<Method>> entityEventListenersMap = new TreeMap<Event.Entity, Set<Method>>();
+    private Map<Event.Entity, Set<Method>> entityEventListenersMap = new EnumMap<Event.Entity, Set<Method>>(Event.Entity.class);
+
+    /**
+     * map of events and the compiled invokers for the methods that act as listeners of those events
+     */
+    private Map<Event.Entity, EntityListenerInvoker[]> entityEventInvokersMap = new EnumMap<Event.Entity, EntityListenerInvoker[]>(Event.Entity.class);
+
+    /**
+     * bitmask of the events this class listens to, indexed by event ordinal
+     */
+    private int entityEventMask;
 
     /**
      * the keyspace consistency level
      */
     private ConsistencyLevel consistencyLevel;
 
+    /**
+     * map of primitive properties and their generated accessors
+     */
+    private Map<String, PrimitiveAccessor> primitiveAccessors = new HashMap<String, PrimitiveAccessor>();
+
+    /**
+     * the metadata generated at compile time for the target class, null if the metadata was built through reflection
+     */
+    private GeneratedMetadata<T> generatedMetadata;
+
+    /**
+     * the keyspace used when the column family doesn't declare one
+     */
+    private String defaultKeySpace;
+
+    /**
+     * the column name type of a wide row column family, null if the class maps entities
+     */
+    private Class<?> wideRowNameClass;
+
+    /**
+     * the column value type of a wide row column family, null if the class maps entities
+     */
+    private Class<?> wideRowValueClass;
+
+    /**
+     * map of properties with an ordered index and the number of buckets of each index
+     */
+    private Map<String, Integer> orderedIndexes = new LinkedHashMap<String, Integer>();
+
+    /**
+     * the definition of the column family holding the ordered indexes, null if no property has one
+     */
+    private CfDef orderedIndexDefinition;
+
+    /**
+     * set of properties with a lookup index
+     */
+    private Set<String> lookupIndexes = new LinkedHashSet<String>();
+
+    /**
+     * the definition of the column family holding the lookup indexes, null if no property has one
+     */
+    private CfDef lookupIndexDefinition;
+
+    /**
+     * map of counter properties rolled up into time buckets and their granularities
+     */
+    private Map<String, Set<Granularity>> rollups = new LinkedHashMap<String, Set<Granularity>>();
+
+    /**
+     * the definition of the counter column family holding the rollups, null if no counter is rolled up
+     */
+    private CfDef rollupDefinition;
+
+    /**
+     * map of fetch group names and the properties they fetch
+     */
+    private Map<String, String[]> fetchGroups = new HashMap<String, String[]>();
+
+    /**
+     * map of view names and their definitions
+     */
+    private Map<String, ViewMetadata> views = new LinkedHashMap<String, ViewMetadata>();
+
+    /**
+     * the persistence factory managing the entity, loading the properties left out of partially loaded instances
+     */
+    private AbstractPersistenceFactory persistenceFactory;
+
+    /**
+     * set of properties partially loaded instances can load on first access, resolved on first use
+     */
+    private Set<String> onDemandProperties;
+
+    /**
+     * map of read methods and the properties partially loaded instances load when they are invoked
+     */
+    private Map<Method, String> onDemandReaders;
+
+    /**
+     * map of write methods and the properties they mark as loaded on partially loaded instances
+     */
+    private Map<Method, String> onDemandWriters;
+
+    /**
+     * the proxy class of partially loaded instances, null if the target class can't be proxied
+     */
+    private Class<?> partialProxyClass;
+
+    /**
+     * whether the properties that can be loaded on demand and the partial proxy class have been resolved
+     */
+    private volatile boolean partialLoadingInitialized;
+
+    /**
+     * map of dto types and the mappers decoding the rows of this column family into them
+     */
+    private final ConcurrentMap<Class<?>, DtoMapper<?>> dtoMappers = new ConcurrentHashMap<Class<?>, DtoMapper<?>>();
+
+    /**
+     * whether the listener methods and lazy accessors have been resolved through reflection
+     */
+    private volatile boolean methodsInitialized;
+
     /* Static Methods */
 
     /**
@@ -195,7 +330,9 @@ public class ClassMetadata<T> {
      * @return the query value
      */
     public static String getNullSafeNamedQuery(String name) {
-        return namedQueries.get(name);
+        synchronized (namedQueries) {
+            return namedQueries.get(name);
+        }
     }
 
     /* Constructors */
@@ -208,21 +345,47 @@ public class ClassMetadata<T> {
      * @param persistenceFactory the persistence factory managing the entity
      */
     public ClassMetadata(Class<T> target, AbstractPersistenceFactory persistenceFactory) throws ClassNotFoundException, IntrospectionException, InstantiationException, IllegalAccessException {
+        this(target, persistenceFactory, true);
+    }
+
+    /**
+     * Constructor.
+     * Extracts and caches metadata for persistent entity classes, from the metadata generated at compile time by the
+     * ClassMetadataProcessor if available and allowed or through reflection otherwise
+     *
+     * @param target               the target class
+     * @param persistenceFactory   the persistence factory managing the entity
+     * @param useGeneratedMetadata whether metadata generated at compile time may be used
+     */
+    public ClassMetadata(Class<T> target, AbstractPersistenceFactory persistenceFactory, boolean useGeneratedMetadata) throws ClassNotFoundException, IntrospectionException, InstantiationException, IllegalAccessException {
         log.debug(String.format("Initializing class metadata for %s", target));
         this.target = target;
+        this.defaultKeySpace = persistenceFactory.getDefaultKeySpace();
+        this.persistenceFactory = persistenceFactory;
         //If this is a top level structure that holds a column family
         if (target.isAnnotationPresent(ColumnFamily.class)) {
-            ColumnFamily columnFamilyAnnotation = target.getAnnotation(ColumnFamily.class);
-            consistencyLevel = columnFamilyAnnotation.consistencyLevel();
-            counterColumnFamily = columnFamilyAnnotation.defaultValidationClass() == CounterColumnType.class;
-            keySpace = StringUtils.defaultIfEmpty(columnFamilyAnnotation.keySpace(), persistenceFactory.getDefaultKeySpace());
-            columnFamily = ClassUtil.getColumnFamilyName(target);
-            initializeColumnFamilyDefinition();
-            processFields(target, "");
-            processMethods(target);
-            addClassTypePropertyIfSupported();
-            initializeProxyFactory(persistenceFactory);
-            initializeNamedQueries(target);
+            generatedMetadata = useGeneratedMetadata ? GeneratedMetadata.find(target) : null;
+            if (generatedMetadata != null) {
+                log.debug(String.format("using generated metadata for %s", target));
+                generatedMetadata.describe(this);
+                addClassTypePropertyIfSupported();
+            } else {
+                initializeColumnFamilyDefinition();
+                if (target.isAnnotationPresent(WideRow.class)) {
+                    WideRow wideRow = target.getAnnotation(WideRow.class);
+                    initializeWideRow(wideRow.nameClass(), wideRow.valueClass());
+                }
+                processFields(target, "");
+                processMethods(target);
+                initializeEntityEventInvokers();
+                initializeLazyAccessors();
+                methodsInitialized = true;
+                addClassTypePropertyIfSupported();
+                initializeProxyFactory();
+                initializeNamedQueries(target);
+                initializeFetchGroups(target);
+                initializeViews(target);
+            }
         } else {
             throw new IllegalArgumentException(target + " is not annotated with " + ColumnFamily.class);
         }
@@ -232,26 +395,44 @@ public class ClassMetadata<T> {
      * Private helper to initialize a column family definition
      */
     protected void initializeColumnFamilyDefinition() throws ClassNotFoundException {
+        ColumnFamily cfAnnotation = target.getAnnotation(ColumnFamily.class);
+        initializeColumnFamily(ClassUtil.getColumnFamilyName(target), cfAnnotation.keySpace(), cfAnnotation.consistencyLevel(),
+                cfAnnotation.comment(), cfAnnotation.compareWith().getName(), cfAnnotation.reversed(), cfAnnotation.keysCached(),
+                cfAnnotation.rowsCached(), cfAnnotation.readRepairChance(), cfAnnotation.gcGraceSeconds(),
+                cfAnnotation.defaultValidationClass().getName(), cfAnnotation.defaultKeyValidationClass().getName(),
+                cfAnnotation.minCompactionThreshold(), cfAnnotation.maxCompactionThreshold(), cfAnnotation.replicateOnWrite());
+    }
+
+    /**
+     * Initializes the column family settings and definition out of the @ColumnFamily values
+     */
+    void initializeColumnFamily(String name, String keySpace, ConsistencyLevel consistencyLevel, String comment, String compareWith,
+                                boolean reversed, long keysCached, long rowsCached, double readRepairChance, int gcGraceSeconds,
+                                String defaultValidationClass, String defaultKeyValidationClass, int minCompactionThreshold,
+                                int maxCompactionThreshold, boolean replicateOnWrite) {
+        this.consistencyLevel = consistencyLevel;
+        this.counterColumnFamily = CounterColumnType.class.getName().equals(defaultValidationClass);
+        this.keySpace = StringUtils.defaultIfEmpty(keySpace, defaultKeySpace);
+        this.columnFamily = name;
         columnFamilyDefinition = new CfDef();
         columnFamilyDefinition.setName(columnFamily);
         columnFamilyDefinition.setKeyspace(getKeySpace());
-        ColumnFamily cfAnnotation = target.getAnnotation(ColumnFamily.class);
-        String comparatorType = cfAnnotation.compareWith().getName();
-        if (cfAnnotation.reversed()) {
+        String comparatorType = compareWith;
+        if (reversed) {
             comparatorType = String.format("%s(reversed=true)", comparatorType);
         }
         columnFamilyDefinition.setComparator_type(comparatorType);
-        columnFamilyDefinition.setKey_cache_size(cfAnnotation.keysCached());
-        columnFamilyDefinition.setRow_cache_size(cfAnnotation.rowsCached());
-        columnFamilyDefinition.setComment(StringUtils.defaultIfEmpty(cfAnnotation.comment(), null));
-        columnFamilyDefinition.setComparator_type(cfAnnotation.compareWith().getName());
-        columnFamilyDefinition.setRead_repair_chance(cfAnnotation.readRepairChance());
-        columnFamilyDefinition.setGc_grace_seconds(cfAnnotation.gcGraceSeconds());
-        columnFamilyDefinition.setDefault_validation_class(StringUtils.defaultIfEmpty(cfAnnotation.defaultValidationClass().getName(), null));
-        columnFamilyDefinition.setKey_validation_class(StringUtils.defaultIfEmpty(cfAnnotation.defaultKeyValidationClass().getName(), null));
-        columnFamilyDefinition.setMin_compaction_threshold(cfAnnotation.minCompactionThreshold());
-        columnFamilyDefinition.setMax_compaction_threshold(cfAnnotation.maxCompactionThreshold());
-        columnFamilyDefinition.setReplicate_on_write(cfAnnotation.replicateOnWrite());
+        columnFamilyDefinition.setKey_cache_size(keysCached);
+        columnFamilyDefinition.setRow_cache_size(rowsCached);
+        columnFamilyDefinition.setComment(StringUtils.defaultIfEmpty(comment, null));
+        columnFamilyDefinition.setComparator_type(compareWith);
+        columnFamilyDefinition.setRead_repair_chance(readRepairChance);
+        columnFamilyDefinition.setGc_grace_seconds(gcGraceSeconds);
+        columnFamilyDefinition.setDefault_validation_class(StringUtils.defaultIfEmpty(defaultValidationClass, null));
+        columnFamilyDefinition.setKey_validation_class(StringUtils.defaultIfEmpty(defaultKeyValidationClass, null));
+        columnFamilyDefinition.setMin_compaction_threshold(minCompactionThreshold);
+        columnFamilyDefinition.setMax_compaction_threshold(maxCompactionThreshold);
+        columnFamilyDefinition.setReplicate_on_write(replicateOnWrite);
     }
 
     /**
@@ -285,10 +466,14 @@ public class ClassMetadata<T> {
             } else if (element.isAnnotationPresent(MappedCollection.class)) {
                 processMappedCollection(type, element, propertyName);
             } else if (element.isAnnotationPresent(CounterIncrease.class)) {
-                processCounterIncrease(type, element, propertyName, element.getAnnotation(CounterIncrease.class).value());
+                CounterIncrease counterIncrease = element.getAnnotation(CounterIncrease.class);
+                processCounterIncrease(type, element, propertyName, counterIncrease.value());
+                if (counterIncrease.rollups().length > 0) {
+                    addRollup(propertyName, counterIncrease.rollups());
+                }
             } else {
                 if (element.isAnnotationPresent(Key.class)) {
-                    keyProperty = propertyName;
+                    addKeyProperty(propertyName);
                 }
                 processSimpleColumn(element, propertyName);
             }
@@ -319,12 +504,22 @@ public class ClassMetadata<T> {
      * @param propertyName the property name
      */
     protected void processEmbeddedEntity(Class<?> type, String propertyName) throws ClassNotFoundException, IntrospectionException {
+        addEmbeddedEntity(propertyName, type);
+        processFields(type, propertyName);
+    }
+
+    /**
+     * Registers a property holding an embedded entity, whose own properties are registered separately
+     *
+     * @param propertyName the property name
+     * @param type         the embedded entity type
+     */
+    void addEmbeddedEntity(String propertyName, Class<?> type) {
         embeddedEntities.add(propertyName);
         propertiesTypesMap.put(propertyName, type);
         mutationProperties.add(propertyName);
         propertyContainerMap.put(propertyName, type);
         log.debug(String.format("added type %s and property %s", type.getName(), propertyName));
-        processFields(type, propertyName);
     }
 
     /**
@@ -336,28 +531,39 @@ public class ClassMetadata<T> {
      */
     protected void processMappedEntity(Class<?> type, Field element, String propertyName) throws ClassNotFoundException, IntrospectionException {
         Mapped mapped = element.getAnnotation(Mapped.class);
+        addMappedEntity(propertyName, type, mapped != null && mapped.lazy());
+    }
+
+    /**
+     * Registers a property holding a mapped entity
+     *
+     * @param propertyName the property name
+     * @param type         the mapped entity type
+     * @param lazy         if the mapped entity is loaded on demand
+     */
+    void addMappedEntity(String propertyName, Class<?> type, boolean lazy) {
         mappedEntities.add(propertyName);
         propertiesTypesMap.put(propertyName, type);
         mutationProperties.add(propertyName);
         propertyContainerMap.put(propertyName, type);
         mappedProperties.add(propertyName);
-        boolean lazy = mapped != null && mapped.lazy();
-        addProperty(null, propertyName, element.getType(), true, lazy, false, false);
+        addProperty(propertyName, type, true, lazy, false, false, null, null);
         log.debug(String.format("added mapped type %s and property %s", type.getName(), propertyName));
     }
 
     /**
      * Protected helper that caches information for a property for further persistence consideration
      *
-     * @param colAnnotation   the column annotation
      * @param propertyName    the property name
      * @param type            the property type
      * @param indexed         whether the property should be indexed in the data store
      * @param lazy            if access to this property should be loaded on demand
      * @param counter         if this property represents a counter
      * @param counterIncrease if this property represents a value for a counter arithmetic operation
+     * @param validationClass the column validation class name, null for the @Column default
+     * @param indexType       the column index type, null for the @Column default
      */
-    protected void addProperty(Column colAnnotation, String propertyName, Class<?> type, boolean indexed, boolean lazy, boolean counter, boolean counterIncrease) throws ClassNotFoundException, IntrospectionException {
+    protected void addProperty(String propertyName, Class<?> type, boolean indexed, boolean lazy, boolean counter, boolean counterIncrease, String validationClass, IndexType indexType) {
         propertiesTypesMap.put(propertyName, type);
         mutationProperties.add(propertyName);
         if (indexed) {
@@ -365,8 +571,6 @@ public class ClassMetadata<T> {
             log.debug(String.format("added indexed property %s", propertyName));
         }
         if (lazy) {
-            PropertyDescriptor descriptor = new PropertyDescriptor(propertyName, target);
-            lazyAccesors.put(descriptor.getReadMethod(), propertyName);
             lazyProperties.add(propertyName);
         }
         if (counter) {
@@ -374,7 +578,7 @@ public class ClassMetadata<T> {
         }
         if (!counterIncrease) {
             selectionProperties.add(propertyName);
-            addColumnToColumnFamilyDefinition(colAnnotation, propertyName, indexed);
+            addColumnToColumnFamilyDefinition(propertyName, indexed, validationClass, indexType);
         }
         log.debug(String.format("added property %s", propertyName));
     }
@@ -382,23 +586,20 @@ public class ClassMetadata<T> {
     /**
      * Private helper that adds a c olumn to a column family definition
      *
-     * @param colAnnotation the column annotation
-     * @param property      the property
-     * @param indexed       if this property should be indexed in the datastore
+     * @param property        the property
+     * @param indexed         if this property should be indexed in the datastore
+     * @param validationClass the column validation class name, null for the @Column default
+     * @param indexType       the column index type, null for the @Column default
      */
-    private void addColumnToColumnFamilyDefinition(Column colAnnotation, String property, boolean indexed) throws ClassNotFoundException {
+    private void addColumnToColumnFamilyDefinition(String property, boolean indexed, String validationClass, IndexType indexType) {
         if (!property.equals(keyProperty)) {
-            boolean defaults = colAnnotation == null;
             ColumnDef columnDef = new ColumnDef();
             columnDef.setName(StringSerializer.get().toByteBuffer(property));
-            columnDef.setValidation_class(defaults ? org.firebrandocm.dao.annotations.Column.DEFAULTS.VALIDATION_CLASS.getName() : colAnnotation.validationClass().getName());
+            columnDef.setValidation_class(validationClass != null ? validationClass : org.firebrandocm.dao.annotations.Column.DEFAULTS.VALIDATION_CLASS.getName());
             indexed = indexed || isMappedContainer(property);
-            if (!indexed) {
-                indexed = defaults ? org.firebrandocm.dao.annotations.Column.DEFAULTS.INDEXED : colAnnotation.indexed();
-            }
             if (indexed) {
                 columnDef.setIndex_name(String.format("%s_%s_%s", keySpace, columnFamily, property));
-                columnDef.setIndex_type(defaults ? org.firebrandocm.dao.annotations.Column.DEFAULTS.INDEX_TYPE : colAnnotation.indexType());
+                columnDef.setIndex_type(indexType != null ? indexType : org.firebrandocm.dao.annotations.Column.DEFAULTS.INDEX_TYPE);
             }
             columnFamilyDefinition.addToColumn_metadata(columnDef);
         }
@@ -425,13 +626,23 @@ public class ClassMetadata<T> {
      */
     private void processMappedCollection(Class<?> type, Field element, String propertyName) throws ClassNotFoundException, IntrospectionException {
         MappedCollection mappedCollection = element.getAnnotation(MappedCollection.class);
+        addMappedCollection(propertyName, type, mappedCollection != null && mappedCollection.lazy());
+    }
+
+    /**
+     * Registers a property holding a mapped collection
+     *
+     * @param propertyName the property name
+     * @param type         the collection type
+     * @param lazy         if the collection is loaded on demand
+     */
+    void addMappedCollection(String propertyName, Class<?> type, boolean lazy) {
         mappedCollections.add(propertyName);
         propertiesTypesMap.put(propertyName, type);
         mutationProperties.add(propertyName);
         propertyContainerMap.put(propertyName, type);
         mappedProperties.add(propertyName);
-        boolean lazy = mappedCollection != null && mappedCollection.lazy();
-        addProperty(null, propertyName, element.getType(), true, lazy, false, false);
+        addProperty(propertyName, type, true, lazy, false, false, null, null);
         log.debug(String.format("added mapped type %s and property %s", type.getName(), propertyName));
     }
 
@@ -445,11 +656,50 @@ public class ClassMetadata<T> {
      * @throws IntrospectionException
      */
     private void processCounterIncrease(Class<?> type, Field element, String propertyName, String targetCounter) throws ClassNotFoundException, IntrospectionException {
+        addCounterIncrease(propertyName, type, targetCounter);
+        addPrimitiveAccessorIfSupported(propertyName, element.getType(), false);
+    }
+
+    /**
+     * Registers a property holding the value a counter is increased by
+     *
+     * @param propertyName  the property name
+     * @param type          the property type
+     * @param targetCounter the counter property increased
+     */
+    void addCounterIncrease(String propertyName, Class<?> type, String targetCounter) {
         counterPropertiesIncrease.put(propertyName, targetCounter);
-        addProperty(null, propertyName, element.getType(), true, false, false, true);
+        addProperty(propertyName, type, true, false, false, true, null, null);
         log.debug(String.format("added processCounterIncrease type %s and property %s", type.getName(), propertyName));
     }
 
+    /**
+     * Registers the time buckets the increases of a counter increase property are rolled up into, adding the rollup
+     * column family to the schema along the entity one
+     *
+     * @param propertyName  the counter increase property name
+     * @param granularities the bucket granularities
+     */
+    void addRollup(String propertyName, Granularity... granularities) {
+        String targetCounter = counterPropertiesIncrease.get(propertyName);
+        if (targetCounter == null) {
+            throw new IllegalArgumentException(String.format("%s is not a counter increase property of %s", propertyName, target));
+        }
+        Set<Granularity> counterRollups = rollups.get(targetCounter);
+        if (counterRollups == null) {
+            counterRollups = EnumSet.noneOf(Granularity.class);
+            rollups.put(targetCounter, counterRollups);
+        }
+        counterRollups.addAll(Arrays.asList(granularities));
+        if (rollupDefinition == null) {
+            rollupDefinition = new CfDef(getKeySpace(), getRollupColumnFamily());
+            rollupDefinition.setComparator_type(UTF8Type.class.getName());
+            rollupDefinition.setKey_validation_class(UTF8Type.class.getName());
+            rollupDefinition.setDefault_validation_class(CounterColumnType.class.getName());
+        }
+        log.debug(String.format("added rollups %s of counter %s", counterRollups, targetCounter));
+    }
+
     /**
      * Processes metadata for a simple column. Helper method
      *
@@ -457,19 +707,129 @@ public class ClassMetadata<T> {
      * @param propertyName the property name
      */
     protected void processSimpleColumn(Field element, String propertyName) throws ClassNotFoundException, IntrospectionException {
-        propertiesTypesMap.put(propertyName, element.getType());
-        mutationProperties.add(propertyName);
-        propertyContainerMap.put(propertyName, element.getDeclaringClass());
-        boolean indexed = false;
-        if (element.isAnnotationPresent(Column.class)) {
-            Column columnAnnotation = element.getAnnotation(Column.class);
-            indexed = columnAnnotation != null && columnAnnotation.indexed();
-        }
-        org.firebrandocm.dao.annotations.Column colAnnotation = element.getAnnotation(org.firebrandocm.dao.annotations.Column.class);
+        Column colAnnotation = element.getAnnotation(Column.class);
+        boolean indexed = colAnnotation != null && colAnnotation.indexed();
         boolean lazy = colAnnotation != null && colAnnotation.lazy();
         boolean counter = colAnnotation != null && colAnnotation.counter();
-        addProperty(colAnnotation, propertyName, element.getType(), indexed, lazy, counter, false);
-        log.debug(String.format("added property %s", propertyName));
+        addSimpleColumn(propertyName, element.getType(), element.getDeclaringClass(), indexed, lazy, counter,
+                colAnnotation != null ? colAnnotation.validationClass().getName() : null, colAnnotation != null ? colAnnotation.indexType() : null);
+        addPrimitiveAccessorIfSupported(propertyName, element.getType(), lazy);
+        if (colAnnotation != null && colAnnotation.orderedIndex()) {
+            addOrderedIndex(propertyName, colAnnotation.orderedIndexBuckets());
+        }
+        if (colAnnotation != null && colAnnotation.lookupIndex()) {
+            addLookupIndex(propertyName);
+        }
+    }
+
+    /**
+     * Registers an ordered index over a property already registered as a column, adding the index column family to
+     * the schema along the entity one
+     *
+     * @param propertyName the property name
+     * @param buckets      the number of index rows the entries are spread over
+     */
+    void addOrderedIndex(String propertyName, int buckets) {
+        Class<?> type = propertiesTypesMap.get(propertyName);
+        if (buckets < 1) {
+            throw new IllegalArgumentException(String.format("the ordered index of %s needs at least 1 bucket", propertyName));
+        }
+        if (type == null || counterProperties.contains(propertyName) || propertyName.equals(keyProperty)) {
+            throw new IllegalArgumentException(String.format("%s is not a column that can have an ordered index", propertyName));
+        }
+        try {
+            ColumnNameCodec.forType(type);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(String.format("ordered indexes don't support the type of %s: %s", propertyName, type), e);
+        }
+        orderedIndexes.put(propertyName, buckets);
+        if (orderedIndexDefinition == null) {
+            orderedIndexDefinition = new CfDef(getKeySpace(), getOrderedIndexColumnFamily());
+            orderedIndexDefinition.setComparator_type(UTF8Type.class.getName());
+            orderedIndexDefinition.setKey_validation_class(UTF8Type.class.getName());
+            orderedIndexDefinition.setDefault_validation_class(BytesType.class.getName());
+        }
+        log.debug(String.format("added ordered index on property %s with %d buckets", propertyName, buckets));
+    }
+
+    /**
+     * Registers a lookup index over a property already registered as a column, adding the lookup column family to
+     * the schema along the entity one
+     *
+     * @param propertyName the property name
+     */
+    void addLookupIndex(String propertyName) {
+        Class<?> type = propertiesTypesMap.get(propertyName);
+        if (type == null || counterProperties.contains(propertyName) || propertyName.equals(keyProperty)) {
+            throw new IllegalArgumentException(String.format("%s is not a column that can have a lookup index", propertyName));
+        }
+        lookupIndexes.add(propertyName);
+        if (lookupIndexDefinition == null) {
+            lookupIndexDefinition = new CfDef(getKeySpace(), getLookupIndexColumnFamily());
+            lookupIndexDefinition.setComparator_type(UTF8Type.class.getName());
+            lookupIndexDefinition.setKey_validation_class(UTF8Type.class.getName());
+            lookupIndexDefinition.setDefault_validation_class(BytesType.class.getName());
+        }
+        log.debug(String.format("added lookup index on property %s", propertyName));
+    }
+
+    /**
+     * Registers a property mapped to a column
+     *
+     * @param propertyName    the property name
+     * @param type            the property type
+     * @param container       the class declaring the property
+     * @param indexed         whether the property should be indexed in the data store
+     * @param lazy            if access to this property should be loaded on demand
+     * @param counter         if this property represents a counter
+     * @param validationClass the column validation class name, null if the property has no @Column annotation
+     * @param indexType       the column index type, null if the property has no @Column annotation
+     */
+    void addSimpleColumn(String propertyName, Class<?> type, Class<?> container, boolean indexed, boolean lazy, boolean counter, String validationClass, IndexType indexType) {
+        propertiesTypesMap.put(propertyName, type);
+        mutationProperties.add(propertyName);
+        propertyContainerMap.put(propertyName, container);
+        addProperty(propertyName, type, indexed, lazy, counter, false, validationClass, indexType);
+    }
+
+    /**
+     * Registers the property holding the key, which is registered as a simple column as well
+     *
+     * @param propertyName the property name
+     */
+    void addKeyProperty(String propertyName) {
+        keyProperty = propertyName;
+    }
+
+    /**
+     * Registers the accessor of a primitive property
+     *
+     * @param accessor the accessor
+     */
+    void addPrimitiveAccessor(PrimitiveAccessor accessor) {
+        primitiveAccessors.put(accessor.getProperty(), accessor);
+        log.debug(String.format("added primitive accessor for property %s", accessor.getProperty()));
+    }
+
+    /**
+     * Generates an accessor for top level primitive properties so their values can be read and written without boxing.
+     * Lazy properties are excluded since their getter must go through the proxy
+     *
+     * @param propertyName the property name
+     * @param type         the property type
+     * @param lazy         if the property is loaded on demand
+     */
+    private void addPrimitiveAccessorIfSupported(String propertyName, Class<?> type, boolean lazy) {
+        if (!lazy && PrimitiveAccessor.isSupported(type) && !propertyName.contains(".")) {
+            try {
+                PrimitiveAccessor accessor = PrimitiveAccessor.create(target, new PropertyDescriptor(propertyName, target));
+                if (accessor != null) {
+                    addPrimitiveAccessor(accessor);
+                }
+            } catch (IntrospectionException e) {
+                log.debug(String.format("no accessor methods for primitive property %s", propertyName));
+            }
+        }
     }
 
     /**
@@ -502,23 +862,83 @@ public class ClassMetadata<T> {
         }
     }
 
+    /**
+     * Private Helper.
+     * Compiles an invoker for each listener method and computes the mask of events this class listens to
+     */
+    private void initializeEntityEventInvokers() {
+        for (Map.Entry<Event.Entity, Set<Method>> entry : entityEventListenersMap.entrySet()) {
+            for (Method method : entry.getValue()) {
+                addEntityEventInvoker(entry.getKey(), EntityListenerInvoker.create(target, method));
+            }
+        }
+    }
+
+    /**
+     * Registers the invoker of a listener method for an event
+     *
+     * @param event   the event
+     * @param invoker the invoker
+     */
+    void addEntityEventInvoker(Event.Entity event, EntityListenerInvoker invoker) {
+        EntityListenerInvoker[] invokers = entityEventInvokersMap.get(event);
+        if (invokers == null) {
+            invokers = new EntityListenerInvoker[]{invoker};
+        } else {
+            invokers = Arrays.copyOf(invokers, invokers.length + 1);
+            invokers[invokers.length - 1] = invoker;
+        }
+        entityEventInvokersMap.put(event, invokers);
+        entityEventMask |= 1 << event.ordinal();
+    }
+
+    /**
+     * Private Helper.
+     * Resolves the read method of each lazy property so the proxy can intercept it
+     */
+    private void initializeLazyAccessors() throws IntrospectionException {
+        for (String property : lazyProperties) {
+            PropertyDescriptor descriptor = new PropertyDescriptor(property, target);
+            lazyAccesors.put(descriptor.getReadMethod(), property);
+        }
+    }
+
+    /**
+     * Private Helper.
+     * Resolves the listener methods and lazy accessors on first use when the metadata was generated at compile time,
+     * as the generated metadata registers invokers and property names only
+     */
+    private void initializeMethodsIfNecessary() {
+        if (!methodsInitialized) {
+            synchronized (this) {
+                if (!methodsInitialized) {
+                    processMethods(target);
+                    try {
+                        initializeLazyAccessors();
+                    } catch (IntrospectionException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    methodsInitialized = true;
+                }
+            }
+        }
+    }
+
     /**
      * Private Helper.
      * Adds an internal class property to obtain class information from each inserted row
      */
-    private void addClassTypePropertyIfSupported() throws ClassNotFoundException, IntrospectionException {
-        if (!counterColumnFamily) {
-            addProperty(null, PersistenceFactory.CLASS_PROPERTY, String.class, true, false, false, false);
+    private void addClassTypePropertyIfSupported() {
+        if (!counterColumnFamily && !isWideRow()) {
+            addProperty(PersistenceFactory.CLASS_PROPERTY, String.class, true, false, false, false, null, null);
         }
     }
 
     /**
      * Initializes a class proxy factory that enhances instances wrapping calls to lazy and other methods that need to be
      * audited around invokations
-     *
-     * @param persistenceFactory the persistence factory associated with this context
      */
-    private void initializeProxyFactory(final AbstractPersistenceFactory persistenceFactory) throws IllegalAccessException, InstantiationException {
+    private void initializeProxyFactory() throws IllegalAccessException, InstantiationException {
         ProxyFactory proxyFactory = new ProxyFactory();
         proxyFactory.setSuperclass(target);
         proxyFactory.setFilter(new MethodFilter() {
@@ -527,13 +947,6 @@ public class ClassMetadata<T> {
             }
         });
         proxyClass = proxyFactory.createClass();
-        proxyMethodHandler = new MethodHandler() {
-            public Object invoke(Object self, Method m, Method proceed, Object[] args) throws Throwable {
-                log.debug("lazy loading: " + m.getName());
-                persistenceFactory.loadLazyPropertyIfNecessary(ClassMetadata.this, self, proceed, m, args);
-                return proceed.invoke(self, args);  // execute the original method.
-            }
-        };
     }
 
     /**
@@ -543,7 +956,7 @@ public class ClassMetadata<T> {
      * @return if it's the accessor of a lazy property
      */
     public boolean isLazyAccessor(Method method) {
-        return lazyAccesors.containsKey(method);
+        return getLazyProperty(method) != null;
     }
 
     /**
@@ -564,11 +977,235 @@ public class ClassMetadata<T> {
             queries.add(target.getAnnotation(NamedQuery.class));
         }
         for (NamedQuery query : queries) {
-            if (namedQueries.containsKey(query.name())) {
-                throw new IllegalStateException(String.format("Duplicated named query name: %s", query.name()));
+            addNamedQuery(query.name(), query.query());
+        }
+    }
+
+    /**
+     * Registers a named query. Named queries are shared by all factories, so another factory mapping the same class may
+     * register the same query again
+     *
+     * @param name  the query name
+     * @param query the query
+     */
+    void addNamedQuery(String name, String query) {
+        synchronized (namedQueries) {
+            if (ownNamedQueries.contains(name) || (namedQueries.containsKey(name) && !namedQueries.get(name).equals(query))) {
+                throw new IllegalStateException(String.format("Duplicated named query name: %s", name));
             }
-            namedQueries.put(query.name(), query.query());
+            namedQueries.put(name, query);
+            Integer registrations = namedQueryRegistrations.get(name);
+            namedQueryRegistrations.put(name, registrations != null ? registrations + 1 : 1);
+            ownNamedQueries.add(name);
+        }
+    }
+
+    /**
+     * Registers the column name and value types of a wide row column family, which must keep the UTF8 comparator its
+     * encoded column names are ordered by
+     *
+     * @param nameClass  the column name type
+     * @param valueClass the column value type
+     */
+    void initializeWideRow(Class<?> nameClass, Class<?> valueClass) {
+        if (!UTF8Type.class.getName().equals(columnFamilyDefinition.getComparator_type())) {
+            throw new IllegalArgumentException(String.format("the wide row %s must be compared with %s instead of %s", target,
+                    UTF8Type.class.getName(), columnFamilyDefinition.getComparator_type()));
         }
+        ColumnNameCodec.forType(nameClass);
+        this.wideRowNameClass = nameClass;
+        this.wideRowValueClass = valueClass;
+    }
+
+    /**
+     * Private Helper. Scans for fetch group annotations and registers the fetch groups of the entity
+     *
+     * @param target the target class
+     */
+    private void initializeFetchGroups(Class<T> target) {
+        List<FetchGroup> groups = new ArrayList<FetchGroup>();
+        if (target.isAnnotationPresent(FetchGroups.class)) {
+            groups.addAll(Arrays.asList(target.getAnnotation(FetchGroups.class).value()));
+        }
+        if (target.isAnnotationPresent(FetchGroup.class)) {
+            groups.add(target.getAnnotation(FetchGroup.class));
+        }
+        for (FetchGroup group : groups) {
+            addFetchGroup(group.name(), group.properties());
+        }
+    }
+
+    /**
+     * Registers a fetch group
+     *
+     * @param name       the fetch group name
+     * @param properties the properties fetched by the group
+     */
+    void addFetchGroup(String name, String... properties) {
+        if (fetchGroups.containsKey(name)) {
+            throw new IllegalStateException(String.format("Duplicated fetch group name: %s in %s", name, target));
+        }
+        for (String property : properties) {
+            checkProjectedProperty(property);
+        }
+        fetchGroups.put(name, properties.clone());
+    }
+
+    /**
+     * Private Helper. Scans for view annotations and registers the views of the entity
+     *
+     * @param target the target class
+     */
+    private void initializeViews(Class<T> target) {
+        List<View> declared = new ArrayList<View>();
+        if (target.isAnnotationPresent(Views.class)) {
+            declared.addAll(Arrays.asList(target.getAnnotation(Views.class).value()));
+        }
+        if (target.isAnnotationPresent(View.class)) {
+            declared.add(target.getAnnotation(View.class));
+        }
+        for (View view : declared) {
+            addView(view.name(), view.key(), view.columns());
+        }
+    }
+
+    /**
+     * Registers a view, adding its column family to the schema along the entity one.
+     * View rows hold the entity key in a column named after the key property
+     *
+     * @param name    the view name, also the name of its column family
+     * @param key     the properties making the row key of the view
+     * @param columns the properties copied into the view
+     */
+    void addView(String name, String[] key, String[] columns) {
+        if (!name.matches("\\w+") || name.equals(columnFamily)) {
+            throw new IllegalArgumentException(String.format("%s is not a valid view column family name for %s", name, target));
+        }
+        if (views.containsKey(name)) {
+            throw new IllegalStateException(String.format("Duplicated view name: %s in %s", name, target));
+        }
+        if (key.length == 0) {
+            throw new IllegalArgumentException(String.format("view %s of %s declares no key properties", name, target));
+        }
+        CfDef definition = new CfDef(getKeySpace(), name);
+        definition.setComparator_type(UTF8Type.class.getName());
+        definition.setKey_validation_class(UTF8Type.class.getName());
+        definition.setDefault_validation_class(BytesType.class.getName());
+        ColumnDef keyColumn = new ColumnDef();
+        keyColumn.setName(StringSerializer.get().toByteBuffer(keyProperty));
+        keyColumn.setValidation_class(UTF8Type.class.getName());
+        definition.addToColumn_metadata(keyColumn);
+        for (String property : key) {
+            checkViewProperty(name, property);
+        }
+        for (String property : columns) {
+            checkViewProperty(name, property);
+            ColumnDef columnDef = new ColumnDef();
+            columnDef.setName(StringSerializer.get().toByteBuffer(property));
+            columnDef.setValidation_class(getColumnValidationClass(property));
+            definition.addToColumn_metadata(columnDef);
+        }
+        views.put(name, new ViewMetadata(name, key, columns, definition));
+        log.debug(String.format("added view %s keyed by %s", name, Arrays.toString(key)));
+    }
+
+    /**
+     * Private Helper. Checks a view property is a plain column of this class
+     *
+     * @param view     the view name
+     * @param property the property
+     */
+    private void checkViewProperty(String view, String property) {
+        if (property.equals(keyProperty) || !selectionProperties.contains(property) || isContainer(property)
+                || mappedProperties.contains(property) || counterProperties.contains(property)) {
+            throw new IllegalArgumentException(String.format("%s of %s can't be part of view %s", property, target, view));
+        }
+    }
+
+    /**
+     * Private Helper. Resolves the validation class of a column from the column family definition
+     *
+     * @param property the property
+     * @return the validation class name
+     */
+    private String getColumnValidationClass(String property) {
+        for (ColumnDef columnDef : columnFamilyDefinition.getColumn_metadata()) {
+            if (property.equals(StringSerializer.get().fromByteBuffer(columnDef.bufferForName().duplicate()))) {
+                return columnDef.getValidation_class();
+            }
+        }
+        return org.firebrandocm.dao.annotations.Column.DEFAULTS.VALIDATION_CLASS.getName();
+    }
+
+    /**
+     * Private Helper. Checks a projected property is persisted in a column of this class
+     *
+     * @param property the property
+     */
+    private void checkProjectedProperty(String property) {
+        if (!property.equals(keyProperty) && !selectionProperties.contains(property)) {
+            throw new IllegalArgumentException(String.format("%s is not a persistent property of %s", property, target));
+        }
+    }
+
+    /**
+     * Private Helper.
+     * Resolves the properties partially loaded instances can load on first access, those stored in their own column and
+     * exposing overridable accessors, and creates the proxy class intercepting those accessors
+     */
+    private void initializePartialLoadingIfNecessary() {
+        if (!partialLoadingInitialized) {
+            synchronized (this) {
+                if (!partialLoadingInitialized) {
+                    Set<String> properties = new HashSet<String>();
+                    final Map<Method, String> readers = new HashMap<Method, String>();
+                    final Map<Method, String> writers = new HashMap<Method, String>();
+                    if (!Modifier.isFinal(target.getModifiers())) {
+                        for (String property : selectionProperties) {
+                            if (!property.equals(keyProperty) && !property.equals(PersistenceFactory.CLASS_PROPERTY) && !property.contains(".")) {
+                                PropertyDescriptor descriptor;
+                                try {
+                                    descriptor = new PropertyDescriptor(property, target);
+                                } catch (IntrospectionException e) {
+                                    throw new IllegalStateException(e);
+                                }
+                                if (isOverridable(descriptor.getReadMethod()) && isOverridable(descriptor.getWriteMethod())) {
+                                    properties.add(property);
+                                    readers.put(descriptor.getReadMethod(), property);
+                                    writers.put(descriptor.getWriteMethod(), property);
+                                }
+                            }
+                        }
+                    }
+                    if (!properties.isEmpty()) {
+                        ProxyFactory proxyFactory = new ProxyFactory();
+                        proxyFactory.setSuperclass(target);
+                        proxyFactory.setFilter(new MethodFilter() {
+                            public boolean isHandled(Method m) {
+                                return readers.containsKey(m) || writers.containsKey(m);
+                            }
+                        });
+                        partialProxyClass = proxyFactory.createClass();
+                    }
+                    onDemandProperties = properties;
+                    onDemandReaders = readers;
+                    onDemandWriters = writers;
+                    partialLoadingInitialized = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Private Helper. Informs whether a proxy can override an accessor
+     *
+     * @param method the accessor
+     * @return true if the method exists and is public or protected, non final and non static
+     */
+    private boolean isOverridable(Method method) {
+        int modifiers = method != null ? method.getModifiers() : 0;
+        return method != null && (Modifier.isPublic(modifiers) || Modifier.isProtected(modifiers)) && !Modifier.isFinal(modifiers)
+                && !Modifier.isStatic(modifiers);
     }
 
     /* Getters & Setters */
@@ -587,6 +1224,87 @@ public class ClassMetadata<T> {
         return columnFamilyDefinition;
     }
 
+    /**
+     * @return the definition of the column family holding the ordered indexes, null if no property has one
+     */
+    public CfDef getOrderedIndexDefinition() {
+        return orderedIndexDefinition;
+    }
+
+    /**
+     * @return the column family holding the ordered indexes of this column family
+     */
+    public String getOrderedIndexColumnFamily() {
+        return columnFamily + OrderedIndex.COLUMN_FAMILY_SUFFIX;
+    }
+
+    /**
+     * @return the properties with an ordered index and the number of buckets of each index
+     */
+    public Map<String, Integer> getOrderedIndexes() {
+        return Collections.unmodifiableMap(orderedIndexes);
+    }
+
+    /**
+     * @param property the property
+     * @return true if persist and remove maintain an ordered index over the property
+     */
+    public boolean isOrderedIndex(String property) {
+        return orderedIndexes.containsKey(property);
+    }
+
+    /**
+     * @return the definition of the column family holding the lookup indexes, null if no property has one
+     */
+    public CfDef getLookupIndexDefinition() {
+        return lookupIndexDefinition;
+    }
+
+    /**
+     * @return the column family holding the lookup indexes of this column family
+     */
+    public String getLookupIndexColumnFamily() {
+        return columnFamily + LookupIndex.COLUMN_FAMILY_SUFFIX;
+    }
+
+    /**
+     * @return the properties with a lookup index
+     */
+    public Set<String> getLookupIndexes() {
+        return Collections.unmodifiableSet(lookupIndexes);
+    }
+
+    /**
+     * @param property the property
+     * @return true if persist and remove maintain a lookup index over the property
+     */
+    public boolean isLookupIndex(String property) {
+        return lookupIndexes.contains(property);
+    }
+
+    /**
+     * @return the definition of the column family holding the rollups, null if no counter is rolled up
+     */
+    public CfDef getRollupDefinition() {
+        return rollupDefinition;
+    }
+
+    /**
+     * @return the column family holding the rollups of the counters of this column family
+     */
+    public String getRollupColumnFamily() {
+        return columnFamily + Rollup.COLUMN_FAMILY_SUFFIX;
+    }
+
+    /**
+     * @param counterProperty the counter property
+     * @return the granularities the counter is rolled up into, empty if it has no rollups
+     */
+    public Set<Granularity> getRollups(String counterProperty) {
+        Set<Granularity> counterRollups = rollups.get(counterProperty);
+        return counterRollups != null ? Collections.unmodifiableSet(counterRollups) : Collections.<Granularity>emptySet();
+    }
+
     /**
      * @return the set of properties that declares themselves as being part of secondary indexes
      */
@@ -643,6 +1361,120 @@ public class ClassMetadata<T> {
         return selectionProperties;
     }
 
+    /**
+     * The columns read when loading entities by key, the selection properties not loaded on demand.
+     * Lazy columns are still read for counter column families since their rows have no class column telling they exist
+     *
+     * @return the column names
+     */
+    public String[] getSelectionColumns() {
+        String[] columns = selectionColumns;
+        if (columns == null) {
+            List<String> names = new ArrayList<String>(selectionProperties.size());
+            for (String property : selectionProperties) {
+                if (!property.equals(keyProperty) && (counterColumnFamily || !lazyProperties.contains(property))) {
+                    names.add(property);
+                }
+            }
+            columns = names.toArray(new String[names.size()]);
+            selectionColumns = columns;
+        }
+        return columns;
+    }
+
+    /**
+     * Gets the properties fetched by a fetch group
+     *
+     * @param name the fetch group name
+     * @return the properties
+     */
+    public String[] getFetchGroup(String name) {
+        String[] properties = fetchGroups.get(name);
+        if (properties == null) {
+            throw new IllegalArgumentException(String.format("fetch group %s is not declared on %s", name, target));
+        }
+        return properties.clone();
+    }
+
+    /**
+     * @return the views of this class
+     */
+    public Collection<ViewMetadata> getViews() {
+        return Collections.unmodifiableCollection(views.values());
+    }
+
+    /**
+     * Gets a view
+     *
+     * @param name the view name
+     * @return the view
+     */
+    public ViewMetadata getView(String name) {
+        ViewMetadata view = views.get(name);
+        if (view == null) {
+            throw new IllegalArgumentException(String.format("view %s is not declared on %s", name, target));
+        }
+        return view;
+    }
+
+    /**
+     * Gets the columns read when loading entities through a projection: the projected properties along with the eager
+     * columns partially loaded instances can't load on first access, such as the embedded properties
+     *
+     * @param projection the projection
+     * @return the column names
+     */
+    public String[] getProjectionColumns(Projection projection) {
+        initializePartialLoadingIfNecessary();
+        String[] properties = projection.getFetchGroup() != null ? getFetchGroup(projection.getFetchGroup()) : projection.getProperties();
+        Set<String> columns = new LinkedHashSet<String>();
+        for (String property : properties) {
+            checkProjectedProperty(property);
+            if (!property.equals(keyProperty)) {
+                columns.add(property);
+            }
+        }
+        for (String column : getSelectionColumns()) {
+            if (!onDemandProperties.contains(column)) {
+                columns.add(column);
+            }
+        }
+        return columns.toArray(new String[columns.size()]);
+    }
+
+    /**
+     * Gets the eager columns partially loaded instances can't load on first access that are missing from a set of
+     * columns already read, such as the embedded properties left out of a view
+     *
+     * @param columns the columns already read
+     * @return the column names
+     */
+    public String[] getEagerColumns(String[] columns) {
+        initializePartialLoadingIfNecessary();
+        Set<String> read = new HashSet<String>(Arrays.asList(columns));
+        List<String> eager = new ArrayList<String>();
+        for (String column : getSelectionColumns()) {
+            if (!onDemandProperties.contains(column) && !read.contains(column)) {
+                eager.add(column);
+            }
+        }
+        return eager.toArray(new String[eager.size()]);
+    }
+
+    /**
+     * @return the column name type of a wide row column family, null if the class maps entities
+     */
+    public Class<?> getWideRowNameClass() {
+        return wideRowNameClass;
+    }
+
+    /**
+     * @return the column value type of a wide row column family, null if the class maps entities
+     */
+    public Class<?> getWideRowValueClass() {
+        return wideRowValueClass;
+    }
+
     /**
      * @return the target
      */
@@ -650,6 +1482,13 @@ public class ClassMetadata<T> {
         return target;
     }
 
+    /**
+     * @return true if the rows of the column family are mapped as wide rows of typed columns
+     */
+    public boolean isWideRow() {
+        return wideRowNameClass != null;
+    }
+
     /**
      * @return true if the metadata is associated with a counter column family
      */
@@ -678,6 +1517,13 @@ public class ClassMetadata<T> {
      */
     @SuppressWarnings("unchecked")
     public T createProxy() {
+        if (generatedMetadata != null) {
+            T instance = generatedMetadata.newInstance();
+            if (instance instanceof EnhancedEntity) {
+                ((EnhancedEntity) instance).setLazyPropertyLoader(new LazyLoadHandler());
+            }
+            return instance;
+        }
         T instance;
         try {
             instance = (T) proxyClass.newInstance();
@@ -686,15 +1532,75 @@ public class ClassMetadata<T> {
         } catch (IllegalAccessException e) {
             throw new RuntimeException(e);
         }
-        ((ProxyObject) instance).setHandler(proxyMethodHandler);
+        if (!lazyProperties.isEmpty()) { //only lazy accessors are intercepted
+            ((ProxyObject) instance).setHandler(new LazyLoadHandler());
+        }
+        return instance;
+    }
+
+    /**
+     * Creates a partially loaded instance of the class represented in this metadata, whose properties not read from the
+     * given columns are loaded on first access to their getter unless their setter is invoked first
+     *
+     * @param columns the columns the instance is hydrated from
+     * @return the proxy instance
+     */
+    @SuppressWarnings("unchecked")
+    public T createPartialProxy(String[] columns) {
+        initializePartialLoadingIfNecessary();
+        Set<String> unloadedProperties = new HashSet<String>(onDemandProperties);
+        unloadedProperties.removeAll(Arrays.asList(columns));
+        if (unloadedProperties.isEmpty()) {
+            return createProxy();
+        }
+        T instance;
+        try {
+            instance = (T) partialProxyClass.newInstance();
+        } catch (InstantiationException e) {
+            throw new RuntimeException(e);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+        ((ProxyObject) instance).setHandler(new PartialLoadHandler(Collections.synchronizedSet(unloadedProperties)));
         return instance;
     }
 
+    /**
+     * Gets the mapper decoding the rows of this column family into a dto, created on first use
+     *
+     * @param dtoClass the dto class or interface
+     * @param <D>      the dto type
+     * @return the mapper
+     */
+    @SuppressWarnings("unchecked")
+    public <D> DtoMapper<D> getDtoMapper(Class<D> dtoClass) {
+        DtoMapper<D> mapper = (DtoMapper<D>) dtoMappers.get(dtoClass);
+        if (mapper == null) {
+            mapper = new DtoMapper<D>(persistenceFactory, this, dtoClass);
+            DtoMapper<D> existing = (DtoMapper<D>) dtoMappers.putIfAbsent(dtoClass, mapper);
+            if (existing != null) {
+                mapper = existing;
+            }
+        }
+        return mapper;
+    }
+
     /**
      * destroys and frees any resources retained by this metadata
      */
     public void destroy() {
-        namedQueries.clear();
+        synchronized (namedQueries) {
+            for (String name : ownNamedQueries) {
+                int registrations = namedQueryRegistrations.get(name) - 1;
+                if (registrations > 0) {
+                    namedQueryRegistrations.put(name, registrations);
+                } else {
+                    namedQueryRegistrations.remove(name);
+                    namedQueries.remove(name);
+                }
+            }
+            ownNamedQueries.clear();
+        }
     }
 
     /**
@@ -712,9 +1618,27 @@ public class ClassMetadata<T> {
      * @return the lazy property if found, null otherwise
      */
     public String getLazyProperty(Method method) {
+        initializeMethodsIfNecessary();
         return lazyAccesors.get(method);
     }
 
+    /**
+     * Gets the generated accessor for a primitive property
+     *
+     * @param property the property
+     * @return the accessor if the property is primitive and top level, null otherwise
+     */
+    public PrimitiveAccessor getPrimitiveAccessor(String property) {
+        return primitiveAccessors.get(property);
+    }
+
+    /**
+     * @return the generated accessors for all primitive properties
+     */
+    public Collection<PrimitiveAccessor> getPrimitiveAccessors() {
+        return primitiveAccessors.values();
+    }
+
     /**
      * Gets a method associated to a given event
      *
@@ -722,9 +1646,42 @@ public class ClassMetadata<T> {
      * @return the method if found, null otherwise
      */
     public Set<Method> getListenersForEvent(Event.Entity event) {
+        initializeMethodsIfNecessary();
         return entityEventListenersMap.get(event);
     }
 
+    /**
+     * @return the bitmask of the events this class listens to, indexed by event ordinal
+     */
+    public int getEntityEventMask() {
+        return entityEventMask;
+    }
+
+    /**
+     * Checks if this class declares listener methods for an event
+     *
+     * @param event the event
+     * @return true if there are listeners for the event
+     */
+    public boolean hasListenersForEvent(Event.Entity event) {
+        return (entityEventMask & (1 << event.ordinal())) != 0;
+    }
+
+    /**
+     * Invokes the listener methods declared for an event on an entity
+     *
+     * @param event  the event
+     * @param entity the entity
+     */
+    public void invokeListeners(Event.Entity event, Object entity) {
+        EntityListenerInvoker[] invokers = entityEventInvokersMap.get(event);
+        if (invokers != null) {
+            for (EntityListenerInvoker invoker : invokers) {
+                invoker.invoke(entity);
+            }
+        }
+    }
+
     /**
      * Gets a counter property associated to an increase counter property
      *
@@ -810,4 +1767,104 @@ public class ClassMetadata<T> {
     public ConsistencyLevel getConsistencyLevel() {
         return consistencyLevel;
     }
+
+    /* Inner Classes */
+
+    /**
+     * Loads the lazy properties of an instance on access to their getters. Each instance gets its own handler, which
+     * remembers the properties a lazy load filled so later reads of them count as cache hits
+     */
+    private final class LazyLoadHandler implements MethodHandler, LazyPropertyLoader {
+        /**
+         * the properties filled by a lazy load, created on the first load
+         */
+        private Set<String> loadedProperties;
+
+        public Object invoke(Object self, Method m, Method proceed, Object[] args) throws Throwable {
+            Object value = proceed.invoke(self, args);  // execute the original method.
+            if (loadIfNecessary(self, getLazyProperty(m), value)) {
+                value = proceed.invoke(self, args);
+            }
+            return value;
+        }
+
+        public boolean load(Object entity, String property, Object value) {
+            try {
+                return loadIfNecessary(entity, property, value);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        /**
+         * Loads a lazy property unless it holds a value already
+         *
+         * @param entity   the entity
+         * @param property the lazy property
+         * @param value    the current value of the property
+         * @return true if the property was read from the store
+         */
+        private boolean loadIfNecessary(Object entity, String property, Object value) throws Exception {
+            log.debug("lazy loading: " + property);
+            boolean loaded = persistenceFactory.loadLazyPropertyIfNecessary(ClassMetadata.this, entity, property, value, isLoaded(property));
+            if (loaded) {
+                markLoaded(property);
+            }
+            return loaded;
+        }
+
+        private synchronized boolean isLoaded(String property) {
+            return loadedProperties != null && loadedProperties.contains(property);
+        }
+
+        private synchronized void markLoaded(String property) {
+            if (loadedProperties == null) {
+                loadedProperties = new HashSet<String>(lazyProperties.size());
+            }
+            loadedProperties.add(property);
+        }
+    }
+
+    /**
+     * Intercepts the accessors of a partially loaded instance, loading each unloaded property on the first invocation of
+     * its getter and lazy properties as regular proxies do
+     */
+    private final class PartialLoadHandler implements MethodHandler {
+        /**
+         * the properties not loaded yet
+         */
+        private final Set<String> unloadedProperties;
+
+        /**
+         * the handler of the lazy properties of the instance
+         */
+        private final LazyLoadHandler lazyLoadHandler = new LazyLoadHandler();
+
+        private PartialLoadHandler(Set<String> unloadedProperties) {
+            this.unloadedProperties = unloadedProperties;
+        }
+
+        public Object invoke(Object self, Method m, Method proceed, Object[] args) throws Throwable {
+            String property = onDemandWriters.get(m);
+            if (property != null) { //a value set before its first read must not be overwritten by the stored one
+                unloadedProperties.remove(property);
+            } else {
+                property = onDemandReaders.get(m);
+                if (unloadedProperties.remove(property)) {
+                    log.debug("loading unloaded property: " + property);
+                    try {
+                        persistenceFactory.loadUnloadedProperty(ClassMetadata.this, self, property);
+                    } catch (Throwable e) {
+                        unloadedProperties.add(property);
+                        throw e;
+                    }
+                } else if (lazyProperties.contains(property)) {
+                    return lazyLoadHandler.invoke(self, m, proceed, args);
+                }
+            }
+            return proceed.invoke(self, args);
+        }
+    }
 }
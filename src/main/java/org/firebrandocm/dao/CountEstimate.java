@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao;
+
+/**
+ * An approximate row count extrapolated from the exact counts of a random sample of token ranges, along with the half
+ * width of its confidence interval
+ */
+public final class CountEstimate {
+    /* Fields */
+
+	/**
+	 * the estimated count
+	 */
+	private final long count;
+
+	/**
+	 * the half width of the confidence interval
+	 */
+	private final long errorBound;
+
+	/**
+	 * the confidence level of the interval
+	 */
+	private final double confidence;
+
+	/**
+	 * the number of ranges counted
+	 */
+	private final int sampledRanges;
+
+	/**
+	 * the number of ranges the ring was split into
+	 */
+	private final int totalRanges;
+
+    /* Constructors */
+
+	/**
+	 * Constructs an estimate
+	 * @param count the estimated count
+	 * @param errorBound the half width of the confidence interval
+	 * @param confidence the confidence level of the interval
+	 * @param sampledRanges the number of ranges counted
+	 * @param totalRanges the number of ranges the ring was split into
+	 */
+	public CountEstimate(long count, long errorBound, double confidence, int sampledRanges, int totalRanges) {
+		this.count = count;
+		this.errorBound = errorBound;
+		this.confidence = confidence;
+		this.sampledRanges = sampledRanges;
+		this.totalRanges = totalRanges;
+	}
+
+    /* Getters & Setters */
+
+	/**
+	 * @return the estimated count
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the half width of the confidence interval, the actual count lies in count +/- errorBound with the stated
+	 * confidence
+	 */
+	public long getErrorBound() {
+		return errorBound;
+	}
+
+	/**
+	 * @return the confidence level of the interval
+	 */
+	public double getConfidence() {
+		return confidence;
+	}
+
+	/**
+	 * @return the number of ranges counted
+	 */
+	public int getSampledRanges() {
+		return sampledRanges;
+	}
+
+	/**
+	 * @return the number of ranges the ring was split into
+	 */
+	public int getTotalRanges() {
+		return totalRanges;
+	}
+
+	/**
+	 * @return whether every range was counted, making the count exact
+	 */
+	public boolean isExact() {
+		return sampledRanges == totalRanges;
+	}
+
+    /* Canonical Methods */
+
+	@Override
+	public String toString() {
+		return String.format("%d +/- %d (%.0f%%, %d/%d ranges)", count, errorBound, confidence * 100, sampledRanges, totalRanges);
+	}
+}
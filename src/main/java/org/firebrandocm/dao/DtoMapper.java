@@ -0,0 +1,313 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao;
+
+import org.firebrandocm.dao.transport.RawColumn;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * Decodes rows of an entity column family straight into a data transfer object.
+ * Mappers bypass the entity proxies, events and lazy loading machinery: the properties of the dto are matched once
+ * against the entity columns and each column is then decoded with its resolved type converter and set directly.
+ * A dto is either a class with a no args constructor and setters, or an interface with getters which is implemented
+ * by a dynamic proxy holding the decoded values. Mappers are cached per dto and column family by {@link ClassMetadata}
+ */
+public final class DtoMapper<D> {
+    /* Fields */
+
+	/**
+	 * the dto type
+	 */
+	private final Class<D> dtoClass;
+
+	/**
+	 * the columns the dto properties are decoded from
+	 */
+	private final String[] columns;
+
+	/**
+	 * the slots of the dto properties by column
+	 */
+	private final Map<String, Slot> slots = new HashMap<String, Slot>();
+
+	/**
+	 * the slot receiving the row key, null if the dto has no key property
+	 */
+	private Slot keySlot;
+
+	/**
+	 * the no args constructor of a dto class, null for interfaces
+	 */
+	private Constructor<D> constructor;
+
+	/**
+	 * the slot index of each getter of a dto interface, null for classes
+	 */
+	private Map<Method, Integer> getterSlots;
+
+    /* Constructors */
+
+	/**
+	 * Constructs a mapper resolving the dto properties against the entity columns
+	 * @param factory the factory whose type converters decode the columns
+	 * @param metadata the entity metadata
+	 * @param dtoClass the dto type
+	 */
+	@SuppressWarnings("unchecked")
+	DtoMapper(AbstractPersistenceFactory factory, ClassMetadata<?> metadata, Class<D> dtoClass) {
+		this.dtoClass = dtoClass;
+		Map<String, Class<?>> properties = new LinkedHashMap<String, Class<?>>();
+		Map<String, Method> accessors = new HashMap<String, Method>();
+		try {
+			if (dtoClass.isInterface()) {
+				for (Method method : dtoClass.getMethods()) {
+					String property = getPropertyName(method);
+					if (property != null) {
+						properties.put(property, method.getReturnType());
+						accessors.put(property, method);
+					}
+				}
+			} else {
+				constructor = dtoClass.getDeclaredConstructor();
+				constructor.setAccessible(true);
+				BeanInfo beanInfo = Introspector.getBeanInfo(dtoClass, Object.class);
+				for (PropertyDescriptor descriptor : beanInfo.getPropertyDescriptors()) {
+					if (descriptor.getWriteMethod() != null) {
+						properties.put(descriptor.getName(), descriptor.getPropertyType());
+						accessors.put(descriptor.getName(), descriptor.getWriteMethod());
+					}
+				}
+			}
+		} catch (NoSuchMethodException e) {
+			throw new IllegalArgumentException(String.format("%s has no no args constructor", dtoClass), e);
+		} catch (IntrospectionException e) {
+			throw new IllegalArgumentException(String.format("unable to introspect %s", dtoClass), e);
+		}
+		List<String> columnList = new ArrayList<String>(properties.size());
+		if (dtoClass.isInterface()) {
+			getterSlots = new HashMap<Method, Integer>();
+		}
+		for (Map.Entry<String, Class<?>> property : properties.entrySet()) {
+			String name = property.getKey();
+			Class<?> type = property.getValue();
+			Slot slot;
+			if (name.equals(metadata.getKeyProperty())) {
+				if (!String.class.equals(type)) {
+					throw new IllegalArgumentException(String.format("the key property %s of %s must be a String", name, dtoClass));
+				}
+				slot = keySlot = new Slot(slotCount(), type, null, accessors.get(name));
+			} else {
+				if (metadata.getColumnClass(name) == null) {
+					throw new IllegalArgumentException(String.format("%s of %s is not a persistent property of %s", name, dtoClass, metadata.getTarget()));
+				}
+				if (metadata.isMappedContainer(name) || metadata.isMappedCollection(name)) {
+					throw new IllegalArgumentException(String.format("%s of %s is a mapped property and can't be decoded into a dto", name, dtoClass));
+				}
+				TypeConverter<Object> converter = (TypeConverter<Object>) factory.getTypeConverter(type);
+				if (converter == null) {
+					throw new IllegalArgumentException(String.format("no type converter for %s of %s", name, dtoClass));
+				}
+				slot = new Slot(slotCount(), type, converter, accessors.get(name));
+				slots.put(name, slot);
+				columnList.add(name);
+			}
+			if (getterSlots != null) {
+				getterSlots.put(slot.accessor, slot.index);
+			}
+		}
+		this.columns = columnList.toArray(new String[columnList.size()]);
+	}
+
+    /* Getters & Setters */
+
+	/**
+	 * @return the dto type
+	 */
+	public Class<D> getDtoClass() {
+		return dtoClass;
+	}
+
+	/**
+	 * @return the columns the dto properties are decoded from
+	 */
+	public String[] getColumns() {
+		return columns.clone();
+	}
+
+    /* Misc */
+
+	/**
+	 * Decodes a row into a new dto, columns not matching a dto property are ignored
+	 * @param key the row key
+	 * @param row the row columns
+	 * @return the dto
+	 */
+	public D map(String key, List<RawColumn> row) throws Exception {
+		if (constructor != null) {
+			D dto = constructor.newInstance();
+			if (keySlot != null) {
+				keySlot.accessor.invoke(dto, key);
+			}
+			for (RawColumn column : row) {
+				Slot slot = slots.get(column.getName());
+				if (slot != null) {
+					Object value = slot.decode(column.getValue());
+					if (value != null || !slot.type.isPrimitive()) {
+						slot.accessor.invoke(dto, value);
+					}
+				}
+			}
+			return dto;
+		}
+		Object[] values = new Object[getterSlots.size()];
+		if (keySlot != null) {
+			values[keySlot.index] = key;
+		}
+		for (RawColumn column : row) {
+			Slot slot = slots.get(column.getName());
+			if (slot != null) {
+				values[slot.index] = slot.decode(column.getValue());
+			}
+		}
+		return dtoClass.cast(Proxy.newProxyInstance(dtoClass.getClassLoader(), new Class<?>[]{dtoClass}, new ValuesHandler(values)));
+	}
+
+	/**
+	 * Private helper that counts the slots created so far
+	 */
+	private int slotCount() {
+		return slots.size() + (keySlot != null ? 1 : 0);
+	}
+
+	/**
+	 * Private helper that gets the property a getter of a dto interface reads, null if the method is not a getter
+	 */
+	private static String getPropertyName(Method method) {
+		if (method.getParameterTypes().length > 0 || void.class.equals(method.getReturnType())) {
+			return null;
+		}
+		String name = method.getName();
+		String property = null;
+		if (name.startsWith("get") && name.length() > 3) {
+			property = name.substring(3);
+		} else if (name.startsWith("is") && name.length() > 2 && (boolean.class.equals(method.getReturnType()) || Boolean.class.equals(method.getReturnType()))) {
+			property = name.substring(2);
+		}
+		return property != null ? Introspector.decapitalize(property) : null;
+	}
+
+    /* Canonical Methods */
+
+	@Override
+	public String toString() {
+		return String.format("DtoMapper{%s%s}", dtoClass.getName(), Arrays.toString(columns));
+	}
+
+    /* Inner Classes */
+
+	/**
+	 * A dto property, its position among the decoded values, converter and accessor
+	 */
+	private static final class Slot {
+		private final int index;
+
+		private final Class<?> type;
+
+		private final TypeConverter<Object> converter;
+
+		/**
+		 * the setter of a dto class or the getter of a dto interface
+		 */
+		private final Method accessor;
+
+		private Slot(int index, Class<?> type, TypeConverter<Object> converter, Method accessor) {
+			this.index = index;
+			this.type = type;
+			this.converter = converter;
+			this.accessor = accessor;
+			accessor.setAccessible(true);
+		}
+
+		@SuppressWarnings("unchecked")
+		private Object decode(ByteBuffer value) throws Exception {
+			return converter.fromValue(value, (Class<Object>) type);
+		}
+	}
+
+	/**
+	 * Implements a dto interface returning the decoded values from its getters
+	 */
+	private final class ValuesHandler implements InvocationHandler {
+		private final Object[] values;
+
+		private ValuesHandler(Object[] values) {
+			this.values = values;
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			Integer index = getterSlots.get(method);
+			if (index != null) {
+				Object value = values[index];
+				return value != null || !method.getReturnType().isPrimitive() ? value : defaultValue(method.getReturnType());
+			}
+			if ("equals".equals(method.getName()) && args != null && args.length == 1) {
+				return proxy == args[0];
+			}
+			if ("hashCode".equals(method.getName()) && args == null) {
+				return System.identityHashCode(proxy);
+			}
+			if ("toString".equals(method.getName()) && args == null) {
+				return String.format("%s%s", dtoClass.getSimpleName(), Arrays.toString(values));
+			}
+			throw new UnsupportedOperationException(String.format("%s is not a getter of %s", method, dtoClass));
+		}
+
+		/**
+		 * Private helper that gets the value primitive getters return for missing columns
+		 */
+		private Object defaultValue(Class<?> type) {
+			if (boolean.class.equals(type)) {
+				return false;
+			} else if (char.class.equals(type)) {
+				return '\0';
+			} else if (byte.class.equals(type)) {
+				return (byte) 0;
+			} else if (short.class.equals(type)) {
+				return (short) 0;
+			} else if (int.class.equals(type)) {
+				return 0;
+			} else if (long.class.equals(type)) {
+				return 0L;
+			} else if (float.class.equals(type)) {
+				return 0f;
+			}
+			return 0d;
+		}
+	}
+}
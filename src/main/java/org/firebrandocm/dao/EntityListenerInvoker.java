@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.firebrandocm.dao.utils.ClassGenerator;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Invokes an entity method annotated with {@link org.firebrandocm.dao.annotations.OnEvent}.
+ * Invokers are compiled once per listener method at metadata initialization time and call the method directly,
+ * falling back to reflection only when the method can't be reached from generated code.
+ */
+public abstract class EntityListenerInvoker {
+    /* Fields */
+
+    private static Log log = LogFactory.getLog(EntityListenerInvoker.class);
+
+    /* Static Methods */
+
+    /**
+     * Compiles an invoker for a listener method
+     *
+     * @param target the entity class
+     * @param method the listener method
+     * @return the invoker
+     */
+    static EntityListenerInvoker create(Class<?> target, Method method) {
+        if (Modifier.isPublic(method.getModifiers()) && Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+            String invokerClassName = String.format("%s$$EntityListenerInvoker$$%s", target.getName(), method.getName());
+            try {
+                Class<?> invokerClass = ClassGenerator.getOrCreate(target, invokerClassName, EntityListenerInvoker.class,
+                        String.format("protected void doInvoke(Object entity) throws Throwable { ((%s) entity).%s(); }",
+                                target.getName(), method.getName()));
+                return (EntityListenerInvoker) invokerClass.newInstance();
+            } catch (Exception e) {
+                log.warn(String.format("unable to compile listener %s, falling back to reflection", method), e);
+            }
+        }
+        return new ReflectiveEntityListenerInvoker(method);
+    }
+
+    /* Misc */
+
+    /**
+     * Invokes the listener on an entity.
+     * Anything the listener throws is reported as a RuntimeException caused by an InvocationTargetException wrapping it,
+     * as when listeners were invoked through reflection
+     *
+     * @param entity the entity
+     */
+    public void invoke(Object entity) {
+        try {
+            doInvoke(entity);
+        } catch (Throwable t) {
+            throw new RuntimeException(new InvocationTargetException(t));
+        }
+    }
+
+    /**
+     * Invokes the listener method on an entity
+     *
+     * @param entity the entity
+     * @throws Throwable whatever the listener method throws, unwrapped
+     */
+    protected abstract void doInvoke(Object entity) throws Throwable;
+
+    /* Inner Classes */
+
+    /**
+     * Invoker used for listener methods that generated code can't call
+     */
+    private static final class ReflectiveEntityListenerInvoker extends EntityListenerInvoker {
+        /**
+         * the listener method
+         */
+        private Method method;
+
+        /**
+         * Constructor
+         *
+         * @param method the listener method
+         */
+        private ReflectiveEntityListenerInvoker(Method method) {
+            this.method = method;
+        }
+
+        /**
+         * @see EntityListenerInvoker#invoke(Object)
+         */
+        @Override
+        public void invoke(Object entity) {
+            try {
+                method.invoke(entity);
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException(e);
+            } catch (InvocationTargetException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        /**
+         * @see EntityListenerInvoker#doInvoke(Object)
+         */
+        @Override
+        protected void doInvoke(Object entity) throws Throwable {
+            try {
+                method.invoke(entity);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao;
+
+import org.apache.cassandra.thrift.IndexType;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.firebrandocm.dao.annotations.ConsistencyLevel;
+import org.firebrandocm.dao.annotations.Granularity;
+import org.firebrandocm.dao.events.Event;
+
+import java.lang.reflect.Method;
+
+/**
+ * Base class of the metadata generated at compile time by {@link org.firebrandocm.dao.annotations.processing.ClassMetadataProcessor}.
+ * A generated subclass named after the entity class plus {@link #SUFFIX} registers the entity properties, accessors,
+ * listeners and named queries directly so {@link ClassMetadata} doesn't need to scan the entity through reflection,
+ * and creates instances of a generated subclass of the entity that loads lazy properties without a runtime proxy.
+ *
+ * @param <T> the entity type
+ */
+public abstract class GeneratedMetadata<T> {
+    /* Fields */
+
+    /**
+     * the suffix appended to the entity class name to name its generated metadata
+     */
+    public static final String SUFFIX = "$$Metadata";
+
+    private static Log log = LogFactory.getLog(GeneratedMetadata.class);
+
+    /**
+     * the entity class
+     */
+    private final Class<T> target;
+
+    /**
+     * the metadata being described, only set while describing
+     */
+    private ClassMetadata<T> metadata;
+
+    /* Constructors */
+
+    /**
+     * Constructor
+     *
+     * @param target the entity class
+     */
+    protected GeneratedMetadata(Class<T> target) {
+        this.target = target;
+    }
+
+    /* Static Methods */
+
+    /**
+     * Finds the metadata generated for an entity class
+     *
+     * @param target the entity class
+     * @return the generated metadata or null if none was generated
+     */
+    @SuppressWarnings("unchecked")
+    static <T> GeneratedMetadata<T> find(Class<T> target) {
+        try {
+            Class<?> metadataClass = Class.forName(target.getName() + SUFFIX, true, target.getClassLoader());
+            return (GeneratedMetadata<T>) metadataClass.newInstance();
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (Exception e) {
+            log.warn(String.format("unable to use the generated metadata for %s, falling back to reflection", target), e);
+            return null;
+        } catch (LinkageError e) {
+            log.warn(String.format("unable to use the generated metadata for %s, falling back to reflection", target), e);
+            return null;
+        }
+    }
+
+    /* Misc */
+
+    /**
+     * Registers the entity description on a class metadata
+     *
+     * @param metadata the class metadata
+     */
+    void describe(ClassMetadata<T> metadata) {
+        this.metadata = metadata;
+        try {
+            describe();
+        } finally {
+            this.metadata = null;
+        }
+    }
+
+    /**
+     * Registers the entity column family, properties, accessors, listeners, named queries and fetch groups
+     */
+    protected abstract void describe();
+
+    /**
+     * @return a new instance of the entity, enhanced to load its lazy properties if it has any
+     */
+    protected abstract T newInstance();
+
+    /**
+     * @return the entity class
+     */
+    protected final Class<T> getTarget() {
+        return target;
+    }
+
+    /**
+     * Registers the column family settings
+     *
+     * @see org.firebrandocm.dao.annotations.ColumnFamily
+     */
+    protected final void columnFamily(String name, String keySpace, ConsistencyLevel consistencyLevel, String comment, String compareWith,
+                                      boolean reversed, long keysCached, long rowsCached, double readRepairChance, int gcGraceSeconds,
+                                      String defaultValidationClass, String defaultKeyValidationClass, int minCompactionThreshold,
+                                      int maxCompactionThreshold, boolean replicateOnWrite) {
+        metadata.initializeColumnFamily(name, keySpace, consistencyLevel, comment, compareWith, reversed, keysCached, rowsCached,
+                readRepairChance, gcGraceSeconds, defaultValidationClass, defaultKeyValidationClass, minCompactionThreshold,
+                maxCompactionThreshold, replicateOnWrite);
+    }
+
+    /**
+     * Registers the column name and value types of a wide row column family
+     *
+     * @see org.firebrandocm.dao.annotations.WideRow
+     */
+    protected final void wideRow(Class<?> nameClass, Class<?> valueClass) {
+        metadata.initializeWideRow(nameClass, valueClass);
+    }
+
+    /**
+     * Registers the key property, which must be registered as a column right after
+     *
+     * @param property the property name
+     */
+    protected final void key(String property) {
+        metadata.addKeyProperty(property);
+    }
+
+    /**
+     * Registers a property mapped to a column
+     *
+     * @param property        the property name
+     * @param type            the property type
+     * @param container       the class declaring the property
+     * @param indexed         whether the property is indexed in the data store
+     * @param lazy            whether the property is loaded on demand
+     * @param counter         whether the property is a counter
+     * @param validationClass the column validation class name, null if the property has no @Column annotation
+     * @param indexType       the column index type, null if the property has no @Column annotation
+     */
+    protected final void column(String property, Class<?> type, Class<?> container, boolean indexed, boolean lazy, boolean counter,
+                                String validationClass, IndexType indexType) {
+        metadata.addSimpleColumn(property, type, container, indexed, lazy, counter, validationClass, indexType);
+    }
+
+    /**
+     * Registers an ordered index over a property registered as a column
+     *
+     * @param property the property name
+     * @param buckets  the number of index rows the entries are spread over
+     */
+    protected final void orderedIndex(String property, int buckets) {
+        metadata.addOrderedIndex(property, buckets);
+    }
+
+    /**
+     * Registers a lookup index over a property registered as a column
+     *
+     * @param property the property name
+     */
+    protected final void lookupIndex(String property) {
+        metadata.addLookupIndex(property);
+    }
+
+    /**
+     * Registers a property holding an embedded entity
+     *
+     * @param property the property name
+     * @param type     the embedded entity type
+     */
+    protected final void embedded(String property, Class<?> type) {
+        metadata.addEmbeddedEntity(property, type);
+    }
+
+    /**
+     * Registers a property holding a mapped entity
+     *
+     * @param property the property name
+     * @param type     the mapped entity type
+     * @param lazy     whether the mapped entity is loaded on demand
+     */
+    protected final void mapped(String property, Class<?> type, boolean lazy) {
+        metadata.addMappedEntity(property, type, lazy);
+    }
+
+    /**
+     * Registers a property holding a mapped collection
+     *
+     * @param property the property name
+     * @param type     the collection type
+     * @param lazy     whether the collection is loaded on demand
+     */
+    protected final void mappedCollection(String property, Class<?> type, boolean lazy) {
+        metadata.addMappedCollection(property, type, lazy);
+    }
+
+    /**
+     * Registers a property holding the value a counter is increased by
+     *
+     * @param property      the property name
+     * @param type          the property type
+     * @param targetCounter the counter property increased
+     */
+    protected final void counterIncrease(String property, Class<?> type, String targetCounter) {
+        metadata.addCounterIncrease(property, type, targetCounter);
+    }
+
+    /**
+     * Registers the time buckets the increases of a counter increase property are rolled up into
+     *
+     * @param property      the counter increase property name
+     * @param granularities the bucket granularities
+     */
+    protected final void rollup(String property, Granularity... granularities) {
+        metadata.addRollup(property, granularities);
+    }
+
+    /**
+     * Registers the accessor of a primitive property
+     *
+     * @param property the property name
+     * @param type     the primitive property type
+     * @param accessor the accessor
+     */
+    protected final void accessor(String property, Class<?> type, PrimitiveAccessor accessor) {
+        accessor.initialize(property, type);
+        metadata.addPrimitiveAccessor(accessor);
+    }
+
+    /**
+     * Registers a listener for an entity event
+     *
+     * @param event   the event
+     * @param invoker the invoker calling the listener method
+     */
+    protected final void listener(Event.Entity event, EntityListenerInvoker invoker) {
+        metadata.addEntityEventInvoker(event, invoker);
+    }
+
+    /**
+     * Registers a listener for an entity event that generated code can't call directly
+     *
+     * @param event          the event
+     * @param declaringClass the binary name of the class declaring the listener method
+     * @param methodName     the listener method name
+     */
+    protected final void reflectiveListener(Event.Entity event, String declaringClass, String methodName) {
+        try {
+            Method method = Class.forName(declaringClass, false, target.getClassLoader()).getDeclaredMethod(methodName);
+            method.setAccessible(true);
+            metadata.addEntityEventInvoker(event, EntityListenerInvoker.create(target, method));
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(String.format("listener %s.%s not found, the generated metadata for %s is stale", declaringClass, methodName, target), e);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(String.format("listener %s.%s not found, the generated metadata for %s is stale", declaringClass, methodName, target), e);
+        }
+    }
+
+    /**
+     * Registers a named query
+     *
+     * @param name  the query name
+     * @param query the query
+     */
+    protected final void namedQuery(String name, String query) {
+        metadata.addNamedQuery(name, query);
+    }
+
+    /**
+     * Registers a fetch group
+     *
+     * @param name       the fetch group name
+     * @param properties the properties fetched by the group
+     */
+    protected final void fetchGroup(String name, String... properties) {
+        metadata.addFetchGroup(name, properties);
+    }
+
+    /**
+     * Registers a view
+     *
+     * @param name    the view name
+     * @param key     the properties making the row key of the view
+     * @param columns the properties copied into the view
+     */
+    protected final void view(String name, String[] key, String[] columns) {
+        metadata.addView(name, key, columns);
+    }
+}
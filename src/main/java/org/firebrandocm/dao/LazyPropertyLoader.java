@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao;
+
+/**
+ * Loads the value of a lazy property on demand, invoked by enhanced entities before returning from a lazy property getter
+ */
+public interface LazyPropertyLoader {
+    /* Misc */
+
+    /**
+     * Loads a lazy property if its current value has not been loaded yet
+     *
+     * @param entity   the entity
+     * @param property the lazy property
+     * @param value    the current property value
+     * @return true if the property was loaded, so the getter must read it again
+     */
+    boolean load(Object entity, String property, Object value);
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Primitive specialization of {@link TypeConverter} for long values.
+ * Implementations must not allocate when decoding so primitive columns can be read without boxing
+ */
+public interface LongCodec {
+    /* Misc */
+
+    /**
+     * Reads a long value without modifying the buffer position
+     *
+     * @param value the value as a byte buffer
+     * @return the long value
+     */
+    long decode(ByteBuffer value);
+
+    /**
+     * @param value the long value, invoked for mutate operations
+     * @return a byte buffer for the value
+     */
+    ByteBuffer encode(long value);
+}
@@ -20,10 +20,17 @@ package org.firebrandocm.dao;
 
 
 import org.apache.cassandra.thrift.ConsistencyLevel;
+import org.firebrandocm.dao.aggregation.Aggregation;
+import org.firebrandocm.dao.annotations.Granularity;
+import org.firebrandocm.dao.cql.clauses.Predicate;
+import org.firebrandocm.dao.planner.QueryPlan;
+import org.firebrandocm.dao.widerow.ColumnSliceIterator;
 
 import java.nio.ByteBuffer;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
 
 /**
  * Interface for persistence factories that manage entities and provide a persistence operations and context
@@ -66,6 +73,50 @@ public interface PersistenceFactory {
      */
     <T> T get(Class<T> entityClass, String key);
 
+    /**
+     * @param entityClass the class
+     * @param key         the id
+     * @param projection  the properties to fetch, the others are loaded on first access
+     * @param <T>         the entity type
+     * @return an entity from the data store looked up by its id, partially loaded
+     */
+    <T> T get(Class<T> entityClass, String key, Projection projection);
+
+    /**
+     * Get a row by id decoded straight into a dto, without entity proxies, events or lazy loading
+     *
+     * @param entityClass the entity class the row belongs to
+     * @param key         the key
+     * @param dtoClass    the dto class or interface
+     * @param <D>         the dto type
+     * @return the dto or null if the row does not exist
+     */
+    <D> D get(Class<?> entityClass, String key, Class<D> dtoClass);
+
+    /**
+     * Get an entity through one of its views, reading the view row keyed by the given property values
+     *
+     * @param entityClass the class
+     * @param view        the view name
+     * @param key         the values of the view key properties, in declaration order
+     * @param <T>         the entity type
+     * @return an entity from the data store looked up through the view, partially loaded, or null if none is found
+     */
+    <T> T getView(Class<T> entityClass, String view, Object... key);
+
+    /**
+     * Reads the totals of the time buckets of a counter rollup overlapping a time range as a single column slice
+     *
+     * @param entityClass     the counter entity class
+     * @param key             the entity key
+     * @param counterProperty the counter property
+     * @param granularity     the bucket granularity, one of the rollups declared by the counter increase property
+     * @param from            the start of the time range
+     * @param to              the end of the time range
+     * @return the totals of the buckets with increases by their start, in time order
+     */
+    SortedMap<Date, Long> getRollups(Class<?> entityClass, String key, String counterProperty, Granularity granularity, Date from, Date to);
+
     /**
      * Fetch a map of columns and their values
      *
@@ -90,6 +141,24 @@ public interface PersistenceFactory {
      */
     Map<String, ByteBuffer> getColumns(String columnFamily, String key, int limit, boolean reversed, String fromColumn, String toColumn);
 
+    /**
+     * Opens a cursor over the rows returned by a query, exposing their columns in place without copying them
+     *
+     * @param query the query
+     * @return the cursor, positioned before the first row
+     */
+    RowCursor getCursor(Query query);
+
+    /**
+     * Opens a cursor scanning all the rows of a column family a page at a time
+     *
+     * @param columnFamily the column family
+     * @param pageSize     the number of rows read at a time
+     * @param columns      the column names or none to read the whole rows
+     * @return the cursor, positioned before the first row
+     */
+    RowCursor getCursor(String columnFamily, int pageSize, String... columns);
+
     /**
      * @return the default consistency level
      */
@@ -132,6 +201,28 @@ public interface PersistenceFactory {
      */
     <T> List<T> getResultList(Class<T> type, Query query);
 
+    /**
+     * Get a list of partially loaded entities given a query, fetching only the projected columns
+     *
+     * @param type       the type of objects to expect back
+     * @param query      the query
+     * @param projection the properties to fetch, the others are loaded on first access
+     * @param <T>        the result type
+     * @return the list of entities
+     */
+    <T> List<T> getResultList(Class<T> type, Query query, Projection projection);
+
+    /**
+     * Get a list of rows given a query decoded straight into dtos, without entity proxies, events or lazy loading
+     *
+     * @param entityClass the entity class the query selects from
+     * @param query       the query
+     * @param dtoClass    the dto class or interface
+     * @param <D>         the dto type
+     * @return the list of dtos
+     */
+    <D> List<D> getResultList(Class<?> entityClass, Query query, Class<D> dtoClass);
+
     /**
      * Get a single result from a CQL query
      *
@@ -142,6 +233,80 @@ public interface PersistenceFactory {
      */
     <T> T getSingleResult(Class<T> type, Query query);
 
+    /**
+     * Inserts typed columns in a wide row, increasing them by their values if the column family holds counters
+     *
+     * @param wideRowClass the class annotated with {@link org.firebrandocm.dao.annotations.WideRow}
+     * @param key          the row key
+     * @param columns      the column values by their typed names
+     */
+    void insertColumns(Class<?> wideRowClass, String key, Map<?, ?> columns);
+
+    /**
+     * Streams a slice of the typed columns of a wide row, reading a page of columns at a time
+     *
+     * @param wideRowClass the class annotated with {@link org.firebrandocm.dao.annotations.WideRow}
+     * @param key          the row key
+     * @param from         the first column name of the slice, null to start at the beginning of the row
+     * @param to           the last column name of the slice, null to end at the end of the row
+     * @param reversed     whether columns are returned in reverse order, from is then the greatest name
+     * @param pageSize     the number of columns read at a time
+     * @param <N>          the column name type
+     * @param <V>          the column value type
+     * @return an iterator over the columns of the slice
+     */
+    <N, V> ColumnSliceIterator<N, V> getColumnSlice(Class<?> wideRowClass, String key, N from, N to, boolean reversed, int pageSize);
+
+    /**
+     * Plans a conjunction of predicates over the column family of an entity class, choosing the most selective key or
+     * indexed equality predicate to send to the server and evaluating the others client side
+     *
+     * @param type       the entity class
+     * @param predicates the predicates
+     * @param <T>        the entity type
+     * @return the plan
+     */
+    <T> QueryPlan<T> plan(Class<T> type, Predicate... predicates);
+
+    /**
+     * Executes a query plan, streaming pages of rows and filtering them client side
+     *
+     * @param plan  the plan
+     * @param limit the maximum number of entities
+     * @param <T>   the entity type
+     * @return the matching entities
+     */
+    <T> List<T> getResultList(QueryPlan<T> plan, int limit);
+
+    /**
+     * Counts the rows of the column family of an entity class exactly, counting token ranges of the ring concurrently
+     *
+     * @param type the entity class
+     * @return the number of rows
+     */
+    long count(Class<?> type);
+
+    /**
+     * Estimates the number of rows of the column family of an entity class from the counts of a random sample of token
+     * ranges of the ring
+     *
+     * @param type    the entity class
+     * @param samples the number of ranges to count, at least 2
+     * @return the estimate along with its error bound
+     */
+    CountEstimate estimateCount(Class<?> type, int samples);
+
+    /**
+     * Computes an aggregation over all the rows of the column family of an entity class by scanning token ranges of
+     * the ring concurrently and merging their partial results
+     *
+     * @param type        the entity class
+     * @param aggregation the aggregation
+     * @param <R>         the result type
+     * @return the aggregation result
+     */
+    <R> R aggregate(Class<?> type, Aggregation<R> aggregation);
+
     /**
      * Inserts columns based on a map representing keys with properties and their corresponding values
      *
@@ -0,0 +1,302 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.firebrandocm.dao.utils.ClassGenerator;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Accessor bound to a single primitive property of an entity class.
+ * Subclasses are generated at metadata initialization time and call the property getter and setter directly so that
+ * primitive columns are read and written without reflection or boxing.
+ * Once bound to a codec the accessor decodes and encodes column values straight from and to the entity.
+ */
+public abstract class PrimitiveAccessor {
+    /* Fields */
+
+    private static Log log = LogFactory.getLog(PrimitiveAccessor.class);
+
+    /**
+     * the name suffix of the accessor methods for each supported primitive type
+     */
+    private static final Map<Class<?>, String> ACCESSOR_SUFFIXES = new HashMap<Class<?>, String>() {{
+        put(long.class, "Long");
+        put(int.class, "Int");
+        put(double.class, "Double");
+        put(boolean.class, "Boolean");
+    }};
+
+    /**
+     * the primitive property type
+     */
+    private Class<?> type;
+
+    /**
+     * the property name
+     */
+    private String property;
+
+    /**
+     * the codec for long properties
+     */
+    private LongCodec longCodec;
+
+    /**
+     * the codec for int properties
+     */
+    private IntCodec intCodec;
+
+    /**
+     * the codec for double properties
+     */
+    private DoubleCodec doubleCodec;
+
+    /**
+     * the codec for boolean properties
+     */
+    private BooleanCodec booleanCodec;
+
+    /* Static Methods */
+
+    /**
+     * Checks if accessors can be generated for a given type
+     *
+     * @param type the property type
+     * @return true if the type is a supported primitive
+     */
+    public static boolean isSupported(Class<?> type) {
+        return ACCESSOR_SUFFIXES.containsKey(type);
+    }
+
+    /**
+     * Generates, or reuses if already generated, an accessor class for a primitive property.
+     *
+     * @param target     the entity class
+     * @param descriptor the property descriptor
+     * @return the accessor or null if the property can't be accessed without reflection
+     */
+    static PrimitiveAccessor create(Class<?> target, PropertyDescriptor descriptor) {
+        Class<?> type = descriptor.getPropertyType();
+        Method readMethod = descriptor.getReadMethod();
+        Method writeMethod = descriptor.getWriteMethod();
+        if (!isSupported(type) || readMethod == null || writeMethod == null) {
+            return null;
+        }
+        String suffix = ACCESSOR_SUFFIXES.get(type);
+        String accessorClassName = String.format("%s$$PrimitiveAccessor$$%s", target.getName(), descriptor.getName());
+        try {
+            Class<?> accessorClass = ClassGenerator.getOrCreate(target, accessorClassName, PrimitiveAccessor.class,
+                    String.format("public %s get%s(Object entity) { return ((%s) entity).%s(); }",
+                            type.getName(), suffix, target.getName(), readMethod.getName()),
+                    String.format("public void set%s(Object entity, %s value) { ((%s) entity).%s(value); }",
+                            suffix, type.getName(), target.getName(), writeMethod.getName()));
+            PrimitiveAccessor accessor = (PrimitiveAccessor) accessorClass.newInstance();
+            accessor.initialize(descriptor.getName(), type);
+            return accessor;
+        } catch (Exception e) {
+            log.warn(String.format("unable to generate accessor for %s.%s, falling back to reflection", target.getName(), descriptor.getName()), e);
+            return null;
+        }
+    }
+
+    /* Getters & Setters */
+
+    /**
+     * @return the property name
+     */
+    public String getProperty() {
+        return property;
+    }
+
+    /**
+     * @return the primitive property type
+     */
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * @return true if a codec has been bound to this accessor
+     */
+    public boolean isBound() {
+        return longCodec != null || intCodec != null || doubleCodec != null || booleanCodec != null;
+    }
+
+    /* Misc */
+
+    /**
+     * Initializes the accessor, invoked once after the generated subclass is instantiated
+     *
+     * @param property the property name
+     * @param type     the primitive property type
+     */
+    void initialize(String property, Class<?> type) {
+        this.property = property;
+        this.type = type;
+    }
+
+    /**
+     * Binds this accessor to the codec of its type if the converter supports primitive values
+     *
+     * @param converter the converter registered for the property type
+     * @return true if the converter was bound
+     */
+    public boolean bind(TypeConverter<?> converter) {
+        longCodec = type == long.class && converter instanceof LongCodec ? (LongCodec) converter : null;
+        intCodec = type == int.class && converter instanceof IntCodec ? (IntCodec) converter : null;
+        doubleCodec = type == double.class && converter instanceof DoubleCodec ? (DoubleCodec) converter : null;
+        booleanCodec = type == boolean.class && converter instanceof BooleanCodec ? (BooleanCodec) converter : null;
+        return isBound();
+    }
+
+    /**
+     * Decodes a column value and sets it in the entity property
+     *
+     * @param entity the entity
+     * @param value  the column value
+     */
+    public void decode(Object entity, ByteBuffer value) {
+        if (longCodec != null) {
+            setLong(entity, longCodec.decode(value));
+        } else if (intCodec != null) {
+            setInt(entity, intCodec.decode(value));
+        } else if (doubleCodec != null) {
+            setDouble(entity, doubleCodec.decode(value));
+        } else if (booleanCodec != null) {
+            setBoolean(entity, booleanCodec.decode(value));
+        } else {
+            throw new IllegalStateException(String.format("no codec bound for %s", property));
+        }
+    }
+
+    /**
+     * Encodes the entity property value as a column value
+     *
+     * @param entity the entity
+     * @return the column value
+     */
+    public ByteBuffer encode(Object entity) {
+        ByteBuffer value;
+        if (longCodec != null) {
+            value = longCodec.encode(getLong(entity));
+        } else if (intCodec != null) {
+            value = intCodec.encode(getInt(entity));
+        } else if (doubleCodec != null) {
+            value = doubleCodec.encode(getDouble(entity));
+        } else if (booleanCodec != null) {
+            value = booleanCodec.encode(getBoolean(entity));
+        } else {
+            throw new IllegalStateException(String.format("no codec bound for %s", property));
+        }
+        return value;
+    }
+
+    /**
+     * @param entity the entity
+     * @return the long property value
+     */
+    public long getLong(Object entity) {
+        throw unsupported();
+    }
+
+    /**
+     * @param entity the entity
+     * @param value  the long property value
+     */
+    public void setLong(Object entity, long value) {
+        throw unsupported();
+    }
+
+    /**
+     * @param entity the entity
+     * @return the int property value
+     */
+    public int getInt(Object entity) {
+        throw unsupported();
+    }
+
+    /**
+     * @param entity the entity
+     * @param value  the int property value
+     */
+    public void setInt(Object entity, int value) {
+        throw unsupported();
+    }
+
+    /**
+     * @param entity the entity
+     * @return the double property value
+     */
+    public double getDouble(Object entity) {
+        throw unsupported();
+    }
+
+    /**
+     * @param entity the entity
+     * @param value  the double property value
+     */
+    public void setDouble(Object entity, double value) {
+        throw unsupported();
+    }
+
+    /**
+     * @param entity the entity
+     * @return the boolean property value
+     */
+    public boolean getBoolean(Object entity) {
+        throw unsupported();
+    }
+
+    /**
+     * @param entity the entity
+     * @param value  the boolean property value
+     */
+    public void setBoolean(Object entity, boolean value) {
+        throw unsupported();
+    }
+
+    /**
+     * Private helper
+     *
+     * @return the exception thrown when accessing the property with the wrong type
+     */
+    private UnsupportedOperationException unsupported() {
+        return new UnsupportedOperationException(String.format("%s is of type %s", property, type));
+    }
+
+    /* Canonical Methods */
+
+    /**
+     * @see Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "PrimitiveAccessor{" +
+                "property=" + property +
+                ", type=" + type +
+                '}';
+    }
+}
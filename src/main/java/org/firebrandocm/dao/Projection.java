@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao;
+
+import org.firebrandocm.dao.utils.ObjectUtils;
+
+import java.util.Arrays;
+
+/**
+ * Selects the properties fetched when loading entities, either listing them or naming a fetch group declared on the
+ * entity with {@link org.firebrandocm.dao.annotations.FetchGroup}. Properties left out of a projection are loaded on
+ * first access to their getter
+ */
+public final class Projection {
+    /* Fields */
+
+	private final String fetchGroup;
+
+	private final String[] properties;
+
+    /* Static Methods */
+
+	public static Projection properties(String... properties) {
+		ObjectUtils.defenseNotNull(properties);
+		return new Projection(null, properties.clone());
+	}
+
+	public static Projection fetchGroup(String name) {
+		ObjectUtils.defenseNotNull(name);
+		return new Projection(name, null);
+	}
+
+    /* Constructors */
+
+	private Projection(String fetchGroup, String[] properties) {
+		this.fetchGroup = fetchGroup;
+		this.properties = properties;
+	}
+
+    /* Getters & Setters */
+
+	/**
+	 * @return the fetch group name, null if the projection lists its properties
+	 */
+	public String getFetchGroup() {
+		return fetchGroup;
+	}
+
+	/**
+	 * @return the projected properties, null if the projection names a fetch group
+	 */
+	public String[] getProperties() {
+		return properties != null ? properties.clone() : null;
+	}
+
+    /* Canonical Methods */
+
+	@Override
+	public String toString() {
+		return fetchGroup != null ? String.format("fetchGroup(%s)", fetchGroup) : String.format("properties%s", Arrays.toString(properties));
+	}
+}
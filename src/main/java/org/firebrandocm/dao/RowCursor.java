@@ -0,0 +1,316 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao;
+
+import org.firebrandocm.dao.transport.RawColumn;
+import org.firebrandocm.dao.transport.RawRow;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Forward only cursor over rows, a single instance is positioned on each row in turn.
+ * Column values are exposed as read only views of the buffers returned by the transport and primitive columns are
+ * decoded in place by the factory codecs, so scanning rows allocates no maps, copies or boxed values. Rows are read a
+ * page at a time, each page after the first starting at the last key read
+ */
+public final class RowCursor {
+    /* Fields */
+
+    /**
+     * the factory whose type converters decode the columns
+     */
+    private final AbstractPersistenceFactory factory;
+
+    /**
+     * the source of the pages of rows
+     */
+    private final PageReader reader;
+
+    /**
+     * the codec for long columns, null if the long converter is not a codec
+     */
+    private final LongCodec longCodec;
+
+    /**
+     * the codec for int columns, null if the int converter is not a codec
+     */
+    private final IntCodec intCodec;
+
+    /**
+     * the codec for double columns, null if the double converter is not a codec
+     */
+    private final DoubleCodec doubleCodec;
+
+    /**
+     * the codec for boolean columns, null if the boolean converter is not a codec
+     */
+    private final BooleanCodec booleanCodec;
+
+    /**
+     * the current page
+     */
+    private List<RawRow> page = Collections.emptyList();
+
+    /**
+     * the position of the current row in the page
+     */
+    private int index;
+
+    /**
+     * the current row, null before the first row and after the last one
+     */
+    private RawRow row;
+
+    /**
+     * the key of the last row of the previous page, skipped when it starts the next page
+     */
+    private String lastKey;
+
+    /**
+     * whether the reader has no more pages
+     */
+    private boolean exhausted;
+
+    /* Constructors */
+
+    /**
+     * Constructs a cursor
+     *
+     * @param factory the factory whose type converters decode the columns
+     * @param reader  the source of the pages of rows
+     */
+    RowCursor(AbstractPersistenceFactory factory, PageReader reader) {
+        this.factory = factory;
+        this.reader = reader;
+        TypeConverter<?> converter = factory.getTypeConverter(long.class);
+        this.longCodec = converter instanceof LongCodec ? (LongCodec) converter : null;
+        converter = factory.getTypeConverter(int.class);
+        this.intCodec = converter instanceof IntCodec ? (IntCodec) converter : null;
+        converter = factory.getTypeConverter(double.class);
+        this.doubleCodec = converter instanceof DoubleCodec ? (DoubleCodec) converter : null;
+        converter = factory.getTypeConverter(boolean.class);
+        this.booleanCodec = converter instanceof BooleanCodec ? (BooleanCodec) converter : null;
+    }
+
+    /* Misc */
+
+    /**
+     * Moves the cursor to the next row, reading the next page if the current one is consumed
+     *
+     * @return whether the cursor is positioned on a row
+     */
+    public boolean next() {
+        while (true) {
+            if (index < page.size()) {
+                row = page.get(index++);
+                if (!row.getColumns().isEmpty() && (index > 1 || !row.getKey().equals(lastKey))) {
+                    return true;
+                }
+            } else if (exhausted) {
+                row = null;
+                return false;
+            } else {
+                if (!page.isEmpty()) {
+                    lastKey = page.get(page.size() - 1).getKey();
+                }
+                List<RawRow> nextPage = reader.read(lastKey);
+                exhausted = nextPage.isEmpty() || reader.isLast(lastKey, nextPage);
+                page = nextPage;
+                index = 0;
+            }
+        }
+    }
+
+    /**
+     * @return the key of the current row
+     */
+    public String getKey() {
+        return current().getKey();
+    }
+
+    /**
+     * @return the number of columns of the current row
+     */
+    public int getColumnCount() {
+        return current().getColumns().size();
+    }
+
+    /**
+     * @param index the position of the column in the current row
+     * @return the column name
+     */
+    public String getColumnName(int index) {
+        return current().getColumns().get(index).getName();
+    }
+
+    /**
+     * @param column the column name
+     * @return whether the current row has the column
+     */
+    public boolean has(String column) {
+        return find(column) != null;
+    }
+
+    /**
+     * @param column the column name
+     * @return a read only view of the column value, null if the row has no such column
+     */
+    public ByteBuffer getBytes(String column) {
+        ByteBuffer value = find(column);
+        return value != null ? value.asReadOnlyBuffer() : null;
+    }
+
+    /**
+     * @param column the column name
+     * @return the column value decoded as a long
+     */
+    public long getLong(String column) {
+        ByteBuffer value = require(column);
+        return longCodec != null ? longCodec.decode(value) : (Long) decode(Long.class, value);
+    }
+
+    /**
+     * @param column the column name
+     * @return the column value decoded as an int
+     */
+    public int getInt(String column) {
+        ByteBuffer value = require(column);
+        return intCodec != null ? intCodec.decode(value) : (Integer) decode(Integer.class, value);
+    }
+
+    /**
+     * @param column the column name
+     * @return the column value decoded as a double
+     */
+    public double getDouble(String column) {
+        ByteBuffer value = require(column);
+        return doubleCodec != null ? doubleCodec.decode(value) : (Double) decode(Double.class, value);
+    }
+
+    /**
+     * @param column the column name
+     * @return the column value decoded as a boolean
+     */
+    public boolean getBoolean(String column) {
+        ByteBuffer value = require(column);
+        return booleanCodec != null ? booleanCodec.decode(value) : (Boolean) decode(Boolean.class, value);
+    }
+
+    /**
+     * @param column the column name
+     * @return the column value decoded as a string, null if the row has no such column
+     */
+    public String getString(String column) {
+        return get(column, String.class);
+    }
+
+    /**
+     * @param column the column name
+     * @return the column value decoded as a date, null if the row has no such column
+     */
+    public Date getDate(String column) {
+        return get(column, Date.class);
+    }
+
+    /**
+     * Decodes a column with the type converter of a type
+     *
+     * @param column the column name
+     * @param type   the type
+     * @param <V>    the value type
+     * @return the decoded value, null if the row has no such column
+     */
+    public <V> V get(String column, Class<V> type) {
+        ByteBuffer value = find(column);
+        return value != null ? type.cast(decode(type, value)) : null;
+    }
+
+    /**
+     * Private helper that gets the current row
+     */
+    private RawRow current() {
+        if (row == null) {
+            throw new IllegalStateException("the cursor is not positioned on a row");
+        }
+        return row;
+    }
+
+    /**
+     * Private helper that finds the value of a column of the current row without copying it
+     */
+    private ByteBuffer find(String column) {
+        List<RawColumn> columns = current().getColumns();
+        for (int i = 0; i < columns.size(); i++) {
+            RawColumn rawColumn = columns.get(i);
+            if (rawColumn.getName().equals(column)) {
+                return rawColumn.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Private helper that finds the value of a column that must be present in the current row
+     */
+    private ByteBuffer require(String column) {
+        ByteBuffer value = find(column);
+        if (value == null) {
+            throw new IllegalArgumentException(String.format("row %s has no column %s", row.getKey(), column));
+        }
+        return value;
+    }
+
+    /**
+     * Private helper that decodes a value with the type converter of a type
+     */
+    private Object decode(Class<?> type, ByteBuffer value) {
+        try {
+            return factory.convertRead(type, value.duplicate());
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /* Inner Classes */
+
+    /**
+     * Source of the pages of rows of a cursor
+     */
+    interface PageReader {
+        /**
+         * Reads a page of rows
+         *
+         * @param lastKey the key of the last row read, null for the first page. The page may start with this row
+         * @return the rows, including deleted rows returned empty, empty if there are no more rows
+         */
+        List<RawRow> read(String lastKey);
+
+        /**
+         * @param lastKey the key the page was read from
+         * @param page    the rows read
+         * @return whether no rows follow the page, such as when it holds fewer rows than requested
+         */
+        boolean isLast(String lastKey, List<RawRow> page);
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao;
+
+import org.apache.cassandra.thrift.CfDef;
+import org.firebrandocm.dao.planner.LookupIndex;
+
+import java.util.Arrays;
+
+/**
+ * The definition of a {@link org.firebrandocm.dao.annotations.View} of an entity, a column family holding a copy of
+ * some of its columns under a row key made of the values of other properties
+ */
+public final class ViewMetadata {
+    /* Fields */
+
+	/**
+	 * the view name, which is also the name of its column family
+	 */
+	private final String name;
+
+	/**
+	 * the properties making the row key
+	 */
+	private final String[] keyProperties;
+
+	/**
+	 * the properties copied into the view
+	 */
+	private final String[] columns;
+
+	/**
+	 * the definition of the view column family
+	 */
+	private final CfDef columnFamilyDefinition;
+
+    /* Constructors */
+
+	/**
+	 * Constructs a view definition
+	 * @param name the view name
+	 * @param keyProperties the properties making the row key
+	 * @param columns the properties copied into the view
+	 * @param columnFamilyDefinition the definition of the view column family
+	 */
+	ViewMetadata(String name, String[] keyProperties, String[] columns, CfDef columnFamilyDefinition) {
+		this.name = name;
+		this.keyProperties = keyProperties.clone();
+		this.columns = columns.clone();
+		this.columnFamilyDefinition = columnFamilyDefinition;
+	}
+
+    /* Getters & Setters */
+
+	/**
+	 * @return the view name, which is also the name of its column family
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the properties making the row key
+	 */
+	public String[] getKeyProperties() {
+		return keyProperties.clone();
+	}
+
+	/**
+	 * @return the properties copied into the view
+	 */
+	public String[] getColumns() {
+		return columns.clone();
+	}
+
+	/**
+	 * @return the definition of the view column family
+	 */
+	public CfDef getColumnFamilyDefinition() {
+		return columnFamilyDefinition;
+	}
+
+    /* Misc */
+
+	/**
+	 * @param values the values of the key properties, in declaration order
+	 * @return the row key of the view, the values joined by ':' with '\' and ':' escaped by '\', null if any value is null
+	 */
+	public String getRowKey(Object... values) {
+		if (values.length != keyProperties.length) {
+			throw new IllegalArgumentException(String.format("view %s is keyed by %s", name, Arrays.toString(keyProperties)));
+		}
+		StringBuilder rowKey = new StringBuilder();
+		for (Object value : values) {
+			if (value == null) {
+				return null;
+			}
+			if (rowKey.length() > 0) {
+				rowKey.append(':');
+			}
+			String literal = LookupIndex.getLiteral(value);
+			for (int i = 0; i < literal.length(); i++) {
+				char c = literal.charAt(i);
+				if (c == '\\' || c == ':') {
+					rowKey.append('\\');
+				}
+				rowKey.append(c);
+			}
+		}
+		return rowKey.toString();
+	}
+
+    /* Canonical Methods */
+
+	@Override
+	public String toString() {
+		return String.format("%s%s -> %s", name, Arrays.toString(keyProperties), Arrays.toString(columns));
+	}
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao.aggregation;
+
+import org.firebrandocm.dao.RowCursor;
+
+/**
+ * The mergeable partial state of an {@link Aggregation}.
+ * An accumulator is fed the rows of a single token range by a single thread, the accumulators of all the ranges are then
+ * merged into one holding the result
+ */
+public interface Accumulator<R> {
+    /* Misc */
+
+	/**
+	 * Adds a row to the state
+	 * @param row the cursor positioned on the row
+	 */
+	void accumulate(RowCursor row);
+
+	/**
+	 * Adds the state of another accumulator of the same aggregation to this one
+	 * @param other the other accumulator
+	 */
+	void merge(Accumulator<R> other);
+
+	/**
+	 * @return the aggregation result for the rows accumulated so far
+	 */
+	R getResult();
+}
@@ -0,0 +1,423 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao.aggregation;
+
+import org.firebrandocm.dao.ClassMetadata;
+import org.firebrandocm.dao.RowCursor;
+
+import java.util.*;
+
+/**
+ * An aggregate computed client side over the rows of an entity column family, as CQL 2 only aggregates counts.
+ * Aggregations declare the columns they decode, so only those are read, and create the {@link Accumulator}s that
+ * hold their partial state per token range. Every aggregation but {@link #groupBy(String, Class, Aggregation)} and
+ * {@link #top(int, String, Class)} keeps constant state, top N keeps at most N rows
+ */
+public abstract class Aggregation<R> {
+    /* Fields */
+
+	/**
+	 * the columns decoded by the aggregation
+	 */
+	private final String[] columns;
+
+    /* Constructors */
+
+	/**
+	 * @param columns the columns decoded by the aggregation
+	 */
+	protected Aggregation(String... columns) {
+		this.columns = columns;
+	}
+
+    /* Getters & Setters */
+
+	/**
+	 * @return the columns decoded by the aggregation
+	 */
+	public String[] getColumns() {
+		return columns.clone();
+	}
+
+    /* Misc */
+
+	/**
+	 * Creates an empty accumulator
+	 * @param metadata the metadata of the aggregated entity, resolving the column types
+	 * @return the accumulator
+	 */
+	public abstract Accumulator<R> newAccumulator(ClassMetadata<?> metadata);
+
+    /* Static Methods */
+
+	/**
+	 * @return an aggregation counting rows
+	 */
+	public static Aggregation<Long> count() {
+		return new Aggregation<Long>() {
+			@Override
+			public Accumulator<Long> newAccumulator(ClassMetadata<?> metadata) {
+				return new CountAccumulator();
+			}
+		};
+	}
+
+	/**
+	 * Sums a numeric column, rows without the column are ignored
+	 * @param column the column
+	 * @return an aggregation returning a Long for integral columns and a Double otherwise
+	 */
+	public static Aggregation<Number> sum(final String column) {
+		return new Aggregation<Number>(column) {
+			@Override
+			public Accumulator<Number> newAccumulator(ClassMetadata<?> metadata) {
+				return new SumAccumulator(new NumericColumn(metadata, column));
+			}
+		};
+	}
+
+	/**
+	 * Averages a numeric column, rows without the column are ignored
+	 * @param column the column
+	 * @return an aggregation returning the average or null if no row has the column
+	 */
+	public static Aggregation<Double> avg(final String column) {
+		return new Aggregation<Double>(column) {
+			@Override
+			public Accumulator<Double> newAccumulator(ClassMetadata<?> metadata) {
+				return new AvgAccumulator(new NumericColumn(metadata, column));
+			}
+		};
+	}
+
+	/**
+	 * Finds the minimum value of a column, rows without the column are ignored
+	 * @param column the column
+	 * @param type the column type
+	 * @return an aggregation returning the minimum or null if no row has the column
+	 */
+	public static <V extends Comparable<? super V>> Aggregation<V> min(final String column, final Class<V> type) {
+		return new Aggregation<V>(column) {
+			@Override
+			public Accumulator<V> newAccumulator(ClassMetadata<?> metadata) {
+				return new ExtremeAccumulator<V>(column, type, -1);
+			}
+		};
+	}
+
+	/**
+	 * Finds the maximum value of a column, rows without the column are ignored
+	 * @param column the column
+	 * @param type the column type
+	 * @return an aggregation returning the maximum or null if no row has the column
+	 */
+	public static <V extends Comparable<? super V>> Aggregation<V> max(final String column, final Class<V> type) {
+		return new Aggregation<V>(column) {
+			@Override
+			public Accumulator<V> newAccumulator(ClassMetadata<?> metadata) {
+				return new ExtremeAccumulator<V>(column, type, 1);
+			}
+		};
+	}
+
+	/**
+	 * Aggregates the rows of each distinct value of a column separately, rows without the column are ignored
+	 * @param column the grouping column
+	 * @param type the grouping column type
+	 * @param aggregation the aggregation computed per group
+	 * @return an aggregation returning the result of each group sorted by group
+	 */
+	public static <K extends Comparable<? super K>, R> Aggregation<SortedMap<K, R>> groupBy(final String column, final Class<K> type, final Aggregation<R> aggregation) {
+		String[] columns = new String[aggregation.columns.length + 1];
+		columns[0] = column;
+		System.arraycopy(aggregation.columns, 0, columns, 1, aggregation.columns.length);
+		return new Aggregation<SortedMap<K, R>>(columns) {
+			@Override
+			public Accumulator<SortedMap<K, R>> newAccumulator(ClassMetadata<?> metadata) {
+				return new GroupAccumulator<K, R>(column, type, aggregation, metadata);
+			}
+		};
+	}
+
+	/**
+	 * Finds the rows with the greatest values of a column, rows without the column are ignored
+	 * @param n the number of rows
+	 * @param column the column
+	 * @param type the column type
+	 * @return an aggregation returning the values of at most n rows by key, from the greatest value down
+	 */
+	public static <V extends Comparable<? super V>> Aggregation<LinkedHashMap<String, V>> top(final int n, final String column, final Class<V> type) {
+		if (n < 1) {
+			throw new IllegalArgumentException("top needs at least 1 row");
+		}
+		return new Aggregation<LinkedHashMap<String, V>>(column) {
+			@Override
+			public Accumulator<LinkedHashMap<String, V>> newAccumulator(ClassMetadata<?> metadata) {
+				return new TopAccumulator<V>(n, column, type);
+			}
+		};
+	}
+
+    /* Inner Classes */
+
+	/**
+	 * A numeric column decoded as a long if its java type is integral and as a double otherwise
+	 */
+	private static final class NumericColumn {
+		private final String column;
+
+		private final Class<?> type;
+
+		private NumericColumn(ClassMetadata<?> metadata, String column) {
+			this.column = column;
+			this.type = metadata.getColumnClass(column);
+			if (type == null || !(Number.class.isAssignableFrom(type) || (type.isPrimitive() && !boolean.class.equals(type)))) {
+				throw new IllegalArgumentException(String.format("%s is not a numeric column of %s", column, metadata.getTarget()));
+			}
+		}
+
+		private boolean isIntegral() {
+			return !Double.class.equals(type) && !double.class.equals(type) && !Float.class.equals(type) && !float.class.equals(type);
+		}
+
+		private long readLong(RowCursor row) {
+			return Integer.class.equals(type) || int.class.equals(type) ? row.getInt(column) : row.getLong(column);
+		}
+
+		private double readDouble(RowCursor row) {
+			return isIntegral() ? readLong(row) : row.getDouble(column);
+		}
+	}
+
+	private static final class CountAccumulator implements Accumulator<Long> {
+		private long count;
+
+		public void accumulate(RowCursor row) {
+			count++;
+		}
+
+		public void merge(Accumulator<Long> other) {
+			count += ((CountAccumulator) other).count;
+		}
+
+		public Long getResult() {
+			return count;
+		}
+	}
+
+	private static final class SumAccumulator implements Accumulator<Number> {
+		private final NumericColumn column;
+
+		private long longSum;
+
+		private double doubleSum;
+
+		private SumAccumulator(NumericColumn column) {
+			this.column = column;
+		}
+
+		public void accumulate(RowCursor row) {
+			if (row.has(column.column)) {
+				if (column.isIntegral()) {
+					longSum += column.readLong(row);
+				} else {
+					doubleSum += column.readDouble(row);
+				}
+			}
+		}
+
+		public void merge(Accumulator<Number> other) {
+			longSum += ((SumAccumulator) other).longSum;
+			doubleSum += ((SumAccumulator) other).doubleSum;
+		}
+
+		public Number getResult() {
+			return column.isIntegral() ? (Number) longSum : (Number) doubleSum;
+		}
+	}
+
+	private static final class AvgAccumulator implements Accumulator<Double> {
+		private final NumericColumn column;
+
+		private double sum;
+
+		private long count;
+
+		private AvgAccumulator(NumericColumn column) {
+			this.column = column;
+		}
+
+		public void accumulate(RowCursor row) {
+			if (row.has(column.column)) {
+				sum += column.readDouble(row);
+				count++;
+			}
+		}
+
+		public void merge(Accumulator<Double> other) {
+			sum += ((AvgAccumulator) other).sum;
+			count += ((AvgAccumulator) other).count;
+		}
+
+		public Double getResult() {
+			return count > 0 ? sum / count : null;
+		}
+	}
+
+	private static final class ExtremeAccumulator<V extends Comparable<? super V>> implements Accumulator<V> {
+		private final String column;
+
+		private final Class<V> type;
+
+		/**
+		 * 1 to keep the maximum, -1 to keep the minimum
+		 */
+		private final int sign;
+
+		private V value;
+
+		private ExtremeAccumulator(String column, Class<V> type, int sign) {
+			this.column = column;
+			this.type = type;
+			this.sign = sign;
+		}
+
+		public void accumulate(RowCursor row) {
+			offer(row.get(column, type));
+		}
+
+		public void merge(Accumulator<V> other) {
+			offer(((ExtremeAccumulator<V>) other).value);
+		}
+
+		private void offer(V candidate) {
+			if (candidate != null && (value == null || Integer.signum(candidate.compareTo(value)) == sign)) {
+				value = candidate;
+			}
+		}
+
+		public V getResult() {
+			return value;
+		}
+	}
+
+	private static final class GroupAccumulator<K extends Comparable<? super K>, R> implements Accumulator<SortedMap<K, R>> {
+		private final String column;
+
+		private final Class<K> type;
+
+		private final Aggregation<R> aggregation;
+
+		private final ClassMetadata<?> metadata;
+
+		private final Map<K, Accumulator<R>> groups = new HashMap<K, Accumulator<R>>();
+
+		private GroupAccumulator(String column, Class<K> type, Aggregation<R> aggregation, ClassMetadata<?> metadata) {
+			this.column = column;
+			this.type = type;
+			this.aggregation = aggregation;
+			this.metadata = metadata;
+		}
+
+		public void accumulate(RowCursor row) {
+			K group = row.get(column, type);
+			if (group != null) {
+				Accumulator<R> accumulator = groups.get(group);
+				if (accumulator == null) {
+					accumulator = aggregation.newAccumulator(metadata);
+					groups.put(group, accumulator);
+				}
+				accumulator.accumulate(row);
+			}
+		}
+
+		public void merge(Accumulator<SortedMap<K, R>> other) {
+			for (Map.Entry<K, Accumulator<R>> entry : ((GroupAccumulator<K, R>) other).groups.entrySet()) {
+				Accumulator<R> accumulator = groups.get(entry.getKey());
+				if (accumulator == null) {
+					groups.put(entry.getKey(), entry.getValue());
+				} else {
+					accumulator.merge(entry.getValue());
+				}
+			}
+		}
+
+		public SortedMap<K, R> getResult() {
+			SortedMap<K, R> result = new TreeMap<K, R>();
+			for (Map.Entry<K, Accumulator<R>> entry : groups.entrySet()) {
+				result.put(entry.getKey(), entry.getValue().getResult());
+			}
+			return result;
+		}
+	}
+
+	private static final class TopAccumulator<V extends Comparable<? super V>> implements Accumulator<LinkedHashMap<String, V>> {
+		private final int n;
+
+		private final String column;
+
+		private final Class<V> type;
+
+		/**
+		 * the top rows, the smallest value at the head
+		 */
+		private final PriorityQueue<Map.Entry<String, V>> rows;
+
+		private TopAccumulator(int n, String column, Class<V> type) {
+			this.n = n;
+			this.column = column;
+			this.type = type;
+			this.rows = new PriorityQueue<Map.Entry<String, V>>(n, new Comparator<Map.Entry<String, V>>() {
+				public int compare(Map.Entry<String, V> left, Map.Entry<String, V> right) {
+					return left.getValue().compareTo(right.getValue());
+				}
+			});
+		}
+
+		public void accumulate(RowCursor row) {
+			V value = row.get(column, type);
+			if (value != null && (rows.size() < n || value.compareTo(rows.peek().getValue()) > 0)) {
+				offer(new AbstractMap.SimpleImmutableEntry<String, V>(row.getKey(), value));
+			}
+		}
+
+		public void merge(Accumulator<LinkedHashMap<String, V>> other) {
+			for (Map.Entry<String, V> row : ((TopAccumulator<V>) other).rows) {
+				offer(row);
+			}
+		}
+
+		private void offer(Map.Entry<String, V> row) {
+			rows.offer(row);
+			if (rows.size() > n) {
+				rows.poll();
+			}
+		}
+
+		public LinkedHashMap<String, V> getResult() {
+			List<Map.Entry<String, V>> sorted = new ArrayList<Map.Entry<String, V>>(rows);
+			Collections.sort(sorted, Collections.reverseOrder(rows.comparator()));
+			LinkedHashMap<String, V> result = new LinkedHashMap<String, V>();
+			for (Map.Entry<String, V> row : sorted) {
+				result.put(row.getKey(), row.getValue());
+			}
+			return result;
+		}
+	}
+}
@@ -54,6 +54,26 @@ public @interface Column {
 	 */
 	boolean indexed() default false;
 
+	/**
+	 *
+	 * @return if persist and remove should maintain index rows ordering the entities by the value of this column, so
+	 * range predicates on it are resolved as column slices
+	 */
+	boolean orderedIndex() default false;
+
+	/**
+	 *
+	 * @return the number of index rows the entries of an ordered index are spread over
+	 */
+	int orderedIndexBuckets() default 8;
+
+	/**
+	 *
+	 * @return if persist and remove should maintain lookup rows mapping each value of this column to the keys holding
+	 * it, so equality predicates on it read a single row instead of querying a secondary index on every node
+	 */
+	boolean lookupIndex() default false;
+
 	/**
 	 *
 	 * @return if this basic column should be loaded when its getter  is invoked
@@ -37,4 +37,11 @@ public @interface CounterIncrease {
 	 * @return the counter property this counter increases or decreases
 	 */
 	String value();
+
+	/**
+	 *
+	 * @return the time buckets the increases are also added to in the rollup column family, so totals per bucket are
+	 * read without scanning the increases
+	 */
+	Granularity[] rollups() default {};
 }
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao.annotations;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * A named set of properties loaded together when an entity is fetched through a projection, the remaining properties
+ * are loaded on first access
+ */
+@Target({TYPE})
+@Retention(RUNTIME)
+public @interface FetchGroup {
+    /* Misc */
+
+    /**
+     *
+     * @return the fetch group name, unique for the entity
+     */
+	String name();
+
+    /**
+     *
+     * @return the properties fetched by this group
+     */
+	String[] properties();
+}
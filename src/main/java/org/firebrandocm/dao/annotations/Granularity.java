@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao.annotations;
+
+/**
+ * The time buckets counter increases are rolled up into, see {@link CounterIncrease#rollups()}.
+ * Buckets are aligned to the epoch, so day buckets start at midnight UTC
+ */
+public enum Granularity {
+    MINUTE(60L * 1000L),
+    HOUR(60L * 60L * 1000L),
+    DAY(24L * 60L * 60L * 1000L);
+
+    /* Fields */
+
+	/**
+	 * the length of a bucket
+	 */
+	private final long millis;
+
+    /* Constructors */
+
+	Granularity(long millis) {
+		this.millis = millis;
+	}
+
+    /* Getters & Setters */
+
+	/**
+	 * @return the length of a bucket in milliseconds
+	 */
+	public long getMillis() {
+		return millis;
+	}
+
+    /* Misc */
+
+	/**
+	 * @param time a time in milliseconds
+	 * @return the start of the bucket holding the time
+	 */
+	public long truncate(long time) {
+		return time - ((time % millis) + millis) % millis;
+	}
+}
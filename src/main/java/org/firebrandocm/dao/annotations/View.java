@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao.annotations;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * A denormalized copy of some columns of an entity keyed by other properties, kept in its own column family by persist
+ * and remove so the entity can be read by those properties without secondary indexes
+ */
+@Target({TYPE})
+@Retention(RUNTIME)
+public @interface View {
+    /* Misc */
+
+    /**
+     *
+     * @return the view name, which is also the name of its column family
+     */
+	String name();
+
+    /**
+     *
+     * @return the properties whose values, joined by ':', make the row key of the view. They should identify a single
+     * entity
+     */
+	String[] key();
+
+    /**
+     *
+     * @return the properties copied into the view
+     */
+	String[] columns();
+}
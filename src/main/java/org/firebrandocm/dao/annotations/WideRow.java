@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao.annotations;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Placed on a column family class maps each of its rows as a wide row of ordered, typed columns, such as the points of
+ * a time series, instead of an entity. Column names are stored as strings ordered as their typed values, so the column
+ * family must keep the default UTF8 comparator
+ */
+@Target({TYPE})
+@Retention(RUNTIME)
+public @interface WideRow {
+    /* Misc */
+
+    /**
+     *
+     * @return the column name type, one of String, Long, Integer, Double, Date or UUID for time based UUIDs
+     */
+	Class<?> nameClass();
+
+    /**
+     *
+     * @return the column value type, converted through the factory type converters
+     */
+	Class<?> valueClass();
+}
@@ -0,0 +1,687 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao.annotations.processing;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.*;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Annotation processor that generates, for each @ColumnFamily class, a subclass of
+ * {@link org.firebrandocm.dao.GeneratedMetadata} named after the entity plus {@code $$Metadata}.
+ * The generated source registers the properties, primitive accessors, listener invokers and named queries the runtime
+ * would otherwise discover through reflection, and declares an {@code Enhanced} subclass of the entity overriding its lazy
+ * property getters so no runtime proxy is needed.
+ * Entities the generated code can't reach (private or generic classes, inaccessible property types, missing no-arg
+ * constructors or non overridable lazy getters) are reported as notes and keep using reflection.
+ * Generation can be turned off with {@code -Afirebrand.generateMetadata=false}
+ */
+@SupportedAnnotationTypes(ColumnFamilyIndexProcessor.COLUMN_FAMILY_ANNOTATION)
+@SupportedOptions(ClassMetadataProcessor.GENERATE_OPTION)
+public class ClassMetadataProcessor extends AbstractProcessor {
+    /* Fields */
+
+    /**
+     * the processor option that turns metadata generation off when set to false
+     */
+    public static final String GENERATE_OPTION = "firebrand.generateMetadata";
+
+    /**
+     * the suffix appended to the entity binary name, kept in sync with GeneratedMetadata.SUFFIX
+     */
+    private static final String SUFFIX = "$$Metadata";
+
+    private static final String ANNOTATIONS_PACKAGE = "org.firebrandocm.dao.annotations.";
+
+    private static final String PERSISTENCE_FACTORY = "org.firebrandocm.dao.PersistenceFactory";
+
+    /**
+     * accessor method suffixes by supported primitive kind, mirrors PrimitiveAccessor
+     */
+    private static final Map<TypeKind, String> ACCESSOR_SUFFIXES = new EnumMap<TypeKind, String>(TypeKind.class);
+
+    static {
+        ACCESSOR_SUFFIXES.put(TypeKind.LONG, "Long");
+        ACCESSOR_SUFFIXES.put(TypeKind.INT, "Int");
+        ACCESSOR_SUFFIXES.put(TypeKind.DOUBLE, "Double");
+        ACCESSOR_SUFFIXES.put(TypeKind.BOOLEAN, "Boolean");
+    }
+
+    /**
+     * the names of the classes generated through all rounds
+     */
+    private final Set<String> generated = new HashSet<String>();
+
+    private Elements elements;
+
+    private Types types;
+
+    /* Misc */
+
+    /**
+     * @see AbstractProcessor#getSupportedSourceVersion()
+     */
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    /**
+     * Generates the metadata of the @ColumnFamily classes found on each round
+     *
+     * @see AbstractProcessor#process(java.util.Set, javax.annotation.processing.RoundEnvironment)
+     */
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if ("false".equalsIgnoreCase(processingEnv.getOptions().get(GENERATE_OPTION))) {
+            return false;
+        }
+        elements = processingEnv.getElementUtils();
+        types = processingEnv.getTypeUtils();
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() == ElementKind.CLASS) {
+                    TypeElement entity = (TypeElement) element;
+                    try {
+                        generate(entity);
+                    } catch (UnsupportedEntityException e) {
+                        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                                String.format("%s: metadata not generated, %s", entity.getQualifiedName(), e.getMessage()), entity);
+                    } catch (IOException e) {
+                        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                                String.format("unable to write the metadata of %s: %s", entity.getQualifiedName(), e), entity);
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Private helper that generates the metadata source of an entity
+     */
+    private void generate(TypeElement entity) throws UnsupportedEntityException, IOException {
+        String packageName = elements.getPackageOf(entity).getQualifiedName().toString();
+        String binaryName = elements.getBinaryName(entity).toString();
+        String metadataName = binaryName + SUFFIX;
+        if (!generated.add(metadataName)) {
+            return;
+        }
+        checkInstantiable(entity, packageName);
+        EntityDescription description = new EntityDescription(entity, packageName);
+        describeColumnFamily(description);
+        describeFields(description, entity, "");
+        describeListeners(description);
+        describeNamedQueries(description);
+        describeFetchGroups(description);
+        describeViews(description);
+        String simpleName = packageName.length() == 0 ? metadataName : metadataName.substring(packageName.length() + 1);
+        JavaFileObject source = processingEnv.getFiler().createSourceFile(metadataName, entity);
+        Writer writer = source.openWriter();
+        try {
+            writer.write(description.toSource(simpleName));
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Private helper that verifies the generated code can instantiate and subclass the entity
+     */
+    private void checkInstantiable(TypeElement entity, String packageName) throws UnsupportedEntityException {
+        if (entity.getModifiers().contains(Modifier.ABSTRACT)) {
+            throw new UnsupportedEntityException("the class is abstract");
+        }
+        if (!entity.getTypeParameters().isEmpty()) {
+            throw new UnsupportedEntityException("the class is generic");
+        }
+        if (entity.getNestingKind() == NestingKind.MEMBER && !entity.getModifiers().contains(Modifier.STATIC)) {
+            throw new UnsupportedEntityException("the class is an inner class");
+        }
+        if (entity.getNestingKind() == NestingKind.LOCAL || entity.getNestingKind() == NestingKind.ANONYMOUS) {
+            throw new UnsupportedEntityException("the class is local");
+        }
+        checkAccessible(entity.asType(), packageName);
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(entity.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                return;
+            }
+        }
+        throw new UnsupportedEntityException("the class has no accessible no-arg constructor");
+    }
+
+    /**
+     * Private helper that verifies a type can be referenced from the entity package
+     */
+    private void checkAccessible(TypeMirror type, String packageName) throws UnsupportedEntityException {
+        TypeMirror erasure = types.erasure(type);
+        if (erasure.getKind() == TypeKind.ARRAY) {
+            checkAccessible(((ArrayType) erasure).getComponentType(), packageName);
+        } else if (erasure.getKind() == TypeKind.DECLARED) {
+            Element element = ((DeclaredType) erasure).asElement();
+            while (element instanceof TypeElement) {
+                Set<Modifier> modifiers = element.getModifiers();
+                if (modifiers.contains(Modifier.PRIVATE) || (!modifiers.contains(Modifier.PUBLIC)
+                        && !elements.getPackageOf(element).getQualifiedName().contentEquals(packageName))) {
+                    throw new UnsupportedEntityException(String.format("%s is not accessible", type));
+                }
+                element = element.getEnclosingElement();
+            }
+        } else if (!erasure.getKind().isPrimitive()) {
+            throw new UnsupportedEntityException(String.format("the type %s can't be resolved", type));
+        }
+    }
+
+    /**
+     * Private helper that describes the @ColumnFamily settings
+     */
+    private void describeColumnFamily(EntityDescription description) throws UnsupportedEntityException {
+        Map<String, AnnotationValue> values = values(mirror(description.entity, "ColumnFamily"));
+        String name = (String) values.get("name").getValue();
+        description.statement("columnFamily(%s, %s, %s, %s, %s, %s, %s, %s, %s, %s, %s, %s, %s, %s, %s)",
+                constant(name.length() > 0 ? name : description.entity.getSimpleName().toString()),
+                constant(values.get("keySpace").getValue()),
+                enumConstant(values.get("consistencyLevel")),
+                constant(values.get("comment").getValue()),
+                className(values.get("compareWith")),
+                constant(values.get("reversed").getValue()),
+                constant(values.get("keysCached").getValue()),
+                constant(values.get("rowsCached").getValue()),
+                constant(values.get("readRepairChance").getValue()),
+                constant(values.get("gcGraceSeconds").getValue()),
+                className(values.get("defaultValidationClass")),
+                className(values.get("defaultKeyValidationClass")),
+                constant(values.get("minCompactionThreshold").getValue()),
+                constant(values.get("maxCompactionThreshold").getValue()),
+                constant(values.get("replicateOnWrite").getValue()));
+        AnnotationMirror wideRow = mirror(description.entity, "WideRow");
+        if (wideRow != null) {
+            Map<String, AnnotationValue> wideRowValues = values(wideRow);
+            TypeMirror nameClass = (TypeMirror) wideRowValues.get("nameClass").getValue();
+            TypeMirror valueClass = (TypeMirror) wideRowValues.get("valueClass").getValue();
+            checkAccessible(nameClass, description.packageName);
+            checkAccessible(valueClass, description.packageName);
+            description.statement("wideRow(%s, %s)", classLiteral(nameClass), classLiteral(valueClass));
+        }
+    }
+
+    /**
+     * Private helper that describes the persistent fields of a class, following the rules ClassMetadata applies
+     * through reflection
+     */
+    private void describeFields(EntityDescription description, TypeElement type, String prefix) throws UnsupportedEntityException {
+        Map<String, VariableElement> fields = new LinkedHashMap<String, VariableElement>();
+        for (TypeElement current : hierarchy(type)) {
+            for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+                fields.put(field.getSimpleName().toString(), field);
+            }
+        }
+        for (VariableElement field : fields.values()) {
+            String property = prefix + field.getSimpleName();
+            if (valid(description, field, property)) {
+                describeField(description, field, property);
+            }
+        }
+    }
+
+    /**
+     * Private helper that mirrors ClassMetadata#valid
+     */
+    private boolean valid(EntityDescription description, VariableElement field, String property) {
+        return !property.equals("class")
+                && mirror(field, "Transient") == null
+                && !property.equals(description.keyProperty)
+                && !types.erasure(field.asType()).toString().equals(PERSISTENCE_FACTORY)
+                && !field.getModifiers().contains(Modifier.STATIC);
+    }
+
+    /**
+     * Private helper that describes a single persistent field
+     */
+    private void describeField(EntityDescription description, VariableElement field, String property) throws UnsupportedEntityException {
+        TypeMirror type = field.asType();
+        checkAccessible(type, description.packageName);
+        String typeLiteral = classLiteral(type);
+        AnnotationMirror mapped = mirror(field, "Mapped");
+        AnnotationMirror mappedCollection = mirror(field, "MappedCollection");
+        AnnotationMirror counterIncrease = mirror(field, "CounterIncrease");
+        if (mirror(field, "Embedded") != null) {
+            description.statement("embedded(%s, %s)", constant(property), typeLiteral);
+            if (!(types.asElement(type) instanceof TypeElement)) {
+                throw new UnsupportedEntityException(String.format("the embedded property %s is not a class", property));
+            }
+            describeFields(description, (TypeElement) types.asElement(type), property + ".");
+        } else if (mapped != null) {
+            boolean lazy = (Boolean) values(mapped).get("lazy").getValue();
+            description.statement("mapped(%s, %s, %s)", constant(property), typeLiteral, lazy);
+            addLazyGetterIfNecessary(description, property, lazy);
+        } else if (mappedCollection != null) {
+            boolean lazy = (Boolean) values(mappedCollection).get("lazy").getValue();
+            description.statement("mappedCollection(%s, %s, %s)", constant(property), typeLiteral, lazy);
+            addLazyGetterIfNecessary(description, property, lazy);
+        } else if (counterIncrease != null) {
+            description.statement("counterIncrease(%s, %s, %s)", constant(property), typeLiteral,
+                    constant(values(counterIncrease).get("value").getValue()));
+            List<?> rollups = (List<?>) values(counterIncrease).get("rollups").getValue();
+            if (!rollups.isEmpty()) {
+                StringBuilder arguments = new StringBuilder(constant(property));
+                for (Object rollup : rollups) {
+                    arguments.append(", ").append(enumConstant((AnnotationValue) rollup));
+                }
+                description.statement("rollup(%s)", arguments);
+            }
+            addAccessorIfSupported(description, property, type, false);
+        } else {
+            if (mirror(field, "Key") != null) {
+                description.keyProperty = property;
+                description.statement("key(%s)", constant(property));
+            }
+            TypeElement container = (TypeElement) field.getEnclosingElement();
+            checkAccessible(container.asType(), description.packageName);
+            AnnotationMirror column = mirror(field, "Column");
+            Map<String, AnnotationValue> values = column != null ? values(column) : null;
+            boolean lazy = values != null && (Boolean) values.get("lazy").getValue();
+            description.statement("column(%s, %s, %s, %s, %s, %s, %s, %s)", constant(property), typeLiteral,
+                    classLiteral(container.asType()),
+                    values != null && (Boolean) values.get("indexed").getValue(),
+                    lazy,
+                    values != null && (Boolean) values.get("counter").getValue(),
+                    values != null ? className(values.get("validationClass")) : "null",
+                    values != null ? enumConstant(values.get("indexType")) : "null");
+            if (values != null && (Boolean) values.get("orderedIndex").getValue()) {
+                description.statement("orderedIndex(%s, %s)", constant(property), constant(values.get("orderedIndexBuckets").getValue()));
+            }
+            if (values != null && (Boolean) values.get("lookupIndex").getValue()) {
+                description.statement("lookupIndex(%s)", constant(property));
+            }
+            addAccessorIfSupported(description, property, type, lazy);
+            addLazyGetterIfNecessary(description, property, lazy);
+        }
+    }
+
+    /**
+     * Private helper that describes a direct primitive accessor when the property has public accessor methods,
+     * mirroring the accessors ClassMetadata generates at runtime
+     */
+    private void addAccessorIfSupported(EntityDescription description, String property, TypeMirror type, boolean lazy) {
+        String suffix = ACCESSOR_SUFFIXES.get(type.getKind());
+        if (suffix != null && !lazy && !property.contains(".")) {
+            ExecutableElement getter = getter(description.entity, property, type);
+            ExecutableElement setter = setter(description.entity, property, type);
+            if (getter != null && setter != null && getter.getModifiers().contains(Modifier.PUBLIC) && setter.getModifiers().contains(Modifier.PUBLIC)) {
+                String entityName = description.entity.getQualifiedName().toString();
+                description.accessors.add(String.format("        accessor(%s, %s.class, new PrimitiveAccessor() {\n" +
+                        "            @Override\n" +
+                        "            public %s get%s(Object entity) {\n" +
+                        "                return ((%s) entity).%s();\n" +
+                        "            }\n\n" +
+                        "            @Override\n" +
+                        "            public void set%s(Object entity, %s value) {\n" +
+                        "                ((%s) entity).%s(value);\n" +
+                        "            }\n" +
+                        "        });\n",
+                        constant(property), type, type, suffix, entityName, getter.getSimpleName(),
+                        suffix, type, entityName, setter.getSimpleName()));
+            }
+        }
+    }
+
+    /**
+     * Private helper that registers the getter the enhanced subclass overrides for a lazy property
+     */
+    private void addLazyGetterIfNecessary(EntityDescription description, String property, boolean lazy) throws UnsupportedEntityException {
+        if (lazy) {
+            if (property.contains(".")) {
+                throw new UnsupportedEntityException(String.format("the lazy property %s is embedded", property));
+            }
+            if (description.entity.getModifiers().contains(Modifier.FINAL)) {
+                throw new UnsupportedEntityException("the class is final and has lazy properties");
+            }
+            ExecutableElement getter = getter(description.entity, property, null);
+            if (getter == null || getter.getModifiers().contains(Modifier.PRIVATE) || getter.getModifiers().contains(Modifier.FINAL)
+                    || getter.getModifiers().contains(Modifier.STATIC)) {
+                throw new UnsupportedEntityException(String.format("the lazy property %s has no overridable getter", property));
+            }
+            description.lazyGetters.put(property, getter);
+        }
+    }
+
+    /**
+     * Private helper that describes the @OnEvent listener methods declared through the class hierarchy
+     */
+    private void describeListeners(EntityDescription description) {
+        Set<String> described = new HashSet<String>();
+        List<TypeElement> hierarchy = hierarchy(description.entity);
+        Collections.reverse(hierarchy);
+        for (TypeElement current : hierarchy) {
+            for (ExecutableElement method : ElementFilter.methodsIn(current.getEnclosedElements())) {
+                AnnotationMirror onEvent = mirror(method, "OnEvent");
+                if (onEvent != null && method.getParameters().isEmpty()) {
+                    String event = enumConstant(values(onEvent).get("value"));
+                    if (!described.add(event + method.getSimpleName())) {
+                        continue;
+                    }
+                    Set<Modifier> modifiers = method.getModifiers();
+                    boolean samePackage = elements.getPackageOf(current).getQualifiedName().contentEquals(description.packageName);
+                    if (modifiers.contains(Modifier.PUBLIC) || (samePackage && !modifiers.contains(Modifier.PRIVATE))) {
+                        description.listeners.add(String.format("        listener(%s, new EntityListenerInvoker() {\n" +
+                                "            @Override\n" +
+                                "            protected void doInvoke(Object entity) throws Throwable {\n" +
+                                "                ((%s) entity).%s();\n" +
+                                "            }\n" +
+                                "        });\n",
+                                event, description.entity.getQualifiedName(), method.getSimpleName()));
+                    } else {
+                        description.listeners.add(String.format("        reflectiveListener(%s, %s, %s);\n", event,
+                                constant(elements.getBinaryName(current).toString()), constant(method.getSimpleName().toString())));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Private helper that describes the @NamedQuery and @NamedQueries of the entity
+     */
+    private void describeNamedQueries(EntityDescription description) {
+        List<AnnotationMirror> queries = new ArrayList<AnnotationMirror>();
+        AnnotationMirror namedQueries = mirror(description.entity, "NamedQueries");
+        if (namedQueries != null) {
+            for (Object value : (List<?>) values(namedQueries).get("value").getValue()) {
+                queries.add((AnnotationMirror) ((AnnotationValue) value).getValue());
+            }
+        }
+        AnnotationMirror namedQuery = mirror(description.entity, "NamedQuery");
+        if (namedQuery != null) {
+            queries.add(namedQuery);
+        }
+        for (AnnotationMirror query : queries) {
+            Map<String, AnnotationValue> values = values(query);
+            description.statement("namedQuery(%s, %s)", constant(values.get("name").getValue()), constant(values.get("query").getValue()));
+        }
+    }
+
+    /**
+     * Private helper that describes the @FetchGroup and @FetchGroups of the entity
+     */
+    private void describeFetchGroups(EntityDescription description) {
+        List<AnnotationMirror> groups = new ArrayList<AnnotationMirror>();
+        AnnotationMirror fetchGroups = mirror(description.entity, "FetchGroups");
+        if (fetchGroups != null) {
+            for (Object value : (List<?>) values(fetchGroups).get("value").getValue()) {
+                groups.add((AnnotationMirror) ((AnnotationValue) value).getValue());
+            }
+        }
+        AnnotationMirror fetchGroup = mirror(description.entity, "FetchGroup");
+        if (fetchGroup != null) {
+            groups.add(fetchGroup);
+        }
+        for (AnnotationMirror group : groups) {
+            Map<String, AnnotationValue> values = values(group);
+            StringBuilder arguments = new StringBuilder(constant(values.get("name").getValue()));
+            for (Object property : (List<?>) values.get("properties").getValue()) {
+                arguments.append(", ").append(constant(((AnnotationValue) property).getValue()));
+            }
+            description.statement("fetchGroup(%s)", arguments);
+        }
+    }
+
+    /**
+     * Private helper that describes the @View and @Views of the entity
+     */
+    private void describeViews(EntityDescription description) {
+        List<AnnotationMirror> views = new ArrayList<AnnotationMirror>();
+        AnnotationMirror viewsMirror = mirror(description.entity, "Views");
+        if (viewsMirror != null) {
+            for (Object value : (List<?>) values(viewsMirror).get("value").getValue()) {
+                views.add((AnnotationMirror) ((AnnotationValue) value).getValue());
+            }
+        }
+        AnnotationMirror view = mirror(description.entity, "View");
+        if (view != null) {
+            views.add(view);
+        }
+        for (AnnotationMirror declared : views) {
+            Map<String, AnnotationValue> values = values(declared);
+            description.statement("view(%s, %s, %s)", constant(values.get("name").getValue()),
+                    constants((List<?>) values.get("key").getValue()), constants((List<?>) values.get("columns").getValue()));
+        }
+    }
+
+    /**
+     * Private helper that writes the values of an array annotation member as a String array expression
+     */
+    private String constants(List<?> values) {
+        StringBuilder expression = new StringBuilder("new String[] {");
+        for (int i = 0; i < values.size(); i++) {
+            expression.append(i > 0 ? ", " : "").append(constant(((AnnotationValue) values.get(i)).getValue()));
+        }
+        return expression.append("}").toString();
+    }
+
+    /**
+     * Private helper that finds a property getter as a JavaBeans introspector would
+     */
+    private ExecutableElement getter(TypeElement entity, String property, TypeMirror type) {
+        String capitalized = Character.toUpperCase(property.charAt(0)) + property.substring(1);
+        for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(entity))) {
+            String name = method.getSimpleName().toString();
+            boolean matches = name.equals("get" + capitalized) || (name.equals("is" + capitalized) && method.getReturnType().getKind() == TypeKind.BOOLEAN);
+            if (matches && method.getParameters().isEmpty() && (type == null || types.isSameType(method.getReturnType(), type))) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Private helper that finds a property setter as a JavaBeans introspector would
+     */
+    private ExecutableElement setter(TypeElement entity, String property, TypeMirror type) {
+        String name = "set" + Character.toUpperCase(property.charAt(0)) + property.substring(1);
+        for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(entity))) {
+            if (method.getSimpleName().contentEquals(name) && method.getParameters().size() == 1
+                    && types.isSameType(method.getParameters().get(0).asType(), type)) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Private helper that lists a class and its superclasses, root first
+     */
+    private List<TypeElement> hierarchy(TypeElement type) {
+        LinkedList<TypeElement> hierarchy = new LinkedList<TypeElement>();
+        for (Element current = type; current instanceof TypeElement; current = types.asElement(((TypeElement) current).getSuperclass())) {
+            hierarchy.addFirst((TypeElement) current);
+        }
+        return hierarchy;
+    }
+
+    /**
+     * Private helper that finds a firebrand annotation on an element
+     */
+    private AnnotationMirror mirror(Element element, String annotation) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(ANNOTATIONS_PACKAGE + annotation)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Private helper that gets the annotation values by name, including defaults
+     */
+    private Map<String, AnnotationValue> values(AnnotationMirror mirror) {
+        Map<String, AnnotationValue> values = new HashMap<String, AnnotationValue>();
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : elements.getElementValuesWithDefaults(mirror).entrySet()) {
+            values.put(entry.getKey().getSimpleName().toString(), entry.getValue());
+        }
+        return values;
+    }
+
+    /**
+     * Private helper that renders a constant as a Java literal
+     */
+    private String constant(Object value) {
+        return elements.getConstantExpression(value);
+    }
+
+    /**
+     * Private helper that renders a class valued annotation member as the literal of the class binary name
+     */
+    private String className(AnnotationValue value) {
+        return constant(elements.getBinaryName((TypeElement) types.asElement((TypeMirror) value.getValue())).toString());
+    }
+
+    /**
+     * Private helper that renders an enum valued annotation member as a qualified constant
+     */
+    private String enumConstant(AnnotationValue value) {
+        VariableElement constant = (VariableElement) value.getValue();
+        return ((TypeElement) constant.getEnclosingElement()).getQualifiedName() + "." + constant.getSimpleName();
+    }
+
+    /**
+     * Private helper that renders the class literal of a type
+     */
+    private String classLiteral(TypeMirror type) {
+        return types.erasure(type) + ".class";
+    }
+
+    /* Inner Classes */
+
+    /**
+     * Collects the generated statements of an entity and renders its metadata source
+     */
+    private final class EntityDescription {
+        private final TypeElement entity;
+
+        private final String packageName;
+
+        private final StringBuilder statements = new StringBuilder();
+
+        private final List<String> accessors = new ArrayList<String>();
+
+        private final List<String> listeners = new ArrayList<String>();
+
+        private final Map<String, ExecutableElement> lazyGetters = new LinkedHashMap<String, ExecutableElement>();
+
+        private String keyProperty;
+
+        private EntityDescription(TypeElement entity, String packageName) {
+            this.entity = entity;
+            this.packageName = packageName;
+        }
+
+        private void statement(String format, Object... args) {
+            statements.append("        ").append(String.format(format, args)).append(";\n");
+        }
+
+        private String toSource(String simpleName) {
+            String entityName = entity.getQualifiedName().toString();
+            StringBuilder source = new StringBuilder();
+            if (packageName.length() > 0) {
+                source.append("package ").append(packageName).append(";\n\n");
+            }
+            source.append("import org.firebrandocm.dao.EntityListenerInvoker;\n")
+                    .append("import org.firebrandocm.dao.GeneratedMetadata;\n")
+                    .append("import org.firebrandocm.dao.PrimitiveAccessor;\n\n")
+                    .append("/**\n")
+                    .append(" * Metadata of {@link ").append(entityName).append("} generated by ").append(ClassMetadataProcessor.class.getName()).append(", do not edit\n")
+                    .append(" */\n")
+                    .append("public final class ").append(simpleName).append(" extends GeneratedMetadata<").append(entityName).append("> {\n")
+                    .append("    public ").append(simpleName).append("() {\n")
+                    .append("        super(").append(entityName).append(".class);\n")
+                    .append("    }\n\n")
+                    .append("    @Override\n")
+                    .append("    protected void describe() {\n")
+                    .append(statements);
+            for (String accessor : accessors) {
+                source.append(accessor);
+            }
+            for (String listener : listeners) {
+                source.append(listener);
+            }
+            source.append("    }\n\n")
+                    .append("    @Override\n")
+                    .append("    protected ").append(entityName).append(" newInstance() {\n")
+                    .append("        return new ").append(lazyGetters.isEmpty() ? entityName : "Enhanced").append("();\n")
+                    .append("    }\n");
+            if (!lazyGetters.isEmpty()) {
+                appendEnhanced(source, entityName);
+            }
+            source.append("}\n");
+            return source.toString();
+        }
+
+        private void appendEnhanced(StringBuilder source, String entityName) {
+            source.append("\n    /**\n")
+                    .append("     * Loads the lazy properties of ").append(entityName).append(" on first access\n")
+                    .append("     */\n")
+                    .append("    public static class Enhanced extends ").append(entityName).append(" implements org.firebrandocm.dao.EnhancedEntity {\n")
+                    .append("        private transient org.firebrandocm.dao.LazyPropertyLoader firebrand$loader;\n\n")
+                    .append("        @Override\n")
+                    .append("        public void setLazyPropertyLoader(org.firebrandocm.dao.LazyPropertyLoader loader) {\n")
+                    .append("            this.firebrand$loader = loader;\n")
+                    .append("        }\n");
+            for (Map.Entry<String, ExecutableElement> entry : lazyGetters.entrySet()) {
+                ExecutableElement getter = entry.getValue();
+                ExecutableType resolved = (ExecutableType) types.asMemberOf((DeclaredType) entity.asType(), getter);
+                String access = getter.getModifiers().contains(Modifier.PUBLIC) ? "public " : getter.getModifiers().contains(Modifier.PROTECTED) ? "protected " : "";
+                StringBuilder thrown = new StringBuilder();
+                for (TypeMirror type : resolved.getThrownTypes()) {
+                    thrown.append(thrown.length() == 0 ? " throws " : ", ").append(type);
+                }
+                source.append("\n        @Override\n")
+                        .append("        ").append(access).append(resolved.getReturnType()).append(" ").append(getter.getSimpleName()).append("()").append(thrown).append(" {\n")
+                        .append("            ").append(resolved.getReturnType()).append(" value = super.").append(getter.getSimpleName()).append("();\n")
+                        .append("            if (firebrand$loader != null && firebrand$loader.load(this, ").append(constant(entry.getKey())).append(", value)) {\n")
+                        .append("                value = super.").append(getter.getSimpleName()).append("();\n")
+                        .append("            }\n")
+                        .append("            return value;\n")
+                        .append("        }\n");
+            }
+            source.append("    }\n");
+        }
+    }
+
+    /**
+     * Thrown when the generated code can't describe an entity, which then keeps using reflection
+     */
+    private static final class UnsupportedEntityException extends Exception {
+        private UnsupportedEntityException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao.annotations.processing;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.*;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Annotation processor that writes the names of all @ColumnFamily classes to {@link #INDEX_RESOURCE} at compile time
+ * so the persistence factory can find its entities without scanning the classpath.
+ * Entries of a previous index are kept while their classes still exist to support incremental compilation
+ */
+@SupportedAnnotationTypes(ColumnFamilyIndexProcessor.COLUMN_FAMILY_ANNOTATION)
+public class ColumnFamilyIndexProcessor extends AbstractProcessor {
+    /* Fields */
+
+    /**
+     * the class path resource holding one fully qualified @ColumnFamily class name per line
+     */
+    public static final String INDEX_RESOURCE = "META-INF/firebrand/entities";
+
+    /**
+     * the name of the indexed annotation
+     */
+    static final String COLUMN_FAMILY_ANNOTATION = "org.firebrandocm.dao.annotations.ColumnFamily";
+
+    /**
+     * the class names collected through all rounds
+     */
+    private final Set<String> entities = new TreeSet<String>();
+
+    /* Misc */
+
+    /**
+     * @see AbstractProcessor#getSupportedSourceVersion()
+     */
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    /**
+     * Collects annotated classes on each round and writes the index once processing is over
+     *
+     * @see AbstractProcessor#process(java.util.Set, javax.annotation.processing.RoundEnvironment)
+     */
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element instanceof TypeElement) {
+                    entities.add(processingEnv.getElementUtils().getBinaryName((TypeElement) element).toString());
+                }
+            }
+        }
+        if (roundEnv.processingOver() && !entities.isEmpty()) {
+            try {
+                readPreviousIndex();
+                writeIndex();
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, String.format("unable to write %s: %s", INDEX_RESOURCE, e));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Private helper that keeps the entries of a previous index whose classes still exist and are still annotated
+     */
+    private void readPreviousIndex() {
+        try {
+            FileObject previous = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", INDEX_RESOURCE);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(previous.openInputStream(), "UTF-8"));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    TypeElement element = line.length() > 0 ? processingEnv.getElementUtils().getTypeElement(line.replace('$', '.')) : null;
+                    if (element != null && isAnnotated(element)) {
+                        entities.add(line);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            //there is no previous index
+        }
+    }
+
+    /**
+     * Private helper that determines if an element is annotated with @ColumnFamily
+     */
+    private boolean isAnnotated(TypeElement element) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(COLUMN_FAMILY_ANNOTATION)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Private helper that writes the sorted index
+     */
+    private void writeIndex() throws IOException {
+        FileObject index = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX_RESOURCE);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(index.openOutputStream(), "UTF-8"));
+        try {
+            for (String entity : entities) {
+                writer.write(entity);
+                writer.write('\n');
+            }
+        } finally {
+            writer.close();
+        }
+    }
+}
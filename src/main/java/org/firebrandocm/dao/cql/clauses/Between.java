@@ -37,6 +37,16 @@ public class Between implements Predicate {
 		this.to = new IndexOperatorPredicate(column, IndexOperator.LTE, to);
 	}
 
+    /* Getters & Setters */
+
+	public IndexOperatorPredicate getFrom() {
+		return from;
+	}
+
+	public IndexOperatorPredicate getTo() {
+		return to;
+	}
+
     /* Canonical Methods */
 
 	@Override
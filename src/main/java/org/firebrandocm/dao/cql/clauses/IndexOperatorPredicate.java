@@ -45,6 +45,26 @@ public class IndexOperatorPredicate implements Predicate {
 		this.value = value;
 	}
 
+    /* Getters & Setters */
+
+	/**
+	 * @return the column name, null if the predicate applies to the row key
+	 */
+	public String getColumn() {
+		return column;
+	}
+
+	public IndexOperator getOperator() {
+		return operator;
+	}
+
+	/**
+	 * @return the value as a CQL literal
+	 */
+	public String getValue() {
+		return value != null ? value.toString() : null;
+	}
+
     /* Canonical Methods */
 
 	@Override
@@ -34,6 +34,19 @@ public class KeyInPredicate implements Predicate {
 		this.values = values;
 	}
 
+    /* Getters & Setters */
+
+	/**
+	 * @return the keys as CQL literals
+	 */
+	public String[] getValues() {
+		String[] keys = new String[values.length];
+		for (int i = 0; i < values.length; i++) {
+			keys[i] = String.valueOf(values[i]);
+		}
+		return keys;
+	}
+
     /* Canonical Methods */
 
 	@Override
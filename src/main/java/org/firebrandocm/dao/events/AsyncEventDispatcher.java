@@ -0,0 +1,408 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao.events;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.firebrandocm.dao.PersistenceFactory;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Delivers entity and column events to registered listeners on background consumer threads.
+ * Events are published into a bounded ring buffer of preallocated slots and each consumer copies a slot into its own
+ * reusable event object before releasing it, so no event objects are allocated per published event.
+ * Listeners must not retain the event instances they receive after onEvent returns.
+ * With more than one consumer thread events may be delivered out of publication order.
+ * Events published by the consumer threads themselves, such as those of a listener that persists entities, run on the
+ * publishing consumer when the ring buffer is full instead of blocking it, since only the consumers free slots.
+ */
+public class AsyncEventDispatcher {
+    /* Fields */
+
+	private static Log log = LogFactory.getLog(AsyncEventDispatcher.class);
+
+	/**
+	 * the persistence factory publishing the events
+	 */
+	private final PersistenceFactory persistenceFactory;
+
+	/**
+	 * the preallocated ring buffer slots
+	 */
+	private final Slot[] slots;
+
+	/**
+	 * mask used to wrap sequence numbers into slot indexes
+	 */
+	private final int mask;
+
+	/**
+	 * the policy applied when the ring buffer is full
+	 */
+	private final OverflowPolicy overflowPolicy;
+
+	/**
+	 * guards the ring buffer indexes
+	 */
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/**
+	 * signaled when a slot is published
+	 */
+	private final Condition notEmpty = lock.newCondition();
+
+	/**
+	 * signaled when a slot is released
+	 */
+	private final Condition notFull = lock.newCondition();
+
+	/**
+	 * the consumer threads
+	 */
+	private final Thread[] consumers;
+
+	/**
+	 * the next slot to publish into
+	 */
+	private long tail;
+
+	/**
+	 * the next slot to consume
+	 */
+	private long head;
+
+	/**
+	 * whether the dispatcher accepts and delivers events
+	 */
+	private volatile boolean running = true;
+
+	/**
+	 * the number of events discarded by the DROP policy
+	 */
+	private final AtomicLong droppedEvents = new AtomicLong();
+
+    /* Constructors */
+
+	/**
+	 * Constructor. Preallocates the ring buffer and starts the consumer threads
+	 * @param persistenceFactory the persistence factory publishing the events
+	 * @param bufferSize the ring buffer size, rounded up to the next power of two
+	 * @param consumerThreads the number of consumer threads
+	 * @param overflowPolicy the policy applied when the ring buffer is full
+	 */
+	public AsyncEventDispatcher(PersistenceFactory persistenceFactory, int bufferSize, int consumerThreads, OverflowPolicy overflowPolicy) {
+		if (bufferSize < 1 || consumerThreads < 1) {
+			throw new IllegalArgumentException(String.format("invalid buffer size %d or consumer threads %d", bufferSize, consumerThreads));
+		}
+		this.persistenceFactory = persistenceFactory;
+		this.overflowPolicy = overflowPolicy;
+		int capacity = Integer.highestOneBit(bufferSize);
+		if (capacity < bufferSize) {
+			capacity <<= 1;
+		}
+		slots = new Slot[capacity];
+		for (int i = 0; i < capacity; i++) {
+			slots[i] = new Slot();
+		}
+		mask = capacity - 1;
+		consumers = new Thread[consumerThreads];
+		for (int i = 0; i < consumerThreads; i++) {
+			consumers[i] = new Thread(new Consumer(), String.format("firebrand-event-dispatcher-%d", i));
+			consumers[i].setDaemon(true);
+			consumers[i].start();
+		}
+	}
+
+    /* Getters & Setters */
+
+	/**
+	 * @return the number of events discarded because the ring buffer was full
+	 */
+	public long getDroppedEvents() {
+		return droppedEvents.get();
+	}
+
+	/**
+	 * @return the ring buffer capacity
+	 */
+	public int getCapacity() {
+		return slots.length;
+	}
+
+    /* Misc */
+
+	/**
+	 * Publishes a column event
+	 * @param listeners the listeners to notify
+	 * @param event the event
+	 * @param entity the affected entity
+	 * @param property the affected property
+	 * @param key the key used for the column
+	 * @param columnFamily the column family this column belongs to
+	 * @param column the actual column object
+	 */
+	public void publishColumnEvent(List<ColumnEventListener> listeners, Event.Column event, Object entity, String property, String key, String columnFamily, Object column) {
+		Slot slot = claim();
+		if (slot != null) {
+			try {
+				slot.columnListeners = listeners;
+				slot.columnEvent = event;
+				slot.entity = entity;
+				slot.property = property;
+				slot.key = key;
+				slot.columnFamily = columnFamily;
+				slot.column = column;
+			} finally {
+				publish();
+			}
+		} else if (runsOnCaller()) {
+			ColumnEvent columnEvent = new ColumnEvent(persistenceFactory, event, entity, property, key, columnFamily, column);
+			for (ColumnEventListener listener : listeners) {
+				if (listener != null) {
+					listener.onEvent(columnEvent);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Publishes an entity event
+	 * @param listeners the listeners to notify
+	 * @param event the event
+	 * @param entities the affected entities
+	 */
+	public void publishEntityEvent(List<EntityEventListener> listeners, Event.Entity event, Object[] entities) {
+		Slot slot = claim();
+		if (slot != null) {
+			try {
+				slot.entityListeners = listeners;
+				slot.entityEvent = event;
+				slot.entities = entities;
+			} finally {
+				publish();
+			}
+		} else if (runsOnCaller()) {
+			EntityEvent entityEvent = new EntityEvent(persistenceFactory, event, entities);
+			for (EntityEventListener listener : listeners) {
+				if (listener != null) {
+					listener.onEvent(entityEvent);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stops accepting events, delivers the events already published and stops the consumer threads
+	 */
+	public void shutdown() throws InterruptedException {
+		lock.lock();
+		try {
+			running = false;
+			notEmpty.signalAll();
+			notFull.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		for (Thread consumer : consumers) {
+			consumer.join();
+		}
+	}
+
+	/**
+	 * Private helper that claims the next free slot applying the overflow policy.
+	 * On success the lock is held until {@link #publish()} is invoked
+	 * @return the claimed slot or null if the event was not accepted
+	 */
+	private Slot claim() {
+		lock.lock();
+		boolean claimed = false;
+		try {
+			while (running && tail - head == slots.length) {
+				if (overflowPolicy != OverflowPolicy.BLOCK || isConsumer()) {
+					if (overflowPolicy == OverflowPolicy.DROP) {
+						droppedEvents.incrementAndGet();
+					}
+					return null;
+				}
+				notFull.awaitUninterruptibly();
+			}
+			claimed = running;
+			return claimed ? slots[(int) (tail & mask)] : null;
+		} finally {
+			if (!claimed) {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Private helper that determines if an event that was not accepted by the ring buffer runs on the publishing thread
+	 */
+	private boolean runsOnCaller() {
+		return overflowPolicy == OverflowPolicy.CALLER_RUNS || (overflowPolicy == OverflowPolicy.BLOCK && isConsumer());
+	}
+
+	/**
+	 * Private helper that determines if the current thread is one of the consumer threads, which must never wait for
+	 * a free slot
+	 */
+	private boolean isConsumer() {
+		Thread current = Thread.currentThread();
+		for (Thread consumer : consumers) {
+			if (consumer == current) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Private helper that makes the claimed slot visible to consumers and releases the lock
+	 */
+	private void publish() {
+		try {
+			tail++;
+			notEmpty.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+    /* Inner Classes */
+
+	/**
+	 * A preallocated ring buffer entry
+	 */
+	private static final class Slot {
+		private List<ColumnEventListener> columnListeners;
+		private Event.Column columnEvent;
+		private List<EntityEventListener> entityListeners;
+		private Event.Entity entityEvent;
+		private Object[] entities;
+		private Object entity;
+		private String property;
+		private String key;
+		private String columnFamily;
+		private Object column;
+
+		/**
+		 * Moves the slot content into a consumer's local slot clearing references so they can be collected
+		 * @param local the consumer slot
+		 */
+		private void moveTo(Slot local) {
+			local.columnListeners = columnListeners;
+			local.columnEvent = columnEvent;
+			local.entityListeners = entityListeners;
+			local.entityEvent = entityEvent;
+			local.entities = entities;
+			local.entity = entity;
+			local.property = property;
+			local.key = key;
+			local.columnFamily = columnFamily;
+			local.column = column;
+			clear();
+		}
+
+		/**
+		 * Clears all references held by the slot
+		 */
+		private void clear() {
+			columnListeners = null;
+			columnEvent = null;
+			entityListeners = null;
+			entityEvent = null;
+			entities = null;
+			entity = null;
+			property = null;
+			key = null;
+			columnFamily = null;
+			column = null;
+		}
+	}
+
+	/**
+	 * Consumer loop taking slots from the ring buffer and notifying listeners with reused event objects
+	 */
+	private final class Consumer implements Runnable {
+		private final Slot local = new Slot();
+		private final ColumnEvent columnEvent = new ColumnEvent();
+		private final EntityEvent entityEvent = new EntityEvent();
+
+		public void run() {
+			while (take()) {
+				try {
+					deliver();
+				} catch (Throwable t) {
+					log.error("event listener failed", t);
+				} finally {
+					local.clear();
+					columnEvent.reset(null, null, null, null, null, null, null);
+					entityEvent.reset(null, null, null);
+				}
+			}
+		}
+
+		/**
+		 * Waits for the next published slot and moves it into the local slot
+		 * @return false once the dispatcher is shutdown and no events remain
+		 */
+		private boolean take() {
+			lock.lock();
+			try {
+				while (head == tail) {
+					if (!running) {
+						return false;
+					}
+					notEmpty.awaitUninterruptibly();
+				}
+				slots[(int) (head & mask)].moveTo(local);
+				head++;
+				notFull.signal();
+				return true;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/**
+		 * Notifies the listeners of the local slot event
+		 */
+		private void deliver() {
+			if (local.columnListeners != null) {
+				columnEvent.reset(persistenceFactory, local.columnEvent, local.entity, local.property, local.key, local.columnFamily, local.column);
+				for (ColumnEventListener listener : local.columnListeners) {
+					if (listener != null) {
+						listener.onEvent(columnEvent);
+					}
+				}
+			} else if (local.entityListeners != null) {
+				entityEvent.reset(persistenceFactory, local.entityEvent, local.entities);
+				for (EntityEventListener listener : local.entityListeners) {
+					if (listener != null) {
+						listener.onEvent(entityEvent);
+					}
+				}
+			}
+		}
+	}
+}
@@ -18,7 +18,11 @@
 
 package org.firebrandocm.dao.events;
 
+import me.prettyprint.cassandra.serializers.ByteBufferSerializer;
+import me.prettyprint.cassandra.serializers.StringSerializer;
+import me.prettyprint.hector.api.factory.HFactory;
 import org.firebrandocm.dao.PersistenceFactory;
+import org.firebrandocm.dao.transport.RawColumn;
 
 /**
  * Represents a column related event
@@ -83,16 +87,56 @@ public class ColumnEvent {
 		this.column = column;
 	}
 
+    /**
+     * Constructor for events that are reused by the async dispatcher
+     */
+	ColumnEvent() {
+	}
+
+    /**
+     * Reassigns all the event fields so the instance can be reused
+     * @param persistenceFactory the persistence factory
+     * @param event the event
+     * @param entity the affected entity
+     * @param property the affected property
+     * @param key the key used for the column
+     * @param columnFamily the column family this column belongs to
+     * @param column the actual column object
+     */
+	void reset(PersistenceFactory persistenceFactory, Event.Column event, Object entity, String property, String key, String columnFamily, Object column) {
+		this.persistenceFactory = persistenceFactory;
+		this.event = event;
+		this.entity = entity;
+		this.property = property;
+		this.key = key;
+		this.columnFamily = columnFamily;
+		this.column = column;
+	}
+
     /* Getters & Setters */
 
     /**
      *
-     * @return the actual column object
+     * @return the actual column object as an Hector column, null for deletions and counter mutations
+     * @deprecated mutations carry a transport neutral column, use {@link #getRawColumn()}
      */
+	@Deprecated
 	public Object getColumn() {
+		if (column instanceof RawColumn) {
+			RawColumn rawColumn = (RawColumn) column;
+			return HFactory.createColumn(rawColumn.getName(), rawColumn.getValue(), StringSerializer.get(), ByteBufferSerializer.get());
+		}
 		return column;
 	}
 
+    /**
+     *
+     * @return the written column, null for deletions and counter mutations
+     */
+	public RawColumn getRawColumn() {
+		return column instanceof RawColumn ? (RawColumn) column : null;
+	}
+
     /**
      *
      * @return the column family this column belongs to
@@ -55,6 +55,24 @@ public class EntityEvent {
 		this.entities = entities;
 	}
 
+    /**
+     * Constructor for events that are reused by the async dispatcher
+     */
+	EntityEvent() {
+	}
+
+    /**
+     * Reassigns all the event fields so the instance can be reused
+     * @param persistenceFactory  the factory in the context of this event
+     * @param event the event
+     * @param entities the affected entities
+     */
+	void reset(PersistenceFactory persistenceFactory, Event.Entity event, Object[] entities) {
+		this.persistenceFactory = persistenceFactory;
+		this.event = event;
+		this.entities = entities;
+	}
+
     /* Getters & Setters */
 
     /**
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao.events;
+
+import java.util.*;
+
+/**
+ * Immutable lookup table from an event and an entity class to the listeners subscribed to them.
+ * Class subscriptions are resolved against the managed classes when the index is built so dispatch is a couple of map lookups
+ */
+public class EventListenerIndex<E extends Enum<E>, L> {
+    /* Fields */
+
+	/**
+	 * the listeners subscribed to an event for every entity class
+	 */
+	private final EnumMap<E, List<L>> globalListeners;
+
+	/**
+	 * the listeners subscribed to an event for a given managed class or any of its supertypes
+	 */
+	private final Map<Class<?>, EnumMap<E, List<L>>> classListeners;
+
+	/**
+	 * bitmask of the events with any global listener, indexed by event ordinal
+	 */
+	private final long globalMask;
+
+	/**
+	 * bitmask of the events with any class listener, indexed by event ordinal
+	 */
+	private final long classMask;
+
+    /* Static Methods */
+
+	/**
+	 * Builds an index
+	 * @param eventType the event enum
+	 * @param listeners the listeners subscribed to events for every entity class, may be null
+	 * @param subscriptions the listeners subscribed to events per entity class, may be null
+	 * @param managedClasses the classes managed by the factory
+	 * @param batch whether to index only listeners implementing {@link BatchEntityEventListener} or only the ones that do not
+	 * @return the index
+	 */
+	public static <E extends Enum<E>, L> EventListenerIndex<E, L> build(Class<E> eventType, Map<E, List<L>> listeners, Map<Class<?>, Map<E, List<L>>> subscriptions, Collection<Class<?>> managedClasses, boolean batch) {
+		EnumMap<E, List<L>> globalListeners = new EnumMap<E, List<L>>(eventType);
+		addAll(globalListeners, listeners, batch);
+		Map<Class<?>, EnumMap<E, List<L>>> classListeners = new HashMap<Class<?>, EnumMap<E, List<L>>>();
+		if (subscriptions != null) {
+			for (Class<?> managedClass : managedClasses) {
+				EnumMap<E, List<L>> managedClassListeners = new EnumMap<E, List<L>>(eventType);
+				for (Map.Entry<Class<?>, Map<E, List<L>>> subscription : subscriptions.entrySet()) {
+					if (subscription.getKey().isAssignableFrom(managedClass)) {
+						addAll(managedClassListeners, subscription.getValue(), batch);
+					}
+				}
+				if (!managedClassListeners.isEmpty()) {
+					classListeners.put(managedClass, managedClassListeners);
+				}
+			}
+		}
+		return new EventListenerIndex<E, L>(globalListeners, classListeners);
+	}
+
+	/**
+	 * Private helper that copies the selected non null listeners into an index table
+	 */
+	private static <E extends Enum<E>, L> void addAll(EnumMap<E, List<L>> target, Map<E, List<L>> source, boolean batch) {
+		if (source != null) {
+			for (Map.Entry<E, List<L>> entry : source.entrySet()) {
+				if (entry.getValue() != null) {
+					for (L listener : entry.getValue()) {
+						if (listener != null && (listener instanceof BatchEntityEventListener) == batch) {
+							List<L> eventListeners = target.get(entry.getKey());
+							if (eventListeners == null) {
+								eventListeners = new ArrayList<L>();
+								target.put(entry.getKey(), eventListeners);
+							}
+							eventListeners.add(listener);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Private helper that computes the event bitmask of an index table
+	 */
+	private static <E extends Enum<E>, L> long mask(Map<E, List<L>> listeners) {
+		long mask = 0;
+		for (E event : listeners.keySet()) {
+			mask |= 1L << event.ordinal();
+		}
+		return mask;
+	}
+
+    /* Constructors */
+
+	/**
+	 * Constructor
+	 * @param globalListeners the listeners subscribed to an event for every entity class
+	 * @param classListeners the listeners subscribed to an event per managed class
+	 */
+	private EventListenerIndex(EnumMap<E, List<L>> globalListeners, Map<Class<?>, EnumMap<E, List<L>>> classListeners) {
+		this.globalListeners = globalListeners;
+		this.classListeners = classListeners;
+		this.globalMask = mask(globalListeners);
+		long classMask = 0;
+		for (EnumMap<E, List<L>> listeners : classListeners.values()) {
+			classMask |= mask(listeners);
+		}
+		this.classMask = classMask;
+	}
+
+    /* Getters & Setters */
+
+	/**
+	 * @param event the event
+	 * @return true if any listener is subscribed to the event
+	 */
+	public boolean hasListeners(E event) {
+		return ((globalMask | classMask) & (1L << event.ordinal())) != 0;
+	}
+
+	/**
+	 * @param event the event
+	 * @return true if any listener is subscribed to the event for a specific class
+	 */
+	public boolean hasClassListeners(E event) {
+		return (classMask & (1L << event.ordinal())) != 0;
+	}
+
+	/**
+	 * @param event the event
+	 * @return the listeners subscribed to the event for every entity class or null if none
+	 */
+	public List<L> getListeners(E event) {
+		return globalListeners.get(event);
+	}
+
+	/**
+	 * @param event the event
+	 * @param entityClass the managed entity class
+	 * @return the listeners subscribed to the event for the given class or null if none
+	 */
+	public List<L> getListeners(E event, Class<?> entityClass) {
+		EnumMap<E, List<L>> listeners = classListeners.get(entityClass);
+		return listeners != null ? listeners.get(event) : null;
+	}
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao.events;
+
+/**
+ * What the async event dispatcher does with an event when its ring buffer is full
+ */
+public enum OverflowPolicy {
+	/**
+	 * The publishing thread waits until a slot is released
+	 */
+	BLOCK,
+
+	/**
+	 * The event is discarded and counted as dropped
+	 */
+	DROP,
+
+	/**
+	 * The event is delivered synchronously on the publishing thread
+	 */
+	CALLER_RUNS
+}
@@ -19,6 +19,7 @@
 package org.firebrandocm.dao.impl;
 
 import me.prettyprint.cassandra.serializers.BooleanSerializer;
+import org.firebrandocm.dao.BooleanCodec;
 import org.firebrandocm.dao.TypeConverter;
 
 import java.nio.ByteBuffer;
@@ -26,7 +27,7 @@ import java.nio.ByteBuffer;
 /**
  * Type converter to serialize to and from ByteBuffer's
  */
-public class BooleanTypeConverter implements TypeConverter<Boolean> {
+public class BooleanTypeConverter implements TypeConverter<Boolean>, BooleanCodec {
     /* Interface Implementations */
 
 
@@ -39,4 +40,15 @@ public class BooleanTypeConverter implements TypeConverter<Boolean> {
 	public Boolean fromValue(ByteBuffer value, Class<Boolean> targetType) {
 		return BooleanSerializer.get().fromByteBuffer(value);
 	}
+
+
+// --------------------- Interface BooleanCodec ---------------------
+
+	public boolean decode(ByteBuffer value) {
+		return value.get(value.position()) == (byte) 1;
+	}
+
+	public ByteBuffer encode(boolean value) {
+		return ByteBuffer.wrap(new byte[]{value ? (byte) 1 : (byte) 0});
+	}
 }
@@ -19,6 +19,7 @@
 package org.firebrandocm.dao.impl;
 
 import me.prettyprint.cassandra.serializers.DoubleSerializer;
+import org.firebrandocm.dao.DoubleCodec;
 import org.firebrandocm.dao.TypeConverter;
 
 import java.nio.ByteBuffer;
@@ -26,7 +27,7 @@ import java.nio.ByteBuffer;
 /**
  * Type converter to serialize to and from ByteBuffer's
  */
-public class DoubleTypeConverter implements TypeConverter<Double> {
+public class DoubleTypeConverter implements TypeConverter<Double>, DoubleCodec {
     /* Interface Implementations */
 
 
@@ -39,4 +40,17 @@ public class DoubleTypeConverter implements TypeConverter<Double> {
 	public Double fromValue(ByteBuffer value, Class<Double> targetType) {
 		return DoubleSerializer.get().fromByteBuffer(value);
 	}
+
+
+// --------------------- Interface DoubleCodec ---------------------
+
+	public double decode(ByteBuffer value) {
+		return Double.longBitsToDouble(value.getLong(value.position()));
+	}
+
+	public ByteBuffer encode(double value) {
+		ByteBuffer buffer = ByteBuffer.allocate(8);
+		buffer.putLong(0, Double.doubleToRawLongBits(value));
+		return buffer;
+	}
 }
@@ -19,6 +19,7 @@
 package org.firebrandocm.dao.impl;
 
 import me.prettyprint.cassandra.serializers.IntegerSerializer;
+import org.firebrandocm.dao.IntCodec;
 import org.firebrandocm.dao.TypeConverter;
 
 import java.nio.ByteBuffer;
@@ -26,7 +27,7 @@ import java.nio.ByteBuffer;
 /**
  * Type converter to serialize to and from ByteBuffer's
  */
-public class IntegerTypeConverter implements TypeConverter<Integer> {
+public class IntegerTypeConverter implements TypeConverter<Integer>, IntCodec {
     /* Interface Implementations */
 
 
@@ -39,4 +40,17 @@ public class IntegerTypeConverter implements TypeConverter<Integer> {
 	public Integer fromValue(ByteBuffer value, Class<Integer> targetType) {
 		return IntegerSerializer.get().fromByteBuffer(value);
 	}
+
+
+// --------------------- Interface IntCodec ---------------------
+
+	public int decode(ByteBuffer value) {
+		return value.getInt(value.position());
+	}
+
+	public ByteBuffer encode(int value) {
+		ByteBuffer buffer = ByteBuffer.allocate(4);
+		buffer.putInt(0, value);
+		return buffer;
+	}
 }
@@ -19,6 +19,7 @@
 package org.firebrandocm.dao.impl;
 
 import me.prettyprint.cassandra.serializers.LongSerializer;
+import org.firebrandocm.dao.LongCodec;
 import org.firebrandocm.dao.TypeConverter;
 
 import java.io.IOException;
@@ -27,7 +28,7 @@ import java.nio.ByteBuffer;
 /**
  * Type converter to serialize to and from ByteBuffer's
  */
-public class LongTypeConverter implements TypeConverter<Long> {
+public class LongTypeConverter implements TypeConverter<Long>, LongCodec {
     /* Interface Implementations */
 
 
@@ -40,4 +41,17 @@ public class LongTypeConverter implements TypeConverter<Long> {
 	public Long fromValue(ByteBuffer value, Class<Long> targetType) {
 		return LongSerializer.get().fromByteBuffer(value);
 	}
+
+
+// --------------------- Interface LongCodec ---------------------
+
+	public long decode(ByteBuffer value) {
+		return value.getLong(value.position());
+	}
+
+	public ByteBuffer encode(long value) {
+		ByteBuffer buffer = ByteBuffer.allocate(8);
+		buffer.putLong(0, value);
+		return buffer;
+	}
 }
@@ -19,7 +19,6 @@
 package org.firebrandocm.dao.impl.hector;
 
 import me.prettyprint.cassandra.model.AbstractBasicQuery;
-import me.prettyprint.cassandra.model.CqlQuery;
 import me.prettyprint.cassandra.model.QueryResultImpl;
 import me.prettyprint.cassandra.serializers.StringSerializer;
 import me.prettyprint.cassandra.service.Operation;
@@ -36,12 +35,10 @@ import org.slf4j.LoggerFactory;
 import java.nio.ByteBuffer;
 
 /**
- * Support for concrete execute queries to complement the existing Hector API
- *
- * @param <V>
+ * Support for concrete execute queries to complement the existing Hector API.
+ * The raw thrift result is returned so rows, counts and void results are handled by a single query type
  */
-@SuppressWarnings("unchecked")
-public class CqlExecuteQuery<V> extends AbstractBasicQuery {
+public class CqlExecuteQuery extends AbstractBasicQuery<String, String, CqlResult> {
     /* Fields */
 
     private static Logger log = LoggerFactory.getLogger(CqlExecuteQuery.class);
@@ -62,33 +59,21 @@ public class CqlExecuteQuery<V> extends AbstractBasicQuery {
 // --------------------- Interface Query ---------------------
 
     @Override
-    public QueryResult<V> execute() {
-        return new QueryResultImpl<V>(
-                keyspace.doExecuteOperation(new Operation<V>(OperationType.WRITE) {
+    public QueryResult<CqlResult> execute() {
+        return new QueryResultImpl<CqlResult>(
+                keyspace.doExecuteOperation(new Operation<CqlResult>(OperationType.WRITE) {
                     @Override
-                    public V execute(Client cassandra) throws HectorException {
-                        Object queryResult = null;
+                    public CqlResult execute(Client cassandra) throws HectorException {
                         try {
                             CqlResult result = cassandra.execute_cql_query(query,
                                     useCompression ? Compression.GZIP : Compression.NONE);
                             if (log.isDebugEnabled()) {
                                 log.debug("Found CqlResult: {}", result);
                             }
-                            switch (result.getType()) {
-                                case VOID:
-                                    break;
-
-                                case INT:
-                                    queryResult = result.getNum();  //TODO this may be not correct as there seems to be no way to obtain affected columns/rows
-                                    break;
-
-                                default:
-                                    throw new IllegalArgumentException(String.format("query returned result rows. use %s instead", CqlQuery.class));
-                            }
+                            return result;
                         } catch (Exception ex) {
                             throw keyspace.getExceptionsTranslator().translate(ex);
                         }
-                        return (V) queryResult;
                     }
                 }), this);
     }
@@ -102,18 +87,18 @@ public class CqlExecuteQuery<V> extends AbstractBasicQuery {
      * @param query
      * @return
      */
-    public CqlExecuteQuery<V> setQuery(String query) {
+    public CqlExecuteQuery setQuery(String query) {
         log.debug(String.format("setQuery: %s", query));
         this.query = StringSerializer.get().toByteBuffer(query);
         return this;
     }
 
-    public CqlExecuteQuery<V> setQuery(ByteBuffer query) {
+    public CqlExecuteQuery setQuery(ByteBuffer query) {
         this.query = query;
         return this;
     }
 
-    public CqlExecuteQuery<V> useCompression() {
+    public CqlExecuteQuery useCompression() {
         useCompression = true;
         return this;
     }
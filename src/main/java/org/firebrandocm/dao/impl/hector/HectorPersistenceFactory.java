@@ -19,45 +19,54 @@
 package org.firebrandocm.dao.impl.hector;
 
 import me.prettyprint.cassandra.model.CqlQuery;
-import me.prettyprint.cassandra.model.CqlRows;
 import me.prettyprint.cassandra.serializers.AbstractSerializer;
 import me.prettyprint.cassandra.serializers.StringSerializer;
-import me.prettyprint.cassandra.service.BatchSizeHint;
 import me.prettyprint.cassandra.service.CassandraHostConfigurator;
 import me.prettyprint.cassandra.service.ThriftKsDef;
 import me.prettyprint.hector.api.Cluster;
 import me.prettyprint.hector.api.Keyspace;
-import me.prettyprint.hector.api.beans.ColumnSlice;
 import me.prettyprint.hector.api.beans.HColumn;
-import me.prettyprint.hector.api.beans.Row;
 import me.prettyprint.hector.api.ddl.ColumnDefinition;
 import me.prettyprint.hector.api.ddl.ColumnFamilyDefinition;
 import me.prettyprint.hector.api.ddl.KeyspaceDefinition;
 import me.prettyprint.hector.api.factory.HFactory;
 import me.prettyprint.hector.api.mutation.Mutator;
-import me.prettyprint.hector.api.query.QueryResult;
-import me.prettyprint.hector.api.query.SliceQuery;
+import me.prettyprint.hector.api.exceptions.HInvalidRequestException;
+import me.prettyprint.hector.api.query.ColumnQuery;
+import org.apache.cassandra.db.marshal.UTF8Type;
+import org.apache.cassandra.thrift.CfDef;
+import org.apache.cassandra.thrift.ColumnDef;
 import org.apache.cassandra.thrift.ConsistencyLevel;
 import org.apache.cassandra.thrift.KsDef;
-import org.apache.commons.beanutils.NestedNullException;
-import org.apache.commons.beanutils.PropertyUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.thrift.TException;
+import org.apache.thrift.TSerializer;
+import org.apache.thrift.protocol.TBinaryProtocol;
 import org.firebrandocm.dao.*;
 import org.firebrandocm.dao.events.ColumnEventListener;
 import org.firebrandocm.dao.events.EntityEventListener;
 import org.firebrandocm.dao.events.Event;
-
-import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import org.firebrandocm.dao.events.OverflowPolicy;
+import org.firebrandocm.dao.metrics.Counter;
+import org.firebrandocm.dao.metrics.MetricsRecorder;
+import org.firebrandocm.dao.planner.IndexStatistics;
+import org.firebrandocm.dao.transport.MutationBatch;
+import org.firebrandocm.dao.transport.RawColumn;
+import org.firebrandocm.dao.transport.RawRow;
+import org.firebrandocm.dao.transport.Transport;
+
+import java.math.BigInteger;
 import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
 
-import static me.prettyprint.hector.api.factory.HFactory.createColumn;
 import static org.firebrandocm.dao.cql.QueryBuilder.*;
 
 /**
- * An Hector based impl for the Persistence Factory
+ * An Hector based impl for the Persistence Factory.
+ * Rows are read and written through a {@link HectorTransport} unless another transport is provided, the schema is
+ * managed through the Hector cluster
  */
 public class HectorPersistenceFactory extends AbstractPersistenceFactory {
     /* Fields */
@@ -88,6 +97,31 @@ public class HectorPersistenceFactory extends AbstractPersistenceFactory {
      */
     private Cluster cluster;
 
+    /**
+     * the column family holding the fingerprint of the schema last applied to each keyspace
+     */
+    public static final String SCHEMA_COLUMN_FAMILY = "firebrand_schema";
+
+    /**
+     * the column holding the schema fingerprint
+     */
+    private static final String SCHEMA_FINGERPRINT_COLUMN = "fingerprint";
+
+    /**
+     * the schema version under which describe_schema_versions lists unreachable nodes
+     */
+    private static final String UNREACHABLE_SCHEMA_VERSION = "UNREACHABLE";
+
+    /**
+     * the interval in milliseconds between schema version checks while waiting for schema agreement
+     */
+    private static final long SCHEMA_AGREEMENT_POLL_INTERVAL = 100;
+
+    /**
+     * the maximum time in milliseconds to wait for the cluster nodes to agree on the schema after changing it
+     */
+    private long schemaAgreementTimeout = 30000;
+
     /* Getters & Setters */
 
     /**
@@ -109,6 +143,15 @@ public class HectorPersistenceFactory extends AbstractPersistenceFactory {
         this.cassandraHostConfigurator = cassandraHostConfigurator;
     }
 
+    /**
+     * Sets the maximum time to wait for the cluster nodes to agree on the schema after changing it
+     *
+     * @param schemaAgreementTimeout the timeout in milliseconds
+     */
+    public void setSchemaAgreementTimeout(long schemaAgreementTimeout) {
+        this.schemaAgreementTimeout = schemaAgreementTimeout;
+    }
+
     /**
      * Sets the cluster name
      *
@@ -127,353 +170,223 @@ public class HectorPersistenceFactory extends AbstractPersistenceFactory {
         this.credentials = credentials;
     }
 
-    /* Interface Implementations */
-
-
-// --------------------- Interface PersistenceFactory ---------------------
-
-
-    /**
-     * Deletes columns by name from column family
-     *
-     * @param colFamily the column family
-     * @param key       the key
-     * @param columns   the columns to be deleted by name
-     */
-    @Override
-    public void deleteColumns(String colFamily, String key, String... columns) {
-        Keyspace keyspace = HFactory.createKeyspace(getDefaultKeySpace(), cluster);
-        Mutator<String> mutator = HFactory.createMutator(keyspace, StringSerializer.get(), new BatchSizeHint(1, columns.length));
-        for (String property : columns) {
-            fireColumnEvent(Event.Column.PRE_COLUMN_DELETION, null, property, key, colFamily, null);
-            mutator.addDeletion(key, colFamily, property, StringSerializer.get());
-            log.debug(String.format("\tD: %s", property));
-            fireColumnEvent(Event.Column.POST_COLUMN_DELETION, null, property, key, colFamily, null);
-        }
-        mutator.execute();
-    }
-
-    /**
-     * Get an entity by id
-     *
-     * @param entityClass the class
-     * @param key          the key
-     * @param <T>         the entity type
-     * @return the entity
-     */
-    public <T> T get(Class<T> entityClass, String key) {
-        if (log.isDebugEnabled()) log.debug(String.format("get (start): %s, %s", entityClass, key));
-        fireEntityEvent(Event.Entity.PRE_LOAD, entityClass, key);
-        T result = getSingleResult(entityClass, Query.get(select(allColumns(), from(entityClass), where(key(key)))));
-        fireEntityEvent(Event.Entity.POST_LOAD, result);
-        if (log.isDebugEnabled()) log.debug(String.format("get (end): %s", result));
-        return result;
-    }
-
-    /**
-     * Fetch a map of columns and their values
-     *
-     * @param columnFamily the column family
-     * @param key          the column family key
-     * @param reversed     if the order should be reversed
-     * @param columns      the column names
-     * @return a map of columns and their values
-     */
-    @Override
-    public Map<String, ByteBuffer> getColumns(String columnFamily, String key, boolean reversed, String... columns) {
-        return getColumns(
-                Query.get(select(reversed ? reversed() : null, columns(columns), from(columnFamily), where(key(key)))).getQuery()
-        );
-    }
-
-    /**
-     * Fetch a map of columns and their values
-     *
-     * @param columnFamily the column family
-     * @param key          the column family key
-     * @param limit        of columns
-     * @param reversed     if the order should be reversed
-     * @param fromColumn   from column
-     * @param toColumn     to column
-     * @return a map of columns and their values
-     */
-    @Override
-    public Map<String, ByteBuffer> getColumns(String columnFamily, String key, int limit, boolean reversed, String fromColumn, String toColumn) {
-        return getColumns(
-                Query.get(select(reversed ? reversed() : null, first(limit), columnRange(fromColumn, toColumn), from(columnFamily), where(key(key)))).getQuery()
-        );
-    }
+    /* Misc */
 
     /**
-     * Get a list of entities given a query
+     * Destroy method that shutdowns this factory
      *
-     * @param type  the type of objects to expect back
-     * @param query the query
-     * @param <T>   the result type
-     * @return the list of entities
+     * @see org.firebrandocm.dao.AbstractPersistenceFactory#destroy()
      */
-    @Override
-    @SuppressWarnings("unchecked")
-    public <T> List<T> getResultList(Class<T> type, Query query) {
-        if (log.isDebugEnabled()) log.debug(String.format("getResultList (start): %s", query.getQuery()));
-        List<T> result = new ArrayList<T>();
-        try {
-            ClassMetadata metadata = getClassMetadata(type);
-            if (metadata == null && !Long.class.isAssignableFrom(type))
-                throw new IllegalArgumentException(String.format("type: %s not recognized as ColumnFamily or returnable value", type));
-            CqlQuery<String, String, Object> indexedQuery = getCQLQuery(type, query.getQuery());
-            CqlRows<String, String, Object> cqlRows = indexedQuery.execute().get();
-            if (cqlRows != null) {
-                T entity = null;
-                if (metadata == null) {
-                    entity = (T) Long.valueOf(cqlRows.getAsCount());
-                    result.add(entity);
-                } else {
-                    for (Row<String, String, Object> orderedRow : cqlRows.getList()) {
-                        ColumnSlice<String, Object> slice = orderedRow.getColumnSlice();
-                        List<HColumn<String, Object>> columns = slice.getColumns();
-                        if (columns.size() > 0) {
-                            entity = serializeColumns(orderedRow.getKey(), metadata, type, columns, null, false);
-                            result.add(entity);
-                        }
-                    }
-                }
-            }
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+    public void destroy() {
+        if (isDropOnDestroy()) {
+            executeQuery(Void.class, Query.get(drop(keySpace(getDefaultKeySpace()))));
         }
-        if (log.isDebugEnabled()) log.debug(String.format("getResultList (end): %s", result.size()));
-        return result;
+        HFactory.shutdownCluster(cluster);
+        super.destroy();
     }
 
     /**
-     * Get a single result from a CQL query
-     *
-     * @param type  the type of objects to expect back
-     * @param query the query
-     * @param <T>   the entity type
-     * @return the resulting entity
+     * Initializes the factory
      */
-    @Override
-    public <T> T getSingleResult(Class<T> type, Query query) {
-        List<T> results = getResultList(type, query);
-        if (results.size() > 1) {
-            throw new IllegalStateException(String.format("Expected a single result but found %d", results.size()));
+    public synchronized void init() throws Exception {
+        super.init();
+        log.debug("initializing factory");
+        //favor an existing cassandraHostConfigurator
+        if (cassandraHostConfigurator == null) {
+            cassandraHostConfigurator = new CassandraHostConfigurator();
+            cassandraHostConfigurator.setPort(getThriftPort());
+            cassandraHostConfigurator.setHosts(StringUtils.join(getContactNodes(), ','));
+            cassandraHostConfigurator.setAutoDiscoverHosts(autoDiscoverHosts);
         }
-        return results.size() == 1 ? results.get(0) : null;
-    }
-
-    /**
-     * Inserts columns based on a map representing keys with properties and their corresponding values
-     *
-     * @param colFamily     the column family
-     * @param key           the column family key
-     * @param keyValuePairs the map with keys and values
-     */
-    @Override
-    public void insertColumns(String colFamily, String key, Map<String, Object> keyValuePairs) {
-        Keyspace keyspace = HFactory.createKeyspace(getDefaultKeySpace(), cluster);
-        Mutator<String> mutator = HFactory.createMutator(keyspace, StringSerializer.get(), new BatchSizeHint(1, keyValuePairs.size()));
-        for (Map.Entry<String, Object> entry : keyValuePairs.entrySet()) {
-            String property = entry.getKey();
-            Object value = entry.getValue();
-            HColumn<String, Object> column = createColumn(property, value, StringSerializer.get(), new TypeConverterSerializer<Object>(value));
-            fireColumnEvent(Event.Column.PRE_COLUMN_MUTATION, null, property, key, colFamily, column);
-            mutator.addInsertion(key, colFamily, column);
-            log.debug(String.format("\tI: %s : %s ", property, value));
-            fireColumnEvent(Event.Column.POST_COLUMN_MUTATION, null, property, key, colFamily, column);
-        }
-        mutator.execute();
+        cluster = HFactory.getOrCreateCluster(clusterName, cassandraHostConfigurator, credentials);
+        if (getTransport() == null) {
+            setTransport(new HectorTransport(cluster));
+        }
+        initializeTypeConverters();
+        initializeKeyspaceDefinitions();
+        initializeSchema();
+        log.debug("factory initialized");
     }
 
     /**
-     * Entry point method to persist and arbitrary list of objects into the datastore
-     *
-     * @param entities the entities to be persisted
+     * Private helper to initialize the schema.
+     * Keyspaces whose stored fingerprint matches the desired schema are skipped after a single read, otherwise the desired
+     * column families are diffed against the live ones and only the differences are applied, waiting for schema agreement
+     * once after all of them
      */
-    public void persist(Object... entities) {
-        try {
-            createKeysIfNeeded(entities);
-            persistAll(entities);
-            fireEntityEvent(Event.Entity.POST_COMMIT, entities);
-        } catch (NoSuchMethodException e) {
-            throw new RuntimeException(e);
-        } catch (IllegalAccessException e) {
-            throw new RuntimeException(e);
-        } catch (InvocationTargetException e) {
-            throw new RuntimeException(e);
+    protected void initializeSchema() throws Exception {
+        if (keyspaceDefinitions.size() == 0)
+            throw new IllegalStateException("no keyspace definitions founds, maybe add some entities to the factory");
+        Map<String, String> changedFingerprints = new LinkedHashMap<String, String>();
+        boolean schemaChanged = false;
+        for (KsDef ksDef : keyspaceDefinitions.values()) {
+            String fingerprint = getSchemaFingerprint(ksDef);
+            if (fingerprint.equals(readSchemaFingerprint(ksDef.getName()))) {
+                log.debug(String.format("schema of keyspace %s is up to date", ksDef.getName()));
+            } else {
+                schemaChanged |= synchronizeKeyspace(withSchemaColumnFamily(ksDef));
+                changedFingerprints.put(ksDef.getName(), fingerprint);
+            }
+        }
+        if (schemaChanged) {
+            waitForSchemaAgreement();
+        }
+        for (Map.Entry<String, String> entry : changedFingerprints.entrySet()) {
+            writeSchemaFingerprint(entry.getKey(), entry.getValue());
         }
     }
 
     /**
-     * Removes a list of entities from the data store
+     * Private helper that applies the differences between a desired keyspace and the live one without waiting for
+     * schema agreement
      *
-     * @param entities the entities to be removed from the data store
-     */
-    public void remove(Object... entities) {
-        log.debug(String.format("START remove(%s)", Arrays.toString(entities)));
-        try {
-            for (Object entity : entities) {
-                ClassMetadata classMetadata = getClassMetadata(entity.getClass());
-                Mutator<String> mutator = getMutator(classMetadata);
-                fireEntityEvent(Event.Entity.PRE_DELETE, entity);
-                String colFamily = classMetadata.getColumnFamily();
-                String key = getKey(entity);
-                if (key == null) {
-                    log.warn(String.format("entity: %s had no value for key and was ignored", entity));
-                } else {
-                    mutator.addDeletion(key, colFamily);
-                    mutator.execute();
-                    fireEntityEvent(Event.Entity.POST_DELETE, entity);
+     * @param keyspaceDefinition the desired keyspace
+     * @return true if the schema was changed
+     */
+    protected boolean synchronizeKeyspace(KeyspaceDefinition keyspaceDefinition) {
+        KeyspaceDefinition existingKeyspace = cluster.describeKeyspace(keyspaceDefinition.getName());
+        if (existingKeyspace == null) {
+            log.debug(String.format("not found keyspace %s, adding to schema", keyspaceDefinition.getName()));
+            cluster.addKeyspace(keyspaceDefinition, false);
+            return true;
+        }
+        boolean changed = false;
+        for (ColumnFamilyDefinition columnFamilyDefinition : keyspaceDefinition.getCfDefs()) {
+            ColumnFamilyDefinition existingColumnFamilyDefinition = getColumnFamilyFromKeyspace(columnFamilyDefinition.getName(), existingKeyspace);
+            if (existingColumnFamilyDefinition == null) {
+                log.debug(String.format("not found column family %s, adding to schema", columnFamilyDefinition.getName()));
+                cluster.addColumnFamily(columnFamilyDefinition, false);
+                changed = true;
+            } else if (!sameColumnMetadata(columnFamilyDefinition, existingColumnFamilyDefinition)) {
+                log.debug(String.format("found column family %s with different columns, updating schema", columnFamilyDefinition.getName()));
+                existingColumnFamilyDefinition.getColumnMetadata().clear();
+                for (ColumnDefinition columnDefinition : columnFamilyDefinition.getColumnMetadata()) {
+                    existingColumnFamilyDefinition.addColumnDefinition(columnDefinition);
                 }
+                cluster.updateColumnFamily(existingColumnFamilyDefinition, false);
+                changed = true;
+            } else {
+                log.debug(String.format("found column family %s, no changes", columnFamilyDefinition.getName()));
             }
-        } catch (Throwable t) {
-            throw new RuntimeException(t);
         }
-        log.debug(String.format("END remove(%s)", Arrays.toString(entities)));
+        return changed;
     }
 
-    /* Misc */
-
     /**
-     * Destroy method that shutdowns this factory
+     * Private helper that determines if a live column family declares the same columns as the desired one
      *
-     * @see org.firebrandocm.dao.AbstractPersistenceFactory#destroy()
-     */
-    public void destroy() {
-        if (isDropOnDestroy()) {
-            executeQuery(Void.class, Query.get(drop(keySpace(getDefaultKeySpace()))));
+     * @param columnFamilyDefinition         the desired column family
+     * @param existingColumnFamilyDefinition the live column family
+     * @return true if both declare the same columns, validators and indexes
+     */
+    protected boolean sameColumnMetadata(ColumnFamilyDefinition columnFamilyDefinition, ColumnFamilyDefinition existingColumnFamilyDefinition) {
+        if (columnFamilyDefinition.getColumnMetadata().size() != existingColumnFamilyDefinition.getColumnMetadata().size()) {
+            return false;
+        }
+        Map<ByteBuffer, ColumnDefinition> existingColumns = new HashMap<ByteBuffer, ColumnDefinition>();
+        for (ColumnDefinition columnDefinition : existingColumnFamilyDefinition.getColumnMetadata()) {
+            existingColumns.put(columnDefinition.getName(), columnDefinition);
+        }
+        for (ColumnDefinition columnDefinition : columnFamilyDefinition.getColumnMetadata()) {
+            ColumnDefinition existing = existingColumns.get(columnDefinition.getName());
+            if (existing == null
+                    || !StringUtils.equals(columnDefinition.getValidationClass(), existing.getValidationClass())
+                    || columnDefinition.getIndexType() != existing.getIndexType()
+                    || !StringUtils.equals(columnDefinition.getIndexName(), existing.getIndexName())) {
+                return false;
+            }
         }
-        HFactory.shutdownCluster(cluster);
-        super.destroy();
+        return true;
     }
 
     /**
-     * Executes a query
+     * Private helper that adds the column family holding the schema fingerprint to a desired keyspace
      *
-     * @param expectedResult the result expected from the query execution
-     * @param query          the query
-     * @param <T>            the result type
-     * @return the result
-     */
-    @Override
-    @SuppressWarnings("unchecked")
-    public <T> T executeQuery(Class<T> expectedResult, Query query) {
-        return (T) getCQLExecuteQuery(query.getQuery()).execute();
-    }
-
-    /**
-     * Private helper that returns a CqlExecuteQuery
-     * @param query the query
-     * @param <T>  the entity type
-     * @param <V> the value type
-     * @return the CqlQuery
+     * @param ksDef the desired keyspace
+     * @return the keyspace including the schema column family
      */
-    protected <T, V> CqlExecuteQuery<V> getCQLExecuteQuery(String query) {
-        CqlExecuteQuery<V> cqlQuery = new CqlExecuteQuery<V>(getDefaultKeyspace());
-        cqlQuery.setQuery(query);
-        return cqlQuery;
-    }
-
-    /**
-     * Private helper to obtain a CqlQuery given an entity class type and a cql query
-     * @param type the class type
-     * @param query the cql query
-     * @param <T>  The type of entity
-     * @param <V>  The type of value
-     * @return a CqlQuery
-     */
-    protected <T, V> CqlQuery<String, String, V> getCQLQuery(Class<T> type, String query) {
-        ClassMetadata classMetadata = getClassMetadata(type);
-        Keyspace keyspace;
-        if (classMetadata == null) { //this is not a managed class such as requesting a long for now as workaround the first keyspace will be selected //todo change in the future to be able to pass akeyspace
-            keyspace = getDefaultKeyspace();
-        } else {
-            keyspace = getKeyspace(classMetadata);
-        }
-        CqlQuery<String, String, V> cqlQuery = new CqlQuery<String, String, V>(keyspace, StringSerializer.get(), StringSerializer.get(), new TypeConverterSerializer<V>());
-        cqlQuery.setQuery(query);
-        cqlQuery.setSuppressKeyInColumns(true);
-        return cqlQuery;
+    private KeyspaceDefinition withSchemaColumnFamily(KsDef ksDef) {
+        KsDef definition = new KsDef(ksDef);
+        CfDef schemaColumnFamily = new CfDef(ksDef.getName(), SCHEMA_COLUMN_FAMILY);
+        schemaColumnFamily.setComparator_type(UTF8Type.class.getName());
+        schemaColumnFamily.setKey_validation_class(UTF8Type.class.getName());
+        schemaColumnFamily.setDefault_validation_class(UTF8Type.class.getName());
+        definition.addToCf_defs(schemaColumnFamily);
+        return new ThriftKsDef(definition);
     }
 
     /**
-     * Fetch a map of columns and their values
+     * Computes a fingerprint of a desired keyspace that doesn't depend on the order column families and columns were declared
      *
-     * @param query a cql query
-     * @return the resulting columns and their values
+     * @param ksDef the desired keyspace
+     * @return the hex encoded MD5 digest of the keyspace definition
      */
-    protected Map<String, ByteBuffer> getColumns(String query) {
-        Map<String, ByteBuffer> resultMap = new LinkedHashMap<String, ByteBuffer>();
-        CqlQuery<String, String, Object> cqlQuery = new CqlQuery<String, String, Object>(getDefaultKeyspace(), StringSerializer.get(), StringSerializer.get(), new TypeConverterSerializer<Object>());
-        cqlQuery.setQuery(query);
-        cqlQuery.setSuppressKeyInColumns(true);
-        QueryResult<CqlRows<String, String, Object>> results = cqlQuery.execute();
-        CqlRows<String, String, Object> rows = results.get();
-        for (Row<String, String, Object> row : rows) {
-            ColumnSlice<String, Object> slice = row.getColumnSlice();
-            for (HColumn<String, Object> column : slice.getColumns()) {
-                resultMap.put(column.getName(), column.getValueBytes());
+    protected String getSchemaFingerprint(KsDef ksDef) throws TException, NoSuchAlgorithmException {
+        KsDef definition = new KsDef(ksDef);
+        if (definition.getStrategy_options() != null) {
+            definition.setStrategy_options(new TreeMap<String, String>(definition.getStrategy_options()));
+        }
+        Collections.sort(definition.getCf_defs(), new Comparator<CfDef>() {
+            public int compare(CfDef cfDef, CfDef other) {
+                return cfDef.getName().compareTo(other.getName());
+            }
+        });
+        for (CfDef cfDef : definition.getCf_defs()) {
+            if (cfDef.getColumn_metadata() != null) {
+                Collections.sort(cfDef.getColumn_metadata(), new Comparator<ColumnDef>() {
+                    public int compare(ColumnDef columnDef, ColumnDef other) {
+                        return columnDef.bufferForName().compareTo(other.bufferForName());
+                    }
+                });
             }
         }
-        return resultMap;
+        byte[] digest = MessageDigest.getInstance("MD5").digest(new TSerializer(new TBinaryProtocol.Factory()).serialize(definition));
+        return String.format("%032x", new BigInteger(1, digest));
     }
 
     /**
+     * Private helper that reads the fingerprint of the schema last applied to a keyspace
      *
-     * @return the default keyspace
+     * @param keyspaceName the keyspace
+     * @return the fingerprint or null if the keyspace or its fingerprint don't exist yet
      */
-    private Keyspace getDefaultKeyspace() {
-        return HFactory.createKeyspace(getDefaultKeySpace(), cluster);
+    private String readSchemaFingerprint(String keyspaceName) {
+        try {
+            ColumnQuery<String, String, String> query = HFactory.createStringColumnQuery(HFactory.createKeyspace(keyspaceName, cluster));
+            query.setColumnFamily(SCHEMA_COLUMN_FAMILY).setKey(keyspaceName).setName(SCHEMA_FINGERPRINT_COLUMN);
+            HColumn<String, String> column = query.execute().get();
+            return column != null ? column.getValue() : null;
+        } catch (HInvalidRequestException e) {
+            log.debug(String.format("no schema fingerprint found for keyspace %s", keyspaceName));
+            return null;
+        }
     }
 
     /**
-     * Initializes the factory
+     * Private helper that stores the fingerprint of the schema applied to a keyspace
+     *
+     * @param keyspaceName the keyspace
+     * @param fingerprint  the fingerprint
      */
-    public synchronized void init() throws Exception {
-        super.init();
-        log.debug("initializing factory");
-        //favor an existing cassandraHostConfigurator
-        if (cassandraHostConfigurator == null) {
-            cassandraHostConfigurator = new CassandraHostConfigurator();
-            cassandraHostConfigurator.setPort(getThriftPort());
-            cassandraHostConfigurator.setHosts(StringUtils.join(getContactNodes(), ','));
-            cassandraHostConfigurator.setAutoDiscoverHosts(autoDiscoverHosts);
-        }
-        cluster = HFactory.getOrCreateCluster(clusterName, cassandraHostConfigurator, credentials);
-        initializeTypeConverters();
-        initializeKeyspaceDefinitions();
-        initializeSchema();
-        log.debug("factory initialized");
+    private void writeSchemaFingerprint(String keyspaceName, String fingerprint) {
+        Mutator<String> mutator = HFactory.createMutator(HFactory.createKeyspace(keyspaceName, cluster), StringSerializer.get());
+        mutator.insert(keyspaceName, SCHEMA_COLUMN_FAMILY, HFactory.createStringColumn(SCHEMA_FINGERPRINT_COLUMN, fingerprint));
     }
 
     /**
-     * Private helper to initialize the schema
+     * Waits until all reachable nodes report the same schema version
      */
-    protected void initializeSchema() throws Exception {
-        if (keyspaceDefinitions.size() == 0)
-            throw new IllegalStateException("no keyspace definitions founds, maybe add some entities to the factory");
-        for (KeyspaceDefinition keyspaceDefinition : ThriftKsDef.fromThriftList(new ArrayList<KsDef>(keyspaceDefinitions.values()))) {
-            KeyspaceDefinition existingKeyspace = cluster.describeKeyspace(keyspaceDefinition.getName());
-            if (existingKeyspace == null) {
-                cluster.addKeyspace(keyspaceDefinition, true);
-            } else {
-                for (ColumnFamilyDefinition columnFamilyDefinition : keyspaceDefinition.getCfDefs()) {
-                    if (keyspaceContainsColumnFamily(columnFamilyDefinition, existingKeyspace)) {
-                        log.debug(String.format("found column family %s, updating schema", columnFamilyDefinition.getName()));
-                        ColumnFamilyDefinition existingColumnFamilyDefinition = getColumnFamilyFromKeyspace(columnFamilyDefinition.getName(), existingKeyspace);
-                        existingColumnFamilyDefinition.getColumnMetadata().clear();
-                        for (ColumnDefinition columnDefinition : columnFamilyDefinition.getColumnMetadata()) {
-                            existingColumnFamilyDefinition.addColumnDefinition(columnDefinition);
-                        }
-                        cluster.updateColumnFamily(existingColumnFamilyDefinition, true);
-                    } else {
-                        log.debug(String.format("not found column family %s, adding to schema", columnFamilyDefinition.getName()));
-                        cluster.addColumnFamily(columnFamilyDefinition, true);
-                    }
-                }
+    protected void waitForSchemaAgreement() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + schemaAgreementTimeout;
+        Map<String, List<String>> versions = cluster.describeSchemaVersions();
+        while (versions.size() - (versions.containsKey(UNREACHABLE_SCHEMA_VERSION) ? 1 : 0) > 1) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException(String.format("nodes didn't agree on the schema after %d ms: %s", schemaAgreementTimeout, versions));
             }
+            Thread.sleep(SCHEMA_AGREEMENT_POLL_INTERVAL);
+            versions = cluster.describeSchemaVersions();
         }
+        log.debug(String.format("schema agreement reached: %s", versions.keySet()));
     }
 
     /**
@@ -513,120 +426,58 @@ public class HectorPersistenceFactory extends AbstractPersistenceFactory {
     }
 
     /**
-     * Loads a lazy property's value
-     *
-     * @param metadata the entity metadata
-     * @param self     the entity instance
-     * @param proceed  the method being intercepted
-     * @param m
-     * @param args     the method arguments
-     */
-    @Override
-    protected <T> void loadLazyPropertyIfNecessary(ClassMetadata<T> metadata, Object self, Method proceed, Method m, Object[] args) throws Exception {
-        Object value = proceed.invoke(self, args);
-        String key = getKey(self);
-        if (key != null) { //key may be null if this is just a regular access to the property before the entity has been persisted and no key has been assigned
-            SliceQuery<String, String, Object> query = getSliceQuery(metadata);
-            query.setColumnFamily(metadata.getColumnFamily());
-            query.setKey(key);
-            String column = metadata.getLazyProperty(m);
-            query.setColumnNames(column);
-            List<HColumn<String, Object>> columns = query.execute().get().getColumns();
-            HColumn<String, Object> mappedColumnValue = columns.size() == 1 ? columns.get(0) : null;
-            if (mappedColumnValue != null && isEmptyContainerValue(value)) { //todo once a load attempt has been made we should not attempt again but we have no sessions...perhaps a weakreference map?
-                Object propertyValue = loadProperty(metadata, column, mappedColumnValue);
-                PropertyUtils.setProperty(self, column, propertyValue);
-            }
-        }
-    }
-
-    /**
-     * Private helper to get a slice query given a class metadata
-     * @param classMetadata the class metadata
-     * @param <V> the value type
-     * @return a slice query
-     */
-    private <V> SliceQuery<String, String, V> getSliceQuery(ClassMetadata<?> classMetadata) {
-        return HFactory.createSliceQuery(getKeyspace(classMetadata), StringSerializer.get(), StringSerializer.get(), new TypeConverterSerializer<V>());
-    }
-
-    /**
-     * Gets a keyspace associated with a class metadata
-     * @param classMetadata the class metadata
-     * @return the keyspace
+     * Private helper that returns a CqlExecuteQuery
+     * @param query the query
+     * @return the CqlExecuteQuery
+     * @deprecated queries are executed through {@link Transport#executeCql(String, org.firebrandocm.dao.annotations.ConsistencyLevel, String)}
      */
-    private Keyspace getKeyspace(ClassMetadata<?> classMetadata) {
-        String keySpace = classMetadata.getKeySpace();
-        keySpace = keySpace != null ? keySpace : getDefaultKeySpace();
-        Keyspace keyspace = HFactory.createKeyspace(keySpace, cluster, getColumnFamilyConsistencyLevel(classMetadata));
-        return keyspace;
+    @Deprecated
+    protected CqlExecuteQuery getCQLExecuteQuery(String query) {
+        CqlExecuteQuery cqlQuery = new CqlExecuteQuery(getDefaultKeyspace());
+        cqlQuery.setQuery(query);
+        return cqlQuery;
     }
 
     /**
-     * Get the default consistency level for a keyspace given the class metadata
-     * @param classMetadata the class metadata
-     * @return the configured or default consistency level
+     * Private helper to obtain a CqlQuery given an entity class type and a cql query
+     * @param type the class type
+     * @param query the cql query
+     * @param <T>  The type of entity
+     * @param <V>  The type of value
+     * @return a CqlQuery
+     * @deprecated queries are executed through {@link Transport#executeCql(String, org.firebrandocm.dao.annotations.ConsistencyLevel, String)}
      */
-    private ColumnFamilyConsistencyLevel getColumnFamilyConsistencyLevel(ClassMetadata<?> classMetadata) {
-        return new ColumnFamilyConsistencyLevel(classMetadata.getConsistencyLevel());
-    }
-
-    /**
-     * Private helper to determine if a container is empty
-     *
-     * @param value the container
-     * @return if the container is empty
-     */
-    private boolean isEmptyContainerValue(Object value) {
-        boolean empty = value == null;
-        if (!empty) {
-            if (Collections.class.isAssignableFrom(value.getClass())) {
-                empty = ((Collection) value).isEmpty();
-            }
+    @Deprecated
+    protected <T, V> CqlQuery<String, String, V> getCQLQuery(Class<T> type, String query) {
+        ClassMetadata<T> classMetadata = getClassMetadata(type);
+        Keyspace keyspace;
+        if (classMetadata == null) { //this is not a managed class such as requesting a long for now as workaround the first keyspace will be selected
+            keyspace = getDefaultKeyspace();
+        } else {
+            keyspace = HFactory.createKeyspace(getKeySpace(classMetadata), cluster);
         }
-        return empty;
+        CqlQuery<String, String, V> cqlQuery = new CqlQuery<String, String, V>(keyspace, StringSerializer.get(), StringSerializer.get(), new TypeConverterSerializer<V>());
+        cqlQuery.setQuery(query);
+        cqlQuery.setSuppressKeyInColumns(true);
+        return cqlQuery;
     }
 
     /**
-     * private helper to persist and arbitrary list of objects into the datastore
+     * Fetch a map of columns and their values
      *
-     * @param entities
+     * @param query a cql query
+     * @return the resulting columns and their values
+     * @deprecated delegates to {@link Transport#executeCql(String, org.firebrandocm.dao.annotations.ConsistencyLevel, String)}
      */
-    private void persistAll(Object... entities) {
-        log.debug(String.format("persist(%s) { ", Arrays.toString(entities)));
-        for (Object entity : entities) {
-            persistEntity(entity);
+    @Deprecated
+    protected Map<String, ByteBuffer> getColumns(String query) {
+        Map<String, ByteBuffer> resultMap = new LinkedHashMap<String, ByteBuffer>();
+        for (RawRow row : getTransport().executeCql(getDefaultKeySpace(), null, query).getRows()) {
+            for (RawColumn column : row.getColumns()) {
+                resultMap.put(column.getName(), column.getValue());
+            }
         }
-        log.debug(String.format("} (%s)", Arrays.toString(entities)));
-    }
-
-    /**
-     * helper that persists a single an entity in the data store
-     *
-     * @param entity
-     */
-    protected void persistEntity(Object entity) {
-        fireEntityEvent(Event.Entity.PRE_PERSIST, entity);
-        ClassMetadata<?> classMetadata = getClassMetadata(entity.getClass());
-        Mutator<String> mutator = getMutator(classMetadata);
-        String key = getKey(entity);
-        for (String property : classMetadata.getMutationProperties()) {
-            persistPropertyIfNecessary(mutator, key, classMetadata, entity, property);
-        }
-        mutator.execute();
-        fireEntityEvent(Event.Entity.POST_PERSIST, entity);
-    }
-
-    /**
-     * Given a classMetadata obtain a mutator
-     * @param classMetadata the class metadata
-     * @return the mutator
-     */
-    private Mutator<String> getMutator(ClassMetadata classMetadata) {
-        String keySpace = classMetadata.getKeySpace();
-        keySpace = keySpace != null ? keySpace : getDefaultKeySpace();
-        Keyspace keyspace = HFactory.createKeyspace(keySpace, cluster, getColumnFamilyConsistencyLevel(classMetadata));
-        return HFactory.createMutator(keyspace, StringSerializer.get(), new BatchSizeHint(1, classMetadata.getMutationProperties().size()));
+        return resultMap;
     }
 
     /**
@@ -637,129 +488,60 @@ public class HectorPersistenceFactory extends AbstractPersistenceFactory {
      * @param classMetadata the class metadata
      * @param entity        the entity
      * @param property      the property being persisted
+     * @deprecated delegates to {@link #persistPropertyIfNecessary(MutationBatch, String, ClassMetadata, Object, String)}
      */
+    @Deprecated
     protected void persistPropertyIfNecessary(Mutator<String> mutator, String key, ClassMetadata<?> classMetadata, Object entity, String property) {
-        if (!property.equals(classMetadata.getKeyProperty())) {
-            try {
-                Object value;
-                if (property.equals(CLASS_PROPERTY)) { //if this is a special case class property
-                    value = classMetadata.getTarget().getName();
-                } else { //otherwise proceed with serialization
-                    value = PropertyUtils.getProperty(entity, property);
-                    if (classMetadata.isMappedContainer(property)) { //we have a mapped property so we set its class:key as the value
-                        value = getMappedPropertyTokenForPersistentValues(value);
-                    } else if (classMetadata.isMappedCollection(property)) { //we have a mapped property so we set its key as the value
-                        value = getMappedPropertyTokenForPersistentValues(value);
-                    }
-                }
-                update(mutator, key, entity, property, value);
-            } catch (NestedNullException nestedNullException) {
-                String colFamily = classMetadata.getColumnFamily();
-                if (key == null) {
-                    log.warn(String.format("entity: %s had no value for key and was ignored", entity));
-                } else {
-                    fireColumnEvent(Event.Column.PRE_COLUMN_DELETION, entity, property, key, colFamily, null);
-                    mutator.addDeletion(key, colFamily, property, StringSerializer.get());
-                    log.debug(String.format("\tD:  %s ", property));
-                    fireColumnEvent(Event.Column.POST_COLUMN_DELETION, entity, property, key, colFamily, null);
-                }
-            } catch (NoSuchMethodException e) {
-                throw new RuntimeException(e);
-            } catch (IllegalAccessException e) {
-                throw new RuntimeException(e);
-            } catch (InvocationTargetException e) {
-                throw new RuntimeException(e);
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
-        }
+        MutationBatch batch = new MutationBatch();
+        persistPropertyIfNecessary(batch, key, classMetadata, entity, property);
+        HectorTransport.addMutations(mutator, batch);
     }
 
     /**
-     * Invoked when a setter is invoked in any entity changing a property value
+     * Private helper that updates a simple column
      *
-     * @param entity   the entity being invoked
-     * @param property the property most likely to map to a column name
-     * @param value    the new value for the property, null usually handled as deletions of that key column association
-     */
-    private void update(Mutator<String> mutator, String key, Object entity, String property, Object value) throws InvocationTargetException, NoSuchMethodException, IllegalAccessException, IOException {
-        ClassMetadata metadata = getClassMetadata(entity.getClass());
-        if (!metadata.getKeyProperty().equals(property)) { //there is no point to create a column for the key
-            updateWithMetadata(mutator, key, metadata, property, value, entity);
-        }
-    }
-
-    /**
-     * Private helper that delegates to updateSimpleColumn
+     * @param mutator  the operation mutator
+     * @param key      the column key
+     * @param metadata the class metadata associated to the entity
+     * @param property the property represented by this column
+     * @param value    the value
+     * @param entity   the entity the property belongs to
+     * @deprecated delegates to {@link #updateSimpleColumn(MutationBatch, String, ClassMetadata, String, Object, Object)}
      */
-    private void updateWithMetadata(Mutator<String> mutator, String key, ClassMetadata metadata, String property, Object value, Object entity) throws InvocationTargetException, NoSuchMethodException, IllegalAccessException, IOException {
-        updateSimpleColumn(mutator, key, metadata, property, value, entity);
+    @Deprecated
+    protected void updateSimpleColumn(Mutator<String> mutator, String key, ClassMetadata<?> metadata, String property, Object value, Object entity) throws Exception {
+        MutationBatch batch = new MutationBatch();
+        updateSimpleColumn(batch, key, metadata, property, value, entity);
+        HectorTransport.addMutations(mutator, batch);
     }
 
     /**
-     * Private helper that updates a simple column
+     * Private helper that updates a primitive column reading its value through the generated accessor
      *
      * @param mutator  the operation mutator
      * @param key      the column key
      * @param metadata the class metadata associated to the entity
-     * @param property the property represented by this column
-     * @param value    the value
      * @param entity   the entity the property belongs to
+     * @param accessor the bound accessor for the property
+     * @deprecated delegates to {@link #persistPropertyIfNecessary(MutationBatch, String, ClassMetadata, Object, String)}
      */
-    protected void updateSimpleColumn(Mutator<String> mutator, String key, ClassMetadata metadata, String property, Object value, Object entity) throws InvocationTargetException, NoSuchMethodException, IllegalAccessException, IOException {
-        String colFamily = metadata.getColumnFamily();
-        if (!metadata.isAssociationContainer(property)) { //association container properties are ignored since their embedded properties are flatten into the column family
-            if (value == null) {
-                if (!metadata.isContainer(property)) { //mapped properties are removed when loading a property with id that returns null
-                    fireColumnEvent(Event.Column.PRE_COLUMN_DELETION, entity, property, key, colFamily, null);
-                    mutator.addDeletion(key, colFamily, property, StringSerializer.get());
-                    log.debug(String.format("\tD: %s", property));
-                    fireColumnEvent(Event.Column.POST_COLUMN_DELETION, entity, property, key, colFamily, null);
-                }
-            } else {
-                if (metadata.isCounterIncreaseProperty(property)) { //a counter property increase
-                    Long counterIncreaseValue = (Long) value;
-                    //if (counterIncreaseValue != 0) {
-                    String targetCounterProperty = metadata.getTargetCounterProperty(property);
-                    fireColumnEvent(Event.Column.PRE_COUNTER_MUTATION, entity, property, key, colFamily, null);
-                    mutator.incrementCounter(key, colFamily, targetCounterProperty, counterIncreaseValue);
-                    log.debug(String.format("C: %s increments to %d", targetCounterProperty, counterIncreaseValue));
-                    //once applied the increase the counter increase value gets reset to 0
-                    PropertyUtils.setProperty(entity, property, 0L);
-                    fireColumnEvent(Event.Column.POST_COUNTER_MUTATION, entity, property, key, colFamily, null);
-                    //}
-                } else if (!metadata.isCounterProperty(property)) {  //a regular column update, counter are ignored since they're just serialized
-                    HColumn<String, Object> column = createColumn(property, value, StringSerializer.get(), new TypeConverterSerializer<Object>(value));
-                    fireColumnEvent(Event.Column.PRE_COLUMN_MUTATION, entity, property, key, colFamily, column);
-                    mutator.addInsertion(key, colFamily, column);
-                    log.debug(String.format("\tI: %s : %s ", property, value));
-                    fireColumnEvent(Event.Column.POST_COLUMN_MUTATION, entity, property, key, colFamily, column);
-                }
-            }
-            //log.debug(String.format("batched mutation for colFamily: %s, key: %s, col: %s, val: %s", colFamily, key, property, value));
-        }
+    @Deprecated
+    protected void updatePrimitiveColumn(Mutator<String> mutator, String key, ClassMetadata<?> metadata, Object entity, PrimitiveAccessor accessor) {
+        persistPropertyIfNecessary(mutator, key, metadata, entity, accessor.getProperty());
     }
 
     /**
-     * Private helper that hidrates an entity from a list of columns in the datastore
+     * Loads a simple, mapped or collection entity property
      *
-     * @param key              the key
-     * @param metadata        the entity metadata
-     * @param entityClass     the entity class
-     * @param columns         the list of columns to set in the entity proeprties
-     * @param instance        the entity instance
-     * @param ignoreLazyFlags whether lazy flags in @Column annotations should be ignored for this operation
-     * @param <T>             the entity type
-     * @return the hidrated entity
+     * @param metadata the entity property
+     * @param name     the property name
+     * @param column   the column object
+     * @return the property value
+     * @deprecated delegates to {@link #loadProperty(ClassMetadata, String, RawColumn)}
      */
-    private <T> T serializeColumns(String key, ClassMetadata<?> metadata, Class<T> entityClass, List<HColumn<String, Object>> columns, T instance, boolean ignoreLazyFlags) throws Exception {
-        instance = getInstance(entityClass, instance);
-        for (HColumn<String, Object> column : columns) {
-            String name = column.getName();
-            serializeColumn(metadata, instance, name, column, ignoreLazyFlags);
-        }
-        PropertyUtils.setProperty(instance, metadata.getKeyProperty(), key);
-        return instance;
+    @Deprecated
+    protected Object loadProperty(ClassMetadata<?> metadata, String name, HColumn<String, Object> column) throws Exception {
+        return loadProperty(metadata, name, toRawColumn(column));
     }
 
     /**
@@ -770,37 +552,70 @@ public class HectorPersistenceFactory extends AbstractPersistenceFactory {
      * @param name            the property name
      * @param column          the column object
      * @param ignoreLazyFlags whether lazy flags in @Column annotations should be ignored for this operation
+     * @deprecated delegates to {@link #serializeColumn(ClassMetadata, Object, String, RawColumn, boolean)}
      */
+    @Deprecated
     protected void serializeColumn(ClassMetadata<?> metadata, Object instance, String name, HColumn<String, Object> column, boolean ignoreLazyFlags) throws Exception {
-        if (!name.equals(CLASS_PROPERTY) && metadata.getSelectionProperties().contains(name)) { //ignore the class type property while deserializing
-            if (ignoreLazyFlags || !metadata.isLazyProperty(name)) {
-                if ("KEY".equals(name)) {
-                    name = metadata.getKeyProperty();
-                }
-                Object value = loadProperty(metadata, name, column);
-                try {
-                    instantiateContainersIfNecessary(metadata, instance, name);
-                    PropertyUtils.setProperty(instance, name, value);
-                } catch (Throwable e) {
-                    throw new UnsupportedOperationException(e);
-                }
-            }
-        }
+        serializeColumn(metadata, instance, name, toRawColumn(column), ignoreLazyFlags);
+    }
+
+    /**
+     * Loads a mapped entity
+     *
+     * @param column the column object
+     * @return the mapped entity
+     * @deprecated delegates to {@link #loadMappedEntity(RawColumn)}
+     */
+    @Deprecated
+    protected Object loadMappedEntity(HColumn<String, Object> column) throws Exception {
+        return loadMappedEntity(toRawColumn(column));
+    }
+
+    /**
+     * Loads the entities referenced by a mapped collection column
+     *
+     * @param column the column
+     * @return the list of entities
+     * @deprecated delegates to {@link #loadMappedCollection(RawColumn)}
+     */
+    @Deprecated
+    protected Object loadMappedCollection(HColumn<String, Object> column) throws Exception {
+        return loadMappedCollection(toRawColumn(column));
+    }
+
+    /**
+     * Private helper that wraps an Hector column as a transport column
+     */
+    private static RawColumn toRawColumn(HColumn<String, Object> column) {
+        return new RawColumn(column.getName(), column.getValueBytes());
+    }
+
+    /**
+     *
+     * @return the default keyspace
+     */
+    private Keyspace getDefaultKeyspace() {
+        return HFactory.createKeyspace(getDefaultKeySpace(), cluster);
     }
 
     /* Inner Classes */
 
     /**
-     * Private helper to convert from the data store type to java types and viceversa.
-     * It delegates its operations to AbstractPersistenceFactory#convertRead and AbstractPersistenceFactory#convertWrite
-     * @param <Type>
+     * An Hector serializer that converts values with the factory type converters
+     * @deprecated values are converted with {@link #convertRead(Class, ByteBuffer)} and {@link #convertWrite(Object)}
      */
+    @Deprecated
     public final class TypeConverterSerializer<Type> extends AbstractSerializer<Type> {
         /**
          * The target class
          */
         private Class<?> target;
 
+        /**
+         * The column family bytes serialized are reported to, null if not reported
+         */
+        private String columnFamily;
+
         /**
          * Default constructor
          */
@@ -815,6 +630,16 @@ public class HectorPersistenceFactory extends AbstractPersistenceFactory {
             this.target = targetObject != null ? targetObject.getClass() : null;
         }
 
+        /**
+         * Constructor based on a target object that reports the bytes it serializes
+         * @param targetObject the target object
+         * @param columnFamily the column family the bytes are written to
+         */
+        public TypeConverterSerializer(Type targetObject, String columnFamily) {
+            this(targetObject);
+            this.columnFamily = columnFamily;
+        }
+
         /**
          * Constructor based on target object class
          * @param target the target object class
@@ -829,7 +654,11 @@ public class HectorPersistenceFactory extends AbstractPersistenceFactory {
         @Override
         public ByteBuffer toByteBuffer(Object obj) {
             try {
-                return convertWrite(obj);
+                ByteBuffer byteBuffer = convertWrite(obj);
+                if (columnFamily != null && byteBuffer != null) {
+                    recordCount(columnFamily, Counter.BYTES_SERIALIZED, byteBuffer.remaining());
+                }
+                return byteBuffer;
             } catch (Exception e) {
                 throw new RuntimeException(e);
             }
@@ -930,21 +759,106 @@ public class HectorPersistenceFactory extends AbstractPersistenceFactory {
             return this;
         }
 
+        public Builder embeddedServerStartupTimeout(long embeddedServerStartupTimeout) {
+            delegate.setEmbeddedServerStartupTimeout(embeddedServerStartupTimeout);
+            return this;
+        }
+
+        public Builder entityClassEventListenerMap(Map<Class<?>, Map<Event.Entity, List<EntityEventListener>>> entityClassEventListenerMap) {
+            delegate.setEntityClassEventListenerMap(entityClassEventListenerMap);
+            return this;
+        }
+
+        public Builder columnClassEventListenerMap(Map<Class<?>, Map<Event.Column, List<ColumnEventListener>>> columnClassEventListenerMap) {
+            delegate.setColumnClassEventListenerMap(columnClassEventListenerMap);
+            return this;
+        }
+
         public Builder entityEventListenerMap(Map<Event.Entity, List<EntityEventListener>> entityEventListenerMap) {
             delegate.setEntityEventListenerMap(entityEventListenerMap);
             return this;
         }
 
+        public Builder schemaAgreementTimeout(long schemaAgreementTimeout) {
+            delegate.setSchemaAgreementTimeout(schemaAgreementTimeout);
+            return this;
+        }
+
         public Builder replicationFactor(int replicationFactor) {
             delegate.setReplicationFactor(replicationFactor);
             return this;
         }
 
+        public Builder asyncEventDispatch(boolean asyncEventDispatch) {
+            delegate.setAsyncEventDispatch(asyncEventDispatch);
+            return this;
+        }
+
+        public Builder eventRingBufferSize(int eventRingBufferSize) {
+            delegate.setEventRingBufferSize(eventRingBufferSize);
+            return this;
+        }
+
+        public Builder eventConsumerThreads(int eventConsumerThreads) {
+            delegate.setEventConsumerThreads(eventConsumerThreads);
+            return this;
+        }
+
+        public Builder eventOverflowPolicy(OverflowPolicy eventOverflowPolicy) {
+            delegate.setEventOverflowPolicy(eventOverflowPolicy);
+            return this;
+        }
+
+        public Builder metricsRecorder(MetricsRecorder metricsRecorder) {
+            delegate.setMetricsRecorder(metricsRecorder);
+            return this;
+        }
+
+        public Builder indexStatistics(IndexStatistics indexStatistics) {
+            delegate.setIndexStatistics(indexStatistics);
+            return this;
+        }
+
+        public Builder queryPlanPageSize(int queryPlanPageSize) {
+            delegate.setQueryPlanPageSize(queryPlanPageSize);
+            return this;
+        }
+
+        public Builder countSplits(int countSplits) {
+            delegate.setCountSplits(countSplits);
+            return this;
+        }
+
+        public Builder countParallelism(int countParallelism) {
+            delegate.setCountParallelism(countParallelism);
+            return this;
+        }
+
+        public Builder mappedCollectionChunkSize(int mappedCollectionChunkSize) {
+            delegate.setMappedCollectionChunkSize(mappedCollectionChunkSize);
+            return this;
+        }
+
+        public Builder mappedCollectionParallelism(int mappedCollectionParallelism) {
+            delegate.setMappedCollectionParallelism(mappedCollectionParallelism);
+            return this;
+        }
+
+        public Builder deduplicateMappedCollections(boolean deduplicateMappedCollections) {
+            delegate.setDeduplicateMappedCollections(deduplicateMappedCollections);
+            return this;
+        }
+
         public Builder startEmbeddedServer(boolean startEmbeddedServer) {
             delegate.setStartEmbeddedServer(startEmbeddedServer);
             return this;
         }
 
+        public Builder transport(Transport transport) {
+            delegate.setTransport(transport);
+            return this;
+        }
+
         public Builder entities(List<Class<?>> entities) {
             delegate.setEntities(entities);
             return this;
@@ -0,0 +1,544 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao.impl.hector;
+
+import me.prettyprint.cassandra.model.ExecutingKeyspace;
+import me.prettyprint.cassandra.serializers.ByteBufferSerializer;
+import me.prettyprint.cassandra.serializers.LongSerializer;
+import me.prettyprint.cassandra.serializers.StringSerializer;
+import me.prettyprint.cassandra.service.BatchSizeHint;
+import me.prettyprint.cassandra.service.Operation;
+import me.prettyprint.cassandra.service.OperationType;
+import me.prettyprint.hector.api.Cluster;
+import me.prettyprint.hector.api.ConsistencyLevelPolicy;
+import me.prettyprint.hector.api.Keyspace;
+import me.prettyprint.hector.api.exceptions.HectorException;
+import me.prettyprint.hector.api.factory.HFactory;
+import me.prettyprint.hector.api.mutation.Mutator;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.thrift.Cassandra.Client;
+import org.apache.cassandra.thrift.Column;
+import org.apache.cassandra.thrift.ColumnOrSuperColumn;
+import org.apache.cassandra.thrift.ColumnParent;
+import org.apache.cassandra.thrift.CounterColumn;
+import org.apache.cassandra.thrift.CqlResult;
+import org.apache.cassandra.thrift.CqlResultType;
+import org.apache.cassandra.thrift.CqlRow;
+import org.apache.cassandra.thrift.IndexClause;
+import org.apache.cassandra.thrift.IndexExpression;
+import org.apache.cassandra.thrift.IndexOperator;
+import org.apache.cassandra.thrift.KeyRange;
+import org.apache.cassandra.thrift.KeySlice;
+import org.apache.cassandra.thrift.SlicePredicate;
+import org.apache.cassandra.thrift.SliceRange;
+import org.apache.cassandra.utils.FBUtilities;
+import org.firebrandocm.dao.annotations.ConsistencyLevel;
+import org.firebrandocm.dao.transport.*;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * An Hector based impl for the Transport.
+ * Reads are issued as thrift slice, multiget and range slice calls over Hector's connection pool so key lookups skip the
+ * CQL parse, writes go through Hector mutators
+ */
+public class HectorTransport implements Transport {
+    /* Fields */
+
+    /**
+     * the name of the key column CQL includes in the returned rows
+     */
+    private static final String KEY_COLUMN = "KEY";
+
+    /**
+     * the name of the column count queries return the count in
+     */
+    private static final String COUNT_COLUMN = "count";
+
+    /**
+     * the empty buffer standing for an open slice or key range bound
+     */
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    /**
+     * The cluster instance
+     */
+    private final Cluster cluster;
+
+    /**
+     * The partitioner of the cluster, described on first use
+     */
+    private volatile IPartitioner partitioner;
+
+    /* Constructors */
+
+    /**
+     * Constructs a transport over a cluster
+     *
+     * @param cluster the cluster
+     */
+    public HectorTransport(Cluster cluster) {
+        this.cluster = cluster;
+    }
+
+    /* Interface Implementations */
+
+
+// --------------------- Interface Transport ---------------------
+
+    /**
+     * @see Transport#readRow(String, ConsistencyLevel, String, String, String...)
+     */
+    @Override
+    public List<RawColumn> readRow(String keySpace, ConsistencyLevel consistencyLevel, final String columnFamily, final String key, final String... columns) {
+        return execute(keySpace, consistencyLevel, new ReadOperation<List<RawColumn>>(columnFamily) {
+            @Override
+            public List<RawColumn> execute(Client cassandra) throws Exception {
+                return toRawColumns(cassandra.get_slice(toBytes(key), columnParent, getPredicate(columns), getThriftConsistencyLevel()));
+            }
+        });
+    }
+
+    /**
+     * @see Transport#readRows(String, ConsistencyLevel, String, List, String...)
+     */
+    @Override
+    public Map<String, List<RawColumn>> readRows(String keySpace, ConsistencyLevel consistencyLevel, final String columnFamily, final List<String> keys, final String... columns) {
+        return execute(keySpace, consistencyLevel, new ReadOperation<Map<String, List<RawColumn>>>(columnFamily) {
+            @Override
+            public Map<String, List<RawColumn>> execute(Client cassandra) throws Exception {
+                List<ByteBuffer> keyBytes = new ArrayList<ByteBuffer>(keys.size());
+                for (String key : keys) {
+                    keyBytes.add(toBytes(key));
+                }
+                Map<ByteBuffer, List<ColumnOrSuperColumn>> result = cassandra.multiget_slice(keyBytes, columnParent, getPredicate(columns), getThriftConsistencyLevel());
+                Map<String, List<RawColumn>> rows = new LinkedHashMap<String, List<RawColumn>>();
+                for (int i = 0; i < keys.size(); i++) {
+                    List<ColumnOrSuperColumn> row = result.get(keyBytes.get(i));
+                    if (row != null && !row.isEmpty()) {
+                        rows.put(keys.get(i), toRawColumns(row));
+                    }
+                }
+                return rows;
+            }
+        });
+    }
+
+    /**
+     * @see Transport#readSlice(String, ConsistencyLevel, String, String, String, String, boolean, int)
+     */
+    @Override
+    public List<RawColumn> readSlice(String keySpace, ConsistencyLevel consistencyLevel, final String columnFamily, final String key, final String fromColumn, final String toColumn, final boolean reversed, final int limit) {
+        return execute(keySpace, consistencyLevel, new ReadOperation<List<RawColumn>>(columnFamily) {
+            @Override
+            public List<RawColumn> execute(Client cassandra) throws Exception {
+                SlicePredicate predicate = new SlicePredicate();
+                predicate.setSlice_range(new SliceRange(toBytes(fromColumn), toBytes(toColumn), reversed, limit));
+                return toRawColumns(cassandra.get_slice(toBytes(key), columnParent, predicate, getThriftConsistencyLevel()));
+            }
+        });
+    }
+
+    /**
+     * @see Transport#readRange(String, ConsistencyLevel, String, String, String, int, String...)
+     */
+    @Override
+    public List<RawRow> readRange(String keySpace, ConsistencyLevel consistencyLevel, final String columnFamily, final String startKey, final String endKey, final int rowLimit, final String... columns) {
+        return execute(keySpace, consistencyLevel, new ReadOperation<List<RawRow>>(columnFamily) {
+            @Override
+            public List<RawRow> execute(Client cassandra) throws Exception {
+                KeyRange range = new KeyRange(rowLimit);
+                range.setStart_key(toBytes(startKey));
+                range.setEnd_key(toBytes(endKey));
+                List<RawRow> rows = new ArrayList<RawRow>();
+                for (KeySlice slice : cassandra.get_range_slices(columnParent, getPredicate(columns), range, getThriftConsistencyLevel())) {
+                    //deleted rows are returned empty until compacted, they are kept so callers can page past them
+                    rows.add(new RawRow(StringSerializer.get().fromBytes(slice.getKey()), toRawColumns(slice.getColumns())));
+                }
+                return rows;
+            }
+        });
+    }
+
+    /**
+     * @see Transport#readIndexed(String, ConsistencyLevel, String, String, ByteBuffer, String, int, String...)
+     */
+    @Override
+    public List<RawRow> readIndexed(String keySpace, ConsistencyLevel consistencyLevel, final String columnFamily, final String column, final ByteBuffer value, final String startKey, final int rowLimit, final String... columns) {
+        return execute(keySpace, consistencyLevel, new ReadOperation<List<RawRow>>(columnFamily) {
+            @Override
+            public List<RawRow> execute(Client cassandra) throws Exception {
+                IndexClause clause = new IndexClause(Arrays.asList(new IndexExpression(toBytes(column), IndexOperator.EQ, value.duplicate())), toBytes(startKey), rowLimit);
+                List<RawRow> rows = new ArrayList<RawRow>();
+                for (KeySlice slice : cassandra.get_indexed_slices(columnParent, clause, getPredicate(columns), getThriftConsistencyLevel())) {
+                    rows.add(new RawRow(StringSerializer.get().fromBytes(slice.getKey()), toRawColumns(slice.getColumns())));
+                }
+                return rows;
+            }
+        });
+    }
+
+    /**
+     * Splits the ranges of the ring described by the cluster, unwrapping the range that wraps around the ring, and
+     * bisects them at their partitioner midpoint until there are enough ranges
+     *
+     * @see Transport#splitRing(String, String, int)
+     */
+    @Override
+    public List<TokenRange> splitRing(final String keySpace, String columnFamily, final int splits) {
+        return execute(keySpace, null, new ReadOperation<List<TokenRange>>(columnFamily) {
+            @Override
+            @SuppressWarnings("unchecked")
+            public List<TokenRange> execute(Client cassandra) throws Exception {
+                IPartitioner partitioner = getPartitioner(cassandra);
+                Token.TokenFactory tokenFactory = partitioner.getTokenFactory();
+                Token minimum = partitioner.getMinimumToken();
+                List<TokenRange> ranges = new ArrayList<TokenRange>();
+                for (org.apache.cassandra.thrift.TokenRange range : cassandra.describe_ring(keySpace)) {
+                    Token start = tokenFactory.fromString(range.getStart_token());
+                    Token end = tokenFactory.fromString(range.getEnd_token());
+                    if (end.equals(minimum) || start.compareTo(end) < 0) {
+                        ranges.add(new TokenRange(range.getStart_token(), range.getEnd_token()));
+                    } else {
+                        ranges.add(new TokenRange(range.getStart_token(), tokenFactory.toString(minimum)));
+                        if (!end.equals(minimum)) {
+                            ranges.add(new TokenRange(tokenFactory.toString(minimum), range.getEnd_token()));
+                        }
+                    }
+                }
+                while (ranges.size() < splits) {
+                    List<TokenRange> bisected = new ArrayList<TokenRange>(ranges.size() * 2);
+                    for (TokenRange range : ranges) {
+                        Token start = tokenFactory.fromString(range.getStartToken());
+                        Token end = tokenFactory.fromString(range.getEndToken());
+                        Token middle = partitioner.midpoint(start, end);
+                        if (middle.compareTo(start) > 0 && (end.equals(minimum) || middle.compareTo(end) < 0)) {
+                            String middleToken = tokenFactory.toString(middle);
+                            bisected.add(new TokenRange(range.getStartToken(), middleToken));
+                            bisected.add(new TokenRange(middleToken, range.getEndToken()));
+                        } else {
+                            bisected.add(range);
+                        }
+                    }
+                    if (bisected.size() == ranges.size()) { //the ranges are too narrow to be split further
+                        break;
+                    }
+                    ranges = bisected;
+                }
+                return ranges;
+            }
+        });
+    }
+
+    /**
+     * Pages through the range with range slice calls reading a single column per row, each page starting at the token
+     * of the last key read
+     *
+     * @see Transport#countRange(String, ConsistencyLevel, String, TokenRange, int)
+     */
+    @Override
+    public long countRange(String keySpace, ConsistencyLevel consistencyLevel, final String columnFamily, final TokenRange range, final int pageSize) {
+        return execute(keySpace, consistencyLevel, new ReadOperation<Long>(columnFamily) {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Long execute(Client cassandra) throws Exception {
+                IPartitioner partitioner = getPartitioner(cassandra);
+                SlicePredicate predicate = new SlicePredicate();
+                predicate.setSlice_range(new SliceRange(EMPTY, EMPTY, false, 1));
+                long count = 0;
+                String startToken = range.getStartToken();
+                while (true) {
+                    KeyRange keyRange = new KeyRange(pageSize);
+                    keyRange.setStart_token(startToken);
+                    keyRange.setEnd_token(range.getEndToken());
+                    List<KeySlice> slices = cassandra.get_range_slices(columnParent, predicate, keyRange, getThriftConsistencyLevel());
+                    for (KeySlice slice : slices) {
+                        if (!slice.getColumns().isEmpty()) { //deleted rows are returned empty until compacted
+                            count++;
+                        }
+                    }
+                    if (slices.size() < pageSize) {
+                        break;
+                    }
+                    startToken = partitioner.getTokenFactory().toString(partitioner.getToken(slices.get(slices.size() - 1).bufferForKey()));
+                    if (startToken.equals(range.getEndToken())) {
+                        break;
+                    }
+                }
+                return count;
+            }
+        });
+    }
+
+    /**
+     * Pages after the first start at the token of the last key read
+     *
+     * @see Transport#readTokenRange(String, ConsistencyLevel, String, TokenRange, String, int, String...)
+     */
+    @Override
+    public List<RawRow> readTokenRange(String keySpace, ConsistencyLevel consistencyLevel, final String columnFamily, final TokenRange range, final String afterKey, final int rowLimit, final String... columns) {
+        return execute(keySpace, consistencyLevel, new ReadOperation<List<RawRow>>(columnFamily) {
+            @Override
+            @SuppressWarnings("unchecked")
+            public List<RawRow> execute(Client cassandra) throws Exception {
+                String startToken = range.getStartToken();
+                if (afterKey != null) {
+                    IPartitioner partitioner = getPartitioner(cassandra);
+                    startToken = partitioner.getTokenFactory().toString(partitioner.getToken(toBytes(afterKey)));
+                    if (startToken.equals(range.getEndToken())) { //an empty range would stand for the whole ring
+                        return new ArrayList<RawRow>();
+                    }
+                }
+                KeyRange keyRange = new KeyRange(rowLimit);
+                keyRange.setStart_token(startToken);
+                keyRange.setEnd_token(range.getEndToken());
+                List<KeySlice> slices = cassandra.get_range_slices(columnParent, getPredicate(columns), keyRange, getThriftConsistencyLevel());
+                List<RawRow> rows = new ArrayList<RawRow>(slices.size());
+                for (KeySlice slice : slices) {
+                    rows.add(new RawRow(StringSerializer.get().fromBytes(slice.getKey()), toRawColumns(slice.getColumns())));
+                }
+                return rows;
+            }
+        });
+    }
+
+    /**
+     * @see Transport#mutate(String, ConsistencyLevel, MutationBatch)
+     */
+    @Override
+    public void mutate(String keySpace, ConsistencyLevel consistencyLevel, MutationBatch batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Mutator<String> mutator = HFactory.createMutator(getKeyspace(keySpace, consistencyLevel), StringSerializer.get(), new BatchSizeHint(1, batch.size()));
+        addMutations(mutator, batch);
+        mutator.execute();
+    }
+
+    /**
+     * @see Transport#executeCql(String, ConsistencyLevel, String)
+     */
+    @Override
+    public RawResult executeCql(String keySpace, ConsistencyLevel consistencyLevel, String query) {
+        CqlExecuteQuery cqlQuery = new CqlExecuteQuery(getKeyspace(keySpace, consistencyLevel));
+        cqlQuery.setQuery(query);
+        CqlResult result = cqlQuery.execute().get();
+        if (result == null || result.getType() != CqlResultType.ROWS || result.getRowsSize() == 0) {
+            return RawResult.EMPTY;
+        }
+        List<RawRow> rows = new ArrayList<RawRow>(result.getRowsSize());
+        for (CqlRow cqlRow : result.getRows()) {
+            List<RawColumn> columns = new ArrayList<RawColumn>(cqlRow.getColumnsSize());
+            if (cqlRow.isSetColumns()) {
+                for (Column column : cqlRow.getColumns()) {
+                    String name = StringSerializer.get().fromByteBuffer(column.bufferForName());
+                    if (!KEY_COLUMN.equals(name)) {
+                        columns.add(new RawColumn(name, column.bufferForValue()));
+                    }
+                }
+            }
+            rows.add(new RawRow(StringSerializer.get().fromBytes(cqlRow.getKey()), columns));
+        }
+        return new RawResult(rows, getCount(rows));
+    }
+
+    /* Misc */
+
+    /**
+     * Adds the mutations of a batch to an Hector mutator without executing it
+     *
+     * @param mutator the mutator
+     * @param batch   the mutations
+     */
+    static void addMutations(Mutator<String> mutator, MutationBatch batch) {
+        for (MutationBatch.Mutation mutation : batch.getMutations()) {
+            switch (mutation.getType()) {
+                case INSERT:
+                    mutator.addInsertion(mutation.getKey(), mutation.getColumnFamily(), HFactory.createColumn(mutation.getColumn(), mutation.getValue(), StringSerializer.get(), ByteBufferSerializer.get()));
+                    break;
+                case DELETE:
+                    mutator.addDeletion(mutation.getKey(), mutation.getColumnFamily(), mutation.getColumn(), StringSerializer.get());
+                    break;
+                case DELETE_ROW:
+                    mutator.addDeletion(mutation.getKey(), mutation.getColumnFamily());
+                    break;
+                case INCREMENT:
+                    mutator.incrementCounter(mutation.getKey(), mutation.getColumnFamily(), mutation.getColumn(), mutation.getDelta());
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Private helper that reads the count a count query returns as its single column
+     *
+     * @param rows the rows
+     * @return the count or the number of rows if the rows hold no count
+     */
+    private long getCount(List<RawRow> rows) {
+        if (rows.size() == 1) {
+            for (RawColumn column : rows.get(0).getColumns()) {
+                if (COUNT_COLUMN.equals(column.getName())) {
+                    return LongSerializer.get().fromByteBuffer(column.getValue());
+                }
+            }
+        }
+        return rows.size();
+    }
+
+    /**
+     * Private helper that gets the partitioner of the cluster, described on first use
+     *
+     * @param cassandra the thrift client
+     * @return the partitioner
+     */
+    private IPartitioner getPartitioner(Client cassandra) throws Exception {
+        if (partitioner == null) {
+            partitioner = FBUtilities.newPartitioner(cassandra.describe_partitioner());
+        }
+        return partitioner;
+    }
+
+    /**
+     * Private helper that runs a thrift operation on a keyspace translating its failures to Hector exceptions
+     *
+     * @param keySpace         the keyspace name
+     * @param consistencyLevel the consistency level or null for Hector's default policy
+     * @param operation        the operation
+     * @param <T>              the result type
+     * @return the operation result
+     */
+    private <T> T execute(String keySpace, ConsistencyLevel consistencyLevel, final ReadOperation<T> operation) {
+        final ExecutingKeyspace keyspace = (ExecutingKeyspace) getKeyspace(keySpace, consistencyLevel);
+        return keyspace.doExecuteOperation(new Operation<T>(OperationType.READ) {
+            @Override
+            public T execute(Client cassandra) throws HectorException {
+                operation.consistencyLevelPolicy = consistencyLevelPolicy;
+                try {
+                    return operation.execute(cassandra);
+                } catch (Exception e) {
+                    throw keyspace.getExceptionsTranslator().translate(e);
+                }
+            }
+        }).get();
+    }
+
+    /**
+     * Private helper that builds a predicate selecting columns by name or the whole row if none
+     *
+     * @param columns the column names
+     * @return the predicate
+     */
+    private static SlicePredicate getPredicate(String... columns) {
+        SlicePredicate predicate = new SlicePredicate();
+        if (columns.length > 0) {
+            List<ByteBuffer> names = new ArrayList<ByteBuffer>(columns.length);
+            for (String column : columns) {
+                names.add(toBytes(column));
+            }
+            predicate.setColumn_names(names);
+        } else {
+            predicate.setSlice_range(new SliceRange(EMPTY, EMPTY, false, Integer.MAX_VALUE));
+        }
+        return predicate;
+    }
+
+    /**
+     * Private helper that serializes a name or key, null stands for an open bound
+     */
+    private static ByteBuffer toBytes(String value) {
+        return value != null ? StringSerializer.get().toByteBuffer(value) : EMPTY;
+    }
+
+    /**
+     * Private helper that wraps thrift columns in transport neutral columns.
+     * Counter values are returned as 8 byte longs as they are written by counter increments
+     *
+     * @param columns the thrift columns
+     * @return the columns
+     */
+    private static List<RawColumn> toRawColumns(List<ColumnOrSuperColumn> columns) {
+        List<RawColumn> rawColumns = new ArrayList<RawColumn>(columns.size());
+        for (ColumnOrSuperColumn column : columns) {
+            if (column.isSetColumn()) {
+                rawColumns.add(new RawColumn(StringSerializer.get().fromByteBuffer(column.getColumn().bufferForName()), column.getColumn().bufferForValue()));
+            } else if (column.isSetCounter_column()) {
+                CounterColumn counter = column.getCounter_column();
+                rawColumns.add(new RawColumn(StringSerializer.get().fromByteBuffer(counter.bufferForName()), LongSerializer.get().toByteBuffer(counter.getValue())));
+            }
+        }
+        return rawColumns;
+    }
+
+    /**
+     * Gets a keyspace with a given consistency level
+     *
+     * @param keySpace         the keyspace name
+     * @param consistencyLevel the consistency level or null for Hector's default policy
+     * @return the keyspace
+     */
+    private Keyspace getKeyspace(String keySpace, ConsistencyLevel consistencyLevel) {
+        return consistencyLevel != null
+                ? HFactory.createKeyspace(keySpace, cluster, new ColumnFamilyConsistencyLevel(consistencyLevel))
+                : HFactory.createKeyspace(keySpace, cluster);
+    }
+
+    /* Inner Classes */
+
+    /**
+     * A read against a single column family at the consistency level of the keyspace it runs on
+     *
+     * @param <T> the result type
+     */
+    private abstract static class ReadOperation<T> {
+        /**
+         * the column family read
+         */
+        protected final ColumnParent columnParent;
+
+        /**
+         * the consistency level policy of the keyspace the read runs on
+         */
+        private ConsistencyLevelPolicy consistencyLevelPolicy;
+
+        /**
+         * @param columnFamily the column family read
+         */
+        protected ReadOperation(String columnFamily) {
+            this.columnParent = new ColumnParent(columnFamily);
+        }
+
+        /**
+         * @return the thrift consistency level for the read
+         */
+        protected org.apache.cassandra.thrift.ConsistencyLevel getThriftConsistencyLevel() {
+            return org.apache.cassandra.thrift.ConsistencyLevel.valueOf(consistencyLevelPolicy.get(OperationType.READ, columnParent.getColumn_family()).name());
+        }
+
+        /**
+         * Runs the read
+         *
+         * @param cassandra the thrift client
+         * @return the read result
+         */
+        public abstract T execute(Client cassandra) throws Exception;
+    }
+}
@@ -0,0 +1,504 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao.impl.memory;
+
+import org.firebrandocm.dao.impl.memory.CqlTokenizer.Token;
+import org.firebrandocm.dao.impl.memory.CqlTokenizer.TokenType;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ConcurrentNavigableMap;
+
+/**
+ * Interprets the CQL subset emitted by the QueryBuilder against the in memory store of an InMemoryTransport.
+ * Schema statements are accepted and ignored except for DROP which discards the stored rows
+ */
+class CqlInterpreter {
+	/* Fields */
+
+	/**
+	 * Default number of columns and rows returned when FIRST or LIMIT are not present
+	 */
+	static final int DEFAULT_LIMIT = 10000;
+
+	/**
+	 * the store statements are executed against
+	 */
+	private final InMemoryTransport store;
+
+	/**
+	 * the factory whose type converters encode and compare literals
+	 */
+	private final InMemoryPersistenceFactory factory;
+
+	/* Constructors */
+
+	/**
+	 * Constructor
+	 * @param store the store statements are executed against
+	 * @param factory the factory whose type converters encode and compare literals
+	 */
+	CqlInterpreter(InMemoryTransport store, InMemoryPersistenceFactory factory) {
+		this.store = store;
+		this.factory = factory;
+	}
+
+	/* Misc */
+
+	/**
+	 * Parses and executes a CQL statement
+	 * @param keySpace the keyspace the statement runs against
+	 * @param cql the CQL statement
+	 * @return the result, empty for mutation and schema statements
+	 */
+	Result execute(String keySpace, String cql) {
+		CqlTokenizer tokenizer = new CqlTokenizer(cql);
+		Result result = statement(keySpace, tokenizer);
+		if (!tokenizer.isDone()) {
+			throw new IllegalArgumentException(String.format("unexpected %s in: %s", tokenizer.peek().text, cql));
+		}
+		return result;
+	}
+
+	/**
+	 * Private helper that dispatches on the statement keyword
+	 */
+	private Result statement(String keySpace, CqlTokenizer tokenizer) {
+		if (tokenizer.accept("SELECT")) {
+			return select(keySpace, tokenizer);
+		} else if (tokenizer.accept("UPDATE")) {
+			update(keySpace, tokenizer);
+		} else if (tokenizer.accept("INSERT")) {
+			insert(keySpace, tokenizer);
+		} else if (tokenizer.accept("DELETE")) {
+			delete(keySpace, tokenizer);
+		} else if (tokenizer.accept("TRUNCATE")) {
+			store.getRows(keySpace, tokenizer.value()).clear();
+		} else if (tokenizer.accept("BEGIN")) {
+			batch(keySpace, tokenizer);
+		} else if (tokenizer.accept("DROP")) {
+			drop(keySpace, tokenizer);
+		} else if (tokenizer.accept("CREATE") || tokenizer.accept("ALTER") || tokenizer.accept("USE")) {
+			skipStatement(tokenizer);
+		} else {
+			Token token = tokenizer.peek();
+			throw new IllegalArgumentException(String.format("unsupported statement: %s", token != null ? token.text : ""));
+		}
+		return Result.EMPTY;
+	}
+
+	/**
+	 * SELECT [FIRST n] [REVERSED] (* | COUNT(..) | 'a', 'b' | 'a'..'b') FROM cf [USING CONSISTENCY c] [WHERE ...] [LIMIT n]
+	 */
+	private Result select(String keySpace, CqlTokenizer tokenizer) {
+		int first = DEFAULT_LIMIT;
+		int limit = DEFAULT_LIMIT;
+		boolean reversed = false;
+		boolean count = false;
+		List<String> columns = null;
+		String rangeFrom = null;
+		String rangeTo = null;
+		if (tokenizer.accept("FIRST")) {
+			first = Integer.parseInt(tokenizer.value());
+		}
+		if (tokenizer.accept("REVERSED")) {
+			reversed = true;
+		}
+		if (tokenizer.accept("COUNT")) {
+			count = true;
+			tokenizer.expect("(");
+			if (!tokenizer.accept("*")) {
+				columns = names(tokenizer);
+			}
+			tokenizer.expect(")");
+		} else if (!tokenizer.accept("*")) {
+			String column = tokenizer.value();
+			if (tokenizer.accept("..")) {
+				rangeFrom = column;
+				rangeTo = tokenizer.value();
+			} else {
+				columns = new ArrayList<String>();
+				columns.add(column);
+				while (tokenizer.accept(",")) {
+					columns.add(tokenizer.value());
+				}
+			}
+		}
+		tokenizer.expect("FROM");
+		String columnFamily = tokenizer.value();
+		writeOptions(tokenizer);
+		List<Predicate> predicates = tokenizer.accept("WHERE") ? predicates(tokenizer) : Collections.<Predicate>emptyList();
+		if (tokenizer.accept("LIMIT")) {
+			limit = Integer.parseInt(tokenizer.value());
+		}
+		writeOptions(tokenizer);
+
+		Map<String, Map<String, ByteBuffer>> rows = new LinkedHashMap<String, Map<String, ByteBuffer>>();
+		long matched = 0;
+		ConcurrentNavigableMap<String, ConcurrentNavigableMap<String, ByteBuffer>> table = store.getRows(keySpace, columnFamily);
+		for (Map.Entry<String, ConcurrentNavigableMap<String, ByteBuffer>> entry : candidates(table, predicates)) {
+			if (matched >= limit) {
+				break;
+			}
+			NavigableMap<String, ByteBuffer> row = entry.getValue();
+			if (row == null || row.isEmpty() || !matches(columnFamily, entry.getKey(), row, predicates)) {
+				continue;
+			}
+			matched++;
+			if (!count) {
+				Map<String, ByteBuffer> selected;
+				if (columns != null) {
+					selected = select(row, columns);
+				} else {
+					selected = slice(row, rangeFrom, rangeTo, reversed, first);
+				}
+				rows.put(entry.getKey(), selected);
+			}
+		}
+		return new Result(rows, matched);
+	}
+
+	/**
+	 * UPDATE cf [USING ...] SET 'a' = 'v', c = c + n WHERE KEY ...
+	 */
+	private void update(String keySpace, CqlTokenizer tokenizer) {
+		String columnFamily = tokenizer.value();
+		writeOptions(tokenizer);
+		tokenizer.expect("SET");
+		Map<String, String> values = new LinkedHashMap<String, String>();
+		Map<String, Long> increments = new LinkedHashMap<String, Long>();
+		do {
+			String column = tokenizer.value();
+			tokenizer.expect("=");
+			String value = tokenizer.value();
+			if (tokenizer.accept("+")) {
+				increments.put(column, Long.parseLong(tokenizer.value()));
+			} else if (tokenizer.accept("-")) {
+				increments.put(column, -Long.parseLong(tokenizer.value()));
+			} else {
+				values.put(column, value);
+			}
+		} while (tokenizer.accept(","));
+		writeOptions(tokenizer);
+		tokenizer.expect("WHERE");
+		for (String key : keys(tokenizer)) {
+			ConcurrentNavigableMap<String, ByteBuffer> row = store.getRow(keySpace, columnFamily, key);
+			for (Map.Entry<String, String> entry : values.entrySet()) {
+				row.put(entry.getKey(), factory.encodeLiteral(columnFamily, entry.getKey(), entry.getValue()));
+			}
+			for (Map.Entry<String, Long> entry : increments.entrySet()) {
+				InMemoryTransport.incrementCounter(row, entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * INSERT INTO cf ('KEY', 'a') VALUES ('k', 'v') [USING ...]
+	 */
+	private void insert(String keySpace, CqlTokenizer tokenizer) {
+		tokenizer.expect("INTO");
+		String columnFamily = tokenizer.value();
+		tokenizer.expect("(");
+		List<String> columns = names(tokenizer);
+		tokenizer.expect(")");
+		tokenizer.expect("VALUES");
+		tokenizer.expect("(");
+		List<String> values = names(tokenizer);
+		tokenizer.expect(")");
+		writeOptions(tokenizer);
+		if (columns.size() != values.size()) {
+			throw new IllegalArgumentException(String.format("INSERT into %s has %d columns but %d values", columnFamily, columns.size(), values.size()));
+		}
+		String key = null;
+		for (int i = 0; i < columns.size(); i++) {
+			if ("KEY".equalsIgnoreCase(columns.get(i))) {
+				key = values.get(i);
+			}
+		}
+		if (key == null) {
+			throw new IllegalArgumentException(String.format("INSERT into %s is missing the KEY column", columnFamily));
+		}
+		ConcurrentNavigableMap<String, ByteBuffer> row = store.getRow(keySpace, columnFamily, key);
+		for (int i = 0; i < columns.size(); i++) {
+			if (!"KEY".equalsIgnoreCase(columns.get(i))) {
+				row.put(columns.get(i), factory.encodeLiteral(columnFamily, columns.get(i), values.get(i)));
+			}
+		}
+	}
+
+	/**
+	 * DELETE ['a', ...] FROM cf [USING ...] WHERE KEY ...
+	 */
+	private void delete(String keySpace, CqlTokenizer tokenizer) {
+		List<String> columns = tokenizer.accept("FROM") ? null : names(tokenizer);
+		if (columns != null) {
+			tokenizer.expect("FROM");
+		}
+		String columnFamily = tokenizer.value();
+		writeOptions(tokenizer);
+		tokenizer.expect("WHERE");
+		ConcurrentNavigableMap<String, ConcurrentNavigableMap<String, ByteBuffer>> table = store.getRows(keySpace, columnFamily);
+		for (String key : keys(tokenizer)) {
+			if (columns == null) {
+				table.remove(key);
+			} else {
+				ConcurrentNavigableMap<String, ByteBuffer> row = table.get(key);
+				if (row != null) {
+					for (String column : columns) {
+						row.remove(column);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * BEGIN BATCH [USING ...] statements APPLY BATCH
+	 */
+	private void batch(String keySpace, CqlTokenizer tokenizer) {
+		tokenizer.expect("BATCH");
+		writeOptions(tokenizer);
+		while (!tokenizer.accept("APPLY")) {
+			if (!tokenizer.accept(";")) {
+				statement(keySpace, tokenizer);
+			}
+		}
+		tokenizer.expect("BATCH");
+	}
+
+	/**
+	 * DROP KEYSPACE ks | DROP COLUMNFAMILY cf | DROP INDEX idx
+	 */
+	private void drop(String keySpace, CqlTokenizer tokenizer) {
+		if (tokenizer.accept("KEYSPACE")) {
+			store.dropKeySpace(tokenizer.value());
+		} else if (tokenizer.accept("COLUMNFAMILY") || tokenizer.accept("TABLE")) {
+			store.dropColumnFamily(keySpace, tokenizer.value());
+		}
+		skipStatement(tokenizer);
+	}
+
+	/**
+	 * Private helper that consumes tokens up to the end of the current statement
+	 */
+	private void skipStatement(CqlTokenizer tokenizer) {
+		while (!tokenizer.isDone() && !";".equals(tokenizer.peek().text)) {
+			tokenizer.next();
+		}
+	}
+
+	/**
+	 * Private helper that consumes USING CONSISTENCY, TIMESTAMP and TTL options which have no effect in memory
+	 */
+	private void writeOptions(CqlTokenizer tokenizer) {
+		if (tokenizer.accept("USING")) {
+			do {
+				tokenizer.value();
+				tokenizer.value();
+			} while (tokenizer.accept("AND"));
+		}
+	}
+
+	/**
+	 * Private helper that reads a comma separated list of names or values
+	 */
+	private List<String> names(CqlTokenizer tokenizer) {
+		List<String> names = new ArrayList<String>();
+		do {
+			names.add(tokenizer.value());
+		} while (tokenizer.accept(","));
+		return names;
+	}
+
+	/**
+	 * Private helper that reads the keys of a mutation WHERE clause: KEY = 'k' or KEY IN ('a', 'b')
+	 */
+	private Collection<String> keys(CqlTokenizer tokenizer) {
+		List<Predicate> predicates = predicates(tokenizer);
+		if (predicates.size() != 1 || !predicates.get(0).isKey() || (!predicates.get(0).operator.equals("=") && !predicates.get(0).operator.equals("IN"))) {
+			throw new IllegalArgumentException("mutations require a KEY = or KEY IN predicate");
+		}
+		return predicates.get(0).values;
+	}
+
+	/**
+	 * Private helper that reads predicates joined by AND
+	 */
+	private List<Predicate> predicates(CqlTokenizer tokenizer) {
+		List<Predicate> predicates = new ArrayList<Predicate>();
+		do {
+			Token column = tokenizer.next();
+			String name = column.type == TokenType.STRING ? column.text : column.text.equalsIgnoreCase("KEY") ? null : column.text;
+			if (tokenizer.accept("IN")) {
+				if (name != null) {
+					throw new IllegalArgumentException(String.format("IN is only supported on KEY, not on %s", name));
+				}
+				tokenizer.expect("(");
+				predicates.add(new Predicate(name, "IN", names(tokenizer)));
+				tokenizer.expect(")");
+			} else {
+				String operator = tokenizer.next().text;
+				if (!operator.equals("=") && !operator.equals("<") && !operator.equals("<=") && !operator.equals(">") && !operator.equals(">=")) {
+					throw new IllegalArgumentException(String.format("unsupported operator: %s", operator));
+				}
+				predicates.add(new Predicate(name, operator, Collections.singletonList(tokenizer.value())));
+			}
+		} while (tokenizer.accept("AND"));
+		return predicates;
+	}
+
+	/**
+	 * Private helper that narrows the candidate rows using KEY predicates.
+	 * KEY = and KEY IN yield rows in the requested order, otherwise rows are scanned in key order
+	 */
+	private Iterable<Map.Entry<String, ConcurrentNavigableMap<String, ByteBuffer>>> candidates(ConcurrentNavigableMap<String, ConcurrentNavigableMap<String, ByteBuffer>> table, List<Predicate> predicates) {
+		for (Predicate predicate : predicates) {
+			if (predicate.isKey() && (predicate.operator.equals("=") || predicate.operator.equals("IN"))) {
+				List<Map.Entry<String, ConcurrentNavigableMap<String, ByteBuffer>>> rows = new ArrayList<Map.Entry<String, ConcurrentNavigableMap<String, ByteBuffer>>>();
+				for (String key : new LinkedHashSet<String>(predicate.values)) {
+					ConcurrentNavigableMap<String, ByteBuffer> row = table.get(key);
+					if (row != null) {
+						rows.add(new AbstractMap.SimpleImmutableEntry<String, ConcurrentNavigableMap<String, ByteBuffer>>(key, row));
+					}
+				}
+				return rows;
+			}
+		}
+		return table.entrySet();
+	}
+
+	/**
+	 * Private helper that evaluates all predicates against a row
+	 */
+	private boolean matches(String columnFamily, String key, NavigableMap<String, ByteBuffer> row, List<Predicate> predicates) {
+		for (Predicate predicate : predicates) {
+			if (predicate.isKey()) {
+				if (!predicate.operator.equals("IN") && !predicate.test(key.compareTo(predicate.values.get(0)))) {
+					return false;
+				}
+			} else {
+				ByteBuffer value = row.get(predicate.column);
+				if (value == null || !predicate.test(factory.compareLiteral(columnFamily, predicate.column, value, predicate.values.get(0)))) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Private helper that selects named columns from a row in the order they were named, REVERSED only applies to ranges
+	 */
+	private Map<String, ByteBuffer> select(NavigableMap<String, ByteBuffer> row, List<String> columns) {
+		Map<String, ByteBuffer> selected = new LinkedHashMap<String, ByteBuffer>();
+		for (String column : columns) {
+			ByteBuffer value = row.get(column);
+			if (value != null) {
+				selected.put(column, value.duplicate());
+			}
+		}
+		return selected;
+	}
+
+	/**
+	 * Selects an inclusive range of columns from a row.
+	 * Null or empty bounds leave the range open, when reversed the range starts at the greater column
+	 *
+	 * @param row      the row
+	 * @param from     the first column
+	 * @param to       the last column
+	 * @param reversed whether columns are returned in descending order
+	 * @param limit    the maximum number of columns
+	 * @return the selected columns in iteration order
+	 */
+	static Map<String, ByteBuffer> slice(NavigableMap<String, ByteBuffer> row, String from, String to, boolean reversed, int limit) {
+		boolean hasFrom = from != null && from.length() > 0;
+		boolean hasTo = to != null && to.length() > 0;
+		NavigableMap<String, ByteBuffer> range = reversed ? row.descendingMap() : row;
+		if (hasFrom && hasTo) {
+			range = range.subMap(from, true, to, true);
+		} else if (hasFrom) {
+			range = range.tailMap(from, true);
+		} else if (hasTo) {
+			range = range.headMap(to, true);
+		}
+		Map<String, ByteBuffer> selected = new LinkedHashMap<String, ByteBuffer>();
+		for (Map.Entry<String, ByteBuffer> entry : range.entrySet()) {
+			if (selected.size() >= limit) {
+				break;
+			}
+			selected.put(entry.getKey(), entry.getValue().duplicate());
+		}
+		return selected;
+	}
+
+	/* Inner Classes */
+
+	/**
+	 * A WHERE clause predicate, a null column stands for the row key
+	 */
+	private static final class Predicate {
+		final String column;
+
+		final String operator;
+
+		final List<String> values;
+
+		Predicate(String column, String operator, List<String> values) {
+			this.column = column;
+			this.operator = operator;
+			this.values = values;
+		}
+
+		boolean isKey() {
+			return column == null;
+		}
+
+		boolean test(int comparison) {
+			if (operator.equals("=")) {
+				return comparison == 0;
+			} else if (operator.equals("<")) {
+				return comparison < 0;
+			} else if (operator.equals("<=")) {
+				return comparison <= 0;
+			} else if (operator.equals(">")) {
+				return comparison > 0;
+			} else if (operator.equals(">=")) {
+				return comparison >= 0;
+			}
+			throw new IllegalStateException(String.format("%s can't be evaluated by comparison", operator));
+		}
+	}
+
+	/**
+	 * The outcome of a statement: selected rows in result order and the number of matching rows
+	 */
+	static final class Result {
+		static final Result EMPTY = new Result(Collections.<String, Map<String, ByteBuffer>>emptyMap(), 0);
+
+		final Map<String, Map<String, ByteBuffer>> rows;
+
+		final long count;
+
+		Result(Map<String, Map<String, ByteBuffer>> rows, long count) {
+			this.rows = rows;
+			this.count = count;
+		}
+	}
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao.impl.memory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits CQL text into identifiers, quoted strings, numbers and symbols
+ */
+class CqlTokenizer {
+    /* Fields */
+
+	/**
+	 * the tokens
+	 */
+	private final List<Token> tokens = new ArrayList<Token>();
+
+	/**
+	 * the index of the next token
+	 */
+	private int position;
+
+    /* Constructors */
+
+	/**
+	 * Constructor
+	 * @param cql the CQL text
+	 */
+	CqlTokenizer(String cql) {
+		int length = cql.length();
+		int i = 0;
+		while (i < length) {
+			char c = cql.charAt(i);
+			if (Character.isWhitespace(c)) {
+				i++;
+			} else if (c == '\'') {
+				StringBuilder value = new StringBuilder();
+				i++;
+				while (true) {
+					if (i >= length) {
+						throw new IllegalArgumentException(String.format("unterminated string literal in: %s", cql));
+					}
+					char s = cql.charAt(i++);
+					if (s == '\'') {
+						if (i < length && cql.charAt(i) == '\'') {
+							value.append('\'');
+							i++;
+						} else {
+							break;
+						}
+					} else {
+						value.append(s);
+					}
+				}
+				tokens.add(new Token(TokenType.STRING, value.toString()));
+			} else if (c == '.' && i + 1 < length && cql.charAt(i + 1) == '.') {
+				tokens.add(new Token(TokenType.SYMBOL, ".."));
+				i += 2;
+			} else if ((c == '<' || c == '>') && i + 1 < length && cql.charAt(i + 1) == '=') {
+				tokens.add(new Token(TokenType.SYMBOL, c + "="));
+				i += 2;
+			} else if (Character.isDigit(c) || (c == '-' && i + 1 < length && Character.isDigit(cql.charAt(i + 1)) && !lastIsValue())) {
+				int start = i++;
+				while (i < length && (Character.isDigit(cql.charAt(i)) || (cql.charAt(i) == '.' && !(i + 1 < length && cql.charAt(i + 1) == '.')))) {
+					i++;
+				}
+				TokenType type = TokenType.NUMBER;
+				while (i < length && (Character.isLetterOrDigit(cql.charAt(i)) || cql.charAt(i) == '_' || cql.charAt(i) == '-')) { //unquoted values such as uuids may start with a digit
+					type = TokenType.IDENTIFIER;
+					i++;
+				}
+				tokens.add(new Token(type, cql.substring(start, i)));
+			} else if (Character.isLetter(c) || c == '_') {
+				int start = i++;
+				while (i < length && (Character.isLetterOrDigit(cql.charAt(i)) || cql.charAt(i) == '_' || cql.charAt(i) == '-' || cql.charAt(i) == ':' || cql.charAt(i) == '.' && !(i + 1 < length && cql.charAt(i + 1) == '.'))) {
+					i++;
+				}
+				tokens.add(new Token(TokenType.IDENTIFIER, cql.substring(start, i)));
+			} else {
+				tokens.add(new Token(TokenType.SYMBOL, String.valueOf(c)));
+				i++;
+			}
+		}
+	}
+
+    /* Misc */
+
+	/**
+	 * Private helper telling whether the previous token ends an operand, so a following minus is an operator
+	 */
+	private boolean lastIsValue() {
+		if (tokens.isEmpty()) {
+			return false;
+		}
+		Token last = tokens.get(tokens.size() - 1);
+		return last.type != TokenType.SYMBOL || last.text.equals(")");
+	}
+
+	/**
+	 * @return true if all tokens were consumed, ignoring a trailing semicolon
+	 */
+	boolean isDone() {
+		return position >= tokens.size() || (position == tokens.size() - 1 && tokens.get(position).text.equals(";"));
+	}
+
+	/**
+	 * @return the next token without consuming it or null if done
+	 */
+	Token peek() {
+		return position < tokens.size() ? tokens.get(position) : null;
+	}
+
+	/**
+	 * @return the next token
+	 */
+	Token next() {
+		if (position >= tokens.size()) {
+			throw new IllegalArgumentException("unexpected end of statement");
+		}
+		return tokens.get(position++);
+	}
+
+	/**
+	 * @param keyword a keyword or symbol
+	 * @return true if the next token matches, case insensitive, in which case it is consumed
+	 */
+	boolean accept(String keyword) {
+		Token token = peek();
+		if (token != null && token.type != TokenType.STRING && token.text.equalsIgnoreCase(keyword)) {
+			position++;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Consumes the next token failing if it does not match
+	 * @param keyword a keyword or symbol
+	 */
+	void expect(String keyword) {
+		if (!accept(keyword)) {
+			throw new IllegalArgumentException(String.format("expected %s but found %s", keyword, peek() != null ? peek().text : "end of statement"));
+		}
+	}
+
+	/**
+	 * @return the text of the next identifier, quoted string or number
+	 */
+	String value() {
+		Token token = next();
+		if (token.type == TokenType.SYMBOL) {
+			throw new IllegalArgumentException(String.format("expected a name or value but found %s", token.text));
+		}
+		return token.text;
+	}
+
+    /* Inner Classes */
+
+	/**
+	 * Token kinds
+	 */
+	enum TokenType {
+		IDENTIFIER, STRING, NUMBER, SYMBOL
+	}
+
+	/**
+	 * A CQL token
+	 */
+	static final class Token {
+		final TokenType type;
+
+		final String text;
+
+		Token(TokenType type, String text) {
+			this.type = type;
+			this.text = text;
+		}
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao.impl.memory;
+
+import org.firebrandocm.dao.*;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An in memory impl for the Persistence Factory reading and writing rows through an {@link InMemoryTransport}.
+ * Queries are interpreted from the CQL emitted by the QueryBuilder so entities, listeners and queries
+ * behave as they do against Cassandra without starting a server.
+ * Columns are ordered by name as with a UTF8 comparator, TTLs and consistency levels are ignored
+ */
+public class InMemoryPersistenceFactory extends AbstractPersistenceFactory {
+    /* Fields */
+
+    /**
+     * the class metadata of each managed column family
+     */
+    private final Map<String, ClassMetadata<?>> columnFamilyMetadata = new HashMap<String, ClassMetadata<?>>();
+
+    /* Misc */
+
+    /**
+     * Destroy method that shutdowns this factory
+     *
+     * @see org.firebrandocm.dao.AbstractPersistenceFactory#destroy()
+     */
+    public void destroy() {
+        if (isDropOnDestroy() && getTransport() instanceof InMemoryTransport) {
+            ((InMemoryTransport) getTransport()).dropAll();
+        }
+        super.destroy();
+    }
+
+    /**
+     * Initializes the factory
+     */
+    public synchronized void init() throws Exception {
+        super.init();
+        log.debug("initializing factory");
+        initializeTypeConverters();
+        for (ClassMetadata<?> metadata : getClassMetadataMap().values()) {
+            columnFamilyMetadata.put(metadata.getColumnFamily(), metadata);
+        }
+        if (getTransport() == null) {
+            setTransport(new InMemoryTransport(this));
+        }
+        log.debug("factory initialized");
+    }
+
+    /**
+     * Encodes a CQL literal with the type converter of the java type mapped to the column.
+     * Columns of unmanaged column families or unmapped columns are encoded as strings
+     *
+     * @param columnFamily the column family
+     * @param column       the column
+     * @param literal      the literal
+     * @return the encoded value
+     */
+    ByteBuffer encodeLiteral(String columnFamily, String column, String literal) {
+        return encodeLiteral(columnFamilyMetadata.get(columnFamily), column, literal);
+    }
+
+    /**
+     * Compares a stored column value with a CQL literal using the java type mapped to the column
+     *
+     * @param columnFamily the column family
+     * @param column       the column
+     * @param value        the stored value
+     * @param literal      the literal
+     * @return a negative, zero or positive value as the stored value is less, equal or greater than the literal
+     */
+    int compareLiteral(String columnFamily, String column, ByteBuffer value, String literal) {
+        return compareLiteral(columnFamilyMetadata.get(columnFamily), column, value, literal);
+    }
+}
@@ -0,0 +1,387 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao.impl.memory;
+
+import org.apache.commons.lang3.StringUtils;
+import org.firebrandocm.dao.annotations.ConsistencyLevel;
+import org.firebrandocm.dao.transport.*;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * An in memory impl for the Transport backed by concurrent sorted maps of rows and columns.
+ * Column families are kept apart by keyspace, rows are ordered by key and columns by name as with a UTF8 comparator and
+ * consistency levels are ignored
+ */
+public class InMemoryTransport implements Transport {
+    /* Fields */
+
+    /**
+     * the column families of each keyspace, each column family holds its rows by key and each row its columns sorted by name
+     */
+    private final ConcurrentMap<String, ConcurrentMap<String, ConcurrentNavigableMap<String, ConcurrentNavigableMap<String, ByteBuffer>>>> keySpaces = new ConcurrentHashMap<String, ConcurrentMap<String, ConcurrentNavigableMap<String, ConcurrentNavigableMap<String, ByteBuffer>>>>();
+
+    /**
+     * the CQL interpreter
+     */
+    private final CqlInterpreter interpreter;
+
+    /* Constructors */
+
+    /**
+     * Constructs a transport whose CQL literals are encoded with the type converters of a factory
+     *
+     * @param factory the factory
+     */
+    public InMemoryTransport(InMemoryPersistenceFactory factory) {
+        this.interpreter = new CqlInterpreter(this, factory);
+    }
+
+    /* Interface Implementations */
+
+
+// --------------------- Interface Transport ---------------------
+
+    /**
+     * @see Transport#readRow(String, ConsistencyLevel, String, String, String...)
+     */
+    @Override
+    public List<RawColumn> readRow(String keySpace, ConsistencyLevel consistencyLevel, String columnFamily, String key, String... columns) {
+        ConcurrentNavigableMap<String, ByteBuffer> row = getRows(keySpace, columnFamily).get(key);
+        return row != null ? select(row, columns) : new ArrayList<RawColumn>();
+    }
+
+    /**
+     * @see Transport#readRows(String, ConsistencyLevel, String, List, String...)
+     */
+    @Override
+    public Map<String, List<RawColumn>> readRows(String keySpace, ConsistencyLevel consistencyLevel, String columnFamily, List<String> keys, String... columns) {
+        ConcurrentNavigableMap<String, ConcurrentNavigableMap<String, ByteBuffer>> rows = getRows(keySpace, columnFamily);
+        Map<String, List<RawColumn>> result = new LinkedHashMap<String, List<RawColumn>>();
+        for (String key : keys) {
+            ConcurrentNavigableMap<String, ByteBuffer> row = rows.get(key);
+            List<RawColumn> selected = row != null ? select(row, columns) : Collections.<RawColumn>emptyList();
+            if (!selected.isEmpty()) {
+                result.put(key, selected);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @see Transport#readSlice(String, ConsistencyLevel, String, String, String, String, boolean, int)
+     */
+    @Override
+    public List<RawColumn> readSlice(String keySpace, ConsistencyLevel consistencyLevel, String columnFamily, String key, String fromColumn, String toColumn, boolean reversed, int limit) {
+        ConcurrentNavigableMap<String, ByteBuffer> row = getRows(keySpace, columnFamily).get(key);
+        return row != null ? toRawColumns(CqlInterpreter.slice(row, fromColumn, toColumn, reversed, limit)) : new ArrayList<RawColumn>();
+    }
+
+    /**
+     * @see Transport#readRange(String, ConsistencyLevel, String, String, String, int, String...)
+     */
+    @Override
+    public List<RawRow> readRange(String keySpace, ConsistencyLevel consistencyLevel, String columnFamily, String startKey, String endKey, int rowLimit, String... columns) {
+        NavigableMap<String, ConcurrentNavigableMap<String, ByteBuffer>> range = getRows(keySpace, columnFamily);
+        boolean hasStart = startKey != null && startKey.length() > 0;
+        boolean hasEnd = endKey != null && endKey.length() > 0;
+        if (hasStart && hasEnd) {
+            range = range.subMap(startKey, true, endKey, true);
+        } else if (hasStart) {
+            range = range.tailMap(startKey, true);
+        } else if (hasEnd) {
+            range = range.headMap(endKey, true);
+        }
+        List<RawRow> rows = new ArrayList<RawRow>();
+        for (Map.Entry<String, ConcurrentNavigableMap<String, ByteBuffer>> entry : range.entrySet()) {
+            if (rows.size() >= rowLimit) {
+                break;
+            }
+            rows.add(new RawRow(entry.getKey(), select(entry.getValue(), columns)));
+        }
+        return rows;
+    }
+
+    /**
+     * Scans the rows in key order, matching the column value as the secondary index would
+     *
+     * @see Transport#readIndexed(String, ConsistencyLevel, String, String, ByteBuffer, String, int, String...)
+     */
+    @Override
+    public List<RawRow> readIndexed(String keySpace, ConsistencyLevel consistencyLevel, String columnFamily, String column, ByteBuffer value, String startKey, int rowLimit, String... columns) {
+        NavigableMap<String, ConcurrentNavigableMap<String, ByteBuffer>> range = getRows(keySpace, columnFamily);
+        if (startKey != null && startKey.length() > 0) {
+            range = range.tailMap(startKey, true);
+        }
+        List<RawRow> rows = new ArrayList<RawRow>();
+        for (Map.Entry<String, ConcurrentNavigableMap<String, ByteBuffer>> entry : range.entrySet()) {
+            if (rows.size() >= rowLimit) {
+                break;
+            }
+            if (value.equals(entry.getValue().get(column))) {
+                rows.add(new RawRow(entry.getKey(), select(entry.getValue(), columns)));
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Tokens are the keys themselves, the ranges hold about the same number of keys and an empty token stands for the
+     * start or the end of the ring
+     *
+     * @see Transport#splitRing(String, String, int)
+     */
+    @Override
+    public List<TokenRange> splitRing(String keySpace, String columnFamily, int splits) {
+        List<String> keys = new ArrayList<String>(getRows(keySpace, columnFamily).keySet());
+        int count = Math.max(1, Math.min(splits, keys.size()));
+        List<TokenRange> ranges = new ArrayList<TokenRange>(count);
+        String start = "";
+        for (int i = 1; i < count; i++) {
+            String end = keys.get(i * keys.size() / count - 1);
+            ranges.add(new TokenRange(start, end));
+            start = end;
+        }
+        ranges.add(new TokenRange(start, ""));
+        return ranges;
+    }
+
+    /**
+     * @see Transport#countRange(String, ConsistencyLevel, String, TokenRange, int)
+     */
+    @Override
+    public long countRange(String keySpace, ConsistencyLevel consistencyLevel, String columnFamily, TokenRange range, int pageSize) {
+        NavigableMap<String, ConcurrentNavigableMap<String, ByteBuffer>> rows = getRows(keySpace, columnFamily);
+        if (range.getStartToken().length() > 0) {
+            rows = rows.tailMap(range.getStartToken(), false);
+        }
+        if (range.getEndToken().length() > 0) {
+            rows = rows.headMap(range.getEndToken(), true);
+        }
+        long count = 0;
+        for (ConcurrentNavigableMap<String, ByteBuffer> row : rows.values()) {
+            if (!row.isEmpty()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @see Transport#readTokenRange(String, ConsistencyLevel, String, TokenRange, String, int, String...)
+     */
+    @Override
+    public List<RawRow> readTokenRange(String keySpace, ConsistencyLevel consistencyLevel, String columnFamily, TokenRange range, String afterKey, int rowLimit, String... columns) {
+        NavigableMap<String, ConcurrentNavigableMap<String, ByteBuffer>> rows = getRows(keySpace, columnFamily);
+        String start = afterKey != null ? afterKey : range.getStartToken();
+        if (start.length() > 0) {
+            rows = rows.tailMap(start, false);
+        }
+        if (range.getEndToken().length() > 0) {
+            rows = rows.headMap(range.getEndToken(), true);
+        }
+        List<RawRow> page = new ArrayList<RawRow>();
+        for (Map.Entry<String, ConcurrentNavigableMap<String, ByteBuffer>> entry : rows.entrySet()) {
+            if (page.size() >= rowLimit) {
+                break;
+            }
+            page.add(new RawRow(entry.getKey(), select(entry.getValue(), columns)));
+        }
+        return page;
+    }
+
+    /**
+     * @see Transport#mutate(String, ConsistencyLevel, MutationBatch)
+     */
+    @Override
+    public void mutate(String keySpace, ConsistencyLevel consistencyLevel, MutationBatch batch) {
+        for (MutationBatch.Mutation mutation : batch.getMutations()) {
+            switch (mutation.getType()) {
+                case INSERT:
+                    getRow(keySpace, mutation.getColumnFamily(), mutation.getKey()).put(mutation.getColumn(), mutation.getValue());
+                    break;
+                case DELETE:
+                    ConcurrentNavigableMap<String, ByteBuffer> row = getRows(keySpace, mutation.getColumnFamily()).get(mutation.getKey());
+                    if (row != null) {
+                        row.remove(mutation.getColumn());
+                    }
+                    break;
+                case DELETE_ROW:
+                    getRows(keySpace, mutation.getColumnFamily()).remove(mutation.getKey());
+                    break;
+                case INCREMENT:
+                    incrementCounter(getRow(keySpace, mutation.getColumnFamily(), mutation.getKey()), mutation.getColumn(), mutation.getDelta());
+                    break;
+            }
+        }
+    }
+
+    /**
+     * @see Transport#executeCql(String, ConsistencyLevel, String)
+     */
+    @Override
+    public RawResult executeCql(String keySpace, ConsistencyLevel consistencyLevel, String query) {
+        CqlInterpreter.Result result = interpreter.execute(keySpace, query);
+        List<RawRow> rows = new ArrayList<RawRow>(result.rows.size());
+        for (Map.Entry<String, Map<String, ByteBuffer>> row : result.rows.entrySet()) {
+            rows.add(new RawRow(row.getKey(), toRawColumns(row.getValue())));
+        }
+        return new RawResult(rows, result.count);
+    }
+
+    /* Misc */
+
+    /**
+     * Gets the rows of a column family, creating an empty column family if not found
+     *
+     * @param keySpace     the keyspace, null for the default one
+     * @param columnFamily the column family
+     * @return the rows by key
+     */
+    ConcurrentNavigableMap<String, ConcurrentNavigableMap<String, ByteBuffer>> getRows(String keySpace, String columnFamily) {
+        ConcurrentMap<String, ConcurrentNavigableMap<String, ConcurrentNavigableMap<String, ByteBuffer>>> columnFamilies = getColumnFamilies(keySpace);
+        ConcurrentNavigableMap<String, ConcurrentNavigableMap<String, ByteBuffer>> rows = columnFamilies.get(columnFamily);
+        if (rows == null) {
+            ConcurrentNavigableMap<String, ConcurrentNavigableMap<String, ByteBuffer>> created = new ConcurrentSkipListMap<String, ConcurrentNavigableMap<String, ByteBuffer>>();
+            rows = columnFamilies.putIfAbsent(columnFamily, created);
+            rows = rows != null ? rows : created;
+        }
+        return rows;
+    }
+
+    /**
+     * Gets the columns of a row, creating an empty row if not found
+     *
+     * @param keySpace     the keyspace, null for the default one
+     * @param columnFamily the column family
+     * @param key          the row key
+     * @return the row columns by name
+     */
+    ConcurrentNavigableMap<String, ByteBuffer> getRow(String keySpace, String columnFamily, String key) {
+        ConcurrentNavigableMap<String, ConcurrentNavigableMap<String, ByteBuffer>> rows = getRows(keySpace, columnFamily);
+        ConcurrentNavigableMap<String, ByteBuffer> row = rows.get(key);
+        if (row == null) {
+            ConcurrentNavigableMap<String, ByteBuffer> created = new ConcurrentSkipListMap<String, ByteBuffer>();
+            row = rows.putIfAbsent(key, created);
+            row = row != null ? row : created;
+        }
+        return row;
+    }
+
+    /**
+     * Discards all rows of a column family
+     *
+     * @param keySpace     the keyspace, null for the default one
+     * @param columnFamily the column family
+     */
+    void dropColumnFamily(String keySpace, String columnFamily) {
+        getColumnFamilies(keySpace).remove(columnFamily);
+    }
+
+    /**
+     * Discards all column families of a keyspace
+     *
+     * @param keySpace the keyspace, null for the default one
+     */
+    void dropKeySpace(String keySpace) {
+        keySpaces.remove(StringUtils.defaultString(keySpace));
+    }
+
+    /**
+     * Discards all stored rows
+     */
+    void dropAll() {
+        keySpaces.clear();
+    }
+
+    /**
+     * Atomically adds a delta to a counter column stored as an 8 byte long
+     *
+     * @param row    the row
+     * @param column the counter column
+     * @param delta  the value to add
+     */
+    static void incrementCounter(ConcurrentNavigableMap<String, ByteBuffer> row, String column, long delta) {
+        while (true) {
+            ByteBuffer current = row.get(column);
+            ByteBuffer updated = ByteBuffer.allocate(8);
+            if (current == null) {
+                updated.putLong(0, delta);
+                if (row.putIfAbsent(column, updated) == null) {
+                    return;
+                }
+            } else {
+                updated.putLong(0, current.getLong(current.position()) + delta);
+                if (row.replace(column, current, updated)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Private helper that gets the column families of a keyspace, creating an empty keyspace if not found
+     */
+    private ConcurrentMap<String, ConcurrentNavigableMap<String, ConcurrentNavigableMap<String, ByteBuffer>>> getColumnFamilies(String keySpace) {
+        String name = StringUtils.defaultString(keySpace);
+        ConcurrentMap<String, ConcurrentNavigableMap<String, ConcurrentNavigableMap<String, ByteBuffer>>> columnFamilies = keySpaces.get(name);
+        if (columnFamilies == null) {
+            ConcurrentMap<String, ConcurrentNavigableMap<String, ConcurrentNavigableMap<String, ByteBuffer>>> created = new ConcurrentHashMap<String, ConcurrentNavigableMap<String, ConcurrentNavigableMap<String, ByteBuffer>>>();
+            columnFamilies = keySpaces.putIfAbsent(name, created);
+            columnFamilies = columnFamilies != null ? columnFamilies : created;
+        }
+        return columnFamilies;
+    }
+
+    /**
+     * Private helper that selects the named columns of a row in the order they were named, or all of them if none
+     */
+    private List<RawColumn> select(NavigableMap<String, ByteBuffer> row, String... columns) {
+        List<RawColumn> selected = new ArrayList<RawColumn>();
+        if (columns.length == 0) {
+            for (Map.Entry<String, ByteBuffer> entry : row.entrySet()) {
+                selected.add(new RawColumn(entry.getKey(), entry.getValue().duplicate()));
+            }
+        } else {
+            for (String column : columns) {
+                ByteBuffer value = row.get(column);
+                if (value != null) {
+                    selected.add(new RawColumn(column, value.duplicate()));
+                }
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Private helper that wraps stored values in columns
+     */
+    private List<RawColumn> toRawColumns(Map<String, ByteBuffer> values) {
+        List<RawColumn> columns = new ArrayList<RawColumn>(values.size());
+        for (Map.Entry<String, ByteBuffer> entry : values.entrySet()) {
+            columns.add(new RawColumn(entry.getKey(), entry.getValue()));
+        }
+        return columns;
+    }
+}
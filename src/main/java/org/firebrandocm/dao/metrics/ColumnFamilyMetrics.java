@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The latency histograms and counters recorded for a single column family
+ */
+public class ColumnFamilyMetrics {
+    /* Fields */
+
+	/**
+	 * the column family or {@link MetricsRecorder#GLOBAL_SCOPE}
+	 */
+	private final String columnFamily;
+
+	/**
+	 * the operation latency histograms in nanoseconds
+	 */
+	private final Map<Operation, LatencyHistogram> latencies = new EnumMap<Operation, LatencyHistogram>(Operation.class);
+
+	/**
+	 * the counters indexed by ordinal
+	 */
+	private final StripedCounter[] counters = new StripedCounter[Counter.values().length];
+
+    /* Constructors */
+
+	/**
+	 * Constructor
+	 * @param columnFamily the column family or {@link MetricsRecorder#GLOBAL_SCOPE}
+	 */
+	public ColumnFamilyMetrics(String columnFamily) {
+		this.columnFamily = columnFamily;
+		for (Operation operation : Operation.values()) {
+			latencies.put(operation, new LatencyHistogram());
+		}
+		for (int i = 0; i < counters.length; i++) {
+			counters[i] = new StripedCounter();
+		}
+	}
+
+    /* Getters & Setters */
+
+	/**
+	 * @return the column family or {@link MetricsRecorder#GLOBAL_SCOPE}
+	 */
+	public String getColumnFamily() {
+		return columnFamily;
+	}
+
+	/**
+	 * @param operation the operation
+	 * @return the operation latency histogram in nanoseconds
+	 */
+	public LatencyHistogram getLatency(Operation operation) {
+		return latencies.get(operation);
+	}
+
+	/**
+	 * @param counter the counter
+	 * @return the counter value
+	 */
+	public long getCount(Counter counter) {
+		return counters[counter.ordinal()].sum();
+	}
+
+	/**
+	 * @return the ratio of cache hits to cache accesses or 0 if there were none
+	 */
+	public double getCacheHitRate() {
+		long hits = getCount(Counter.CACHE_HITS);
+		long accesses = hits + getCount(Counter.CACHE_MISSES);
+		return accesses == 0 ? 0 : (double) hits / accesses;
+	}
+
+    /* Misc */
+
+	/**
+	 * Records an operation latency
+	 * @param operation the operation
+	 * @param nanos the elapsed time in nanoseconds
+	 */
+	public void recordLatency(Operation operation, long nanos) {
+		latencies.get(operation).record(nanos);
+	}
+
+	/**
+	 * Increments a counter
+	 * @param counter the counter
+	 * @param delta the amount to add
+	 */
+	public void increment(Counter counter, long delta) {
+		counters[counter.ordinal()].add(delta);
+	}
+
+	/**
+	 * Clears all histograms and counters
+	 */
+	public void reset() {
+		for (LatencyHistogram histogram : latencies.values()) {
+			histogram.reset();
+		}
+		for (StripedCounter counter : counters) {
+			counter.reset();
+		}
+	}
+}
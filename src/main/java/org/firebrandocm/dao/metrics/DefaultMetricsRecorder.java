@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao.metrics;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Recorder that keeps lock free per column family histograms and counters in memory
+ */
+public class DefaultMetricsRecorder implements MetricsRecorder {
+    /* Fields */
+
+	/**
+	 * the metrics per column family
+	 */
+	private final ConcurrentMap<String, ColumnFamilyMetrics> columnFamilyMetrics = new ConcurrentHashMap<String, ColumnFamilyMetrics>();
+
+    /* Getters & Setters */
+
+	/**
+	 * @param columnFamily the column family or {@link #GLOBAL_SCOPE}
+	 * @return the metrics recorded for the column family or null if nothing was recorded yet
+	 */
+	public ColumnFamilyMetrics getColumnFamilyMetrics(String columnFamily) {
+		return columnFamilyMetrics.get(columnFamily);
+	}
+
+	/**
+	 * @return the metrics of all column families with recorded measures
+	 */
+	public Collection<ColumnFamilyMetrics> getAllColumnFamilyMetrics() {
+		return Collections.unmodifiableCollection(columnFamilyMetrics.values());
+	}
+
+    // --------------------- Interface MetricsRecorder ---------------------
+
+	public boolean isEnabled() {
+		return true;
+	}
+
+	public void recordLatency(String columnFamily, Operation operation, long nanos) {
+		metricsFor(columnFamily).recordLatency(operation, nanos);
+	}
+
+	public void increment(String columnFamily, Counter counter, long delta) {
+		metricsFor(columnFamily).increment(counter, delta);
+	}
+
+	public void destroy() {
+	}
+
+    /* Misc */
+
+	/**
+	 * Clears all recorded measures
+	 */
+	public void reset() {
+		for (ColumnFamilyMetrics metrics : columnFamilyMetrics.values()) {
+			metrics.reset();
+		}
+	}
+
+	/**
+	 * Invoked once the first time a measure is recorded for a column family
+	 * @param metrics the new column family metrics
+	 */
+	protected void onColumnFamilyMetricsCreated(ColumnFamilyMetrics metrics) {
+	}
+
+	/**
+	 * Private helper that gets or creates the metrics of a column family
+	 */
+	private ColumnFamilyMetrics metricsFor(String columnFamily) {
+		if (columnFamily == null) {
+			columnFamily = GLOBAL_SCOPE;
+		}
+		ColumnFamilyMetrics metrics = columnFamilyMetrics.get(columnFamily);
+		if (metrics == null) {
+			ColumnFamilyMetrics created = new ColumnFamilyMetrics(columnFamily);
+			metrics = columnFamilyMetrics.putIfAbsent(columnFamily, created);
+			if (metrics == null) {
+				metrics = created;
+				onColumnFamilyMetricsCreated(created);
+			}
+		}
+		return metrics;
+	}
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao.metrics;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.management.*;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+/**
+ * Recorder that exports the metrics of every column family as an MBean named
+ * <code>org.firebrandocm:type=Metrics,name=&lt;name&gt;,columnFamily=&lt;column family&gt;</code>.
+ * Each operation exposes Count, MeanMicros, P50Micros, P99Micros and MaxMicros attributes, e.g. GetResultListP99Micros,
+ * along with one attribute per counter and the CacheHitRate
+ */
+public class JmxMetricsRecorder extends DefaultMetricsRecorder {
+    /* Fields */
+
+	private static Log log = LogFactory.getLog(JmxMetricsRecorder.class);
+
+	/**
+	 * the MBean domain
+	 */
+	public static final String DOMAIN = "org.firebrandocm";
+
+	/**
+	 * the name distinguishing this factory MBeans from other factories in the same JVM
+	 */
+	private final String name;
+
+	/**
+	 * the server MBeans are registered into
+	 */
+	private final MBeanServer mBeanServer;
+
+	/**
+	 * the registered MBean names
+	 */
+	private final List<ObjectName> registered = Collections.synchronizedList(new ArrayList<ObjectName>());
+
+    /* Constructors */
+
+	/**
+	 * Constructor registering in the platform MBean server
+	 * @param name the name distinguishing this factory MBeans from other factories in the same JVM
+	 */
+	public JmxMetricsRecorder(String name) {
+		this(name, ManagementFactory.getPlatformMBeanServer());
+	}
+
+	/**
+	 * Constructor
+	 * @param name the name distinguishing this factory MBeans from other factories in the same JVM
+	 * @param mBeanServer the server MBeans are registered into
+	 */
+	public JmxMetricsRecorder(String name, MBeanServer mBeanServer) {
+		this.name = name;
+		this.mBeanServer = mBeanServer;
+	}
+
+    /* Static Methods */
+
+	/**
+	 * @param name the recorder name
+	 * @param columnFamily the column family
+	 * @return the MBean name for a column family metrics
+	 */
+	public static ObjectName getObjectName(String name, String columnFamily) {
+		try {
+			return new ObjectName(String.format("%s:type=Metrics,name=%s,columnFamily=%s", DOMAIN, ObjectName.quote(name), ObjectName.quote(columnFamily)));
+		} catch (MalformedObjectNameException e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	/**
+	 * Private helper converting an enum constant to an attribute name, GET_RESULT_LIST becomes GetResultList
+	 */
+	private static String attributeName(Enum<?> constant) {
+		StringBuilder builder = new StringBuilder();
+		for (String part : constant.name().split("_")) {
+			builder.append(part.charAt(0)).append(part.substring(1).toLowerCase());
+		}
+		return builder.toString();
+	}
+
+    // --------------------- Interface MetricsRecorder ---------------------
+
+	@Override
+	public void destroy() {
+		synchronized (registered) {
+			for (ObjectName objectName : registered) {
+				try {
+					mBeanServer.unregisterMBean(objectName);
+				} catch (Exception e) {
+					log.warn(String.format("unable to unregister %s", objectName), e);
+				}
+			}
+			registered.clear();
+		}
+	}
+
+    /* Misc */
+
+	@Override
+	protected void onColumnFamilyMetricsCreated(ColumnFamilyMetrics metrics) {
+		ObjectName objectName = getObjectName(name, metrics.getColumnFamily());
+		try {
+			mBeanServer.registerMBean(new ColumnFamilyMetricsMBean(metrics), objectName);
+			registered.add(objectName);
+		} catch (Exception e) {
+			log.warn(String.format("unable to register %s", objectName), e);
+		}
+	}
+
+    /* Inner Classes */
+
+	/**
+	 * Read only dynamic MBean over a column family metrics
+	 */
+	private static final class ColumnFamilyMetricsMBean implements DynamicMBean {
+		private static final String[] LATENCY_ATTRIBUTES = {"Count", "MeanMicros", "P50Micros", "P99Micros", "MaxMicros"};
+
+		private final ColumnFamilyMetrics metrics;
+
+		private final MBeanInfo info;
+
+		private ColumnFamilyMetricsMBean(ColumnFamilyMetrics metrics) {
+			this.metrics = metrics;
+			List<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+			for (Operation operation : Operation.values()) {
+				for (String suffix : LATENCY_ATTRIBUTES) {
+					String type = suffix.equals("Count") ? "long" : "double";
+					attributes.add(new MBeanAttributeInfo(attributeName(operation) + suffix, type, operation + " " + suffix, true, false, false));
+				}
+			}
+			for (Counter counter : Counter.values()) {
+				attributes.add(new MBeanAttributeInfo(attributeName(counter), "long", counter.name(), true, false, false));
+			}
+			attributes.add(new MBeanAttributeInfo("CacheHitRate", "double", "cache hits / cache accesses", true, false, false));
+			MBeanOperationInfo reset = new MBeanOperationInfo("reset", "clears all measures", new MBeanParameterInfo[0], "void", MBeanOperationInfo.ACTION);
+			info = new MBeanInfo(ColumnFamilyMetrics.class.getName(), String.format("metrics for %s", metrics.getColumnFamily()),
+					attributes.toArray(new MBeanAttributeInfo[attributes.size()]), null, new MBeanOperationInfo[]{reset}, null);
+		}
+
+		public Object getAttribute(String attribute) throws AttributeNotFoundException {
+			if ("CacheHitRate".equals(attribute)) {
+				return metrics.getCacheHitRate();
+			}
+			for (Counter counter : Counter.values()) {
+				if (attributeName(counter).equals(attribute)) {
+					return metrics.getCount(counter);
+				}
+			}
+			for (Operation operation : Operation.values()) {
+				String prefix = attributeName(operation);
+				if (attribute.startsWith(prefix)) {
+					LatencyHistogram histogram = metrics.getLatency(operation);
+					String suffix = attribute.substring(prefix.length());
+					if ("Count".equals(suffix)) {
+						return histogram.getCount();
+					} else if ("MeanMicros".equals(suffix)) {
+						return histogram.getMean() / 1000.0;
+					} else if ("P50Micros".equals(suffix)) {
+						return histogram.getValueAtPercentile(50) / 1000.0;
+					} else if ("P99Micros".equals(suffix)) {
+						return histogram.getValueAtPercentile(99) / 1000.0;
+					} else if ("MaxMicros".equals(suffix)) {
+						return histogram.getMax() / 1000.0;
+					}
+				}
+			}
+			throw new AttributeNotFoundException(attribute);
+		}
+
+		public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+			throw new AttributeNotFoundException(String.format("%s is read only", attribute.getName()));
+		}
+
+		public AttributeList getAttributes(String[] attributes) {
+			AttributeList list = new AttributeList();
+			for (String attribute : attributes) {
+				try {
+					list.add(new Attribute(attribute, getAttribute(attribute)));
+				} catch (AttributeNotFoundException e) {
+					//skipped as mandated by DynamicMBean#getAttributes
+				}
+			}
+			return list;
+		}
+
+		public AttributeList setAttributes(AttributeList attributes) {
+			return new AttributeList();
+		}
+
+		public Object invoke(String actionName, Object[] params, String[] signature) throws MBeanException, ReflectionException {
+			if ("reset".equals(actionName)) {
+				metrics.reset();
+				return null;
+			}
+			throw new ReflectionException(new NoSuchMethodException(actionName));
+		}
+
+		public MBeanInfo getMBeanInfo() {
+			return info;
+		}
+	}
+}
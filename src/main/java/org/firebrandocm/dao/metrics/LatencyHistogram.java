@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free latency histogram with log linear buckets in the style of HdrHistogram.
+ * Each power of two range is split into 16 buckets so recorded values keep a relative precision of about 6%
+ */
+public class LatencyHistogram {
+    /* Fields */
+
+	/**
+	 * log2 of the number of buckets per power of two range
+	 */
+	private static final int SUB_BUCKET_BITS = 4;
+
+	/**
+	 * the number of buckets per power of two range
+	 */
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	/**
+	 * the number of buckets needed to cover every positive long
+	 */
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	/**
+	 * the recorded counts per bucket
+	 */
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+	/**
+	 * the number of recorded values
+	 */
+	private final StripedCounter count = new StripedCounter();
+
+	/**
+	 * the sum of the recorded values
+	 */
+	private final StripedCounter total = new StripedCounter();
+
+	/**
+	 * the largest recorded value
+	 */
+	private final AtomicLong max = new AtomicLong();
+
+    /* Static Methods */
+
+	/**
+	 * @param value a non negative value
+	 * @return the bucket the value falls into
+	 */
+	static int bucketIndex(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+	}
+
+	/**
+	 * @param index a bucket index
+	 * @return the largest value that falls into the bucket
+	 */
+	static long bucketUpperBound(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = index / SUB_BUCKETS - 1;
+		long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+		return lower + (1L << shift) - 1;
+	}
+
+    /* Getters & Setters */
+
+	/**
+	 * @return the number of recorded values
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * @return the mean of the recorded values or 0 if none
+	 */
+	public double getMean() {
+		long n = count.sum();
+		return n == 0 ? 0 : (double) total.sum() / n;
+	}
+
+	/**
+	 * @return the largest recorded value
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+    /* Misc */
+
+	/**
+	 * Records a value, negative values are recorded as zero
+	 * @param value the value
+	 */
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		buckets.incrementAndGet(bucketIndex(value));
+		count.increment();
+		total.add(value);
+		long currentMax = max.get();
+		while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+			currentMax = max.get();
+		}
+	}
+
+	/**
+	 * @param percentile the percentile between 0 and 100
+	 * @return the upper bound of the bucket holding the given percentile, never above the recorded max
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long n = count.sum();
+		if (n == 0) {
+			return 0;
+		}
+		long target = Math.max(1, (long) Math.ceil(n * Math.min(percentile, 100.0) / 100.0));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += buckets.get(i);
+			if (seen >= target) {
+				return Math.min(bucketUpperBound(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	/**
+	 * Clears all recorded values
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			buckets.set(i, 0);
+		}
+		count.reset();
+		total.reset();
+		max.set(0);
+	}
+}
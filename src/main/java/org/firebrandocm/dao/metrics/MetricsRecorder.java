@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao.metrics;
+
+/**
+ * SPI the persistence factory reports its operations to.
+ * Implementations are invoked on the calling threads of every factory operation and should not block
+ */
+public interface MetricsRecorder {
+    /* Fields */
+
+	/**
+	 * the scope used for measures not attributable to a single column family
+	 */
+	String GLOBAL_SCOPE = "_global";
+
+    /* Misc */
+
+	/**
+	 * @return false if measures are discarded, allowing the factory to skip taking timestamps
+	 */
+	boolean isEnabled();
+
+	/**
+	 * Records the latency of an operation
+	 * @param columnFamily the column family or {@link #GLOBAL_SCOPE}
+	 * @param operation the operation
+	 * @param nanos the elapsed time in nanoseconds
+	 */
+	void recordLatency(String columnFamily, Operation operation, long nanos);
+
+	/**
+	 * Increments a counter
+	 * @param columnFamily the column family or {@link #GLOBAL_SCOPE}
+	 * @param counter the counter
+	 * @param delta the amount to add
+	 */
+	void increment(String columnFamily, Counter counter, long delta);
+
+	/**
+	 * Releases any resources held by the recorder, invoked when the factory is destroyed
+	 */
+	void destroy();
+}
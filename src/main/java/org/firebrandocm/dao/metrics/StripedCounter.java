@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free counter that spreads concurrent increments over padded cells selected by thread.
+ * Reads sum all cells and are not atomic with respect to concurrent increments
+ */
+public class StripedCounter {
+    /* Fields */
+
+	/**
+	 * distance in longs between cells so each one sits in its own cache line
+	 */
+	private static final int PADDING = 8;
+
+	/**
+	 * the number of cells, a power of two
+	 */
+	private static final int STRIPES;
+
+	static {
+		int stripes = 1;
+		while (stripes < Runtime.getRuntime().availableProcessors() * 2 && stripes < 64) {
+			stripes <<= 1;
+		}
+		STRIPES = stripes;
+	}
+
+	/**
+	 * the padded cells
+	 */
+	private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+    /* Static Methods */
+
+	/**
+	 * @return the index of the cell assigned to the calling thread
+	 */
+	static int stripe() {
+		long id = Thread.currentThread().getId();
+		int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+		return ((hash >>> 16) & (STRIPES - 1)) * PADDING;
+	}
+
+    /* Misc */
+
+	/**
+	 * Adds to the counter
+	 * @param delta the amount to add
+	 */
+	public void add(long delta) {
+		cells.addAndGet(stripe(), delta);
+	}
+
+	/**
+	 * Adds one to the counter
+	 */
+	public void increment() {
+		add(1);
+	}
+
+	/**
+	 * @return the current value
+	 */
+	public long sum() {
+		long sum = 0;
+		for (int i = 0; i < cells.length(); i += PADDING) {
+			sum += cells.get(i);
+		}
+		return sum;
+	}
+
+	/**
+	 * Resets the counter to zero
+	 */
+	public void reset() {
+		for (int i = 0; i < cells.length(); i += PADDING) {
+			cells.set(i, 0);
+		}
+	}
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao.planner;
+
+/**
+ * Source of the secondary index statistics a {@link QueryPlanner} uses to rank indexed predicates.
+ * Statistics are usually gathered offline, e.g. by sampling the indexed columns, and only need to be approximate
+ */
+public interface IndexStatistics {
+    /* Misc */
+
+	/**
+	 * @param columnFamily the column family
+	 * @param column the indexed column
+	 * @return the estimated number of distinct values of the column, 0 if unknown
+	 */
+	long getCardinality(String columnFamily, String column);
+}
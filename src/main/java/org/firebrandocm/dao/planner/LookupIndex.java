@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao.planner;
+
+import java.util.Date;
+
+/**
+ * The layout of the lookup rows maintained for properties annotated with @Column(lookupIndex = true).
+ * Each distinct value of a property has a row in the lookup column family named after the property and the value,
+ * holding a column named after the key of every entity with that value. Unlike native KEYS indexes, which are local
+ * to each node and have to be queried on all of them, an equality is resolved by reading that single row, which suits
+ * high cardinality values such as emails or external ids
+ */
+public final class LookupIndex {
+    /* Fields */
+
+	/**
+	 * the suffix appended to the entity column family to name its lookup column family
+	 */
+	public static final String COLUMN_FAMILY_SUFFIX = "_lookup_index";
+
+    /* Constructors */
+
+	private LookupIndex() {
+	}
+
+    /* Static Methods */
+
+	/**
+	 * @param property the indexed property
+	 * @param value the property value, as written or as parsed from a query literal
+	 * @return the key of the lookup row listing the entities with the value
+	 */
+	public static String getRowKey(String property, Object value) {
+		return String.format("%s:%s", property, getLiteral(value));
+	}
+
+	/**
+	 * @param value a property value
+	 * @return the value as written in CQL literals, dates as milliseconds and enums by name
+	 */
+	public static String getLiteral(Object value) {
+		if (value instanceof Date) {
+			return String.valueOf(((Date) value).getTime());
+		} else if (value instanceof Enum) {
+			return ((Enum<?>) value).name();
+		}
+		return String.valueOf(value);
+	}
+}
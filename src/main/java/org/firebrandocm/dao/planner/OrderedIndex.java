@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao.planner;
+
+import org.apache.cassandra.thrift.IndexOperator;
+import org.firebrandocm.dao.widerow.WideColumn;
+
+import java.util.*;
+
+/**
+ * The layout of the index rows maintained for properties annotated with @Column(orderedIndex = true).
+ * Every entity has a column named after its encoded value followed by its key in one of the buckets of the property,
+ * the rows of the index column family named after the property and the bucket number. Entities are spread over the
+ * buckets by key so a single row never grows past its share of the column family, and range predicates are resolved
+ * as column slices over all the buckets merged back in value order
+ */
+public final class OrderedIndex {
+    /* Fields */
+
+	/**
+	 * the suffix appended to the entity column family to name its index column family
+	 */
+	public static final String COLUMN_FAMILY_SUFFIX = "_ordered_index";
+
+	/**
+	 * separates the encoded value from the key in index column names, sorting below any other character
+	 */
+	private static final char SEPARATOR = '\u0000';
+
+	/**
+	 * the character following the separator, bounding the columns of a value from above
+	 */
+	private static final char AFTER_SEPARATOR = '\u0001';
+
+    /* Constructors */
+
+	private OrderedIndex() {
+	}
+
+    /* Static Methods */
+
+	/**
+	 * @param property the indexed property
+	 * @param key the entity key
+	 * @param buckets the number of buckets of the property
+	 * @return the key of the index row holding the entry of the entity
+	 */
+	public static String getRowKey(String property, String key, int buckets) {
+		return String.format("%s:%d", property, (key.hashCode() & Integer.MAX_VALUE) % buckets);
+	}
+
+	/**
+	 * @param property the indexed property
+	 * @param buckets the number of buckets of the property
+	 * @return the keys of all the index rows of the property
+	 */
+	public static List<String> getRowKeys(String property, int buckets) {
+		List<String> rowKeys = new ArrayList<String>(buckets);
+		for (int bucket = 0; bucket < buckets; bucket++) {
+			rowKeys.add(String.format("%s:%d", property, bucket));
+		}
+		return rowKeys;
+	}
+
+	/**
+	 * @param value the value encoded by its {@link org.firebrandocm.dao.widerow.ColumnNameCodec}
+	 * @param key the entity key
+	 * @return the name of the index column of the entity
+	 */
+	public static String getColumnName(String value, String key) {
+		if (value.indexOf(SEPARATOR) >= 0) {
+			throw new IllegalArgumentException("values holding the NUL character can't be indexed in order");
+		}
+		return value + SEPARATOR + key;
+	}
+
+	/**
+	 * @param columnName the name of an index column
+	 * @return the key of the entity the column refers to
+	 */
+	public static String getKey(String columnName) {
+		return columnName.substring(columnName.indexOf(SEPARATOR) + 1);
+	}
+
+	/**
+	 * @param operator the comparison operator
+	 * @param value the encoded value compared to
+	 * @return the first column name of the slice holding the matching entries, null if the comparison has no lower bound
+	 */
+	public static String getSliceStart(IndexOperator operator, String value) {
+		switch (operator) {
+			case EQ:
+			case GTE:
+				return value;
+			case GT:
+				return value + AFTER_SEPARATOR;
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 * @param operator the comparison operator
+	 * @param value the encoded value compared to
+	 * @return the last column name of the slice holding the matching entries, null if the comparison has no upper bound
+	 */
+	public static String getSliceFinish(IndexOperator operator, String value) {
+		switch (operator) {
+			case EQ:
+			case LTE:
+				return value + AFTER_SEPARATOR;
+			case LT:
+				return value;
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 * Merges the slices of the buckets of an index back in value order
+	 * @param slices the slices, each sorted by column name and holding the entity keys as values
+	 * @return the keys of the entities in value order, then key order
+	 */
+	public static Iterator<String> merge(List<? extends Iterator<WideColumn<String, String>>> slices) {
+		return new MergingIterator(slices);
+	}
+
+    /* Inner Classes */
+
+	/**
+	 * Iterates the heads of the slices through a heap ordered by column name
+	 */
+	private static final class MergingIterator implements Iterator<String> {
+		private final PriorityQueue<Head> heads;
+
+		private MergingIterator(List<? extends Iterator<WideColumn<String, String>>> slices) {
+			heads = new PriorityQueue<Head>(Math.max(1, slices.size()));
+			for (Iterator<WideColumn<String, String>> slice : slices) {
+				advance(slice);
+			}
+		}
+
+		private void advance(Iterator<WideColumn<String, String>> slice) {
+			if (slice.hasNext()) {
+				heads.add(new Head(slice.next(), slice));
+			}
+		}
+
+		public boolean hasNext() {
+			return !heads.isEmpty();
+		}
+
+		public String next() {
+			Head head = heads.poll();
+			if (head == null) {
+				throw new NoSuchElementException();
+			}
+			advance(head.slice);
+			return head.column.getValue();
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException("ordered index entries are read only");
+		}
+	}
+
+	private static final class Head implements Comparable<Head> {
+		private final WideColumn<String, String> column;
+
+		private final Iterator<WideColumn<String, String>> slice;
+
+		private Head(WideColumn<String, String> column, Iterator<WideColumn<String, String>> slice) {
+			this.column = column;
+			this.slice = slice;
+		}
+
+		public int compareTo(Head other) {
+			return column.getName().compareTo(other.column.getName());
+		}
+	}
+}
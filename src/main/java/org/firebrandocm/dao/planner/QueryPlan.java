@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao.planner;
+
+import org.apache.commons.lang3.StringUtils;
+import org.firebrandocm.dao.cql.clauses.IndexOperatorPredicate;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The execution plan of a set of predicates over an entity column family, as chosen by a {@link QueryPlanner}.
+ * A single predicate drives the read sent to the server and the remaining ones are evaluated client side on the
+ * pages of rows streamed back
+ */
+public final class QueryPlan<T> {
+    /* Fields */
+
+	/**
+	 * the entity type
+	 */
+	private final Class<T> type;
+
+	/**
+	 * the column family
+	 */
+	private final String columnFamily;
+
+	/**
+	 * how rows are read from the server
+	 */
+	private final Strategy strategy;
+
+	/**
+	 * the keys read by a key lookup
+	 */
+	private final List<String> keys;
+
+	/**
+	 * the equality predicate resolved through the secondary index by an index scan or through the lookup rows by a
+	 * lookup index scan
+	 */
+	private final IndexOperatorPredicate indexPredicate;
+
+	/**
+	 * the comparisons on the ordered index column resolved as slices of its index rows by an ordered index scan
+	 */
+	private final List<IndexOperatorPredicate> rangePredicates;
+
+	/**
+	 * the estimated cardinality of the index scan column, 0 if unknown
+	 */
+	private final long cardinality;
+
+	/**
+	 * the predicates evaluated client side
+	 */
+	private final List<IndexOperatorPredicate> filters;
+
+    /* Constructors */
+
+	/**
+	 * Constructs a plan
+	 * @param type the entity type
+	 * @param columnFamily the column family
+	 * @param strategy how rows are read from the server
+	 * @param keys the keys read by a key lookup, null otherwise
+	 * @param indexPredicate the predicate driving an index or lookup index scan, null otherwise
+	 * @param rangePredicates the comparisons driving an ordered index scan, null otherwise
+	 * @param cardinality the estimated cardinality of the index scan column, 0 if unknown
+	 * @param filters the predicates evaluated client side
+	 */
+	QueryPlan(Class<T> type, String columnFamily, Strategy strategy, List<String> keys, IndexOperatorPredicate indexPredicate, List<IndexOperatorPredicate> rangePredicates, long cardinality, List<IndexOperatorPredicate> filters) {
+		this.type = type;
+		this.columnFamily = columnFamily;
+		this.strategy = strategy;
+		this.keys = keys != null ? Collections.unmodifiableList(keys) : Collections.<String>emptyList();
+		this.indexPredicate = indexPredicate;
+		this.rangePredicates = rangePredicates != null ? Collections.unmodifiableList(rangePredicates) : Collections.<IndexOperatorPredicate>emptyList();
+		this.cardinality = cardinality;
+		this.filters = Collections.unmodifiableList(filters);
+	}
+
+    /* Getters & Setters */
+
+	/**
+	 * @return the entity type
+	 */
+	public Class<T> getType() {
+		return type;
+	}
+
+	/**
+	 * @return the column family
+	 */
+	public String getColumnFamily() {
+		return columnFamily;
+	}
+
+	/**
+	 * @return how rows are read from the server
+	 */
+	public Strategy getStrategy() {
+		return strategy;
+	}
+
+	/**
+	 * @return the keys read by a key lookup, empty for other strategies
+	 */
+	public List<String> getKeys() {
+		return keys;
+	}
+
+	/**
+	 * @return the equality predicate resolved through the secondary index or the lookup rows, null unless this is an
+	 * index or lookup index scan
+	 */
+	public IndexOperatorPredicate getIndexPredicate() {
+		return indexPredicate;
+	}
+
+	/**
+	 * @return the comparisons on the ordered index column resolved through its index rows, empty unless this is an
+	 * ordered index scan. Entries left behind by concurrent writes are discarded by evaluating them again client side
+	 */
+	public List<IndexOperatorPredicate> getRangePredicates() {
+		return rangePredicates;
+	}
+
+	/**
+	 * @return the estimated cardinality of the index scan column, 0 if unknown
+	 */
+	public long getCardinality() {
+		return cardinality;
+	}
+
+	/**
+	 * @return the predicates evaluated client side on every row read
+	 */
+	public List<IndexOperatorPredicate> getFilters() {
+		return filters;
+	}
+
+    /* Misc */
+
+	/**
+	 * Describes the plan, one line for the server read followed by one line per client side filter
+	 * @return the plan description
+	 */
+	public String explain() {
+		StringBuilder sb = new StringBuilder();
+		switch (strategy) {
+			case KEY_LOOKUP:
+				sb.append(String.format("KEY LOOKUP %s (%d keys)", columnFamily, keys.size()));
+				break;
+			case INDEX_SCAN:
+				sb.append(String.format("INDEX SCAN %s ON %s (cardinality %s)", columnFamily, indexPredicate, cardinality > 0 ? cardinality : "unknown"));
+				break;
+			case LOOKUP_INDEX_SCAN:
+				sb.append(String.format("LOOKUP INDEX SCAN %s ON %s", columnFamily, indexPredicate));
+				break;
+			case ORDERED_INDEX_SCAN:
+				sb.append(String.format("ORDERED INDEX SCAN %s ON %s", columnFamily, StringUtils.join(rangePredicates, " AND ")));
+				break;
+			case RANGE_SCAN:
+				sb.append(String.format("RANGE SCAN %s", columnFamily));
+				break;
+		}
+		for (IndexOperatorPredicate filter : filters) {
+			sb.append(String.format("%n  FILTER %s", filter));
+		}
+		return sb.toString();
+	}
+
+    /* Canonical Methods */
+
+	@Override
+	public String toString() {
+		return explain();
+	}
+
+    /* Inner Classes */
+
+	/**
+	 * How a plan reads rows from the server
+	 */
+	public enum Strategy {
+		/**
+		 * rows are read by key
+		 */
+		KEY_LOOKUP,
+		/**
+		 * rows are read through the secondary index of an equality predicate
+		 */
+		INDEX_SCAN,
+		/**
+		 * rows are read by the keys listed in the lookup row of an equality predicate
+		 */
+		LOOKUP_INDEX_SCAN,
+		/**
+		 * rows are read by the keys found in slices of the ordered index rows of a column compared by range
+		 */
+		ORDERED_INDEX_SCAN,
+		/**
+		 * every row of the column family is read
+		 */
+		RANGE_SCAN
+	}
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao.planner;
+
+import org.apache.cassandra.thrift.IndexOperator;
+import org.firebrandocm.dao.ClassMetadata;
+import org.firebrandocm.dao.PersistenceFactory;
+import org.firebrandocm.dao.cql.clauses.Between;
+import org.firebrandocm.dao.cql.clauses.IndexOperatorPredicate;
+import org.firebrandocm.dao.cql.clauses.KeyInPredicate;
+import org.firebrandocm.dao.cql.clauses.Predicate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Plans a conjunction of predicates over an entity column family.
+ * Key predicates are always preferred, then the first equality on a column with a lookup index, which is resolved by
+ * reading a single lookup row. Otherwise the equality predicate on the indexed column with the highest
+ * cardinality drives an index scan, since it is expected to match the fewest rows; columns without statistics keep
+ * the order in which their predicates were given and the class column, shared by every row, is only used as a last
+ * resort. Without any other indexed equality, the comparisons on the first column with an ordered index are resolved
+ * as slices of its index rows, otherwise every row is scanned. All other predicates become client side filters
+ */
+public class QueryPlanner<T> {
+    /* Fields */
+
+	/**
+	 * the entity metadata
+	 */
+	private final ClassMetadata<T> metadata;
+
+	/**
+	 * the index statistics, may be null
+	 */
+	private final IndexStatistics statistics;
+
+    /* Constructors */
+
+	/**
+	 * Constructs a planner
+	 * @param metadata the entity metadata
+	 * @param statistics the index statistics, null if none are available
+	 */
+	public QueryPlanner(ClassMetadata<T> metadata, IndexStatistics statistics) {
+		this.metadata = metadata;
+		this.statistics = statistics;
+	}
+
+    /* Misc */
+
+	/**
+	 * Plans a conjunction of predicates
+	 * @param predicates the predicates, key (in) and column comparisons or betweens
+	 * @return the plan
+	 */
+	public QueryPlan<T> plan(Predicate... predicates) {
+		List<String> keys = null;
+		List<IndexOperatorPredicate> comparisons = new ArrayList<IndexOperatorPredicate>();
+		for (Predicate predicate : predicates) {
+			if (keys == null && predicate instanceof KeyInPredicate) {
+				keys = Arrays.asList(((KeyInPredicate) predicate).getValues());
+			} else if (keys == null && isKeyEquality(predicate)) {
+				keys = Arrays.asList(((IndexOperatorPredicate) predicate).getValue());
+			} else if (predicate instanceof Between) {
+				comparisons.add(((Between) predicate).getFrom());
+				comparisons.add(((Between) predicate).getTo());
+			} else if (predicate instanceof IndexOperatorPredicate) {
+				comparisons.add((IndexOperatorPredicate) predicate);
+			} else {
+				throw new IllegalArgumentException(String.format("unsupported predicate %s", predicate));
+			}
+		}
+		Class<T> type = metadata.getTarget();
+		String columnFamily = metadata.getColumnFamily();
+		if (keys != null) {
+			return new QueryPlan<T>(type, columnFamily, QueryPlan.Strategy.KEY_LOOKUP, keys, null, null, 0, comparisons);
+		}
+		for (IndexOperatorPredicate comparison : comparisons) {
+			if (comparison.getOperator() == IndexOperator.EQ && comparison.getColumn() != null && metadata.isLookupIndex(comparison.getColumn())) {
+				List<IndexOperatorPredicate> filters = new ArrayList<IndexOperatorPredicate>(comparisons);
+				filters.remove(comparison);
+				return new QueryPlan<T>(type, columnFamily, QueryPlan.Strategy.LOOKUP_INDEX_SCAN, null, comparison, null, 0, filters);
+			}
+		}
+		IndexOperatorPredicate indexPredicate = null;
+		long cardinality = 0;
+		for (IndexOperatorPredicate comparison : comparisons) {
+			if (isIndexedEquality(comparison)) {
+				long candidate = getCardinality(comparison.getColumn());
+				if (indexPredicate == null || rank(comparison, candidate) > rank(indexPredicate, cardinality)) {
+					indexPredicate = comparison;
+					cardinality = candidate;
+				}
+			}
+		}
+		if (indexPredicate == null || rank(indexPredicate, cardinality) < 0) {
+			List<IndexOperatorPredicate> rangePredicates = getOrderedIndexComparisons(comparisons);
+			if (!rangePredicates.isEmpty()) {
+				List<IndexOperatorPredicate> filters = new ArrayList<IndexOperatorPredicate>(comparisons);
+				filters.removeAll(rangePredicates);
+				return new QueryPlan<T>(type, columnFamily, QueryPlan.Strategy.ORDERED_INDEX_SCAN, null, null, rangePredicates, 0, filters);
+			}
+		}
+		if (indexPredicate == null) {
+			return new QueryPlan<T>(type, columnFamily, QueryPlan.Strategy.RANGE_SCAN, null, null, null, 0, comparisons);
+		}
+		List<IndexOperatorPredicate> filters = new ArrayList<IndexOperatorPredicate>(comparisons);
+		filters.remove(indexPredicate);
+		return new QueryPlan<T>(type, columnFamily, QueryPlan.Strategy.INDEX_SCAN, null, indexPredicate, null, cardinality, filters);
+	}
+
+	/**
+	 * Private helper that collects the comparisons on the first compared column with an ordered index
+	 */
+	private List<IndexOperatorPredicate> getOrderedIndexComparisons(List<IndexOperatorPredicate> comparisons) {
+		List<IndexOperatorPredicate> rangePredicates = new ArrayList<IndexOperatorPredicate>();
+		String column = null;
+		for (IndexOperatorPredicate comparison : comparisons) {
+			if (column == null && comparison.getColumn() != null && metadata.isOrderedIndex(comparison.getColumn())) {
+				column = comparison.getColumn();
+			}
+			if (column != null && column.equals(comparison.getColumn())) {
+				rangePredicates.add(comparison);
+			}
+		}
+		return rangePredicates;
+	}
+
+	/**
+	 * Private helper that ranks a candidate index predicate, the class column ranking below any other
+	 */
+	private long rank(IndexOperatorPredicate predicate, long cardinality) {
+		return PersistenceFactory.CLASS_PROPERTY.equals(predicate.getColumn()) ? -1 : cardinality;
+	}
+
+	/**
+	 * Private helper that looks up the cardinality of a column, 0 if unknown
+	 */
+	private long getCardinality(String column) {
+		return statistics != null ? Math.max(0, statistics.getCardinality(metadata.getColumnFamily(), column)) : 0;
+	}
+
+	/**
+	 * Private helper that checks whether a predicate is a key equality
+	 */
+	private boolean isKeyEquality(Predicate predicate) {
+		return predicate instanceof IndexOperatorPredicate
+				&& ((IndexOperatorPredicate) predicate).getColumn() == null
+				&& ((IndexOperatorPredicate) predicate).getOperator() == IndexOperator.EQ;
+	}
+
+	/**
+	 * Private helper that checks whether a predicate is an equality on an indexed column
+	 */
+	private boolean isIndexedEquality(IndexOperatorPredicate predicate) {
+		String column = predicate.getColumn();
+		return column != null
+				&& predicate.getOperator() == IndexOperator.EQ
+				&& (metadata.getIndexedProperties().contains(column) || PersistenceFactory.CLASS_PROPERTY.equals(column));
+	}
+}
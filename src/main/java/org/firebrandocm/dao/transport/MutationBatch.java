@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao.transport;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A batch of column, row and counter mutations applied by a single {@link Transport#mutate} call
+ */
+public final class MutationBatch {
+    /* Fields */
+
+	/**
+	 * the mutations in the order they were added
+	 */
+	private final List<Mutation> mutations = new ArrayList<Mutation>();
+
+    /* Getters & Setters */
+
+	/**
+	 * @return the mutations in the order they were added
+	 */
+	public List<Mutation> getMutations() {
+		return Collections.unmodifiableList(mutations);
+	}
+
+	/**
+	 * @return the number of mutations
+	 */
+	public int size() {
+		return mutations.size();
+	}
+
+	/**
+	 * @return true if there are no mutations to apply
+	 */
+	public boolean isEmpty() {
+		return mutations.isEmpty();
+	}
+
+    /* Misc */
+
+	/**
+	 * Adds a column insertion
+	 * @param columnFamily the column family
+	 * @param key the row key
+	 * @param column the column name
+	 * @param value the serialized value
+	 * @return this batch
+	 */
+	public MutationBatch insert(String columnFamily, String key, String column, ByteBuffer value) {
+		mutations.add(new Mutation(Mutation.Type.INSERT, columnFamily, key, column, value, 0));
+		return this;
+	}
+
+	/**
+	 * Adds a column deletion
+	 * @param columnFamily the column family
+	 * @param key the row key
+	 * @param column the column name
+	 * @return this batch
+	 */
+	public MutationBatch delete(String columnFamily, String key, String column) {
+		mutations.add(new Mutation(Mutation.Type.DELETE, columnFamily, key, column, null, 0));
+		return this;
+	}
+
+	/**
+	 * Adds a row deletion
+	 * @param columnFamily the column family
+	 * @param key the row key
+	 * @return this batch
+	 */
+	public MutationBatch deleteRow(String columnFamily, String key) {
+		mutations.add(new Mutation(Mutation.Type.DELETE_ROW, columnFamily, key, null, null, 0));
+		return this;
+	}
+
+	/**
+	 * Adds a counter increment
+	 * @param columnFamily the counter column family
+	 * @param key the row key
+	 * @param column the counter column name
+	 * @param delta the value to add, negative to decrement
+	 * @return this batch
+	 */
+	public MutationBatch increment(String columnFamily, String key, String column, long delta) {
+		mutations.add(new Mutation(Mutation.Type.INCREMENT, columnFamily, key, column, null, delta));
+		return this;
+	}
+
+    /* Inner Classes */
+
+	/**
+	 * A single mutation
+	 */
+	public static final class Mutation {
+		/**
+		 * The kinds of mutations
+		 */
+		public enum Type {
+			INSERT, DELETE, DELETE_ROW, INCREMENT
+		}
+
+		private final Type type;
+
+		private final String columnFamily;
+
+		private final String key;
+
+		private final String column;
+
+		private final ByteBuffer value;
+
+		private final long delta;
+
+		private Mutation(Type type, String columnFamily, String key, String column, ByteBuffer value, long delta) {
+			this.type = type;
+			this.columnFamily = columnFamily;
+			this.key = key;
+			this.column = column;
+			this.value = value;
+			this.delta = delta;
+		}
+
+		/**
+		 * @return the kind of mutation
+		 */
+		public Type getType() {
+			return type;
+		}
+
+		/**
+		 * @return the column family
+		 */
+		public String getColumnFamily() {
+			return columnFamily;
+		}
+
+		/**
+		 * @return the row key
+		 */
+		public String getKey() {
+			return key;
+		}
+
+		/**
+		 * @return the column name, null for row deletions
+		 */
+		public String getColumn() {
+			return column;
+		}
+
+		/**
+		 * @return a view of the serialized value of insertions, null otherwise
+		 */
+		public ByteBuffer getValue() {
+			return value != null ? value.duplicate() : null;
+		}
+
+		/**
+		 * @return the counter increment
+		 */
+		public long getDelta() {
+			return delta;
+		}
+	}
+}
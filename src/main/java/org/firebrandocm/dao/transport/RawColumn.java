@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao.transport;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A transport neutral column, a name and its serialized value as stored in the data store
+ */
+public final class RawColumn {
+    /* Fields */
+
+	/**
+	 * the column name
+	 */
+	private final String name;
+
+	/**
+	 * the serialized value
+	 */
+	private final ByteBuffer value;
+
+    /* Constructors */
+
+	/**
+	 * Constructs a column
+	 * @param name the column name
+	 * @param value the serialized value
+	 */
+	public RawColumn(String name, ByteBuffer value) {
+		this.name = name;
+		this.value = value;
+	}
+
+    /* Getters & Setters */
+
+	/**
+	 * @return the column name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return a view of the serialized value, reading it does not consume the value of this column
+	 */
+	public ByteBuffer getValue() {
+		return value != null ? value.duplicate() : null;
+	}
+
+    /* Canonical Methods */
+
+	@Override
+	public String toString() {
+		return String.format("%s=%s", name, value);
+	}
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao.transport;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The transport neutral result of a CQL statement
+ */
+public final class RawResult {
+    /* Fields */
+
+	/**
+	 * the result of statements returning no rows
+	 */
+	public static final RawResult EMPTY = new RawResult(Collections.<RawRow>emptyList(), 0);
+
+	/**
+	 * the returned rows
+	 */
+	private final List<RawRow> rows;
+
+	/**
+	 * the count returned by count queries
+	 */
+	private final long count;
+
+    /* Constructors */
+
+	/**
+	 * Constructs a result
+	 * @param rows the returned rows
+	 * @param count the count returned by count queries
+	 */
+	public RawResult(List<RawRow> rows, long count) {
+		this.rows = rows;
+		this.count = count;
+	}
+
+    /* Getters & Setters */
+
+	/**
+	 * @return the returned rows, empty for mutation and schema statements
+	 */
+	public List<RawRow> getRows() {
+		return rows;
+	}
+
+	/**
+	 * @return the count returned by count queries
+	 */
+	public long getCount() {
+		return count;
+	}
+}
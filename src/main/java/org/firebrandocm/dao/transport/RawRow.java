@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao.transport;
+
+import java.util.List;
+
+/**
+ * A transport neutral row, a key and the columns read for it in the order they were returned
+ */
+public final class RawRow {
+    /* Fields */
+
+	/**
+	 * the row key
+	 */
+	private final String key;
+
+	/**
+	 * the row columns
+	 */
+	private final List<RawColumn> columns;
+
+    /* Constructors */
+
+	/**
+	 * Constructs a row
+	 * @param key the row key
+	 * @param columns the row columns
+	 */
+	public RawRow(String key, List<RawColumn> columns) {
+		this.key = key;
+		this.columns = columns;
+	}
+
+    /* Getters & Setters */
+
+	/**
+	 * @return the row key
+	 */
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * @return the row columns
+	 */
+	public List<RawColumn> getColumns() {
+		return columns;
+	}
+
+    /* Canonical Methods */
+
+	@Override
+	public String toString() {
+		return String.format("%s%s", key, columns);
+	}
+}
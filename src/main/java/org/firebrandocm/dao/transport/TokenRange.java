@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao.transport;
+
+/**
+ * A contiguous range of the token ring, holding the rows whose token is greater than the start token and lower or equal
+ * than the end token. Tokens are strings in the format of the partitioner, a range whose end is not greater than its
+ * start wraps around the ring
+ */
+public final class TokenRange {
+    /* Fields */
+
+	/**
+	 * the exclusive start token
+	 */
+	private final String startToken;
+
+	/**
+	 * the inclusive end token
+	 */
+	private final String endToken;
+
+    /* Constructors */
+
+	/**
+	 * Constructs a range
+	 * @param startToken the exclusive start token
+	 * @param endToken the inclusive end token
+	 */
+	public TokenRange(String startToken, String endToken) {
+		this.startToken = startToken;
+		this.endToken = endToken;
+	}
+
+    /* Getters & Setters */
+
+	/**
+	 * @return the exclusive start token
+	 */
+	public String getStartToken() {
+		return startToken;
+	}
+
+	/**
+	 * @return the inclusive end token
+	 */
+	public String getEndToken() {
+		return endToken;
+	}
+
+    /* Canonical Methods */
+
+	@Override
+	public String toString() {
+		return String.format("(%s, %s]", startToken, endToken);
+	}
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao.transport;
+
+import org.firebrandocm.dao.annotations.ConsistencyLevel;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SPI through which the persistence factory reads and writes rows.
+ * The mapping layer only deals with the transport neutral {@link RawColumn} and {@link RawRow}, so a backend is plugged
+ * in by implementing this interface. Column names and keys are UTF8 strings, values are serialized by the factory
+ * type converters. A null keyspace or consistency level stands for the transport defaults
+ */
+public interface Transport {
+    /* Misc */
+
+	/**
+	 * Reads the columns of a row
+	 * @param keySpace the keyspace
+	 * @param consistencyLevel the read consistency level
+	 * @param columnFamily the column family
+	 * @param key the row key
+	 * @param columns the column names or none to read the whole row
+	 * @return the columns found, empty if the row does not exist
+	 */
+	List<RawColumn> readRow(String keySpace, ConsistencyLevel consistencyLevel, String columnFamily, String key, String... columns);
+
+	/**
+	 * Reads the columns of several rows in a single request
+	 * @param keySpace the keyspace
+	 * @param consistencyLevel the read consistency level
+	 * @param columnFamily the column family
+	 * @param keys the row keys
+	 * @param columns the column names or none to read the whole rows
+	 * @return the columns of the rows found by key, in the order the keys were given
+	 */
+	Map<String, List<RawColumn>> readRows(String keySpace, ConsistencyLevel consistencyLevel, String columnFamily, List<String> keys, String... columns);
+
+	/**
+	 * Reads a contiguous range of columns of a row
+	 * @param keySpace the keyspace
+	 * @param consistencyLevel the read consistency level
+	 * @param columnFamily the column family
+	 * @param key the row key
+	 * @param fromColumn the first column, null or empty for the start of the row
+	 * @param toColumn the last column, null or empty for the end of the row
+	 * @param reversed whether the columns are read in reverse order
+	 * @param limit the maximum number of columns
+	 * @return the columns found
+	 */
+	List<RawColumn> readSlice(String keySpace, ConsistencyLevel consistencyLevel, String columnFamily, String key, String fromColumn, String toColumn, boolean reversed, int limit);
+
+	/**
+	 * Scans a range of rows in partitioner order
+	 * @param keySpace the keyspace
+	 * @param consistencyLevel the read consistency level
+	 * @param columnFamily the column family
+	 * @param startKey the first key, null or empty for the start of the ring
+	 * @param endKey the last key, null or empty for the end of the ring
+	 * @param rowLimit the maximum number of rows
+	 * @param columns the column names or none to read the whole rows
+	 * @return the rows found, including deleted rows and rows without any of the columns returned empty. Fewer rows
+	 * than the limit only once the range is exhausted
+	 */
+	List<RawRow> readRange(String keySpace, ConsistencyLevel consistencyLevel, String columnFamily, String startKey, String endKey, int rowLimit, String... columns);
+
+	/**
+	 * Scans the rows whose indexed column equals a value through the column secondary index, in partitioner order
+	 * @param keySpace the keyspace
+	 * @param consistencyLevel the read consistency level
+	 * @param columnFamily the column family
+	 * @param column the indexed column
+	 * @param value the serialized value
+	 * @param startKey the first key, null or empty for the start of the ring
+	 * @param rowLimit the maximum number of rows
+	 * @param columns the column names or none to read the whole rows
+	 * @return the rows found, including rows without any of the columns returned empty. Fewer rows than the limit
+	 * only once the matching rows are exhausted
+	 */
+	List<RawRow> readIndexed(String keySpace, ConsistencyLevel consistencyLevel, String columnFamily, String column, ByteBuffer value, String startKey, int rowLimit, String... columns);
+
+	/**
+	 * Splits the token ring into contiguous ranges covering it, following the ranges owned by each node and subdividing
+	 * them so they can be scanned in parallel
+	 * @param keySpace the keyspace
+	 * @param columnFamily the column family
+	 * @param splits the desired number of ranges, the actual number may be greater
+	 * @return the ranges in ring order
+	 */
+	List<TokenRange> splitRing(String keySpace, String columnFamily, int splits);
+
+	/**
+	 * Counts the non empty rows of a token range, reading a page of keys at a time
+	 * @param keySpace the keyspace
+	 * @param consistencyLevel the read consistency level
+	 * @param columnFamily the column family
+	 * @param range the token range
+	 * @param pageSize the number of keys read at a time
+	 * @return the number of rows
+	 */
+	long countRange(String keySpace, ConsistencyLevel consistencyLevel, String columnFamily, TokenRange range, int pageSize);
+
+	/**
+	 * Reads a page of the rows of a token range in partitioner order
+	 * @param keySpace the keyspace
+	 * @param consistencyLevel the read consistency level
+	 * @param columnFamily the column family
+	 * @param range the token range
+	 * @param afterKey the key of the last row of the previous page, the page starts after it. Null for the first page
+	 * @param rowLimit the maximum number of rows
+	 * @param columns the column names or none to read the whole rows
+	 * @return the rows found, including deleted rows returned empty until compacted. Empty once the range is exhausted
+	 */
+	List<RawRow> readTokenRange(String keySpace, ConsistencyLevel consistencyLevel, String columnFamily, TokenRange range, String afterKey, int rowLimit, String... columns);
+
+	/**
+	 * Applies a batch of mutations in a single request
+	 * @param keySpace the keyspace
+	 * @param consistencyLevel the write consistency level
+	 * @param batch the mutations
+	 */
+	void mutate(String keySpace, ConsistencyLevel consistencyLevel, MutationBatch batch);
+
+	/**
+	 * Executes a CQL statement
+	 * @param keySpace the keyspace
+	 * @param consistencyLevel the consistency level
+	 * @param query the statement
+	 * @return the returned rows or {@link RawResult#EMPTY}
+	 */
+	RawResult executeCql(String keySpace, ConsistencyLevel consistencyLevel, String query);
+}
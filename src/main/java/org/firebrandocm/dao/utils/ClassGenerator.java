@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao.utils;
+
+import javassist.CannotCompileException;
+import javassist.ClassClassPath;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtNewMethod;
+import javassist.LoaderClassPath;
+import javassist.NotFoundException;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Generates small helper classes bound to entity classes, such as accessors and listener invokers, so that hot paths
+ * call entity methods directly instead of going through reflection.
+ * Generated classes live in the entity package and class loader and are reused if already defined.
+ */
+public class ClassGenerator {
+    /* Fields */
+
+    /**
+     * the class pool used to generate classes
+     */
+    private static ClassPool classPool;
+
+    /**
+     * the class loaders already visible to the class pool
+     */
+    private static Set<ClassLoader> classPoolLoaders = new HashSet<ClassLoader>();
+
+    /* Static Methods */
+
+    /**
+     * Gets a previously generated class or generates it in the target class loader
+     *
+     * @param target     the entity class the generated class is bound to
+     * @param className  the fully qualified name for the generated class
+     * @param superclass the generated class superclass
+     * @param methods    the source for each generated method
+     * @return the generated class
+     */
+    public static synchronized Class<?> getOrCreate(Class<?> target, String className, Class<?> superclass, String... methods) throws NotFoundException, CannotCompileException {
+        ClassLoader classLoader = target.getClassLoader();
+        try {
+            return Class.forName(className, true, classLoader);
+        } catch (ClassNotFoundException e) {
+            ClassPool pool = getClassPool(classLoader, superclass);
+            CtClass ctClass = pool.makeClass(className, pool.get(superclass.getName()));
+            for (String method : methods) {
+                ctClass.addMethod(CtNewMethod.make(method, ctClass));
+            }
+            Class<?> generated = ctClass.toClass(classLoader, target.getProtectionDomain());
+            ctClass.detach();
+            return generated;
+        }
+    }
+
+    /**
+     * Private helper that lazily creates the class pool and makes the class loaders involved visible to it
+     *
+     * @param classLoader the target class loader
+     * @param superclass  the generated class superclass
+     * @return the class pool
+     */
+    private static ClassPool getClassPool(ClassLoader classLoader, Class<?> superclass) {
+        if (classPool == null) {
+            classPool = new ClassPool(true);
+            classPool.appendClassPath(new ClassClassPath(ClassGenerator.class));
+        }
+        if (classLoader != null && classPoolLoaders.add(classLoader)) {
+            classPool.appendClassPath(new LoaderClassPath(classLoader));
+        }
+        ClassLoader superclassLoader = superclass.getClassLoader();
+        if (superclassLoader != null && classPoolLoaders.add(superclassLoader)) {
+            classPool.appendClassPath(new LoaderClassPath(superclassLoader));
+        }
+        return classPool;
+    }
+
+    /* Constructors */
+
+    /**
+     * Prevents from instantiation
+     */
+    private ClassGenerator() {
+    }
+}
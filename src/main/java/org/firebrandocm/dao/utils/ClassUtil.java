@@ -1,13 +1,20 @@
 package org.firebrandocm.dao.utils;
 
+import javassist.bytecode.AnnotationsAttribute;
+import javassist.bytecode.ClassFile;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.firebrandocm.dao.annotations.ColumnFamily;
+import org.firebrandocm.dao.annotations.processing.ColumnFamilyIndexProcessor;
 
-import java.io.File;
-import java.io.IOException;
+import java.io.*;
+import java.net.JarURLConnection;
 import java.net.URL;
-import java.util.ArrayList;
-import java.util.Enumeration;
-import java.util.List;
+import java.net.URLDecoder;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
 
 /**
  * This class starts and stops embedded Cassandra server.
@@ -18,6 +25,8 @@ import java.util.List;
  */
 public class ClassUtil {
 
+  private static Log log = LogFactory.getLog( ClassUtil.class );
+
   /**
    * Scans all classes accessible from the context class loader which belong to the given package and subpackages.
    *
@@ -31,8 +40,12 @@ public class ClassUtil {
   }
 
   /**
-   * Scans all classes accessible from the context class loader which belong to the given package and subpackages.
-   * Only if the class has the given annotation
+   * Finds all classes accessible from the context class loader which belong to the given package and subpackages.
+   * Only if the class has the given annotation.
+   * @ColumnFamily classes are read from the index written at compile time by the ColumnFamilyIndexProcessor for the
+   * classpath roots that carry one, and the roots without an index, such as classes compiled without the processor,
+   * are scanned. The index of a root is trusted as complete so a stale index hides classes added to that root without
+   * recompiling it
    *
    * @param packageName The base package
    * @param  annotation the annotation class we are looking for, null if not used
@@ -43,18 +56,123 @@ public class ClassUtil {
   public static List<Class<?>> get( String packageName, Class<?> annotation ) throws ClassNotFoundException, IOException {
     ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
     assert classLoader != null;
+    if ( ! ColumnFamily.class.equals( annotation ) ) {
+      return scan( classLoader, packageName, annotation );
+    }
+    Set<String> indexedRoots = new HashSet<String>();
+    Set<String> classNames = new LinkedHashSet<String>();
+    readIndexes( classLoader, packageName, classNames, indexedRoots );
+    int indexed = classNames.size();
+    Set<String> scannedRoots = new LinkedHashSet<String>();
+    scanNames( classLoader, packageName, annotation, indexedRoots, classNames, scannedRoots );
+    if ( log.isDebugEnabled() ) {
+      log.debug( String.format( "%s: %d classes read from the compile time index of %s, %d scanned from %s", packageName, indexed,
+          indexedRoots, classNames.size() - indexed, scannedRoots ) );
+    }
+    return load( classLoader, classNames );
+  }
+
+  /**
+   * Reads the @ColumnFamily classes that belong to the given package and subpackages from all compile time indexes
+   * visible to the class loader. Classes are loaded but not initialized
+   *
+   * @param classLoader the class loader
+   * @param packageName The base package, empty for all indexed classes
+   * @return The classes as a List
+   * @throws ClassNotFoundException
+   * @throws IOException
+   */
+  public static List<Class<?>> getIndexed( ClassLoader classLoader, String packageName ) throws ClassNotFoundException, IOException {
+    Set<String> classNames = new LinkedHashSet<String>();
+    readIndexes( classLoader, packageName, classNames, new HashSet<String>() );
+    return load( classLoader, classNames );
+  }
+
+  /**
+   * Private helper that collects the indexed class names of the given package and the classpath roots the indexes belong to
+   */
+  private static void readIndexes( ClassLoader classLoader, String packageName, Set<String> classNames, Set<String> roots ) throws IOException {
+    String prefix = packageName.length() > 0 ? packageName + '.' : "";
+    Enumeration<URL> indexes = classLoader.getResources( ColumnFamilyIndexProcessor.INDEX_RESOURCE );
+    while ( indexes.hasMoreElements() ) {
+      URL index = indexes.nextElement();
+      roots.add( getRoot( index, ColumnFamilyIndexProcessor.INDEX_RESOURCE ) );
+      BufferedReader reader = new BufferedReader( new InputStreamReader( index.openStream(), "UTF-8" ) );
+      try {
+        String line;
+        while ( ( line = reader.readLine() ) != null ) {
+          line = line.trim();
+          if ( line.length() > 0 && line.startsWith( prefix ) ) {
+            classNames.add( line );
+          }
+        }
+      } finally {
+        reader.close();
+      }
+    }
+  }
+
+  /**
+   * Scans directories and jars accessible from the class loader for classes which belong to the given package and subpackages.
+   * Annotations are read from the class files so only the matching classes are loaded, and none is initialized
+   *
+   * @param classLoader the class loader
+   * @param packageName The base package
+   * @param  annotation the annotation class we are looking for, null if not used
+   * @return The classes as a List
+   * @throws ClassNotFoundException
+   * @throws IOException
+   */
+  public static List<Class<?>> scan( ClassLoader classLoader, String packageName, Class<?> annotation ) throws ClassNotFoundException, IOException {
+    Set<String> classNames = new LinkedHashSet<String>();
+    scanNames( classLoader, packageName, annotation, Collections.<String>emptySet(), classNames, new HashSet<String>() );
+    return load( classLoader, classNames );
+  }
+
+  /**
+   * Private helper that collects the names of the matching classes in the classpath roots not in skippedRoots
+   */
+  private static void scanNames( ClassLoader classLoader, String packageName, Class<?> annotation, Set<String> skippedRoots,
+                                 Set<String> classNames, Set<String> scannedRoots ) throws IOException {
     String path = packageName.replace( '.', '/' );
     Enumeration<URL> resources = classLoader.getResources( path );
-    List<File> dirs = new ArrayList<File>();
     while ( resources.hasMoreElements() ) {
       URL resource = resources.nextElement();
-      dirs.add( new File( resource.getFile() ) );
-    }
-    List<Class<?>> classes = new ArrayList<Class<?>>();
-    for ( File directory : dirs ) {
-      classes.addAll( findClasses( directory, packageName, annotation ) );
+      String root = getRoot( resource, path );
+      if ( skippedRoots.contains( root ) ) {
+        continue;
+      }
+      scannedRoots.add( root );
+      if ( "jar".equals( resource.getProtocol() ) ) {
+        JarFile jarFile = ( (JarURLConnection) resource.openConnection() ).getJarFile();
+        Enumeration<JarEntry> entries = jarFile.entries();
+        while ( entries.hasMoreElements() ) {
+          JarEntry entry = entries.nextElement();
+          String name = entry.getName();
+          if ( name.startsWith( path + '/' ) && name.endsWith( ".class" ) && ! name.contains( "$" ) ) {
+            InputStream in = jarFile.getInputStream( entry );
+            try {
+              if ( isAnnotated( in, annotation ) ) {
+                classNames.add( name.substring( 0, name.length() - 6 ).replace( '/', '.' ) );
+              }
+            } finally {
+              in.close();
+            }
+          }
+        }
+      } else {
+        findClassNames( new File( URLDecoder.decode( resource.getFile(), "UTF-8" ) ), packageName, annotation, classNames );
+      }
     }
-    return classes;
+  }
+
+  /**
+   * Private helper that resolves the classpath root, directory or jar, a resource was found in
+   */
+  private static String getRoot( URL resource, String path ) {
+    String root = StringUtils.removeEnd( resource.toExternalForm(), "/" );
+    root = StringUtils.removeEnd( root, path );
+    return root.endsWith( "/" ) ? root : root + '/';
   }
 
   /**
@@ -66,27 +184,62 @@ public class ClassUtil {
    * @throws ClassNotFoundException
    */
   public static List<Class<?>> findClasses( File directory, String packageName, Class annotation ) throws ClassNotFoundException {
-    List<Class<?>> classes = new ArrayList<Class<?>>();
-    if ( ! directory.exists() ) {
-      return classes;
+    Set<String> classNames = new LinkedHashSet<String>();
+    try {
+      findClassNames( directory, packageName, annotation, classNames );
+    } catch ( IOException e ) {
+      throw new ClassNotFoundException( e.getMessage(), e );
     }
+    return load( Thread.currentThread().getContextClassLoader(), classNames );
+  }
+
+  /**
+   * Recursive helper that collects the names of matching classes in a given directory and subdirs.
+   */
+  private static void findClassNames( File directory, String packageName, Class<?> annotation, Set<String> classNames ) throws IOException {
     File[] files = directory.listFiles();
     if ( files != null ) for ( File file : files ) {
       if ( file.isDirectory() ) {
         assert ! file.getName().contains( "." );
-        classes.addAll( findClasses( file, packageName + "." + file.getName(), annotation ) );
+        findClassNames( file, packageName + "." + file.getName(), annotation, classNames );
       }
       else if ( file.getName().endsWith( ".class" ) ) {
 
         // TEST added in order to ignore classes names with $
         if ( ! file.getName().contains( "$" ) ) {
-          Class<?> clazz = Class.forName( packageName + '.' + file.getName().substring( 0, file.getName().length() - 6 ) );
-          if ( annotation != null && clazz.getAnnotation( annotation ) != null ) {
-            classes.add( clazz );
+          InputStream in = new FileInputStream( file );
+          try {
+            if ( isAnnotated( in, annotation ) ) {
+              classNames.add( packageName + '.' + file.getName().substring( 0, file.getName().length() - 6 ) );
+            }
+          } finally {
+            in.close();
           }
         }
       }
     }
+  }
+
+  /**
+   * Private helper that reads a class file to determine if it declares a runtime visible annotation without loading it
+   */
+  private static boolean isAnnotated( InputStream in, Class<?> annotation ) throws IOException {
+    if ( annotation == null ) {
+      return true;
+    }
+    ClassFile classFile = new ClassFile( new DataInputStream( new BufferedInputStream( in ) ) );
+    AnnotationsAttribute annotations = (AnnotationsAttribute) classFile.getAttribute( AnnotationsAttribute.visibleTag );
+    return annotations != null && annotations.getAnnotation( annotation.getName() ) != null;
+  }
+
+  /**
+   * Private helper that loads classes by name without initializing them
+   */
+  private static List<Class<?>> load( ClassLoader classLoader, Set<String> classNames ) throws ClassNotFoundException {
+    List<Class<?>> classes = new ArrayList<Class<?>>( classNames.size() );
+    for ( String className : classNames ) {
+      classes.add( Class.forName( className, false, classLoader ) );
+    }
     return classes;
   }
 
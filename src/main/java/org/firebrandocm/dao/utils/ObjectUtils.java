@@ -20,6 +20,7 @@ package org.firebrandocm.dao.utils;
 
 import javassist.util.proxy.ProxyObject;
 import me.prettyprint.cassandra.utils.TimeUUIDUtils;
+import org.firebrandocm.dao.EnhancedEntity;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
@@ -113,7 +114,7 @@ public class ObjectUtils {
     @SuppressWarnings("unchecked")
     public static Class<?> getRealClass(Class<?> potentialProxyClass) {
         Class<?> targetClass = potentialProxyClass;
-        if (targetClass != null && ProxyObject.class.isAssignableFrom(targetClass)) {
+        if (targetClass != null && (ProxyObject.class.isAssignableFrom(targetClass) || EnhancedEntity.class.isAssignableFrom(targetClass))) {
             targetClass = potentialProxyClass.getSuperclass();
         }
         return targetClass;
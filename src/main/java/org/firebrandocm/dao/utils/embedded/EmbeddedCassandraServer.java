@@ -1,10 +1,20 @@
 package org.firebrandocm.dao.utils.embedded;
 
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.config.Schema;
 import org.apache.cassandra.io.util.FileUtils;
+import org.apache.cassandra.service.StorageService;
 import org.apache.cassandra.thrift.CassandraDaemon;
 import org.apache.log4j.Logger;
 
 import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 /**
  * This class starts and stops embedded Cassandra server.
@@ -26,6 +36,26 @@ public class EmbeddedCassandraServer {
 
 	private boolean cleanupDirectories;
 
+	/**
+	 * the maximum time in milliseconds to wait for the server to accept Thrift connections
+	 */
+	private long startupTimeout = 60000;
+
+	/**
+	 * the interval in milliseconds between readiness checks
+	 */
+	private static final long READINESS_POLL_INTERVAL = 50;
+
+	/**
+	 * the timeout in milliseconds of each attempt to connect to the Thrift port
+	 */
+	private static final int CONNECT_TIMEOUT = 500;
+
+	/**
+	 * the failure that prevented the server from starting, if any
+	 */
+	private volatile Throwable startFailure;
+
     /* Constructors */
 
 	public EmbeddedCassandraServer(String baseDirectory) {
@@ -45,15 +75,24 @@ public class EmbeddedCassandraServer {
 		this.cleanupDirectories = cleanupDirectories;
 	}
 
+	/**
+	 * @param startupTimeout the maximum time in milliseconds to wait for the server to be ready
+	 */
+	public void setStartupTimeout(long startupTimeout) {
+		this.startupTimeout = startupTimeout;
+	}
+
     /* Misc */
 
 	/**
 	 * starts embedded Cassandra server.
+	 * The server starts in the background, {@link #awaitReady()} waits until it accepts connections
 	 *
 	 * @throws Exception
 	 *             if an error occurs
 	 */
 	public void start() throws Exception {
+		startFailure = null;
 		try {
 			if (cleanupDirectories) {
 				cleanupDirectoriesFailover();
@@ -70,6 +109,7 @@ public class EmbeddedCassandraServer {
 					try {
 						cassandraDaemon.start();
 					} catch (Exception e) {
+						startFailure = e;
 						logger.error("Embedded casandra server run failed", e);
 					}
 				}
@@ -77,6 +117,7 @@ public class EmbeddedCassandraServer {
 			cassandraThread.setDaemon(true);
 			cassandraThread.start();
 		} catch (Exception e) {
+			startFailure = e;
 			logger.error("Embedded casandra server start failed", e);
 
 			// cleanup
@@ -84,6 +125,83 @@ public class EmbeddedCassandraServer {
 		}
 	}
 
+	/**
+	 * starts embedded Cassandra server in the background.
+	 * The returned future completes once the server is ready, or fails if it doesn't get there within the startup timeout.
+	 * Cancelling the future stops waiting but not the server
+	 *
+	 * @return the readiness of the server
+	 * @throws Exception
+	 *             if an error occurs
+	 */
+	public Future<Void> startAsync() throws Exception {
+		start();
+		FutureTask<Void> readiness = new FutureTask<Void>(new Callable<Void>() {
+			public Void call() throws Exception {
+				awaitReady();
+				return null;
+			}
+		});
+		Thread readinessThread = new Thread(readiness, "EmbeddedCassandraServer-readiness");
+		readinessThread.setDaemon(true);
+		readinessThread.start();
+		return readiness;
+	}
+
+	/**
+	 * Polls the server until it is ready, it fails to start or the startup timeout expires
+	 *
+	 * @throws IllegalStateException if the server failed to start or isn't ready within the startup timeout
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public void awaitReady() throws Exception {
+		long start = System.currentTimeMillis();
+		while (!isReady()) {
+			if (startFailure != null) {
+				throw new IllegalStateException("Embedded cassandra server failed to start", startFailure);
+			}
+			if (System.currentTimeMillis() - start > startupTimeout) {
+				throw new IllegalStateException(String.format("Embedded cassandra server not ready after %d ms", startupTimeout));
+			}
+			Thread.sleep(READINESS_POLL_INTERVAL);
+		}
+		logger.info(String.format("Embedded cassandra server ready in %d ms", System.currentTimeMillis() - start));
+	}
+
+	/**
+	 * @return true if the Thrift port accepts connections and the node loaded its schema
+	 */
+	public boolean isReady() {
+		if (startFailure != null) {
+			return false;
+		}
+		Socket socket = new Socket();
+		try {
+			socket.connect(getRpcEndpoint(), CONNECT_TIMEOUT);
+		} catch (IOException e) {
+			return false;
+		} finally {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// ignore exception
+			}
+		}
+		return StorageService.instance.isRPCServerRunning() && Schema.instance.getVersion() != null;
+	}
+
+	/**
+	 * @return the address of the Thrift port clients connect to
+	 * @throws IOException if the address can't be resolved
+	 */
+	protected InetSocketAddress getRpcEndpoint() throws IOException {
+		InetAddress address = DatabaseDescriptor.getRpcAddress();
+		if (address == null || address.isAnyLocalAddress()) {
+			address = InetAddress.getByName(null);
+		}
+		return new InetSocketAddress(address, DatabaseDescriptor.getRpcPort());
+	}
+
 	/**
 	 * Cleans up cassandra's temporary base directory.
 	 *
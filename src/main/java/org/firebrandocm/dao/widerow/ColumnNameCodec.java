@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao.widerow;
+
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Encodes typed wide row column names as strings whose UTF8 order matches the natural order of the names, so the
+ * columns of a row sort as their typed names do in slices and ranges
+ */
+public abstract class ColumnNameCodec<N> {
+    /* Fields */
+
+	private static final ColumnNameCodec<String> STRING = new ColumnNameCodec<String>() {
+		@Override
+		public String encode(String name) {
+			return name;
+		}
+
+		@Override
+		public String decode(String name) {
+			return name;
+		}
+	};
+
+	private static final ColumnNameCodec<Long> LONG = new ColumnNameCodec<Long>() {
+		@Override
+		public String encode(Long name) {
+			return encodeLong(name);
+		}
+
+		@Override
+		public Long decode(String name) {
+			return decodeLong(name);
+		}
+	};
+
+	private static final ColumnNameCodec<Integer> INTEGER = new ColumnNameCodec<Integer>() {
+		@Override
+		public String encode(Integer name) {
+			return encodeLong(name);
+		}
+
+		@Override
+		public Integer decode(String name) {
+			return (int) decodeLong(name);
+		}
+	};
+
+	/**
+	 * doubles sort by their IEEE 754 bits once the magnitude bits of negative values are flipped
+	 */
+	private static final ColumnNameCodec<Double> DOUBLE = new ColumnNameCodec<Double>() {
+		@Override
+		public String encode(Double name) {
+			long bits = Double.doubleToLongBits(name);
+			return encodeLong(bits ^ (bits >> 63 & Long.MAX_VALUE));
+		}
+
+		@Override
+		public Double decode(String name) {
+			long bits = decodeLong(name);
+			return Double.longBitsToDouble(bits ^ (bits >> 63 & Long.MAX_VALUE));
+		}
+	};
+
+	private static final ColumnNameCodec<Date> DATE = new ColumnNameCodec<Date>() {
+		@Override
+		public String encode(Date name) {
+			return encodeLong(name.getTime());
+		}
+
+		@Override
+		public Date decode(String name) {
+			return new Date(decodeLong(name));
+		}
+	};
+
+	/**
+	 * time based UUIDs sort by their timestamp, then by their canonical representation
+	 */
+	private static final ColumnNameCodec<UUID> TIME_UUID = new ColumnNameCodec<UUID>() {
+		@Override
+		public String encode(UUID name) {
+			if (name.version() != 1) {
+				throw new IllegalArgumentException(String.format("%s is not a time based UUID", name));
+			}
+			return String.format("%015x%s", name.timestamp(), name);
+		}
+
+		@Override
+		public UUID decode(String name) {
+			return UUID.fromString(name.substring(15));
+		}
+	};
+
+    /* Static Methods */
+
+	/**
+	 * Gets the codec of a column name type
+	 *
+	 * @param type the column name type, one of String, Long, Integer, Double, Date or time based UUID
+	 * @param <N>  the column name type
+	 * @return the codec
+	 */
+	@SuppressWarnings("unchecked")
+	public static <N> ColumnNameCodec<N> forType(Class<N> type) {
+		ColumnNameCodec<?> codec;
+		if (String.class.equals(type)) {
+			codec = STRING;
+		} else if (Long.class.equals(type) || long.class.equals(type)) {
+			codec = LONG;
+		} else if (Integer.class.equals(type) || int.class.equals(type)) {
+			codec = INTEGER;
+		} else if (Double.class.equals(type) || double.class.equals(type)) {
+			codec = DOUBLE;
+		} else if (Date.class.equals(type)) {
+			codec = DATE;
+		} else if (UUID.class.equals(type)) {
+			codec = TIME_UUID;
+		} else {
+			throw new IllegalArgumentException(String.format("unsupported wide row column name type: %s", type));
+		}
+		return (ColumnNameCodec<N>) codec;
+	}
+
+	/**
+	 * Private helper that encodes a long as fixed width hex digits with the sign bit flipped so negative values sort first
+	 */
+	private static String encodeLong(long value) {
+		return String.format("%016x", value ^ Long.MIN_VALUE);
+	}
+
+	/**
+	 * Private helper that decodes a long encoded by {@link #encodeLong(long)}
+	 */
+	private static long decodeLong(String name) {
+		return (Long.parseLong(name.substring(0, 8), 16) << 32 | Long.parseLong(name.substring(8), 16)) ^ Long.MIN_VALUE;
+	}
+
+    /* Misc */
+
+	/**
+	 * @param name the typed column name
+	 * @return the column name as stored
+	 */
+	public abstract String encode(N name);
+
+	/**
+	 * @param name the column name as stored
+	 * @return the typed column name
+	 */
+	public abstract N decode(String name);
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao.widerow;
+
+import org.firebrandocm.dao.transport.RawColumn;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Streams the columns of a wide row slice reading them a page at a time, so rows with millions of columns can be
+ * traversed without holding them in memory. Each page after the first starts at the last column returned, which is
+ * read again and skipped
+ */
+public abstract class ColumnSliceIterator<N, V> implements Iterator<WideColumn<N, V>> {
+    /* Fields */
+
+	/**
+	 * the number of columns returned by each page
+	 */
+	private final int pageSize;
+
+	/**
+	 * the name of the first column of the slice, null to start at the beginning of the row
+	 */
+	private final String start;
+
+	/**
+	 * the name of the last column returned, null until the first page is read
+	 */
+	private String last;
+
+	/**
+	 * the columns of the current page not returned yet
+	 */
+	private Iterator<RawColumn> page = Collections.<RawColumn>emptyList().iterator();
+
+	/**
+	 * whether the last page has been read
+	 */
+	private boolean exhausted;
+
+    /* Constructors */
+
+	/**
+	 * Constructs an iterator
+	 * @param start the name of the first column of the slice, null to start at the beginning of the row
+	 * @param pageSize the number of columns returned by each page
+	 */
+	protected ColumnSliceIterator(String start, int pageSize) {
+		if (pageSize < 1) {
+			throw new IllegalArgumentException(String.format("page size must be positive: %d", pageSize));
+		}
+		this.start = start;
+		this.pageSize = pageSize;
+	}
+
+    /* Interface Implementations */
+
+	public boolean hasNext() {
+		while (!page.hasNext() && !exhausted) {
+			nextPage();
+		}
+		return page.hasNext();
+	}
+
+	public WideColumn<N, V> next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return decode(page.next());
+	}
+
+	public void remove() {
+		throw new UnsupportedOperationException("wide row columns are read only through a slice iterator");
+	}
+
+    /* Misc */
+
+	/**
+	 * Private helper that reads the next page, one column larger than the page size after the first page as it starts
+	 * at the last column already returned
+	 */
+	private void nextPage() {
+		int count = last == null ? pageSize : pageSize + 1;
+		List<RawColumn> columns = readPage(last == null ? start : last, count);
+		exhausted = columns.size() < count;
+		if (last != null && !columns.isEmpty() && columns.get(0).getName().equals(last)) {
+			columns = columns.subList(1, columns.size());
+		}
+		if (!columns.isEmpty()) {
+			last = columns.get(columns.size() - 1).getName();
+		}
+		page = columns.iterator();
+	}
+
+	/**
+	 * Reads a page of the slice
+	 *
+	 * @param from  the name of the first column of the page, null to start at the beginning of the slice
+	 * @param count the maximum number of columns to read
+	 * @return the columns in slice order
+	 */
+	protected abstract List<RawColumn> readPage(String from, int count);
+
+	/**
+	 * Decodes a column read from the row
+	 *
+	 * @param column the column
+	 * @return the typed column
+	 */
+	protected abstract WideColumn<N, V> decode(RawColumn column);
+}
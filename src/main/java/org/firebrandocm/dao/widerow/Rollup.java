@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao.widerow;
+
+import org.firebrandocm.dao.annotations.Granularity;
+
+import java.util.Date;
+
+/**
+ * The layout of the rollup rows maintained for counters increased through a {@link org.firebrandocm.dao.annotations.CounterIncrease}
+ * declaring rollups. Every entity counter has a counter row per granularity in the rollup column family, holding a
+ * column per time bucket named after the bucket start as a {@link Date} wide row column name, so a time range of
+ * buckets is read as a single column slice
+ */
+public final class Rollup {
+    /* Fields */
+
+	/**
+	 * the suffix appended to the entity column family to name its rollup column family
+	 */
+	public static final String COLUMN_FAMILY_SUFFIX = "_rollup";
+
+    /* Constructors */
+
+	private Rollup() {
+	}
+
+    /* Static Methods */
+
+	/**
+	 * @param key the entity key
+	 * @param counter the counter property
+	 * @param granularity the bucket granularity
+	 * @return the key of the rollup row holding the buckets of the counter
+	 */
+	public static String getRowKey(String key, String counter, Granularity granularity) {
+		return String.format("%s:%s:%s", key, counter, granularity.name());
+	}
+
+	/**
+	 * @param granularity the bucket granularity
+	 * @param time a time in milliseconds
+	 * @return the name of the column of the bucket holding the time
+	 */
+	public static String getColumnName(Granularity granularity, long time) {
+		return ColumnNameCodec.forType(Date.class).encode(new Date(granularity.truncate(time)));
+	}
+
+	/**
+	 * @param columnName the name of a rollup column
+	 * @return the start of the bucket
+	 */
+	public static Date getBucket(String columnName) {
+		return ColumnNameCodec.forType(Date.class).decode(columnName);
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.dao.widerow;
+
+/**
+ * A typed column of a wide row, such as a point of a time series
+ */
+public final class WideColumn<N, V> {
+    /* Fields */
+
+	/**
+	 * the column name
+	 */
+	private final N name;
+
+	/**
+	 * the column value
+	 */
+	private final V value;
+
+    /* Constructors */
+
+	/**
+	 * Constructs a column
+	 * @param name the column name
+	 * @param value the column value
+	 */
+	public WideColumn(N name, V value) {
+		this.name = name;
+		this.value = value;
+	}
+
+    /* Getters & Setters */
+
+	/**
+	 * @return the column name
+	 */
+	public N getName() {
+		return name;
+	}
+
+	/**
+	 * @return the column value
+	 */
+	public V getValue() {
+		return value;
+	}
+
+    /* Canonical Methods */
+
+	@Override
+	public String toString() {
+		return String.format("%s=%s", name, value);
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.tests;
+
+import org.firebrandocm.dao.events.*;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.Assert.*;
+
+/**
+ * Verifies the async event dispatcher delivery and overflow policies
+ */
+public class AsyncEventDispatcherTest {
+
+	@Test
+	public void testDeliversAllEvents() throws Exception {
+		final AtomicInteger received = new AtomicInteger();
+		List<ColumnEventListener> listeners = Collections.<ColumnEventListener>singletonList(new ColumnEventListener() {
+			public void onEvent(ColumnEvent event) {
+				assertEquals(Event.Column.PRE_COLUMN_MUTATION, event.getEvent());
+				received.incrementAndGet();
+			}
+		});
+		AsyncEventDispatcher dispatcher = new AsyncEventDispatcher(null, 6, 2, OverflowPolicy.BLOCK);
+		assertEquals(8, dispatcher.getCapacity());
+		for (int i = 0; i < 1000; i++) {
+			dispatcher.publishColumnEvent(listeners, Event.Column.PRE_COLUMN_MUTATION, null, "property", "key", "cf", null);
+		}
+		dispatcher.shutdown();
+		assertEquals(1000, received.get());
+		assertEquals(0, dispatcher.getDroppedEvents());
+	}
+
+	@Test
+	public void testOverflowPolicies() throws Exception {
+		final Semaphore started = new Semaphore(0);
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger callerRuns = new AtomicInteger();
+		final Thread caller = Thread.currentThread();
+		List<EntityEventListener> listeners = Arrays.<EntityEventListener>asList(new EntityEventListener() {
+			public void onEvent(EntityEvent event) {
+				if (Thread.currentThread() == caller) {
+					callerRuns.incrementAndGet();
+					return;
+				}
+				started.release();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		});
+		AsyncEventDispatcher dropping = new AsyncEventDispatcher(null, 2, 1, OverflowPolicy.DROP);
+		dropping.publishEntityEvent(listeners, Event.Entity.POST_PERSIST, new Object[0]);
+		assertTrue(started.tryAcquire(5, TimeUnit.SECONDS));
+		for (int i = 0; i < 5; i++) {
+			dropping.publishEntityEvent(listeners, Event.Entity.POST_PERSIST, new Object[0]);
+		}
+		assertEquals(3, dropping.getDroppedEvents());
+
+		AsyncEventDispatcher callerRunning = new AsyncEventDispatcher(null, 1, 1, OverflowPolicy.CALLER_RUNS);
+		callerRunning.publishEntityEvent(listeners, Event.Entity.POST_PERSIST, new Object[0]);
+		assertTrue(started.tryAcquire(5, TimeUnit.SECONDS));
+		for (int i = 0; i < 3; i++) {
+			callerRunning.publishEntityEvent(listeners, Event.Entity.POST_PERSIST, new Object[0]);
+		}
+		assertEquals(2, callerRuns.get());
+		release.countDown();
+		dropping.shutdown();
+		callerRunning.shutdown();
+	}
+}
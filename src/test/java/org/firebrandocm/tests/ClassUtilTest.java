@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.tests;
+
+import org.firebrandocm.dao.annotations.ColumnFamily;
+import org.firebrandocm.dao.annotations.processing.ColumnFamilyIndexProcessor;
+import org.firebrandocm.dao.utils.ClassUtil;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runners.BlockJUnit4ClassRunner;
+
+import java.io.*;
+import java.lang.annotation.Retention;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.HashSet;
+import java.util.List;
+
+import static junit.framework.Assert.*;
+
+/**
+ * Verifies the compile time entity index and the class path scan fallback
+ */
+public class ClassUtilTest {
+
+	private final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+
+	@Test
+	public void testIndexedEntities() throws Exception {
+		List<Class<?>> indexed = ClassUtil.getIndexed(classLoader, "org.firebrandocm.tests");
+		assertTrue(indexed.contains(FirstEntity.class));
+		assertTrue(indexed.contains(SecondEntity.class));
+		assertTrue(indexed.contains(FirstEntityCounter.class));
+		assertFalse(indexed.contains(OtherEntity.class));
+		assertEquals(indexed, ClassUtil.get("org.firebrandocm.tests", ColumnFamily.class));
+		assertTrue(ClassUtil.getIndexed(classLoader, "org.firebrandocm.missing").isEmpty());
+	}
+
+	@Test
+	public void testDirectoryScanMatchesIndex() throws Exception {
+		List<Class<?>> scanned = ClassUtil.scan(classLoader, "org.firebrandocm.tests", ColumnFamily.class);
+		assertEquals(new HashSet<Class<?>>(ClassUtil.getIndexed(classLoader, "org.firebrandocm.tests")), new HashSet<Class<?>>(scanned));
+	}
+
+	@Test
+	public void testRootsWithoutIndexAreScanned() throws Exception {
+		File indexedRoot = createRoot("indexed", FirstEntity.class);
+		File plainRoot = createRoot("plain", SecondEntity.class);
+		Writer index = new OutputStreamWriter(new FileOutputStream(createFile(indexedRoot, ColumnFamilyIndexProcessor.INDEX_RESOURCE)), "UTF-8");
+		try {
+			index.write(FirstEntity.class.getName() + "\n");
+		} finally {
+			index.close();
+		}
+		ClassLoader rootsLoader = new URLClassLoader(new URL[]{indexedRoot.toURI().toURL(), plainRoot.toURI().toURL()}, null);
+		Thread.currentThread().setContextClassLoader(rootsLoader);
+		try {
+			List<Class<?>> classes = ClassUtil.get("org.firebrandocm.tests", ColumnFamily.class);
+			assertEquals(2, classes.size());
+			assertEquals(FirstEntity.class.getName(), classes.get(0).getName());
+			assertEquals(SecondEntity.class.getName(), classes.get(1).getName());
+			assertSame(rootsLoader, classes.get(1).getClassLoader());
+		} finally {
+			Thread.currentThread().setContextClassLoader(classLoader);
+		}
+	}
+
+	@Test
+	public void testJarScan() throws Exception {
+		assertTrue(ClassUtil.scan(classLoader, "org.junit.runners", null).contains(BlockJUnit4ClassRunner.class));
+		List<Class<?>> annotated = ClassUtil.scan(classLoader, "org.junit", Retention.class);
+		assertTrue(annotated.contains(Test.class));
+		assertFalse(annotated.contains(Assert.class));
+	}
+
+	/**
+	 * Private helper that creates a classpath root directory holding a copy of the given class files
+	 */
+	private static File createRoot(String name, Class<?>... classes) throws IOException {
+		File root = new File("target/roots/" + name);
+		for (Class<?> copied : classes) {
+			String resource = copied.getName().replace('.', '/') + ".class";
+			InputStream in = copied.getClassLoader().getResourceAsStream(resource);
+			OutputStream out = new FileOutputStream(createFile(root, resource));
+			try {
+				byte[] buffer = new byte[4096];
+				for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+					out.write(buffer, 0, read);
+				}
+			} finally {
+				in.close();
+				out.close();
+			}
+		}
+		return root;
+	}
+
+	/**
+	 * Private helper that resolves a file under a root creating its parent directories
+	 */
+	private static File createFile(File root, String resource) {
+		File file = new File(root, resource);
+		file.getParentFile().mkdirs();
+		return file;
+	}
+}
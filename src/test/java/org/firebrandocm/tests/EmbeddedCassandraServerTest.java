@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.tests;
+
+import org.firebrandocm.dao.utils.embedded.EmbeddedCassandraServer;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+
+import static junit.framework.Assert.*;
+
+/**
+ * Verifies the embedded server readiness checks without starting a Cassandra node
+ */
+public class EmbeddedCassandraServerTest {
+
+	@Test
+	public void testAwaitReadyTimesOutWhenThePortNeverOpens() throws Exception {
+		EmbeddedCassandraServer server = serverListeningOn(closedPort());
+		server.setStartupTimeout(200);
+		assertFalse(server.isReady());
+		long start = System.currentTimeMillis();
+		try {
+			server.awaitReady();
+			fail("the server should not have been ready");
+		} catch (IllegalStateException e) {
+			assertEquals("Embedded cassandra server not ready after 200 ms", e.getMessage());
+		}
+		long elapsed = System.currentTimeMillis() - start;
+		assertTrue(elapsed >= 200);
+		assertTrue(elapsed < 10000);
+	}
+
+	private int closedPort() throws IOException {
+		ServerSocket socket = new ServerSocket(0);
+		try {
+			return socket.getLocalPort();
+		} finally {
+			socket.close();
+		}
+	}
+
+	private EmbeddedCassandraServer serverListeningOn(final int port) {
+		return new EmbeddedCassandraServer("target/tmp/EmbeddedCassandraServerTest") {
+			@Override
+			protected InetSocketAddress getRpcEndpoint() throws IOException {
+				return new InetSocketAddress(InetAddress.getByName(null), port);
+			}
+		};
+	}
+}
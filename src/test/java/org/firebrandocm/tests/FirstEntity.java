@@ -34,10 +34,16 @@ import java.util.UUID;
 		@NamedQuery(name = FirstEntity.QUERY_ALL_ENTITIES, query = "select * from FirstEntity"),
 		@NamedQuery(name = FirstEntity.QUERY_ALL_ENTITIES_WITH_PARAMS, query = "select * from FirstEntity where KEY = :key")
 })
+@FetchGroup(name = FirstEntity.FETCH_SUMMARY, properties = {"name", "phone"})
+@View(name = FirstEntity.VIEW_BY_NAME_AND_PHONE, key = {"name", "phone"}, columns = {"name", "phone", "score"})
 public class FirstEntity {
 	
 	public static final String QUERY_ALL_ENTITIES = "FirstEntity.QUERY_ALL_ENTITIES";
 
+	public static final String FETCH_SUMMARY = "FirstEntity.FETCH_SUMMARY";
+
+	public static final String VIEW_BY_NAME_AND_PHONE = "FirstEntityByNameAndPhone";
+
 	public static final String QUERY_ALL_ENTITIES_WITH_PARAMS = "FirstEntity.QUERY_ALL_ENTITIES_WITH_PARAMS";
 
     @Key
@@ -52,7 +58,7 @@ public class FirstEntity {
 	@Column(indexed = true, validationClass = LongType.class)
 	private Long phone;
 
-	@Column(indexed = true, validationClass = DoubleType.class)
+	@Column(indexed = true, validationClass = DoubleType.class, orderedIndex = true, orderedIndexBuckets = 4)
 	private Double score;
 
 	@Column(indexed = true, validationClass = LongType.class)
@@ -88,6 +94,7 @@ public class FirstEntity {
 	@Embedded
 	private OtherEntity otherEntity;
 
+	@Column(lookupIndex = true)
 	private String changedColumnName;
 
 	@Column(validationClass = BytesType.class)
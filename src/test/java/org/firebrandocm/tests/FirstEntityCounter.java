@@ -30,7 +30,7 @@ public class FirstEntityCounter {
 	@Column(counter = true, validationClass = CounterColumnType.class)
 	private long counterProperty;
 
-	@CounterIncrease("counterProperty")
+	@CounterIncrease(value = "counterProperty", rollups = {Granularity.HOUR, Granularity.DAY})
 	private long counterPropertyIncreaseBy;
 
 	public String getId() {
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.tests;
+
+import org.apache.cassandra.thrift.ColumnDef;
+import org.firebrandocm.dao.ClassMetadata;
+import org.firebrandocm.dao.EnhancedEntity;
+import org.firebrandocm.dao.PrimitiveAccessor;
+import org.firebrandocm.dao.ViewMetadata;
+import org.firebrandocm.dao.events.Event;
+import org.firebrandocm.dao.impl.hector.HectorPersistenceFactory;
+import org.firebrandocm.dao.utils.ObjectUtils;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static junit.framework.Assert.*;
+
+/**
+ * Verifies the metadata generated at compile time describes entities exactly as the reflective metadata does
+ */
+public class GeneratedMetadataTest {
+
+	@Test
+	public void testGeneratedMetadataMatchesReflection() throws Exception {
+		assertSameMetadata(FirstEntity.class);
+		assertSameMetadata(SecondEntity.class);
+		assertSameMetadata(FirstEntityCounter.class);
+		assertSameMetadata(MetricSeries.class);
+		assertSameMetadata(MetricCounters.class);
+	}
+
+	@Test
+	public void testEnhancedInstances() throws Exception {
+		ClassMetadata<FirstEntity> metadata = new ClassMetadata<FirstEntity>(FirstEntity.class, newFactory());
+		try {
+			FirstEntity entity = metadata.createProxy();
+			assertTrue(entity instanceof EnhancedEntity);
+			assertEquals(FirstEntity.class, ObjectUtils.getRealClass(entity.getClass()));
+			assertEquals("hugeDescription", metadata.getLazyProperty(FirstEntity.class.getMethod("getHugeDescription")));
+			assertNotNull(metadata.getListenersForEvent(Event.Entity.PRE_PERSIST));
+			assertEquals(Arrays.asList("name", "phone"), Arrays.asList(metadata.getFetchGroup(FirstEntity.FETCH_SUMMARY)));
+		} finally {
+			metadata.destroy();
+		}
+		ClassMetadata<SecondEntity> withoutLazyProperties = new ClassMetadata<SecondEntity>(SecondEntity.class, newFactory());
+		assertEquals(SecondEntity.class, withoutLazyProperties.createProxy().getClass());
+	}
+
+	@Test
+	public void testListenerExceptionsAreWrapped() throws Exception {
+		assertListenerExceptionWrapped(new ClassMetadata<FailingListenerEntity>(FailingListenerEntity.class, newFactory()));
+		assertListenerExceptionWrapped(new ClassMetadata<FailingListenerEntity>(FailingListenerEntity.class, newFactory(), false));
+	}
+
+	private void assertListenerExceptionWrapped(ClassMetadata<FailingListenerEntity> metadata) {
+		try {
+			metadata.invokeListeners(Event.Entity.PRE_DELETE, new FailingListenerEntity());
+			fail("the listener exception should have been rethrown");
+		} catch (RuntimeException e) {
+			assertTrue(e.getCause() instanceof InvocationTargetException);
+			assertTrue(e.getCause().getCause() instanceof IllegalStateException);
+			assertEquals("listener failure", e.getCause().getCause().getMessage());
+		} finally {
+			metadata.destroy();
+		}
+	}
+
+	private <T> void assertSameMetadata(Class<T> entityClass) throws Exception {
+		ClassMetadata<T> reflective = new ClassMetadata<T>(entityClass, newFactory(), false);
+		reflective.destroy();
+		ClassMetadata<T> generated = new ClassMetadata<T>(entityClass, newFactory());
+		try {
+			assertEquals(reflective.getColumnFamily(), generated.getColumnFamily());
+			assertEquals(reflective.getKeySpace(), generated.getKeySpace());
+			assertEquals(reflective.getConsistencyLevel(), generated.getConsistencyLevel());
+			assertEquals(reflective.getKeyProperty(), generated.getKeyProperty());
+			assertEquals(reflective.isCounterColumnFamily(), generated.isCounterColumnFamily());
+			assertEquals(reflective.getWideRowNameClass(), generated.getWideRowNameClass());
+			assertEquals(reflective.getWideRowValueClass(), generated.getWideRowValueClass());
+			assertEquals(reflective.getPropertiesTypesMap(), generated.getPropertiesTypesMap());
+			assertEquals(reflective.getPropertyContainerMap(), generated.getPropertyContainerMap());
+			assertEquals(reflective.getMutationProperties(), generated.getMutationProperties());
+			assertEquals(reflective.getSelectionProperties(), generated.getSelectionProperties());
+			assertEquals(reflective.getIndexedProperties(), generated.getIndexedProperties());
+			assertEquals(reflective.getMappedProperties(), generated.getMappedProperties());
+			assertEquals(reflective.getEntityEventMask(), generated.getEntityEventMask());
+			assertEquals(reflective.getOrderedIndexes(), generated.getOrderedIndexes());
+			assertEquals(reflective.getLookupIndexes(), generated.getLookupIndexes());
+			assertEquals(views(reflective), views(generated));
+			for (String property : reflective.getPropertiesTypesMap().keySet()) {
+				assertEquals(property, reflective.isLazyProperty(property), generated.isLazyProperty(property));
+				assertEquals(property, reflective.isMappedCollection(property), generated.isMappedCollection(property));
+				assertEquals(property, reflective.isCounterProperty(property), generated.isCounterProperty(property));
+				assertEquals(property, reflective.isCounterIncreaseProperty(property), generated.isCounterIncreaseProperty(property));
+				assertEquals(property, reflective.getRollups(property), generated.getRollups(property));
+			}
+			assertEquals(accessorProperties(reflective), accessorProperties(generated));
+			assertEquals(columnDefinitions(reflective), columnDefinitions(generated));
+			reflective.getColumnFamilyDefinition().setColumn_metadata(null);
+			generated.getColumnFamilyDefinition().setColumn_metadata(null);
+			assertEquals(reflective.getColumnFamilyDefinition(), generated.getColumnFamilyDefinition());
+			assertEquals(reflective.getRollupDefinition(), generated.getRollupDefinition());
+			assertEquals(reflective.getOrderedIndexDefinition(), generated.getOrderedIndexDefinition());
+			assertEquals(reflective.getLookupIndexDefinition(), generated.getLookupIndexDefinition());
+			for (ViewMetadata view : reflective.getViews()) {
+				assertEquals(view.getName(), view.getColumnFamilyDefinition(), generated.getView(view.getName()).getColumnFamilyDefinition());
+			}
+		} finally {
+			generated.destroy();
+		}
+	}
+
+	private Set<ColumnDef> columnDefinitions(ClassMetadata<?> metadata) {
+		List<ColumnDef> definitions = metadata.getColumnFamilyDefinition().getColumn_metadata();
+		return definitions != null ? new HashSet<ColumnDef>(definitions) : Collections.<ColumnDef>emptySet();
+	}
+
+	private List<String> views(ClassMetadata<?> metadata) {
+		List<String> views = new ArrayList<String>();
+		for (ViewMetadata view : metadata.getViews()) {
+			views.add(view.toString());
+		}
+		return views;
+	}
+
+	private Set<String> accessorProperties(ClassMetadata<?> metadata) {
+		Set<String> properties = new HashSet<String>();
+		for (PrimitiveAccessor accessor : metadata.getPrimitiveAccessors()) {
+			properties.add(accessor.getProperty() + ":" + accessor.getType());
+		}
+		return properties;
+	}
+
+	private HectorPersistenceFactory newFactory() {
+		HectorPersistenceFactory factory = new HectorPersistenceFactory();
+		factory.setDefaultKeySpace("GeneratedMetadataTest");
+		return factory;
+	}
+}
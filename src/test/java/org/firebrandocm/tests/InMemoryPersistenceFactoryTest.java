@@ -0,0 +1,895 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.tests;
+
+import me.prettyprint.hector.api.beans.HColumn;
+import org.firebrandocm.dao.CountEstimate;
+import org.firebrandocm.dao.PersistenceFactory;
+import org.firebrandocm.dao.Projection;
+import org.firebrandocm.dao.Query;
+import org.firebrandocm.dao.RowCursor;
+import org.firebrandocm.dao.ViewMetadata;
+import org.firebrandocm.dao.aggregation.Aggregation;
+import org.firebrandocm.dao.annotations.Granularity;
+import org.firebrandocm.dao.events.BatchEntityEventListener;
+import org.firebrandocm.dao.events.ColumnEvent;
+import org.firebrandocm.dao.events.ColumnEventListener;
+import org.firebrandocm.dao.events.EntityEvent;
+import org.firebrandocm.dao.events.EntityEventListener;
+import org.firebrandocm.dao.events.Event;
+import org.firebrandocm.dao.events.OverflowPolicy;
+import org.firebrandocm.dao.impl.memory.InMemoryPersistenceFactory;
+import org.firebrandocm.dao.metrics.Counter;
+import org.firebrandocm.dao.metrics.DefaultMetricsRecorder;
+import org.firebrandocm.dao.planner.IndexStatistics;
+import org.firebrandocm.dao.planner.LookupIndex;
+import org.firebrandocm.dao.planner.OrderedIndex;
+import org.firebrandocm.dao.planner.QueryPlan;
+import org.firebrandocm.dao.transport.MutationBatch;
+import org.firebrandocm.dao.transport.RawColumn;
+import org.firebrandocm.dao.transport.RawRow;
+import org.firebrandocm.dao.transport.Transport;
+import org.firebrandocm.dao.widerow.ColumnSliceIterator;
+import org.firebrandocm.dao.widerow.WideColumn;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.*;
+import static org.firebrandocm.dao.cql.QueryBuilder.*;
+
+/**
+ * Verifies the in memory persistence factory and its CQL interpreter without a Cassandra server
+ */
+public class InMemoryPersistenceFactoryTest {
+
+	private static InMemoryPersistenceFactory factory;
+
+	@BeforeClass
+	public static void init() throws Exception {
+		factory = new InMemoryPersistenceFactory();
+		factory.setDefaultKeySpace("FirebrandTestKeyspace");
+		factory.setEntities(Arrays.<Class<?>>asList(FirstEntity.class, SecondEntity.class, FirstEntityCounter.class, MetricSeries.class, MetricCounters.class));
+		factory.init();
+	}
+
+	@AfterClass
+	public static void destroy() {
+		factory.destroy();
+	}
+
+	@Before
+	public void setup() {
+		factory.executeQuery(Void.class, Query.get(truncate(columnFamily(FirstEntity.class))));
+		factory.executeQuery(Void.class, Query.get(truncate(columnFamily(FirstEntityCounter.class))));
+	}
+
+	private FirstEntity entity(String id, String name, long phone) {
+		FirstEntity entity = factory.getInstance(FirstEntity.class);
+		entity.setId(id);
+		entity.setName(name);
+		entity.setPhone(phone);
+		return entity;
+	}
+
+	@Test
+	public void testPersistGetAndRemove() {
+		FirstEntity entity = entity("a", "first", 1L);
+		entity.setDate(new Date(1000));
+		factory.persist(entity);
+		FirstEntity loaded = factory.get(FirstEntity.class, "a");
+		assertEquals("first", loaded.getName());
+		assertEquals(Long.valueOf(1), loaded.getPhone());
+		assertEquals(new Date(1000), loaded.getDate());
+		loaded.setName(null);
+		factory.persist(loaded);
+		assertNull(factory.get(FirstEntity.class, "a").getName());
+		factory.remove(loaded);
+		assertNull(factory.get(FirstEntity.class, "a"));
+	}
+
+	@Test
+	public void testSelectPredicates() {
+		factory.persist(entity("a", "x", 1L), entity("b", "y", 2L), entity("c", "x", 3L), entity("d", "y", 4L));
+		List<FirstEntity> results = factory.getResultList(FirstEntity.class, Query.get(select(allColumns(), from(FirstEntity.class), where(keyIn("d", "a", "b")))));
+		assertEquals(3, results.size());
+		assertEquals("d", results.get(0).getId());
+		assertEquals("a", results.get(1).getId());
+		results = factory.getResultList(FirstEntity.class, Query.get(select(allColumns(), from(FirstEntity.class), where(eq("name", "x"), gte("phone", 2L)))));
+		assertEquals(1, results.size());
+		assertEquals("c", results.get(0).getId());
+		results = factory.getResultList(FirstEntity.class, Query.get(select(allColumns(), from(FirstEntity.class), where(startAt("b")), limit(2))));
+		assertEquals(2, results.size());
+		assertEquals("b", results.get(0).getId());
+		assertEquals("c", results.get(1).getId());
+		Long count = factory.getSingleResult(Long.class, Query.get(select(count(), from(FirstEntity.class), where(between("phone", 2L, 4L)))));
+		assertEquals(Long.valueOf(3), count);
+	}
+
+	@Test
+	public void testGetReadsEagerColumns() {
+		List<String> columns = Arrays.asList(factory.getClassMetadata(FirstEntity.class).getSelectionColumns());
+		assertTrue(columns.contains("name"));
+		assertTrue(columns.contains(PersistenceFactory.CLASS_PROPERTY));
+		assertFalse(columns.contains("id"));
+		assertFalse(columns.contains("hugeDescription"));
+		assertFalse(columns.contains("secondLazyMappedEntity"));
+		FirstEntity entity = entity("a", "first", 1L);
+		entity.setHugeDescription("huge");
+		factory.persist(entity);
+		FirstEntity loaded = factory.get(FirstEntity.class, "a");
+		assertEquals("first", loaded.getName());
+		assertEquals("huge", loaded.getHugeDescription());
+	}
+
+	@Test
+	public void testLazyLoadCacheHits() {
+		FirstEntity entity = entity("a", "first", 1L);
+		entity.setHugeDescription("huge");
+		factory.persist(entity);
+		DefaultMetricsRecorder recorder = new DefaultMetricsRecorder();
+		factory.setMetricsRecorder(recorder);
+		try {
+			String columnFamily = factory.getClassMetadata(FirstEntity.class).getColumnFamily();
+			assertEquals("huge", entity.getHugeDescription());
+			assertNull(recorder.getColumnFamilyMetrics(columnFamily));
+			FirstEntity loaded = factory.get(FirstEntity.class, "a");
+			assertEquals("huge", loaded.getHugeDescription());
+			assertEquals(0, recorder.getColumnFamilyMetrics(columnFamily).getCount(Counter.CACHE_HITS));
+			assertEquals(1, recorder.getColumnFamilyMetrics(columnFamily).getCount(Counter.CACHE_MISSES));
+			assertEquals("huge", loaded.getHugeDescription());
+			assertEquals(1, recorder.getColumnFamilyMetrics(columnFamily).getCount(Counter.CACHE_HITS));
+			assertEquals(1, recorder.getColumnFamilyMetrics(columnFamily).getCount(Counter.CACHE_MISSES));
+		} finally {
+			factory.setMetricsRecorder(null);
+		}
+	}
+
+	@Test
+	public void testProjection() {
+		List<String> columns = Arrays.asList(factory.getClassMetadata(FirstEntity.class).getProjectionColumns(Projection.fetchGroup(FirstEntity.FETCH_SUMMARY)));
+		assertTrue(columns.contains("name"));
+		assertTrue(columns.contains("phone"));
+		assertTrue(columns.contains(PersistenceFactory.CLASS_PROPERTY));
+		assertFalse(columns.contains("description"));
+		FirstEntity a = entity("a", "x", 1L);
+		a.setDescription("first");
+		FirstEntity b = entity("b", "y", 2L);
+		b.setDescription("second");
+		factory.persist(a, b);
+		List<FirstEntity> results = factory.getResultList(FirstEntity.class, Query.get(select(allColumns(), from(FirstEntity.class), where(keyIn("a", "b")))),
+				Projection.fetchGroup(FirstEntity.FETCH_SUMMARY));
+		assertEquals(2, results.size());
+		assertEquals("x", results.get(0).getName());
+		assertEquals(Long.valueOf(1), results.get(0).getPhone());
+		assertEquals("first", results.get(0).getDescription());
+		results.get(1).setDescription("changed");
+		assertEquals("changed", results.get(1).getDescription());
+		FirstEntity loaded = factory.get(FirstEntity.class, "b", Projection.properties("description"));
+		assertEquals("second", loaded.getDescription());
+		assertEquals("y", loaded.getName());
+		assertNull(factory.get(FirstEntity.class, "z", Projection.properties("name")));
+		try {
+			factory.get(FirstEntity.class, "a", Projection.properties("unknown"));
+			fail("unknown properties can't be projected");
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+	}
+
+	@Test
+	public void testQueryPlanner() {
+		for (int i = 0; i < 10; i++) {
+			FirstEntity entity = entity("k" + i, i % 2 == 0 ? "even" : "odd", i);
+			entity.setDescription(i < 5 ? "low" : "high");
+			factory.persist(entity);
+		}
+		factory.setQueryPlanPageSize(2);
+		try {
+			QueryPlan<FirstEntity> plan = factory.plan(FirstEntity.class, type(FirstEntity.class), eq("name", "even"), eq("description", "high"), gt("phone", 5L));
+			assertEquals(QueryPlan.Strategy.INDEX_SCAN, plan.getStrategy());
+			assertEquals("name", plan.getIndexPredicate().getColumn());
+			assertEquals(3, plan.getFilters().size());
+			assertTrue(plan.explain().startsWith("INDEX SCAN FirstEntity ON 'name' = 'even'"));
+			List<FirstEntity> results = factory.getResultList(plan, 10);
+			assertEquals(2, results.size());
+			assertEquals("k6", results.get(0).getId());
+			assertEquals("k8", results.get(1).getId());
+			assertEquals(1, factory.getResultList(plan, 1).size());
+
+			factory.setIndexStatistics(new IndexStatistics() {
+				public long getCardinality(String columnFamily, String column) {
+					return "description".equals(column) ? 2 : 1;
+				}
+			});
+			plan = factory.plan(FirstEntity.class, eq("name", "even"), eq("description", "high"));
+			assertEquals("description", plan.getIndexPredicate().getColumn());
+			assertEquals(2, plan.getCardinality());
+			assertEquals(2, factory.getResultList(plan, 10).size());
+
+			plan = factory.plan(FirstEntity.class, between("phone", 2L, 7L), lt("phone", 7L));
+			assertEquals(QueryPlan.Strategy.RANGE_SCAN, plan.getStrategy());
+			assertEquals(5, factory.getResultList(plan, 10).size());
+
+			plan = factory.plan(FirstEntity.class, keyIn("k3", "k4", "missing"), eq("name", "odd"));
+			assertEquals(QueryPlan.Strategy.KEY_LOOKUP, plan.getStrategy());
+			results = factory.getResultList(plan, 10);
+			assertEquals(1, results.size());
+			assertEquals("k3", results.get(0).getId());
+		} finally {
+			factory.setQueryPlanPageSize(100);
+			factory.setIndexStatistics(null);
+		}
+	}
+
+	@Test
+	public void testOrderedIndex() {
+		for (int i = 0; i < 10; i++) {
+			FirstEntity entity = entity("k" + i, "name", i);
+			entity.setScore((i - 3) * 1.5);
+			factory.persist(entity);
+		}
+		factory.setQueryPlanPageSize(2);
+		try {
+			QueryPlan<FirstEntity> plan = factory.plan(FirstEntity.class, gt("score", -3.0), lte("score", 3.0), eq("name", "name"));
+			assertEquals(QueryPlan.Strategy.INDEX_SCAN, plan.getStrategy());
+			plan = factory.plan(FirstEntity.class, type(FirstEntity.class), gt("score", -3.0), lte("score", 3.0));
+			assertEquals(QueryPlan.Strategy.ORDERED_INDEX_SCAN, plan.getStrategy());
+			assertEquals(2, plan.getRangePredicates().size());
+			assertTrue(plan.explain().startsWith("ORDERED INDEX SCAN FirstEntity ON 'score' > '-3.0' AND 'score' <= '3.0'"));
+			List<FirstEntity> results = factory.getResultList(plan, 10);
+			List<String> keys = new ArrayList<String>();
+			for (FirstEntity result : results) {
+				keys.add(result.getId());
+			}
+			assertEquals(Arrays.asList("k2", "k3", "k4", "k5"), keys);
+			assertEquals(2, factory.getResultList(plan, 2).size());
+
+			FirstEntity moved = factory.get(FirstEntity.class, "k9");
+			moved.setScore(0.5);
+			factory.persist(moved);
+			factory.remove(factory.get(FirstEntity.class, "k4"));
+			results = factory.getResultList(factory.plan(FirstEntity.class, between("score", 0.0, 2.0)), 10);
+			assertEquals(2, results.size());
+			assertEquals("k3", results.get(0).getId());
+			assertEquals("k9", results.get(1).getId());
+			assertEquals(1, factory.getResultList(factory.plan(FirstEntity.class, gte("score", 7.5)), 10).size());
+			assertTrue(factory.getResultList(factory.plan(FirstEntity.class, gt("score", 5.0), lt("score", 1.0)), 10).isEmpty());
+
+			int entries = 0;
+			for (String rowKey : OrderedIndex.getRowKeys("score", 4)) {
+				entries += factory.getColumns("FirstEntity" + OrderedIndex.COLUMN_FAMILY_SUFFIX, rowKey, 100, false, null, null).size();
+			}
+			assertEquals(9, entries);
+		} finally {
+			factory.setQueryPlanPageSize(100);
+		}
+	}
+
+	@Test
+	public void testLookupIndex() {
+		for (int i = 0; i < 5; i++) {
+			FirstEntity entity = entity("k" + i, i % 2 == 0 ? "even" : "odd", i);
+			entity.setChangedColumnName(i < 3 ? "ext-" + i : "ext-shared");
+			factory.persist(entity);
+		}
+		factory.setQueryPlanPageSize(1);
+		try {
+			QueryPlan<FirstEntity> plan = factory.plan(FirstEntity.class, eq("name", "even"), eq("changedColumnName", "ext-shared"));
+			assertEquals(QueryPlan.Strategy.LOOKUP_INDEX_SCAN, plan.getStrategy());
+			assertEquals("changedColumnName", plan.getIndexPredicate().getColumn());
+			assertEquals(1, plan.getFilters().size());
+			assertTrue(plan.explain().startsWith("LOOKUP INDEX SCAN FirstEntity ON 'changedColumnName' = 'ext-shared'"));
+			List<FirstEntity> results = factory.getResultList(plan, 10);
+			assertEquals(1, results.size());
+			assertEquals("k4", results.get(0).getId());
+			assertEquals(2, factory.getResultList(factory.plan(FirstEntity.class, eq("changedColumnName", "ext-shared")), 10).size());
+
+			FirstEntity moved = factory.get(FirstEntity.class, "k1");
+			moved.setChangedColumnName("ext-shared");
+			factory.persist(moved);
+			factory.remove(factory.get(FirstEntity.class, "k3"));
+			results = factory.getResultList(factory.plan(FirstEntity.class, eq("changedColumnName", "ext-shared")), 10);
+			assertEquals(2, results.size());
+			assertEquals("k1", results.get(0).getId());
+			assertEquals("k4", results.get(1).getId());
+			assertTrue(factory.getResultList(factory.plan(FirstEntity.class, eq("changedColumnName", "ext-1")), 10).isEmpty());
+			assertTrue(factory.getColumns("FirstEntity" + LookupIndex.COLUMN_FAMILY_SUFFIX, "changedColumnName:ext-1", 10, false, null, null).isEmpty());
+		} finally {
+			factory.setQueryPlanPageSize(100);
+		}
+	}
+
+	@Test
+	public void testRangeScanPagesPastEmptyRows() {
+		factory.persist(entity("k0", "first", 1L));
+		for (int i = 1; i <= 4; i++) { //rows without any of the read columns come back empty, as deleted rows do
+			factory.insertColumns("FirstEntity", "k" + i, Collections.<String, Object>singletonMap("unrelated", "value"));
+		}
+		factory.persist(entity("k9", "last", 100L));
+		factory.setQueryPlanPageSize(2);
+		try {
+			QueryPlan<FirstEntity> plan = factory.plan(FirstEntity.class, gt("phone", 50L));
+			assertEquals(QueryPlan.Strategy.RANGE_SCAN, plan.getStrategy());
+			List<FirstEntity> results = factory.getResultList(plan, 10);
+			assertEquals(1, results.size());
+			assertEquals("k9", results.get(0).getId());
+		} finally {
+			factory.setQueryPlanPageSize(100);
+		}
+	}
+
+	@Test
+	public void testViews() {
+		FirstEntity entity = entity("k1", "alice", 1L);
+		entity.setDescription("first");
+		entity.setScore(2.5);
+		factory.persist(entity);
+		factory.persist(entity("k2", "alice", 2L));
+
+		FirstEntity viewed = factory.getView(FirstEntity.class, FirstEntity.VIEW_BY_NAME_AND_PHONE, "alice", 1L);
+		assertEquals("k1", viewed.getId());
+		assertEquals(Double.valueOf(2.5), viewed.getScore());
+		assertEquals("first", viewed.getDescription());
+		assertEquals("k2", factory.getView(FirstEntity.class, FirstEntity.VIEW_BY_NAME_AND_PHONE, "alice", 2L).getId());
+		assertNull(factory.getView(FirstEntity.class, FirstEntity.VIEW_BY_NAME_AND_PHONE, "bob", 1L));
+
+		entity.setPhone(3L);
+		entity.setScore(null);
+		factory.persist(entity);
+		assertNull(factory.getView(FirstEntity.class, FirstEntity.VIEW_BY_NAME_AND_PHONE, "alice", 1L));
+		viewed = factory.getView(FirstEntity.class, FirstEntity.VIEW_BY_NAME_AND_PHONE, "alice", 3L);
+		assertEquals("k1", viewed.getId());
+		assertNull(viewed.getScore());
+
+		factory.remove(factory.get(FirstEntity.class, "k1"));
+		assertNull(factory.getView(FirstEntity.class, FirstEntity.VIEW_BY_NAME_AND_PHONE, "alice", 3L));
+		assertTrue(factory.getColumns(FirstEntity.VIEW_BY_NAME_AND_PHONE, "alice:3", 10, false, null, null).isEmpty());
+	}
+
+	@Test
+	public void testStaleViewRowsAreSkipped() {
+		factory.persist(entity("k1", "alice", 1L));
+		//a view row left behind by a concurrent update, still pointing to the entity
+		Map<String, Object> orphan = new LinkedHashMap<String, Object>();
+		orphan.put(factory.getClassMetadata(FirstEntity.class).getKeyProperty(), "k1");
+		orphan.put("name", "alice");
+		orphan.put("phone", 9L);
+		factory.insertColumns(FirstEntity.VIEW_BY_NAME_AND_PHONE, "alice:9", orphan);
+		assertNull(factory.getView(FirstEntity.class, FirstEntity.VIEW_BY_NAME_AND_PHONE, "alice", 9L));
+		assertEquals("k1", factory.getView(FirstEntity.class, FirstEntity.VIEW_BY_NAME_AND_PHONE, "alice", 1L).getId());
+
+		factory.remove(factory.get(FirstEntity.class, "k1"));
+		factory.insertColumns(FirstEntity.VIEW_BY_NAME_AND_PHONE, "alice:1", orphan);
+		assertNull(factory.getView(FirstEntity.class, FirstEntity.VIEW_BY_NAME_AND_PHONE, "alice", 1L));
+	}
+
+	@Test
+	public void testViewKeySeparatorIsEscaped() {
+		ViewMetadata view = factory.getClassMetadata(FirstEntity.class).getView(FirstEntity.VIEW_BY_NAME_AND_PHONE);
+		assertEquals("a\\:b:2", view.getRowKey("a:b", 2L));
+		assertEquals("a\\\\:2", view.getRowKey("a\\", 2L));
+
+		factory.persist(entity("k1", "a:1", 2L));
+		assertEquals("k1", factory.getView(FirstEntity.class, FirstEntity.VIEW_BY_NAME_AND_PHONE, "a:1", 2L).getId());
+		assertFalse(factory.getColumns(FirstEntity.VIEW_BY_NAME_AND_PHONE, "a\\:1:2", 10, false, null, null).isEmpty());
+		assertTrue(factory.getColumns(FirstEntity.VIEW_BY_NAME_AND_PHONE, "a:1:2", 10, false, null, null).isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownView() {
+		factory.getView(FirstEntity.class, "FirstEntityByNothing", "alice");
+	}
+
+	@Test
+	public void testRollups() {
+		Date from = new Date();
+		FirstEntityCounter counter = factory.getInstance(FirstEntityCounter.class);
+		counter.setId("rolled");
+		counter.setCounterPropertyIncreaseBy(5);
+		factory.persist(counter);
+		counter.setCounterPropertyIncreaseBy(-2);
+		factory.persist(counter);
+		Date to = new Date();
+
+		for (Granularity granularity : new Granularity[]{Granularity.HOUR, Granularity.DAY}) {
+			long total = 0;
+			SortedMap<Date, Long> buckets = factory.getRollups(FirstEntityCounter.class, "rolled", "counterProperty", granularity,
+					new Date(from.getTime() - granularity.getMillis()), to);
+			assertFalse(buckets.isEmpty());
+			for (Map.Entry<Date, Long> bucket : buckets.entrySet()) {
+				assertEquals(0, bucket.getKey().getTime() % granularity.getMillis());
+				total += bucket.getValue();
+			}
+			assertEquals(3, total);
+		}
+		assertEquals(3, factory.get(FirstEntityCounter.class, "rolled").getCounterProperty());
+		assertTrue(factory.getRollups(FirstEntityCounter.class, "other", "counterProperty", Granularity.DAY, from, to).isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUndeclaredRollup() {
+		factory.getRollups(FirstEntityCounter.class, "rolled", "counterProperty", Granularity.MINUTE, new Date(0), new Date());
+	}
+
+	@Test
+	public void testCounts() {
+		for (int i = 0; i < 50; i++) {
+			factory.persist(entity(String.format("k%02d", i), "name", i));
+		}
+		factory.setCountSplits(5);
+		try {
+			assertEquals(50, factory.count(FirstEntity.class));
+			CountEstimate estimate = factory.estimateCount(FirstEntity.class, 2);
+			assertFalse(estimate.isExact());
+			assertEquals(5, estimate.getTotalRanges());
+			assertEquals(50, estimate.getCount());
+			assertEquals(0, estimate.getErrorBound());
+			estimate = factory.estimateCount(FirstEntity.class, 5);
+			assertTrue(estimate.isExact());
+			assertEquals(50, estimate.getCount());
+		} finally {
+			factory.setCountSplits(16);
+		}
+	}
+
+	@Test
+	public void testAggregations() {
+		for (int i = 0; i < 10; i++) {
+			FirstEntity entity = entity(String.format("k%02d", i), i % 2 == 0 ? "even" : "odd", i);
+			entity.setScore(i / 2d);
+			factory.persist(entity);
+		}
+		FirstEntity noPhone = factory.getInstance(FirstEntity.class);
+		noPhone.setId("k10");
+		noPhone.setName("even");
+		factory.persist(noPhone);
+		factory.setCountSplits(3);
+		try {
+			assertEquals(Long.valueOf(11), factory.aggregate(FirstEntity.class, Aggregation.count()));
+			assertEquals(45L, factory.aggregate(FirstEntity.class, Aggregation.sum("phone")));
+			assertEquals(22.5d, factory.aggregate(FirstEntity.class, Aggregation.sum("score")));
+			assertEquals(4.5d, factory.aggregate(FirstEntity.class, Aggregation.avg("phone")));
+			assertEquals(Long.valueOf(0), factory.aggregate(FirstEntity.class, Aggregation.min("phone", Long.class)));
+			assertEquals(Long.valueOf(9), factory.aggregate(FirstEntity.class, Aggregation.max("phone", Long.class)));
+			assertEquals("even", factory.aggregate(FirstEntity.class, Aggregation.min("name", String.class)));
+
+			SortedMap<String, Number> sums = factory.aggregate(FirstEntity.class, Aggregation.groupBy("name", String.class, Aggregation.sum("phone")));
+			assertEquals(Arrays.asList("even", "odd"), new ArrayList<String>(sums.keySet()));
+			assertEquals(20L, sums.get("even"));
+			assertEquals(25L, sums.get("odd"));
+			SortedMap<String, Long> counts = factory.aggregate(FirstEntity.class, Aggregation.groupBy("name", String.class, Aggregation.count()));
+			assertEquals(Long.valueOf(6), counts.get("even"));
+
+			LinkedHashMap<String, Long> top = factory.aggregate(FirstEntity.class, Aggregation.top(3, "phone", Long.class));
+			assertEquals(Arrays.asList("k09", "k08", "k07"), new ArrayList<String>(top.keySet()));
+			assertEquals(Long.valueOf(9), top.get("k09"));
+		} finally {
+			factory.setCountSplits(16);
+		}
+		try {
+			factory.aggregate(FirstEntity.class, Aggregation.sum("name"));
+			fail("only numeric columns can be summed");
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+	}
+
+	@Test
+	public void testDtoMapping() {
+		FirstEntity a = entity("a", "x", 1L);
+		a.setDescription("first");
+		FirstEntity b = entity("b", "y", 2L);
+		factory.persist(a, b);
+		FirstEntitySummary summary = factory.get(FirstEntity.class, "a", FirstEntitySummary.class);
+		assertEquals("a", summary.getId());
+		assertEquals("x", summary.getName());
+		assertEquals(1L, summary.getPhone());
+		assertNull(factory.get(FirstEntity.class, "z", FirstEntitySummary.class));
+		assertSame(factory.getClassMetadata(FirstEntity.class).getDtoMapper(FirstEntitySummary.class),
+				factory.getClassMetadata(FirstEntity.class).getDtoMapper(FirstEntitySummary.class));
+
+		List<FirstEntityView> views = factory.getResultList(FirstEntity.class, Query.get(select(allColumns(), from(FirstEntity.class), where(keyIn("a", "b")))), FirstEntityView.class);
+		assertEquals(2, views.size());
+		assertEquals("a", views.get(0).getId());
+		assertEquals("first", views.get(0).getDescription());
+		assertEquals(Long.valueOf(1), views.get(0).getPhone());
+		assertNull(views.get(1).getDescription());
+		assertEquals(0d, views.get(1).getScore());
+		try {
+			factory.get(FirstEntity.class, "a", UnknownView.class);
+			fail("dto properties must be persistent properties of the entity");
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+	}
+
+	public interface FirstEntityView {
+		String getId();
+
+		String getDescription();
+
+		Long getPhone();
+
+		double getScore();
+	}
+
+	public interface UnknownView {
+		String getUnknown();
+	}
+
+	@Test
+	public void testRowCursor() {
+		for (int i = 0; i < 7; i++) {
+			FirstEntity entity = entity("k" + i, "name" + i, i);
+			entity.setScore(i / 2d);
+			factory.persist(entity);
+		}
+		RowCursor cursor = factory.getCursor("FirstEntity", 3, "name", "phone", "score");
+		List<String> keys = new ArrayList<String>();
+		long phones = 0;
+		while (cursor.next()) {
+			keys.add(cursor.getKey());
+			phones += cursor.getLong("phone");
+			assertEquals("name" + cursor.getKey().substring(1), cursor.getString("name"));
+			assertEquals(cursor.getLong("phone") / 2d, cursor.getDouble("score"));
+			assertTrue(cursor.getBytes("phone").isReadOnly());
+			assertFalse(cursor.has("description"));
+		}
+		assertEquals(Arrays.asList("k0", "k1", "k2", "k3", "k4", "k5", "k6"), keys);
+		assertEquals(21, phones);
+		assertFalse(cursor.next());
+
+		cursor = factory.getCursor(Query.get(select(columns("phone"), from(FirstEntity.class), where(keyIn("k5", "k2")))));
+		assertTrue(cursor.next());
+		assertEquals("k5", cursor.getKey());
+		assertEquals(5, cursor.getLong("phone"));
+		assertTrue(cursor.next());
+		assertEquals("k2", cursor.getKey());
+		assertFalse(cursor.next());
+		try {
+			cursor.getKey();
+			fail("the cursor is past the last row");
+		} catch (IllegalStateException e) {
+			//expected
+		}
+	}
+
+	@Test
+	public void testRowCursorPagesPastEmptyRows() {
+		factory.persist(entity("k0", "first", 0L));
+		for (int i = 1; i <= 3; i++) { //rows without any of the read columns come back empty, as deleted rows do
+			factory.insertColumns("FirstEntity", "k" + i, Collections.<String, Object>singletonMap("unrelated", "value"));
+		}
+		factory.persist(entity("k4", "second", 4L));
+		factory.persist(entity("k5", "third", 5L));
+		DefaultMetricsRecorder recorder = new DefaultMetricsRecorder();
+		factory.setMetricsRecorder(recorder);
+		try {
+			RowCursor cursor = factory.getCursor("FirstEntity", 4, "name");
+			List<String> keys = new ArrayList<String>();
+			while (cursor.next()) {
+				keys.add(cursor.getKey());
+			}
+			assertEquals(Arrays.asList("k0", "k4", "k5"), keys);
+			//the second page is short, so it is known to be the last without reading another one
+			assertEquals(7, recorder.getColumnFamilyMetrics("FirstEntity").getCount(Counter.ROWS_READ));
+		} finally {
+			factory.setMetricsRecorder(null);
+		}
+	}
+
+	@Test
+	public void testChunkedMappedCollection() {
+		List<SecondEntity> members = new ArrayList<SecondEntity>();
+		for (String id : new String[]{"s6", "s2", "s5", "s2", "s0", "s4", "s1", "s3"}) {
+			SecondEntity member = factory.getInstance(SecondEntity.class);
+			member.setId(id);
+			member.setName("name " + id);
+			factory.persist(member);
+			members.add(member);
+		}
+		FirstEntity entity = entity("a", "x", 1L);
+		entity.setSecondEagerListProperty(members);
+		factory.persist(entity);
+		factory.setMappedCollectionChunkSize(2);
+		try {
+			List<SecondEntity> loaded = factory.get(FirstEntity.class, "a").getSecondEagerListProperty();
+			assertEquals(members, loaded);
+			assertSame(loaded.get(1), loaded.get(3));
+			assertEquals("name s5", loaded.get(2).getName());
+			factory.setDeduplicateMappedCollections(true);
+			loaded = factory.get(FirstEntity.class, "a").getSecondEagerListProperty();
+			assertEquals(7, loaded.size());
+			assertEquals("s5", loaded.get(2).getId());
+			assertEquals("s3", loaded.get(6).getId());
+		} finally {
+			factory.setMappedCollectionChunkSize(500);
+			factory.setDeduplicateMappedCollections(false);
+		}
+	}
+
+	@Test
+	public void testWideRowSlices() {
+		Map<Long, Double> points = new LinkedHashMap<Long, Double>();
+		for (long i = -5; i < 20; i++) {
+			points.put(i * 100, i / 2d);
+		}
+		factory.insertColumns(MetricSeries.class, "cpu", points);
+		ColumnSliceIterator<Long, Double> slice = factory.getColumnSlice(MetricSeries.class, "cpu", null, null, false, 3);
+		List<Long> names = new ArrayList<Long>();
+		while (slice.hasNext()) {
+			WideColumn<Long, Double> column = slice.next();
+			assertEquals(points.get(column.getName()), column.getValue());
+			names.add(column.getName());
+		}
+		assertEquals(new ArrayList<Long>(points.keySet()), names);
+		names.clear();
+		ColumnSliceIterator<Long, Double> range = factory.getColumnSlice(MetricSeries.class, "cpu", 1000L, -200L, true, 4);
+		while (range.hasNext()) {
+			names.add(range.next().getName());
+		}
+		assertEquals(Arrays.asList(1000L, 900L, 800L, 700L, 600L, 500L, 400L, 300L, 200L, 100L, 0L, -100L, -200L), names);
+		assertFalse(factory.getColumnSlice(MetricSeries.class, "missing", null, null, false, 10).hasNext());
+	}
+
+	@Test
+	public void testWideRowCounters() {
+		final List<String> events = new ArrayList<String>();
+		ColumnEventListener listener = new ColumnEventListener() {
+			public void onEvent(ColumnEvent columnEvent) {
+				if ("MetricCounters".equals(columnEvent.getColumnFamily())) {
+					events.add(columnEvent.getEvent() + ":" + columnEvent.getProperty());
+				}
+			}
+		};
+		DefaultMetricsRecorder recorder = new DefaultMetricsRecorder();
+		factory.addColumnEventListener(null, Event.Column.PRE_COUNTER_MUTATION, listener);
+		factory.addColumnEventListener(null, Event.Column.POST_COUNTER_MUTATION, listener);
+		factory.setMetricsRecorder(recorder);
+		try {
+			factory.insertColumns(MetricCounters.class, "hits", Collections.singletonMap("home", 2L));
+			factory.insertColumns(MetricCounters.class, "hits", Collections.singletonMap("home", 3L));
+			assertEquals(Long.valueOf(5), factory.getColumnSlice(MetricCounters.class, "hits", null, null, false, 10).next().getValue());
+			assertEquals(Arrays.asList("PRE_COUNTER_MUTATION:home", "POST_COUNTER_MUTATION:home", "PRE_COUNTER_MUTATION:home", "POST_COUNTER_MUTATION:home"), events);
+			assertEquals(2, recorder.getColumnFamilyMetrics("MetricCounters").getCount(Counter.COLUMNS_WRITTEN));
+		} finally {
+			factory.setMetricsRecorder(null);
+			factory.removeColumnEventListener(null, Event.Column.PRE_COUNTER_MUTATION, listener);
+			factory.removeColumnEventListener(null, Event.Column.POST_COUNTER_MUTATION, listener);
+		}
+	}
+
+	@Test
+	public void testNestedCallsNotifyBatchListenersOnce() {
+		final List<String> batchEvents = new ArrayList<String>();
+		EntityEventListener batchListener = new BatchEntityEventListener() {
+			public void onEvent(EntityEvent entityEvent) {
+				batchEvents.add(entityEvent.getEvent() + ":" + entityEvent.getEntities().length);
+			}
+		};
+		EntityEventListener cascadingListener = new EntityEventListener() {
+			public void onEvent(EntityEvent entityEvent) {
+				FirstEntity entity = (FirstEntity) entityEvent.getEntities()[0];
+				if ("outer".equals(entity.getId())) {
+					if (entityEvent.getEvent() == Event.Entity.POST_PERSIST) {
+						factory.persist(entity("inner", "inner", 2L));
+					} else {
+						factory.remove(factory.get(FirstEntity.class, "inner"));
+					}
+				}
+			}
+		};
+		Event.Entity[] listenedEvents = {Event.Entity.PRE_PERSIST, Event.Entity.POST_PERSIST, Event.Entity.POST_COMMIT, Event.Entity.PRE_DELETE, Event.Entity.POST_DELETE};
+		for (Event.Entity event : listenedEvents) {
+			factory.addEntityEventListener(null, event, batchListener);
+		}
+		factory.addEntityEventListener(FirstEntity.class, Event.Entity.POST_PERSIST, cascadingListener);
+		factory.addEntityEventListener(FirstEntity.class, Event.Entity.PRE_DELETE, cascadingListener);
+		try {
+			FirstEntity outer = entity("outer", "outer", 1L);
+			factory.persist(outer);
+			assertNotNull(factory.get(FirstEntity.class, "inner"));
+			assertEquals(Arrays.asList("PRE_PERSIST:1", "POST_PERSIST:1", "POST_COMMIT:1"), batchEvents);
+			batchEvents.clear();
+			factory.remove(outer);
+			assertNull(factory.get(FirstEntity.class, "inner"));
+			assertEquals(Arrays.asList("PRE_DELETE:1", "POST_DELETE:1"), batchEvents);
+		} finally {
+			for (Event.Entity event : listenedEvents) {
+				factory.removeEntityEventListener(null, event, batchListener);
+			}
+			factory.removeEntityEventListener(FirstEntity.class, Event.Entity.POST_PERSIST, cascadingListener);
+			factory.removeEntityEventListener(FirstEntity.class, Event.Entity.PRE_DELETE, cascadingListener);
+		}
+	}
+
+	@Test
+	@SuppressWarnings("deprecation")
+	public void testColumnEventColumnAdapters() throws Exception {
+		final List<ColumnEvent> events = new ArrayList<ColumnEvent>();
+		ColumnEventListener listener = new ColumnEventListener() {
+			public void onEvent(ColumnEvent columnEvent) {
+				if ("name".equals(columnEvent.getProperty())) {
+					events.add(columnEvent);
+				}
+			}
+		};
+		factory.addColumnEventListener(FirstEntity.class, Event.Column.POST_COLUMN_MUTATION, listener);
+		try {
+			factory.persist(entity("adapters", "adapted", 1L));
+			assertEquals(1, events.size());
+			RawColumn rawColumn = events.get(0).getRawColumn();
+			assertEquals("name", rawColumn.getName());
+			assertEquals(ByteBuffer.wrap("adapted".getBytes("UTF-8")), rawColumn.getValue());
+			HColumn<?, ?> column = (HColumn<?, ?>) events.get(0).getColumn();
+			assertEquals("name", column.getName());
+			assertEquals(rawColumn.getValue(), column.getValueBytes());
+		} finally {
+			factory.removeColumnEventListener(FirstEntity.class, Event.Column.POST_COLUMN_MUTATION, listener);
+		}
+	}
+
+	@Test
+	public void testAsyncEventDispatch() throws Exception {
+		final InMemoryPersistenceFactory asyncFactory = new InMemoryPersistenceFactory();
+		asyncFactory.setDefaultKeySpace("FirebrandAsyncKeyspace");
+		asyncFactory.setEntities(Arrays.<Class<?>>asList(FirstEntity.class));
+		asyncFactory.setAsyncEventDispatch(true);
+		asyncFactory.setEventRingBufferSize(1);
+		asyncFactory.setEventConsumerThreads(1);
+		asyncFactory.setEventOverflowPolicy(OverflowPolicy.BLOCK);
+		asyncFactory.init();
+		final Thread caller = Thread.currentThread();
+		final List<Thread> prePersistThreads = new ArrayList<Thread>();
+		final CountDownLatch innerPersists = new CountDownLatch(3);
+		asyncFactory.addEntityEventListener(null, Event.Entity.PRE_PERSIST, new EntityEventListener() {
+			public void onEvent(EntityEvent entityEvent) {
+				FirstEntity entity = (FirstEntity) entityEvent.getEntities()[0];
+				if ("outer".equals(entity.getId())) {
+					prePersistThreads.add(Thread.currentThread());
+					entity.setName(entity.getName().toUpperCase());
+				}
+			}
+		});
+		asyncFactory.addEntityEventListener(null, Event.Entity.POST_PERSIST, new EntityEventListener() {
+			public void onEvent(EntityEvent entityEvent) {
+				FirstEntity entity = (FirstEntity) entityEvent.getEntities()[0];
+				if ("outer".equals(entity.getId())) {
+					assertNotSame(caller, Thread.currentThread());
+					//the ring buffer holds one event, so these persists would block the only consumer if it waited for a slot
+					for (int i = 0; i < 3; i++) {
+						FirstEntity inner = asyncFactory.getInstance(FirstEntity.class);
+						inner.setId("inner" + i);
+						asyncFactory.persist(inner);
+					}
+				} else {
+					innerPersists.countDown();
+				}
+			}
+		});
+		try {
+			FirstEntity outer = asyncFactory.getInstance(FirstEntity.class);
+			outer.setId("outer");
+			outer.setName("lower");
+			asyncFactory.persist(outer);
+			assertEquals(Arrays.asList(caller), prePersistThreads);
+			assertEquals("LOWER", asyncFactory.get(FirstEntity.class, "outer").getName());
+			assertTrue(innerPersists.await(10, TimeUnit.SECONDS));
+		} finally {
+			asyncFactory.destroy();
+		}
+	}
+
+	@Test
+	public void testCqlNamedColumnsAreNotReversed() {
+		factory.persist(entity("a", "x", 1L));
+		List<RawRow> rows = factory.getTransport().executeCql(factory.getDefaultKeySpace(), null,
+				"SELECT REVERSED 'name', 'phone' FROM FirstEntity WHERE KEY = 'a'").getRows();
+		assertEquals(1, rows.size());
+		assertEquals("name", rows.get(0).getColumns().get(0).getName());
+		assertEquals("phone", rows.get(0).getColumns().get(1).getName());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCqlRejectsNonKeyIn() {
+		factory.getTransport().executeCql(factory.getDefaultKeySpace(), null, "SELECT * FROM FirstEntity WHERE name IN ('b', 'z')");
+	}
+
+	@Test
+	public void testTransport() throws Exception {
+		factory.persist(entity("a", "x", 1L), entity("b", "y", 2L), entity("c", "z", 3L));
+		Transport transport = factory.getTransport();
+		String keySpace = factory.getDefaultKeySpace();
+		String columnFamily = factory.getClassMetadata(FirstEntity.class).getColumnFamily();
+		Map<String, List<RawColumn>> rows = transport.readRows(keySpace, null, columnFamily, Arrays.asList("c", "missing", "a"), "name");
+		assertEquals(Arrays.asList("c", "a"), new ArrayList<String>(rows.keySet()));
+		assertEquals(1, rows.get("c").size());
+		assertEquals("z", factory.getTypeConverter(String.class).fromValue(rows.get("c").get(0).getValue(), null));
+		List<RawRow> range = transport.readRange(keySpace, null, columnFamily, "b", "", 10);
+		assertEquals(2, range.size());
+		assertEquals("b", range.get(0).getKey());
+		assertEquals("c", range.get(1).getKey());
+		transport.mutate(keySpace, null, new MutationBatch().deleteRow(columnFamily, "a").delete(columnFamily, "b", "name"));
+		assertNull(factory.get(FirstEntity.class, "a"));
+		assertNull(factory.get(FirstEntity.class, "b").getName());
+	}
+
+	@Test
+	public void testTransportKeepsKeySpacesApart() throws Exception {
+		Transport transport = factory.getTransport();
+		ByteBuffer value = ByteBuffer.wrap("v".getBytes("UTF-8"));
+		transport.mutate("First", null, new MutationBatch().insert("Shared", "row", "column", value));
+		transport.mutate("Second", null, new MutationBatch().insert("Shared", "row", "other", value));
+		assertEquals("column", transport.readRow("First", null, "Shared", "row").get(0).getName());
+		assertEquals(1, transport.readRow("Second", null, "Shared", "row").size());
+		assertTrue(transport.readRow(factory.getDefaultKeySpace(), null, "Shared", "row").isEmpty());
+
+		transport.executeCql("Second", null, "TRUNCATE Shared");
+		assertTrue(transport.readRow("Second", null, "Shared", "row").isEmpty());
+		assertEquals(1, transport.readRow("First", null, "Shared", "row").size());
+		transport.executeCql("Second", null, "DROP KEYSPACE First");
+		assertTrue(transport.readRow("First", null, "Shared", "row").isEmpty());
+	}
+
+	@Test
+	public void testColumnSlices() {
+		Map<String, Object> columns = new LinkedHashMap<String, Object>();
+		for (int i = 0; i < 10; i++) {
+			columns.put("c" + i, "v" + i);
+		}
+		factory.insertColumns("Timeline", "row", columns);
+		Map<String, ByteBuffer> slice = factory.getColumns("Timeline", "row", 3, true, "c8", "c2");
+		assertEquals(Arrays.asList("c8", "c7", "c6"), new ArrayList<String>(slice.keySet()));
+		slice = factory.getColumns("Timeline", "row", 100, false, "c7", "");
+		assertEquals(Arrays.asList("c7", "c8", "c9"), new ArrayList<String>(slice.keySet()));
+		slice = factory.getColumns("Timeline", "row", false, "c1", "missing", "c4");
+		assertEquals(Arrays.asList("c1", "c4"), new ArrayList<String>(slice.keySet()));
+		factory.deleteColumns("Timeline", "row", "c1");
+		assertTrue(factory.getColumns("Timeline", "row", false, "c1").isEmpty());
+	}
+
+	@Test
+	public void testCqlMutations() {
+		factory.persist(entity("a", "x", 1L), entity("b", "y", 2L));
+		factory.executeQuery(Void.class, Query.get(batch(
+				update(columnFamily(FirstEntity.class), set(assign("name", "z")), where(keyIn("a", "b"))),
+				insert(columnFamily(FirstEntity.class), into("KEY", "name", "phone"), values("c", "w", 3L)),
+				delete(columns("phone"), from(FirstEntity.class), where(key("a")))
+		)));
+		assertEquals("z", factory.get(FirstEntity.class, "b").getName());
+		assertNull(factory.get(FirstEntity.class, "a").getPhone());
+		FirstEntity inserted = factory.get(FirstEntity.class, "c");
+		assertEquals("w", inserted.getName());
+		assertEquals(Long.valueOf(3), inserted.getPhone());
+
+		FirstEntityCounter counter = factory.getInstance(FirstEntityCounter.class);
+		counter.setId("counter");
+		counter.setCounterPropertyIncreaseBy(5);
+		factory.persist(counter);
+		factory.executeQuery(Void.class, Query.get(update(columnFamily(FirstEntityCounter.class), set(add("counterProperty", -2)), where(key("counter")))));
+		assertEquals(3, factory.get(FirstEntityCounter.class, "counter").getCounterProperty());
+	}
+}
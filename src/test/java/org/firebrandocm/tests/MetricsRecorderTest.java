@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.tests;
+
+import org.firebrandocm.dao.metrics.*;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import static junit.framework.Assert.*;
+
+/**
+ * Verifies the metrics histograms, counters and JMX export
+ */
+public class MetricsRecorderTest {
+
+	@Test
+	public void testLatencyHistogram() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getValueAtPercentile(99));
+		for (long i = 1; i <= 1000; i++) {
+			histogram.record(i * 1000);
+		}
+		assertEquals(1000, histogram.getCount());
+		assertEquals(1000000, histogram.getMax());
+		assertEquals(500500.0, histogram.getMean(), 0.001);
+		long p50 = histogram.getValueAtPercentile(50);
+		long p99 = histogram.getValueAtPercentile(99);
+		assertTrue(String.valueOf(p50), p50 >= 500000 && p50 <= 500000 * 1.07);
+		assertTrue(String.valueOf(p99), p99 >= 990000 && p99 <= 1000000);
+		assertEquals(1000000, histogram.getValueAtPercentile(100));
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMax());
+	}
+
+	@Test
+	public void testStripedCounterUnderContention() throws InterruptedException {
+		final StripedCounter counter = new StripedCounter();
+		Thread[] threads = new Thread[8];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(new Runnable() {
+				public void run() {
+					for (int j = 0; j < 10000; j++) {
+						counter.increment();
+					}
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(80000, counter.sum());
+	}
+
+	@Test
+	public void testJmxExport() throws Exception {
+		MBeanServer server = MBeanServerFactory.newMBeanServer();
+		JmxMetricsRecorder recorder = new JmxMetricsRecorder("test", server);
+		recorder.recordLatency("Users", Operation.GET_RESULT_LIST, 2000000);
+		recorder.increment("Users", Counter.ROWS_READ, 3);
+		recorder.increment("Users", Counter.CACHE_HITS, 3);
+		recorder.increment("Users", Counter.CACHE_MISSES, 1);
+
+		ObjectName name = JmxMetricsRecorder.getObjectName("test", "Users");
+		assertTrue(server.isRegistered(name));
+		assertEquals(1L, server.getAttribute(name, "GetResultListCount"));
+		assertEquals(0L, server.getAttribute(name, "GetCount"));
+		assertEquals(2000.0, server.getAttribute(name, "GetResultListMaxMicros"));
+		assertEquals(3L, server.getAttribute(name, "RowsRead"));
+		assertEquals(0.75, server.getAttribute(name, "CacheHitRate"));
+
+		server.invoke(name, "reset", new Object[0], new String[0]);
+		assertEquals(0L, server.getAttribute(name, "RowsRead"));
+
+		recorder.destroy();
+		assertFalse(server.isRegistered(name));
+	}
+}
@@ -18,10 +18,31 @@
 
 package org.firebrandocm.tests;
 
+import me.prettyprint.hector.api.Cluster;
+import me.prettyprint.hector.api.beans.HColumn;
+import me.prettyprint.hector.api.factory.HFactory;
+import me.prettyprint.hector.api.query.ColumnQuery;
 import org.apache.commons.beanutils.PropertyUtils;
 import org.firebrandocm.dao.ClassMetadata;
+import org.firebrandocm.dao.CountEstimate;
+import org.firebrandocm.dao.PersistenceFactory;
+import org.firebrandocm.dao.Projection;
+import org.firebrandocm.dao.RowCursor;
 import org.firebrandocm.dao.Query;
+import org.firebrandocm.dao.aggregation.Aggregation;
+import org.firebrandocm.dao.annotations.Granularity;
 import org.firebrandocm.dao.cql.clauses.Predicate;
+import org.firebrandocm.dao.events.BatchEntityEventListener;
+import org.firebrandocm.dao.events.EntityEvent;
+import org.firebrandocm.dao.events.EntityEventListener;
+import org.firebrandocm.dao.events.Event;
+import org.firebrandocm.dao.impl.hector.HectorPersistenceFactory;
+import org.firebrandocm.dao.metrics.ColumnFamilyMetrics;
+import org.firebrandocm.dao.metrics.Counter;
+import org.firebrandocm.dao.metrics.DefaultMetricsRecorder;
+import org.firebrandocm.dao.metrics.Operation;
+import org.firebrandocm.dao.planner.QueryPlan;
+import org.firebrandocm.dao.widerow.ColumnSliceIterator;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -72,6 +93,232 @@ public class PersistenceOperationTest extends HectorAbstractTestCase {
 		assertEquals(count, amount);
 	}
 
+	@Test
+	public void testProjection() {
+		FirstEntity entity = factory.getInstance(FirstEntity.class);
+		entity.setName("projected");
+		entity.setDescription("unloaded");
+		factory.persist(entity);
+		List<FirstEntity> results = factory.getResultList(FirstEntity.class, Query.get(select(allColumns(), from(FirstEntity.class), where(keyIn(entity.getId())))),
+				Projection.fetchGroup(FirstEntity.FETCH_SUMMARY));
+		assertEquals(1, results.size());
+		assertEquals("projected", results.get(0).getName());
+		assertEquals("unloaded", results.get(0).getDescription());
+	}
+
+	@Test
+	public void testWideRowSlice() {
+		Map<Long, Double> points = new HashMap<Long, Double>();
+		for (long i = 0; i < 10; i++) {
+			points.put(-i, (double) i);
+		}
+		factory.insertColumns(MetricSeries.class, "load", points);
+		ColumnSliceIterator<Long, Double> slice = factory.getColumnSlice(MetricSeries.class, "load", -7L, null, false, 2);
+		List<Double> values = new ArrayList<Double>();
+		while (slice.hasNext()) {
+			values.add(slice.next().getValue());
+		}
+		assertEquals(Arrays.asList(7d, 6d, 5d, 4d, 3d, 2d, 1d, 0d), values);
+	}
+
+	@Test
+	public void testQueryPlan() {
+		String name = UUID.randomUUID().toString();
+		for (long i = 0; i < 6; i++) {
+			FirstEntity entity = factory.getInstance(FirstEntity.class);
+			entity.setName(name);
+			entity.setPhone(i);
+			factory.persist(entity);
+		}
+		factory.setQueryPlanPageSize(2);
+		try {
+			QueryPlan<FirstEntity> plan = factory.plan(FirstEntity.class, gte("phone", 3L), eq("name", name));
+			assertEquals(QueryPlan.Strategy.INDEX_SCAN, plan.getStrategy());
+			assertEquals("name", plan.getIndexPredicate().getColumn());
+			List<FirstEntity> results = factory.getResultList(plan, 10);
+			assertEquals(3, results.size());
+			for (FirstEntity result : results) {
+				assertEquals(name, result.getName());
+				assertTrue(result.getPhone() >= 3L);
+			}
+		} finally {
+			factory.setQueryPlanPageSize(100);
+		}
+	}
+
+	@Test
+	public void testRangeScanPagesPastDeletedRows() {
+		long phone = Long.MAX_VALUE - Math.abs(UUID.randomUUID().getMostSignificantBits() % 1000000);
+		for (int i = 0; i < 20; i++) {
+			FirstEntity deleted = factory.getInstance(FirstEntity.class);
+			deleted.setPhone(phone);
+			factory.persist(deleted);
+			factory.remove(deleted);
+		}
+		FirstEntity match = factory.getInstance(FirstEntity.class);
+		match.setPhone(phone);
+		factory.persist(match);
+		factory.setQueryPlanPageSize(1);
+		try {
+			QueryPlan<FirstEntity> plan = factory.plan(FirstEntity.class, between("phone", phone, phone));
+			assertEquals(QueryPlan.Strategy.RANGE_SCAN, plan.getStrategy());
+			List<FirstEntity> results = factory.getResultList(plan, 10);
+			assertEquals(1, results.size());
+			assertEquals(match.getId(), results.get(0).getId());
+		} finally {
+			factory.setQueryPlanPageSize(100);
+		}
+	}
+
+	@Test
+	public void testOrderedIndex() {
+		double base = 1000 + Math.abs(UUID.randomUUID().getMostSignificantBits() % 1000000) * 10;
+		List<FirstEntity> entities = new ArrayList<FirstEntity>();
+		for (int i = 0; i < 6; i++) {
+			FirstEntity entity = factory.getInstance(FirstEntity.class);
+			entity.setScore(base + i);
+			factory.persist(entity);
+			entities.add(entity);
+		}
+		QueryPlan<FirstEntity> plan = factory.plan(FirstEntity.class, gte("score", base + 1), lt("score", base + 4));
+		assertEquals(QueryPlan.Strategy.ORDERED_INDEX_SCAN, plan.getStrategy());
+		List<FirstEntity> results = factory.getResultList(plan, 10);
+		assertEquals(3, results.size());
+		assertEquals(entities.get(1).getId(), results.get(0).getId());
+		assertEquals(entities.get(3).getId(), results.get(2).getId());
+
+		entities.get(2).setScore(base + 5.5);
+		factory.persist(entities.get(2));
+		factory.remove(entities.get(3));
+		results = factory.getResultList(plan, 10);
+		assertEquals(1, results.size());
+		assertEquals(entities.get(1).getId(), results.get(0).getId());
+		results = factory.getResultList(factory.plan(FirstEntity.class, gt("score", base + 4)), 10);
+		assertEquals(2, results.size());
+		assertEquals(entities.get(2).getId(), results.get(1).getId());
+	}
+
+	@Test
+	public void testLookupIndex() {
+		String externalId = UUID.randomUUID().toString();
+		List<FirstEntity> entities = new ArrayList<FirstEntity>();
+		for (int i = 0; i < 3; i++) {
+			FirstEntity entity = factory.getInstance(FirstEntity.class);
+			entity.setChangedColumnName(externalId);
+			entity.setPhone((long) i);
+			factory.persist(entity);
+			entities.add(entity);
+		}
+		QueryPlan<FirstEntity> plan = factory.plan(FirstEntity.class, eq("changedColumnName", externalId), gt("phone", 0L));
+		assertEquals(QueryPlan.Strategy.LOOKUP_INDEX_SCAN, plan.getStrategy());
+		assertEquals(2, factory.getResultList(plan, 10).size());
+
+		entities.get(1).setChangedColumnName(externalId + "-moved");
+		factory.persist(entities.get(1));
+		factory.remove(entities.get(2));
+		List<FirstEntity> results = factory.getResultList(factory.plan(FirstEntity.class, eq("changedColumnName", externalId)), 10);
+		assertEquals(1, results.size());
+		assertEquals(entities.get(0).getId(), results.get(0).getId());
+		results = factory.getResultList(factory.plan(FirstEntity.class, eq("changedColumnName", externalId + "-moved")), 10);
+		assertEquals(1, results.size());
+		assertEquals(entities.get(1).getId(), results.get(0).getId());
+	}
+
+	@Test
+	public void testViews() {
+		String name = "view-" + UUID.randomUUID();
+		FirstEntity entity = factory.getInstance(FirstEntity.class);
+		entity.setName(name);
+		entity.setPhone(1L);
+		entity.setDescription("viewed");
+		factory.persist(entity);
+
+		FirstEntity viewed = factory.getView(FirstEntity.class, FirstEntity.VIEW_BY_NAME_AND_PHONE, name, 1L);
+		assertEquals(entity.getId(), viewed.getId());
+		assertEquals(Long.valueOf(1L), viewed.getPhone());
+		assertEquals("viewed", viewed.getDescription());
+
+		entity.setPhone(2L);
+		factory.persist(entity);
+		assertNull(factory.getView(FirstEntity.class, FirstEntity.VIEW_BY_NAME_AND_PHONE, name, 1L));
+		assertEquals(entity.getId(), factory.getView(FirstEntity.class, FirstEntity.VIEW_BY_NAME_AND_PHONE, name, 2L).getId());
+
+		factory.remove(entity);
+		assertNull(factory.getView(FirstEntity.class, FirstEntity.VIEW_BY_NAME_AND_PHONE, name, 2L));
+	}
+
+	@Test
+	public void testRingCount() {
+		for (int i = 0; i < 20; i++) {
+			factory.persist(factory.getInstance(FirstEntity.class));
+		}
+		Long expected = factory.getSingleResult(Long.class, Query.get(select(count(), from(FirstEntity.class))));
+		factory.setCountSplits(8);
+		try {
+			assertEquals(expected.longValue(), factory.count(FirstEntity.class));
+			CountEstimate estimate = factory.estimateCount(FirstEntity.class, 100);
+			assertTrue(estimate.isExact());
+			assertEquals(expected.longValue(), estimate.getCount());
+		} finally {
+			factory.setCountSplits(16);
+		}
+	}
+
+	@Test
+	public void testAggregate() {
+		String name = "aggregate-" + System.nanoTime();
+		for (int i = 1; i <= 15; i++) {
+			FirstEntity entity = factory.getInstance(FirstEntity.class);
+			entity.setName(name);
+			entity.setPhone((long) i);
+			factory.persist(entity);
+		}
+		Long expected = factory.getSingleResult(Long.class, Query.get(select(count(), from(FirstEntity.class))));
+		factory.setCountSplits(8);
+		try {
+			assertEquals(expected, factory.aggregate(FirstEntity.class, Aggregation.count()));
+			SortedMap<String, Number> sums = factory.aggregate(FirstEntity.class, Aggregation.groupBy("name", String.class, Aggregation.sum("phone")));
+			assertEquals(120L, sums.get(name));
+			SortedMap<String, Double> averages = factory.aggregate(FirstEntity.class, Aggregation.groupBy("name", String.class, Aggregation.avg("phone")));
+			assertEquals(8d, averages.get(name));
+		} finally {
+			factory.setCountSplits(16);
+		}
+	}
+
+	@Test
+	public void testDtoMapping() {
+		FirstEntity entity = factory.getInstance(FirstEntity.class);
+		entity.setName("dto");
+		entity.setPhone(42L);
+		entity.setTestEnum(TestEnum.B);
+		factory.persist(entity);
+		FirstEntitySummary summary = factory.get(FirstEntity.class, entity.getId(), FirstEntitySummary.class);
+		assertEquals(entity.getId(), summary.getId());
+		assertEquals("dto", summary.getName());
+		assertEquals(42L, summary.getPhone());
+		assertEquals(TestEnum.B, summary.getTestEnum());
+		List<FirstEntitySummary> summaries = factory.getResultList(FirstEntity.class, Query.get(select(allColumns(), from(FirstEntity.class), where(key(entity.getId())))), FirstEntitySummary.class);
+		assertEquals(1, summaries.size());
+		assertEquals("dto", summaries.get(0).getName());
+	}
+
+	@Test
+	public void testRowCursor() {
+		for (int i = 0; i < 12; i++) {
+			FirstEntity entity = factory.getInstance(FirstEntity.class);
+			entity.setPhone((long) i);
+			factory.persist(entity);
+		}
+		RowCursor cursor = factory.getCursor("FirstEntity", 5, PersistenceFactory.CLASS_PROPERTY);
+		Set<String> keys = new HashSet<String>();
+		while (cursor.next()) {
+			assertTrue(keys.add(cursor.getKey()));
+			assertEquals(FirstEntity.class.getName(), cursor.getString(PersistenceFactory.CLASS_PROPERTY));
+		}
+		assertEquals(factory.count(FirstEntity.class), keys.size());
+	}
+
 	@Test
 	public void testOrder() {
 		int amount = 10;
@@ -197,6 +444,24 @@ public class PersistenceOperationTest extends HectorAbstractTestCase {
 		assertEquals(afterPersistCounterIncreaseExpectedValue, loadedEntity.getCounterPropertyIncreaseBy());
 	}
 
+	@Test
+	public void testCounterRollups() {
+		Date from = new Date();
+		FirstEntityCounter entity = new FirstEntityCounter();
+		entity.setCounterPropertyIncreaseBy(4);
+		factory.persist(entity);
+		entity.setCounterPropertyIncreaseBy(3);
+		factory.persist(entity);
+		Date to = new Date();
+		for (Granularity granularity : new Granularity[]{Granularity.HOUR, Granularity.DAY}) {
+			long total = 0;
+			for (Long bucket : factory.getRollups(FirstEntityCounter.class, entity.getId(), "counterProperty", granularity, from, to).values()) {
+				total += bucket;
+			}
+			assertEquals(7, total);
+		}
+	}
+
 	@Test
 	public void testSerializedObjectColumn() {
 		FirstEntity entity = new FirstEntity();
@@ -668,5 +933,103 @@ public class PersistenceOperationTest extends HectorAbstractTestCase {
 		assertEquals(1, results.size());
 	}
 
+	@Test
+	public void testClassAndBatchEventListeners() {
+		final List<Object> secondEntityEvents = new ArrayList<Object>();
+		final List<Integer> batchSizes = new ArrayList<Integer>();
+		EntityEventListener classListener = new EntityEventListener() {
+			public void onEvent(EntityEvent entityEvent) {
+				for (Object entity : entityEvent.getEntities()) {
+					assertTrue(entity instanceof SecondEntity);
+					secondEntityEvents.add(entity);
+				}
+			}
+		};
+		EntityEventListener batchListener = new BatchEntityEventListener() {
+			public void onEvent(EntityEvent entityEvent) {
+				batchSizes.add(entityEvent.getEntities().length);
+			}
+		};
+		factory.addEntityEventListener(SecondEntity.class, Event.Entity.PRE_PERSIST, classListener);
+		factory.addEntityEventListener(null, Event.Entity.PRE_PERSIST, batchListener);
+		try {
+			FirstEntity first = factory.getInstance(FirstEntity.class);
+			FirstEntity other = factory.getInstance(FirstEntity.class);
+			SecondEntity second = factory.getInstance(SecondEntity.class);
+			factory.persist(first, second, other);
+
+			assertEquals(1, secondEntityEvents.size());
+			assertSame(second, secondEntityEvents.get(0));
+			assertEquals(Arrays.asList(3), batchSizes);
+		} finally {
+			factory.removeEntityEventListener(SecondEntity.class, Event.Entity.PRE_PERSIST, classListener);
+			factory.removeEntityEventListener(null, Event.Entity.PRE_PERSIST, batchListener);
+		}
+		factory.persist(factory.getInstance(SecondEntity.class));
+		assertEquals(1, secondEntityEvents.size());
+		assertEquals(Arrays.asList(3), batchSizes);
+	}
+
+	@Test
+	public void testMetricsRecorder() {
+		DefaultMetricsRecorder recorder = new DefaultMetricsRecorder();
+		factory.setMetricsRecorder(recorder);
+		try {
+			FirstEntity entity = factory.getInstance(FirstEntity.class);
+			entity.setName("metrics");
+			factory.persist(entity);
+			assertNotNull(factory.get(FirstEntity.class, entity.getId()));
+			factory.remove(entity);
+
+			String columnFamily = factory.getClassMetadata(FirstEntity.class).getColumnFamily();
+			ColumnFamilyMetrics metrics = recorder.getColumnFamilyMetrics(columnFamily);
+			assertEquals(1, metrics.getLatency(Operation.PERSIST).getCount());
+			assertEquals(1, metrics.getLatency(Operation.GET).getCount());
+			assertEquals(0, metrics.getLatency(Operation.GET_RESULT_LIST).getCount());
+			assertEquals(1, metrics.getLatency(Operation.REMOVE).getCount());
+			assertEquals(1, metrics.getCount(Counter.ROWS_WRITTEN));
+			assertEquals(1, metrics.getCount(Counter.ROWS_READ));
+			assertTrue(metrics.getCount(Counter.COLUMNS_WRITTEN) > 0);
+			assertTrue(metrics.getCount(Counter.COLUMNS_READ) > 0);
+			assertTrue(metrics.getCount(Counter.BYTES_SERIALIZED) > 0);
+		} finally {
+			factory.setMetricsRecorder(null);
+		}
+	}
+
+	@Test
+	public void testRestartSkipsUnchangedSchema() throws Exception {
+		Cluster cluster = HFactory.getOrCreateCluster("SchemaCheck", RPC_LISTEN_ADDRESS + ":" + RPC_PORT);
+		try {
+			Set<String> schemaVersions = cluster.describeSchemaVersions().keySet();
+			String fingerprint = readSchemaFingerprint(cluster);
+			assertNotNull(fingerprint);
+
+			HectorPersistenceFactory restarted = new HectorPersistenceFactory();
+			restarted.setClusterName("Restarted");
+			restarted.setDefaultKeySpace(factory.getDefaultKeySpace());
+			restarted.setContactNodes(new String[]{RPC_LISTEN_ADDRESS});
+			restarted.setPoolName("Main");
+			restarted.setThriftPort(RPC_PORT);
+			restarted.setEntitiesPkg("org.firebrandocm.tests");
+			restarted.setDropOnDestroy(false);
+			restarted.init();
+			try {
+				assertEquals(schemaVersions, cluster.describeSchemaVersions().keySet());
+				assertEquals(fingerprint, readSchemaFingerprint(cluster));
+				assertNotNull(cluster.describeKeyspace(factory.getDefaultKeySpace()));
+			} finally {
+				restarted.destroy();
+			}
+		} finally {
+			HFactory.shutdownCluster(cluster);
+		}
+	}
 
+	private String readSchemaFingerprint(Cluster cluster) {
+		ColumnQuery<String, String, String> query = HFactory.createStringColumnQuery(HFactory.createKeyspace(factory.getDefaultKeySpace(), cluster));
+		query.setColumnFamily(HectorPersistenceFactory.SCHEMA_COLUMN_FAMILY).setKey(factory.getDefaultKeySpace()).setName("fingerprint");
+		HColumn<String, String> column = query.execute().get();
+		return column != null ? column.getValue() : null;
+	}
 }
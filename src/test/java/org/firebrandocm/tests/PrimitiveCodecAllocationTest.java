@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2012 47 Degrees, LLC
+ * http://47deg.com
+ * hello@47deg.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.firebrandocm.tests;
+
+import org.firebrandocm.dao.ClassMetadata;
+import org.firebrandocm.dao.PrimitiveAccessor;
+import org.firebrandocm.dao.impl.BooleanTypeConverter;
+import org.firebrandocm.dao.impl.DoubleTypeConverter;
+import org.firebrandocm.dao.impl.IntegerTypeConverter;
+import org.firebrandocm.dao.impl.LongTypeConverter;
+import org.firebrandocm.dao.impl.hector.HectorPersistenceFactory;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+
+import static junit.framework.Assert.*;
+
+/**
+ * Verifies primitive columns are decoded through their generated accessors without producing garbage
+ */
+public class PrimitiveCodecAllocationTest {
+
+	private static final int WARMUP_ITERATIONS = 200000;
+
+	private static final int MEASURED_ITERATIONS = 1000000;
+
+	private static ClassMetadata<FirstEntityCounter> metadata;
+
+	@BeforeClass
+	public static void init() throws Exception {
+		HectorPersistenceFactory factory = new HectorPersistenceFactory();
+		factory.setDefaultKeySpace("PrimitiveCodecAllocationTest");
+		metadata = new ClassMetadata<FirstEntityCounter>(FirstEntityCounter.class, factory);
+	}
+
+	@Test
+	public void testCodecsRoundTrip() throws Exception {
+		assertEquals(Long.MIN_VALUE + 7, new LongTypeConverter().decode(new LongTypeConverter().encode(Long.MIN_VALUE + 7)));
+		assertEquals(-40000, new IntegerTypeConverter().decode(new IntegerTypeConverter().encode(-40000)));
+		assertEquals(76.98, new DoubleTypeConverter().decode(new DoubleTypeConverter().encode(76.98)));
+		assertTrue(new BooleanTypeConverter().decode(new BooleanTypeConverter().encode(true)));
+		assertFalse(new BooleanTypeConverter().decode(new BooleanTypeConverter().encode(false)));
+		assertEquals(123412341234L, new LongTypeConverter().decode(new LongTypeConverter().toValue(123412341234L)));
+		assertEquals(Double.valueOf(76.98), new DoubleTypeConverter().fromValue(new DoubleTypeConverter().encode(76.98), Double.class));
+	}
+
+	@Test
+	public void testPrimitiveAccessor() {
+		PrimitiveAccessor accessor = metadata.getPrimitiveAccessor("counterProperty");
+		assertNotNull(accessor);
+		assertTrue(accessor.bind(new LongTypeConverter()));
+		FirstEntityCounter entity = new FirstEntityCounter();
+		accessor.decode(entity, new LongTypeConverter().encode(123412341234L));
+		assertEquals(123412341234L, entity.getCounterProperty());
+		assertEquals(123412341234L, new LongTypeConverter().decode(accessor.encode(entity)));
+		assertFalse(accessor.bind(new IntegerTypeConverter()));
+		assertNotNull(metadata.getPrimitiveAccessor("counterPropertyIncreaseBy"));
+	}
+
+	@Test
+	public void testPrimitiveColumnDecodingAllocatesNothing() {
+		ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean allocationMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+		Assume.assumeTrue(allocationMXBean.isThreadAllocatedMemorySupported());
+		allocationMXBean.setThreadAllocatedMemoryEnabled(true);
+
+		PrimitiveAccessor accessor = metadata.getPrimitiveAccessor("counterProperty");
+		accessor.bind(new LongTypeConverter());
+		FirstEntityCounter entity = new FirstEntityCounter();
+		ByteBuffer value = new LongTypeConverter().encode(123412341234L);
+		long threadId = Thread.currentThread().getId();
+
+		long checksum = decode(accessor, entity, value, WARMUP_ITERATIONS);
+		long before = allocationMXBean.getThreadAllocatedBytes(threadId);
+		checksum += decode(accessor, entity, value, MEASURED_ITERATIONS);
+		long allocated = allocationMXBean.getThreadAllocatedBytes(threadId) - before;
+
+		assertEquals(123412341234L * (WARMUP_ITERATIONS + MEASURED_ITERATIONS), checksum);
+		assertTrue(String.format("%d bytes allocated decoding %d primitive columns", allocated, MEASURED_ITERATIONS), allocated < MEASURED_ITERATIONS / 100);
+	}
+
+	private long decode(PrimitiveAccessor accessor, FirstEntityCounter entity, ByteBuffer value, int iterations) {
+		long checksum = 0;
+		for (int i = 0; i < iterations; i++) {
+			accessor.decode(entity, value);
+			checksum += entity.getCounterProperty();
+		}
+		return checksum;
+	}
+}